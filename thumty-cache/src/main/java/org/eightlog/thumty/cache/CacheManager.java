@@ -13,6 +13,8 @@ import org.eightlog.thumty.cache.jdbc.JDBCCacheProvider;
 import org.eightlog.thumty.cache.jdbc.JDBCContentCacheProvider;
 import org.eightlog.thumty.cache.utils.ForwardCache;
 import org.eightlog.thumty.cache.utils.ForwardContentCache;
+import org.eightlog.thumty.cache.utils.MeteredContentCache;
+import org.eightlog.thumty.common.metrics.Metrics;
 
 import java.io.Serializable;
 import java.util.Objects;
@@ -47,6 +49,8 @@ public class CacheManager implements Shareable {
 
     private final CacheManagerOptions options;
 
+    private final Metrics metrics;
+
     /**
      * Cache manager constructor
      *
@@ -58,6 +62,7 @@ public class CacheManager implements Shareable {
         Objects.requireNonNull(config);
 
         this.options = new CacheManagerOptions(config);
+        this.metrics = Metrics.createShared(vertx);
 
         log.debug("Creating new \"{0}\" cache manager", options.getType());
 
@@ -132,7 +137,7 @@ public class CacheManager implements Shareable {
      * @return a content cache
      */
     public ContentCache getContentCache(String name, JsonObject config) {
-        return new ForwardContentCache(contentCacheProvider.getContentCache(name, config));
+        return new MeteredContentCache(name, new ForwardContentCache(contentCacheProvider.getContentCache(name, config)), metrics);
     }
 
     /**
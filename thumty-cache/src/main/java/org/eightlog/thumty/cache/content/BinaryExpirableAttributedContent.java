@@ -6,6 +6,7 @@ import org.eightlog.thumty.store.Attributes;
 import org.eightlog.thumty.store.ExpirableAttributedContent;
 import org.eightlog.thumty.store.content.Content;
 
+import javax.annotation.Nullable;
 import java.time.LocalDateTime;
 
 /**
@@ -35,6 +36,12 @@ public class BinaryExpirableAttributedContent implements ExpirableAttributedCont
         return expires;
     }
 
+    @Nullable
+    @Override
+    public String getLocalPath() {
+        return content.getLocalPath();
+    }
+
     @Override
     public BinaryExpirableAttributedContent exceptionHandler(Handler<Throwable> handler) {
         content.exceptionHandler(handler);
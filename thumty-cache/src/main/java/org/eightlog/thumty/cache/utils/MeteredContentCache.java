@@ -0,0 +1,104 @@
+package org.eightlog.thumty.cache.utils;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+import org.eightlog.thumty.cache.ContentCache;
+import org.eightlog.thumty.common.metrics.Histogram;
+import org.eightlog.thumty.common.metrics.Metrics;
+import org.eightlog.thumty.store.ExpirableAttributedContent;
+
+import java.time.LocalDateTime;
+
+/**
+ * Content cache wrapper, that records lookup and put times and hit ratio of delegated cache.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class MeteredContentCache implements ContentCache {
+
+    private final ContentCache delegate;
+
+    private final Histogram lookups;
+
+    private final Histogram puts;
+
+    private final Metrics metrics;
+
+    private final String name;
+
+    public MeteredContentCache(String name, ContentCache delegate, Metrics metrics) {
+        this.name = name;
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.lookups = metrics.histogram("thumty_cache_lookup_seconds", "Cache lookup time", "cache", name);
+        this.puts = metrics.histogram("thumty_cache_put_seconds", "Cache put time", "cache", name);
+    }
+
+    @Override
+    public void getIfPresent(String key, Handler<AsyncResult<ExpirableAttributedContent>> handler) {
+        long start = System.nanoTime();
+
+        delegate.getIfPresent(key, res -> {
+            lookups.observeSince(start);
+            metrics.counter("thumty_cache_lookups_total", "Number of cache lookups", "cache", name, "result", result(res)).inc();
+            handler.handle(res);
+        });
+    }
+
+    @Override
+    public void put(String key, ReadStream<Buffer> content, Handler<AsyncResult<ExpirableAttributedContent>> handler) {
+        long start = System.nanoTime();
+
+        delegate.put(key, content, res -> {
+            observePut(start, res);
+            handler.handle(res);
+        });
+    }
+
+    @Override
+    public void put(String key, ReadStream<Buffer> content, LocalDateTime expires, Handler<AsyncResult<ExpirableAttributedContent>> handler) {
+        long start = System.nanoTime();
+
+        delegate.put(key, content, expires, res -> {
+            observePut(start, res);
+            handler.handle(res);
+        });
+    }
+
+    @Override
+    public void put(String source, String target, LocalDateTime expires, Handler<AsyncResult<ExpirableAttributedContent>> handler) {
+        delegate.put(source, target, expires, handler);
+    }
+
+    @Override
+    public void invalidate(String key, Handler<AsyncResult<Void>> handler) {
+        delegate.invalidate(key, handler);
+    }
+
+    @Override
+    public void invalidateAll(Iterable<String> keys, Handler<AsyncResult<Void>> handler) {
+        delegate.invalidateAll(keys, handler);
+    }
+
+    @Override
+    public void cleanUp(Handler<AsyncResult<Void>> handler) {
+        delegate.cleanUp(handler);
+    }
+
+    private void observePut(long start, AsyncResult<?> res) {
+        puts.observeSince(start);
+
+        if (res.failed()) {
+            metrics.counter("thumty_cache_put_errors_total", "Number of failed cache puts", "cache", name).inc();
+        }
+    }
+
+    private String result(AsyncResult<?> res) {
+        if (res.failed()) {
+            return "error";
+        }
+        return res.result() != null ? "hit" : "miss";
+    }
+}
@@ -0,0 +1,39 @@
+package org.eightlog.thumty.common.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonically increasing counter.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class Counter {
+
+    private final LongAdder value = new LongAdder();
+
+    /**
+     * Increment counter by one
+     */
+    public void inc() {
+        value.increment();
+    }
+
+    /**
+     * Increment counter
+     *
+     * @param amount the non negative amount
+     */
+    public void inc(long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Counter can't be decremented");
+        }
+        value.add(amount);
+    }
+
+    /**
+     * @return a counter value
+     */
+    public long get() {
+        return value.sum();
+    }
+}
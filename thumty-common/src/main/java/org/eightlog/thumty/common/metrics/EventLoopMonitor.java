@@ -0,0 +1,39 @@
+package org.eightlog.thumty.common.metrics;
+
+import io.vertx.core.Vertx;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event loop lag monitor.
+ * <p>
+ * Schedules periodic timer on the current context and observes how late it fires, blocked or overloaded
+ * event loop shows up as a growing lag.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class EventLoopMonitor {
+
+    private EventLoopMonitor() {
+    }
+
+    /**
+     * Start monitoring of the current context event loop, timer is cancelled with context verticle undeploy
+     *
+     * @param vertx    the vertx instance
+     * @param lag      the lag histogram, in seconds
+     * @param interval the check interval in milliseconds
+     * @return a timer id
+     */
+    public static long start(Vertx vertx, Histogram lag, long interval) {
+        long[] expected = {System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(interval)};
+
+        return vertx.setPeriodic(interval, id -> {
+            long now = System.nanoTime();
+
+            lag.observe((double) Math.max(now - expected[0], 0) / TimeUnit.SECONDS.toNanos(1));
+
+            expected[0] = now + TimeUnit.MILLISECONDS.toNanos(interval);
+        });
+    }
+}
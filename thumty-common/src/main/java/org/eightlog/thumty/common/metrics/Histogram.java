@@ -0,0 +1,120 @@
+package org.eightlog.thumty.common.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram with fixed buckets.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class Histogram {
+
+    /**
+     * Default latency buckets in seconds
+     */
+    public static final double[] DEFAULT_BUCKETS = {
+            0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+
+    private final double[] buckets;
+
+    /**
+     * Observations per bucket, the last one is {@code +Inf} bucket
+     */
+    private final LongAdder[] counts;
+
+    private final DoubleAdder sum = new DoubleAdder();
+
+    public Histogram() {
+        this(DEFAULT_BUCKETS);
+    }
+
+    /**
+     * Construct histogram
+     *
+     * @param buckets the ascending bucket upper bounds
+     */
+    public Histogram(double... buckets) {
+        for (int i = 1; i < buckets.length; i++) {
+            if (buckets[i] <= buckets[i - 1]) {
+                throw new IllegalArgumentException("Buckets should be in ascending order");
+            }
+        }
+
+        this.buckets = Arrays.copyOf(buckets, buckets.length);
+        this.counts = new LongAdder[buckets.length + 1];
+
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Observe value
+     *
+     * @param value the value
+     */
+    public void observe(double value) {
+        int i = 0;
+
+        while (i < buckets.length && value > buckets[i]) {
+            i++;
+        }
+
+        counts[i].increment();
+        sum.add(value);
+    }
+
+    /**
+     * Observe seconds elapsed since start time
+     *
+     * @param startNanos the start time as returned by {@link System#nanoTime()}
+     */
+    public void observeSince(long startNanos) {
+        observe((double) (System.nanoTime() - startNanos) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * @return a bucket upper bounds
+     */
+    public double[] getBuckets() {
+        return Arrays.copyOf(buckets, buckets.length);
+    }
+
+    /**
+     * @return a cumulative observations count per bucket, including {@code +Inf} bucket
+     */
+    public long[] getCumulativeCounts() {
+        long[] result = new long[counts.length];
+        long total = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+            result[i] = total += counts[i].sum();
+        }
+
+        return result;
+    }
+
+    /**
+     * @return a number of observations
+     */
+    public long getCount() {
+        long total = 0;
+
+        for (LongAdder count : counts) {
+            total += count.sum();
+        }
+
+        return total;
+    }
+
+    /**
+     * @return a sum of observed values
+     */
+    public double getSum() {
+        return sum.sum();
+    }
+}
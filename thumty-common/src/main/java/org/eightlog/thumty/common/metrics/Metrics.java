@@ -0,0 +1,255 @@
+package org.eightlog.thumty.common.metrics;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Metrics registry, exposed in Prometheus text format.
+ * <p>
+ * Metrics are identified by name and labels, given as name/value pairs:
+ * <pre>
+ * metrics.histogram("thumty_decode_seconds", "Image decoding time", "format", "JPEG").observeSince(start);
+ * </pre>
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class Metrics implements Shareable {
+
+    /**
+     * Prometheus text format content type
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * Metrics shared data lookup name
+     */
+    private static final String METRICS_LOCAL_MAP_NAME = "__thumty.Metrics";
+
+    /**
+     * Default metrics name
+     */
+    private static final String DEFAULT_METRICS_NAME = "__thumty.Metrics.default";
+
+    private static final String COUNTER = "counter";
+    private static final String GAUGE = "gauge";
+    private static final String HISTOGRAM = "histogram";
+
+    private final ConcurrentMap<String, Family> families = new ConcurrentHashMap<>();
+
+    /**
+     * Create shared metrics registry with default name
+     *
+     * @param vertx the vertx instance
+     * @return a metrics registry
+     */
+    public static Metrics createShared(Vertx vertx) {
+        return createShared(vertx, DEFAULT_METRICS_NAME);
+    }
+
+    /**
+     * Create shared metrics registry
+     *
+     * @param vertx the vertx instance
+     * @param name  the registry name
+     * @return a metrics registry
+     */
+    public synchronized static Metrics createShared(Vertx vertx, String name) {
+        LocalMap<String, Metrics> localMap = vertx.sharedData().getLocalMap(METRICS_LOCAL_MAP_NAME);
+
+        Metrics metrics = localMap.get(name);
+
+        if (metrics == null) {
+            localMap.put(name, metrics = new Metrics());
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Get or create counter
+     *
+     * @param name   the metric name
+     * @param help   the metric description
+     * @param labels the label name/value pairs
+     * @return a counter
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, COUNTER).children.computeIfAbsent(formatLabels(labels), key -> new Counter());
+    }
+
+    /**
+     * Register counter, which value is provided by supplier. Registered supplier replaces previous one.
+     *
+     * @param name   the metric name
+     * @param help   the metric description
+     * @param value  the value supplier
+     * @param labels the label name/value pairs
+     */
+    public void counter(String name, String help, Supplier<? extends Number> value, String... labels) {
+        Objects.requireNonNull(value, "value");
+
+        family(name, help, COUNTER).children.put(formatLabels(labels), value);
+    }
+
+    /**
+     * Register gauge, which value is provided by supplier. Registered supplier replaces previous one.
+     *
+     * @param name   the metric name
+     * @param help   the metric description
+     * @param value  the value supplier
+     * @param labels the label name/value pairs
+     */
+    public void gauge(String name, String help, Supplier<? extends Number> value, String... labels) {
+        Objects.requireNonNull(value, "value");
+
+        family(name, help, GAUGE).children.put(formatLabels(labels), value);
+    }
+
+    /**
+     * Get or create histogram with default buckets
+     *
+     * @param name   the metric name
+     * @param help   the metric description
+     * @param labels the label name/value pairs
+     * @return a histogram
+     */
+    public Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) family(name, help, HISTOGRAM).children.computeIfAbsent(formatLabels(labels), key -> new Histogram());
+    }
+
+    /**
+     * Format all metrics in Prometheus text format
+     *
+     * @return a formatted metrics
+     */
+    public String format() {
+        StringBuilder builder = new StringBuilder();
+
+        for (Family family : new TreeMap<>(families).values()) {
+            builder.append("# HELP ").append(family.name).append(' ').append(escapeHelp(family.help)).append('\n');
+            builder.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+
+            for (Map.Entry<String, Object> child : new TreeMap<>(family.children).entrySet()) {
+                String labels = child.getKey();
+                Object metric = child.getValue();
+
+                if (metric instanceof Histogram) {
+                    formatHistogram(builder, family.name, labels, (Histogram) metric);
+                } else if (metric instanceof Counter) {
+                    formatSample(builder, family.name, labels, ((Counter) metric).get());
+                } else {
+                    Number value = ((Supplier<? extends Number>) metric).get();
+                    formatSample(builder, family.name, labels, value != null ? value : Double.NaN);
+                }
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private void formatHistogram(StringBuilder builder, String name, String labels, Histogram histogram) {
+        double[] buckets = histogram.getBuckets();
+        long[] counts = histogram.getCumulativeCounts();
+
+        String separator = labels.isEmpty() ? "" : labels + ",";
+
+        for (int i = 0; i < buckets.length; i++) {
+            formatSample(builder, name + "_bucket", separator + "le=\"" + buckets[i] + "\"", counts[i]);
+        }
+
+        formatSample(builder, name + "_bucket", separator + "le=\"+Inf\"", counts[buckets.length]);
+        formatSample(builder, name + "_sum", labels, histogram.getSum());
+        formatSample(builder, name + "_count", labels, counts[buckets.length]);
+    }
+
+    private void formatSample(StringBuilder builder, String name, String labels, Number value) {
+        builder.append(name);
+
+        if (!labels.isEmpty()) {
+            builder.append('{').append(labels).append('}');
+        }
+
+        builder.append(' ').append(formatValue(value)).append('\n');
+    }
+
+    private String formatValue(Number value) {
+        if (value instanceof Double || value instanceof Float) {
+            double d = value.doubleValue();
+
+            if (Double.isNaN(d)) {
+                return "NaN";
+            } else if (Double.isInfinite(d)) {
+                return d > 0 ? "+Inf" : "-Inf";
+            }
+
+            return Double.toString(d);
+        }
+
+        return Long.toString(value.longValue());
+    }
+
+    private Family family(String name, String help, String type) {
+        Objects.requireNonNull(name, "name");
+
+        Family family = families.computeIfAbsent(name, key -> new Family(name, help, type));
+
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric \"" + name + "\" is already registered as " + family.type);
+        }
+
+        return family;
+    }
+
+    private static String formatLabels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels should be name/value pairs");
+        }
+
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(labels[i]).append("=\"").append(escapeLabel(labels[i + 1])).append('"');
+        }
+
+        return builder.toString();
+    }
+
+    private static String escapeLabel(String value) {
+        return String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String escapeHelp(String value) {
+        return String.valueOf(value).replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    /**
+     * Metrics with the same name and different labels
+     */
+    private static class Family {
+        private final String name;
+        private final String help;
+        private final String type;
+
+        /**
+         * Metrics by formatted labels
+         */
+        private final ConcurrentMap<String, Object> children = new ConcurrentHashMap<>();
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.eightlog.thumty.common.metrics;
+
+import io.vertx.core.Future;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Single request stages durations, formatted as {@code Server-Timing} header.
+ * <p>
+ * Stages are recorded from event loop and worker threads, durations of repeated stages are summed up.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class Trace {
+
+    private final Map<String, Long> durations = new LinkedHashMap<>();
+
+    private final Map<String, String> descriptions = new LinkedHashMap<>();
+
+    /**
+     * Record stage duration
+     *
+     * @param stage      the stage name
+     * @param startNanos the stage start time as returned by {@link System#nanoTime()}
+     */
+    public synchronized void record(String stage, long startNanos) {
+        durations.merge(stage, System.nanoTime() - startNanos, Long::sum);
+    }
+
+    /**
+     * Describe stage
+     *
+     * @param stage       the stage name
+     * @param description the stage description
+     */
+    public synchronized void describe(String stage, String description) {
+        descriptions.put(stage, description);
+    }
+
+    /**
+     * Time asynchronous stage, duration is recorded on stage completion
+     *
+     * @param stage the stage name
+     * @param task  the stage task
+     * @param <T>   the type of result
+     * @return a stage result future
+     */
+    public <T> Future<T> time(String stage, Supplier<Future<T>> task) {
+        long start = System.nanoTime();
+
+        Future<T> result = Future.future();
+
+        task.get().setHandler(res -> {
+            record(stage, start);
+            result.handle(res);
+        });
+
+        return result;
+    }
+
+    /**
+     * @param stage the stage name
+     * @return a recorded stage duration in nanoseconds, -1 if stage wasn't recorded
+     */
+    public synchronized long getDuration(String stage) {
+        return durations.getOrDefault(stage, -1L);
+    }
+
+    /**
+     * Format recorded stages as {@code Server-Timing} header value
+     *
+     * @return a header value
+     */
+    public synchronized String toServerTiming() {
+        StringBuilder builder = new StringBuilder();
+
+        for (Map.Entry<String, Long> entry : durations.entrySet()) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+
+            builder.append(entry.getKey()).append(";dur=").append(formatMillis(entry.getValue()));
+
+            String description = descriptions.get(entry.getKey());
+
+            if (description != null) {
+                builder.append(";desc=\"").append(description.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", (double) nanos / TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -1,6 +1,8 @@
 package org.eightlog.thumty.common.mvstore;
 
 import io.vertx.core.*;
+import org.eightlog.thumty.common.worker.WorkerPool;
+import org.eightlog.thumty.common.worker.WorkerPools;
 import org.h2.mvstore.MVMap;
 import org.h2.mvstore.MVStore;
 
@@ -12,20 +14,20 @@ import java.util.function.Supplier;
  */
 public class AsyncMVMap<K, V> {
 
-    private final Context context;
+    private final WorkerPool workers;
 
     private final MVStore mvStore;
 
     private final MVMap<K, V> mvMap;
 
     public AsyncMVMap(Context context, MVStore mvStore, MVMap<K, V> mvMap) {
-        this.context = context;
+        this.workers = WorkerPools.createShared(context.owner()).getPool(WorkerPools.STORE);
         this.mvStore = mvStore;
         this.mvMap = mvMap;
     }
 
     public AsyncMVMap(Vertx vertx, MVStore mvStore, MVMap<K, V> mvMap) {
-        this.context = vertx.getOrCreateContext();
+        this.workers = WorkerPools.createShared(vertx).getPool(WorkerPools.STORE);
         this.mvStore = mvStore;
         this.mvMap = mvMap;
     }
@@ -84,34 +86,34 @@ public class AsyncMVMap<K, V> {
     }
 
     public <T> void execute(Function<MVMap<K, V>, T> func, Handler<AsyncResult<T>> handler) {
-        context.executeBlocking(future -> {
+        workers.<T>executeBlocking(future -> {
             try {
                 future.complete(func.apply(mvMap));
             }catch (Throwable t){
                 future.fail(t);
             }
-        }, handler);
+        }, true, handler);
     }
 
     private <T> void execute(Supplier<T> supplier, Handler<AsyncResult<T>> handler) {
-        context.executeBlocking(future -> {
+        workers.<T>executeBlocking(future -> {
             try {
                 future.complete(supplier.get());
             }catch (Throwable t){
                 future.fail(t);
             }
-        }, handler);
+        }, true, handler);
     }
 
     private void executeVoid(SupplierVoid supplier, Handler<AsyncResult<Void>> handler) {
-        context.executeBlocking(future -> {
+        workers.<Void>executeBlocking(future -> {
             try {
                 supplier.get();
                 future.complete();
             }catch (Throwable t){
                 future.fail(t);
             }
-        }, handler);
+        }, true, handler);
     }
 
     private interface SupplierVoid {
@@ -6,6 +6,8 @@ import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.impl.ContextInternal;
 import io.vertx.core.json.JsonObject;
+import org.eightlog.thumty.common.worker.WorkerPool;
+import org.eightlog.thumty.common.worker.WorkerPools;
 import org.h2.mvstore.MVStore;
 
 import java.util.concurrent.locks.Lock;
@@ -21,6 +23,8 @@ public class AsyncMVStore {
 
     private final Vertx vertx;
 
+    private final WorkerPool workers;
+
     private MVStore store;
 
     private JsonObject config;
@@ -28,6 +32,7 @@ public class AsyncMVStore {
     public AsyncMVStore(Vertx vertx, JsonObject config) {
         this.vertx = vertx;
         this.config = config;
+        this.workers = WorkerPools.createShared(vertx).getPool(WorkerPools.STORE);
     }
 
     public <K, V> Future<AsyncMVMap<K, V>> getMap(String name) {
@@ -42,13 +47,13 @@ public class AsyncMVStore {
         open(res -> {
             if (res.succeeded()) {
                 MVStore mvStore = res.result();
-                ctx.executeBlocking(future -> {
+                workers.executeBlocking(future -> {
                     try {
                         future.complete(new AsyncMVMap<>(ctx, mvStore, mvStore.openMap(name)));
                     }catch (Throwable t) {
                         future.fail(t);
                     }
-                }, handler);
+                }, true, handler);
             } else {
                 handler.handle(Future.failedFuture(res.cause()));
             }
@@ -62,18 +67,16 @@ public class AsyncMVStore {
     }
 
     public <T> void execute(Function<MVStore, T> function, Handler<AsyncResult<T>> handler) {
-        ContextInternal ctx = (ContextInternal) vertx.getOrCreateContext();
-
         open(res -> {
             if (res.succeeded()) {
                 MVStore store = res.result();
-                ctx.executeBlocking(future -> {
+                workers.executeBlocking(future -> {
                     try{
                         future.complete(function.apply(store));
                     } catch (Throwable t) {
                         future.fail(t);
                     }
-                }, handler);
+                }, true, handler);
             } else {
                 handler.handle(Future.failedFuture(res.cause()));
             }
@@ -87,10 +90,8 @@ public class AsyncMVStore {
     }
 
     public void close(Handler<AsyncResult<Void>> handler) {
-        ContextInternal ctx = (ContextInternal) vertx.getOrCreateContext();
-
         if (store != null) {
-            ctx.executeBlocking(future -> {
+            workers.executeBlocking(future -> {
                 lock.lock();
                 try {
                     if (store != null) {
@@ -102,19 +103,17 @@ public class AsyncMVStore {
                 } finally {
                     lock.unlock();
                 }
-            }, handler);
+            }, true, handler);
         } else {
             handler.handle(Future.succeededFuture());
         }
     }
 
     private void open(Handler<AsyncResult<MVStore>> handler) {
-        ContextInternal ctx = (ContextInternal) vertx.getOrCreateContext();
-
         if (store != null) {
           handler.handle(Future.succeededFuture(store));
         } else {
-            ctx.executeBlocking(future -> {
+            workers.executeBlocking(future -> {
                 lock.lock();
                 try {
                     if (store == null) {
@@ -169,7 +168,7 @@ public class AsyncMVStore {
                 } finally {
                     lock.unlock();
                 }
-            }, handler);
+            }, true, handler);
         }
     }
 }
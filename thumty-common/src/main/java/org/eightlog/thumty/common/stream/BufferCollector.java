@@ -0,0 +1,63 @@
+package org.eightlog.thumty.common.stream;
+
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Collects {@link ReadStream} chunks in memory.
+ * <p>
+ * Chunks are collected as is, without copying into single buffer. Collection is done by stream handlers, so no
+ * thread is blocked while data arrives.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class BufferCollector {
+
+    private BufferCollector() {
+    }
+
+    /**
+     * Collect stream chunks
+     *
+     * @param stream  the read stream
+     * @param maxSize the max number of bytes to collect, 0 if not limited
+     * @return a future of collected chunks, failed with {@link IOException} if stream exceeds max size
+     */
+    public static Future<List<Buffer>> collect(ReadStream<Buffer> stream, long maxSize) {
+        Objects.requireNonNull(stream, "stream");
+
+        Future<List<Buffer>> future = Future.future();
+        List<Buffer> chunks = new ArrayList<>();
+        long[] size = {0};
+
+        stream.exceptionHandler(future::tryFail);
+
+        stream.handler(chunk -> {
+            if (future.isComplete()) {
+                return;
+            }
+
+            size[0] += chunk.length();
+
+            if (maxSize > 0 && size[0] > maxSize) {
+                stream.pause();
+                chunks.clear();
+                future.tryFail(new IOException("Stream exceeds max size of " + maxSize + " bytes"));
+            } else {
+                chunks.add(chunk);
+            }
+        });
+
+        stream.endHandler(v -> future.tryComplete(chunks));
+
+        stream.resume();
+
+        return future;
+    }
+}
@@ -0,0 +1,389 @@
+package org.eightlog.thumty.common.stream;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@link ReadStream} {@link InputStream} wrapper, handing over whole buffers from event loop to single reader thread.
+ * <p>
+ * Received buffers are queued as is and read in place. The read stream is paused once queued bytes reach high
+ * watermark and resumed once reader drains them down to low watermark, so there is a single pause/resume round trip
+ * per watermarks window instead of per buffer.
+ * <p>
+ * Input stream must be created on the read stream context and read from a single thread.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class ChunkQueueInputStream extends InputStream {
+
+    /**
+     * Default queued bytes to pause read stream at
+     */
+    private static final int DEFAULT_HIGH_WATERMARK = 1024 * 1024;
+
+    /**
+     * Default queued bytes to resume read stream at
+     */
+    private static final int DEFAULT_LOW_WATERMARK = 256 * 1024;
+
+    private final Context context;
+
+    private final ReadStream<Buffer> readStream;
+
+    private final int highWatermark;
+
+    private final int lowWatermark;
+
+    /**
+     * Event timeout in nanoseconds, 0 to wait forever
+     */
+    private final long timeout;
+
+    private final Queue<Buffer> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Queued bytes, excluding the buffer being read
+     */
+    private final AtomicLong queued = new AtomicLong();
+
+    private final AtomicBoolean paused = new AtomicBoolean();
+
+    /**
+     * Resume is scheduled on context
+     */
+    private final AtomicBoolean resuming = new AtomicBoolean();
+
+    private volatile boolean finished;
+
+    private volatile Throwable error;
+
+    private volatile boolean closed;
+
+    /**
+     * Reader thread waiting for data
+     */
+    private volatile Thread reader;
+
+    /**
+     * Buffer being read and read position, accessed by reader only
+     */
+    private Buffer current;
+    private int position;
+
+    /**
+     * Create input stream with default watermarks and no timeout
+     *
+     * @param vertx      the vertx instance
+     * @param readStream the read stream
+     */
+    public ChunkQueueInputStream(Vertx vertx, ReadStream<Buffer> readStream) {
+        this(vertx, readStream, DEFAULT_HIGH_WATERMARK, DEFAULT_LOW_WATERMARK, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create input stream with default watermarks
+     *
+     * @param vertx      the vertx instance
+     * @param readStream the read stream
+     * @param timeout    the event timeout, 0 to wait forever
+     * @param timeUnit   the event timeout time unit
+     */
+    public ChunkQueueInputStream(Vertx vertx, ReadStream<Buffer> readStream, long timeout, TimeUnit timeUnit) {
+        this(vertx, readStream, DEFAULT_HIGH_WATERMARK, DEFAULT_LOW_WATERMARK, timeout, timeUnit);
+    }
+
+    /**
+     * Create input stream
+     *
+     * @param vertx         the vertx instance
+     * @param readStream    the read stream
+     * @param highWatermark the queued bytes to pause read stream at
+     * @param lowWatermark  the queued bytes to resume read stream at
+     * @param timeout       the event timeout, 0 to wait forever
+     * @param timeUnit      the event timeout time unit
+     */
+    public ChunkQueueInputStream(Vertx vertx, ReadStream<Buffer> readStream, int highWatermark, int lowWatermark, long timeout, TimeUnit timeUnit) {
+        Objects.requireNonNull(vertx, "vertx must not be null");
+        Objects.requireNonNull(readStream, "readStream must not be null");
+
+        if (highWatermark <= 0 || lowWatermark < 0 || lowWatermark >= highWatermark) {
+            throw new IllegalArgumentException("Invalid watermarks");
+        }
+
+        if (timeout < 0 || timeUnit == null) {
+            throw new IllegalArgumentException("Invalid timeout");
+        }
+
+        this.context = vertx.getOrCreateContext();
+        this.readStream = readStream;
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.timeout = timeUnit.toNanos(timeout);
+
+        readStream.exceptionHandler(err -> {
+            error = err;
+            signal();
+        });
+
+        readStream.handler(this::offer);
+
+        readStream.endHandler(end -> {
+            finished = true;
+            signal();
+        });
+
+        // Content could be paused until consumer is ready
+        readStream.resume();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+
+        return current.getUnsignedByte(position++);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (len == 0) {
+            return 0;
+        }
+
+        if (!fill()) {
+            return -1;
+        }
+
+        int count = 0;
+
+        do {
+            int length = Math.min(len - count, current.length() - position);
+
+            current.getBytes(position, position + length, b, off + count);
+
+            position += length;
+            count += length;
+        } while (count < len && next());
+
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0 || !fill()) {
+            return 0;
+        }
+
+        long count = 0;
+
+        do {
+            int length = (int) Math.min(n - count, current.length() - position);
+
+            position += length;
+            count += length;
+        } while (count < n && next());
+
+        return count;
+    }
+
+    @Override
+    public int available() throws IOException {
+        long remains = current != null ? current.length() - position : 0;
+
+        return (int) Math.min(Integer.MAX_VALUE, remains + Math.max(0, queued.get()));
+    }
+
+    /**
+     * Close input stream, the rest of read stream is discarded
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        current = null;
+
+        context.runOnContext(v -> {
+            queue.clear();
+            queued.set(0);
+
+            if (paused.getAndSet(false) && !finished && error == null) {
+                readStream.resume();
+            }
+        });
+    }
+
+    /**
+     * Queue received buffer, called on context
+     */
+    private void offer(Buffer buffer) {
+        if (closed || buffer.length() == 0) {
+            return;
+        }
+
+        queue.offer(buffer);
+
+        if (queued.addAndGet(buffer.length()) >= highWatermark && paused.compareAndSet(false, true)) {
+            readStream.pause();
+
+            // Reader could drain queue before pause
+            resumeIfDrained();
+        }
+
+        signal();
+    }
+
+    /**
+     * Resume read stream if queue is drained to low watermark, called on context
+     */
+    private void resumeIfDrained() {
+        if (paused.get() && queued.get() <= lowWatermark && !closed && !finished && error == null) {
+            paused.set(false);
+            readStream.resume();
+        }
+    }
+
+    /**
+     * Account buffer taken by reader and schedule resume if queue is drained
+     */
+    private void release(int length) {
+        if (queued.addAndGet(-length) <= lowWatermark && paused.get() && resuming.compareAndSet(false, true)) {
+            context.runOnContext(v -> {
+                resuming.set(false);
+                resumeIfDrained();
+            });
+        }
+    }
+
+    private void signal() {
+        Thread thread = reader;
+
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Make sure there is a readable buffer, waiting for it if necessary
+     *
+     * @return false if stream is finished
+     */
+    private boolean fill() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+
+        if (error != null) {
+            throw new IOException(error);
+        }
+
+        while (current == null || position >= current.length()) {
+            Buffer buffer = take();
+
+            if (buffer == null) {
+                return false;
+            }
+
+            current = buffer;
+            position = 0;
+
+            release(buffer.length());
+        }
+
+        return true;
+    }
+
+    /**
+     * Move to next queued buffer without waiting
+     *
+     * @return true if there is a next buffer
+     */
+    private boolean next() {
+        Buffer buffer = queue.poll();
+
+        if (buffer == null) {
+            return false;
+        }
+
+        current = buffer;
+        position = 0;
+
+        release(buffer.length());
+        return true;
+    }
+
+    /**
+     * Take next queued buffer, waiting for it if necessary
+     *
+     * @return a buffer, null if stream is finished
+     */
+    private Buffer take() throws IOException {
+        Buffer buffer = queue.poll();
+
+        if (buffer != null) {
+            return buffer;
+        }
+
+        long deadline = System.nanoTime() + timeout;
+
+        reader = Thread.currentThread();
+
+        try {
+            while (true) {
+                buffer = queue.poll();
+
+                if (buffer != null) {
+                    return buffer;
+                }
+
+                if (error != null) {
+                    throw new IOException(error);
+                }
+
+                if (finished) {
+                    // Buffers are queued before end
+                    return queue.poll();
+                }
+
+                if (timeout > 0) {
+                    long remaining = deadline - System.nanoTime();
+
+                    if (remaining <= 0) {
+                        throw new InterruptedIOException("Read stream timed out");
+                    }
+
+                    LockSupport.parkNanos(this, remaining);
+                } else {
+                    LockSupport.park(this);
+                }
+
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for data");
+                }
+            }
+        } finally {
+            reader = null;
+        }
+    }
+}
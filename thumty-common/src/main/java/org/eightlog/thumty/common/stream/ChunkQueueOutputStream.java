@@ -0,0 +1,338 @@
+package org.eightlog.thumty.common.stream;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The {@link WriteStream} {@link OutputStream} wrapper, handing over large chunks from single writer thread to
+ * event loop.
+ * <p>
+ * Written bytes are gathered into a chunk array, reused by writer thread across streams, and handed over to the
+ * write stream as exact size buffers, so small writes don't allocate and each chunk is copied once. Chunks are
+ * written on the write stream context in batches, with single {@code runOnContext} per batch. Writer waits only when
+ * pending bytes exceed the limit, {@link #close()} waits until all chunks are written and the write stream is ended.
+ * <p>
+ * Output stream must be created on the write stream context and written from a single thread.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class ChunkQueueOutputStream extends OutputStream {
+
+    /**
+     * Default chunk size
+     */
+    private static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Default number of chunks pending write
+     */
+    private static final int DEFAULT_MAX_PENDING_CHUNKS = 4;
+
+    /**
+     * Chunk arrays reused by writer threads, taken by stream while it's open
+     */
+    private static final ThreadLocal<byte[]> CHUNKS = new ThreadLocal<>();
+
+    private final Context context;
+
+    private final WriteStream<Buffer> writeStream;
+
+    private final int chunkSize;
+
+    private final long maxPendingSize;
+
+    /**
+     * Write timeout in nanoseconds, 0 to wait forever
+     */
+    private final long timeout;
+
+    private final Queue<Buffer> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Handed over bytes, not written yet
+     */
+    private final AtomicLong pending = new AtomicLong();
+
+    /**
+     * Queue drain is scheduled on context
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private volatile boolean ending;
+
+    private volatile boolean ended;
+
+    /**
+     * Writer thread waiting for queue drain
+     */
+    private volatile Thread writer;
+
+    /**
+     * Chunk array and its filled size, accessed by writer only
+     */
+    private byte[] chunk;
+    private int count;
+
+    private boolean closed;
+
+    /**
+     * Create output stream with default chunk size and no timeout
+     *
+     * @param vertx       the vertx instance
+     * @param writeStream the write stream
+     */
+    public ChunkQueueOutputStream(Vertx vertx, WriteStream<Buffer> writeStream) {
+        this(vertx, writeStream, DEFAULT_CHUNK_SIZE, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create output stream with default chunk size
+     *
+     * @param vertx       the vertx instance
+     * @param writeStream the write stream
+     * @param timeout     the write timeout, 0 to wait forever
+     * @param timeUnit    the write timeout time unit
+     */
+    public ChunkQueueOutputStream(Vertx vertx, WriteStream<Buffer> writeStream, long timeout, TimeUnit timeUnit) {
+        this(vertx, writeStream, DEFAULT_CHUNK_SIZE, timeout, timeUnit);
+    }
+
+    /**
+     * Create output stream
+     *
+     * @param vertx       the vertx instance
+     * @param writeStream the write stream
+     * @param chunkSize   the chunk size
+     * @param timeout     the write timeout, 0 to wait forever
+     * @param timeUnit    the write timeout time unit
+     */
+    public ChunkQueueOutputStream(Vertx vertx, WriteStream<Buffer> writeStream, int chunkSize, long timeout, TimeUnit timeUnit) {
+        Objects.requireNonNull(vertx, "vertx must not be null");
+        Objects.requireNonNull(writeStream, "writeStream must not be null");
+
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+
+        if (timeout < 0 || timeUnit == null) {
+            throw new IllegalArgumentException("Invalid timeout");
+        }
+
+        this.context = vertx.getOrCreateContext();
+        this.writeStream = writeStream;
+        this.chunkSize = chunkSize;
+        this.maxPendingSize = (long) chunkSize * DEFAULT_MAX_PENDING_CHUNKS;
+        this.timeout = timeUnit.toNanos(timeout);
+
+        writeStream.drainHandler(v -> drain());
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+
+        if (chunk == null) {
+            chunk = acquire();
+        }
+
+        chunk[count++] = (byte) b;
+
+        if (count == chunkSize) {
+            handOver();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        ensureOpen();
+
+        while (len > 0) {
+            if (chunk == null) {
+                chunk = acquire();
+            }
+
+            int length = Math.min(len, chunkSize - count);
+
+            System.arraycopy(b, off, chunk, count, length);
+
+            off += length;
+            len -= length;
+            count += length;
+
+            if (count == chunkSize) {
+                handOver();
+            }
+        }
+    }
+
+    /**
+     * Hand over partially filled chunk, doesn't wait for it to be written
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        handOver();
+    }
+
+    /**
+     * Hand over remaining bytes and wait until write stream is ended
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        handOver();
+
+        closed = true;
+        ending = true;
+
+        release();
+        schedule();
+
+        await(() -> ended);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    /**
+     * Queue filled chunk, waiting if too many bytes are pending
+     */
+    private void handOver() throws IOException {
+        if (count == 0) {
+            return;
+        }
+
+        Buffer buffer = Buffer.buffer(Unpooled.wrappedBuffer(Arrays.copyOf(chunk, count)));
+
+        count = 0;
+
+        await(() -> pending.get() < maxPendingSize);
+
+        pending.addAndGet(buffer.length());
+        queue.offer(buffer);
+
+        schedule();
+    }
+
+    private byte[] acquire() {
+        byte[] array = CHUNKS.get();
+
+        if (array != null && array.length == chunkSize) {
+            CHUNKS.remove();
+            return array;
+        }
+
+        return new byte[chunkSize];
+    }
+
+    private void release() {
+        if (chunk != null) {
+            CHUNKS.set(chunk);
+            chunk = null;
+        }
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            context.runOnContext(v -> {
+                scheduled.set(false);
+                drain();
+            });
+        }
+    }
+
+    /**
+     * Write queued chunks while write stream accepts them, called on context
+     */
+    private void drain() {
+        Buffer buffer;
+
+        while (!writeStream.writeQueueFull() && (buffer = queue.peek()) != null) {
+            queue.poll();
+            writeStream.write(buffer);
+            pending.addAndGet(-buffer.length());
+        }
+
+        if (ending && !ended && queue.isEmpty()) {
+            ended = true;
+            writeStream.end();
+        }
+
+        Thread thread = writer;
+
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Wait for condition, timeout is restarted whenever pending chunks are written
+     */
+    private void await(BooleanSupplier condition) throws IOException {
+        if (condition.getAsBoolean()) {
+            return;
+        }
+
+        writer = Thread.currentThread();
+
+        try {
+            long deadline = System.nanoTime() + timeout;
+            long last = pending.get();
+
+            while (!condition.getAsBoolean()) {
+                if (timeout > 0) {
+                    long remaining = deadline - System.nanoTime();
+
+                    if (remaining <= 0) {
+                        throw new IOException("Write stream timeout, no data could be written in "
+                                + TimeUnit.NANOSECONDS.toMillis(timeout) + " milliseconds");
+                    }
+
+                    LockSupport.parkNanos(this, remaining);
+                } else {
+                    LockSupport.park(this);
+                }
+
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for write stream");
+                }
+
+                long current = pending.get();
+
+                if (current < last) {
+                    last = current;
+                    deadline = System.nanoTime() + timeout;
+                }
+            }
+        } finally {
+            writer = null;
+        }
+    }
+}
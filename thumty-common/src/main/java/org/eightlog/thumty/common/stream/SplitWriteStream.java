@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * A {@link WriteStream} splitter.
@@ -48,7 +49,7 @@ public class SplitWriteStream<T> implements WriteStream<T> {
      * @param streams the collection write streams
      */
     public SplitWriteStream(List<WriteStream<T>> streams) {
-        this.streams = streams;
+        this.streams = new CopyOnWriteArrayList<>(streams);
 
         for (WriteStream<T> stream : this.streams) {
             stream.exceptionHandler(this::fail);
@@ -101,6 +102,20 @@ public class SplitWriteStream<T> implements WriteStream<T> {
         return this;
     }
 
+    /**
+     * Stop writing to stream, so it no longer holds back writes to the other streams. Drain handler is called, since
+     * writes could wait for detached stream.
+     *
+     * @param stream the write stream
+     */
+    public void detach(WriteStream<T> stream) {
+        if (streams.remove(stream)) {
+            stream.exceptionHandler(null);
+            stream.drainHandler(null);
+            drain(null);
+        }
+    }
+
     private void drain(Void v) {
         if (drainHandler != null) {
             drainHandler.handle(v);
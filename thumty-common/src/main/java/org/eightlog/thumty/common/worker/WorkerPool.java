@@ -0,0 +1,108 @@
+package org.eightlog.thumty.common.worker;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.WorkerExecutor;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Named worker executor, that tracks number of queued and active tasks.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class WorkerPool {
+
+    private final String name;
+
+    private final int poolSize;
+
+    private final WorkerExecutor executor;
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final AtomicLong completed = new AtomicLong();
+
+    public WorkerPool(String name, int poolSize, WorkerExecutor executor) {
+        Objects.requireNonNull(name, "name");
+        Objects.requireNonNull(executor, "executor");
+
+        this.name = name;
+        this.poolSize = poolSize;
+        this.executor = executor;
+    }
+
+    /**
+     * Execute blocking code in the pool
+     *
+     * @param code    the blocking code
+     * @param ordered true if executions for the same context should be executed in order
+     * @param handler the result handler
+     */
+    public <T> void executeBlocking(Handler<Future<T>> code, boolean ordered, Handler<AsyncResult<T>> handler) {
+        queued.incrementAndGet();
+
+        executor.<T>executeBlocking(future -> {
+            queued.decrementAndGet();
+            active.incrementAndGet();
+            try {
+                code.handle(future);
+            } finally {
+                active.decrementAndGet();
+                completed.incrementAndGet();
+            }
+        }, ordered, handler);
+    }
+
+    /**
+     * Execute blocking code in the pool, not ordered
+     *
+     * @param code the blocking code
+     * @return a result future
+     */
+    public <T> Future<T> execute(Handler<Future<T>> code) {
+        Future<T> future = Future.future();
+        executeBlocking(code, false, future.completer());
+        return future;
+    }
+
+    /**
+     * @return a pool name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return a max number of threads
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * @return a number of tasks waiting for execution
+     */
+    public int getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * @return a number of tasks being executed
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * @return a total number of executed tasks
+     */
+    public long getCompleted() {
+        return completed.get();
+    }
+}
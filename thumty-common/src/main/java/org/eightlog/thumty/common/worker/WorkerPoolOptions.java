@@ -0,0 +1,39 @@
+package org.eightlog.thumty.common.worker;
+
+import io.vertx.core.json.JsonObject;
+import org.eightlog.thumty.common.text.DurationParser;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class WorkerPoolOptions {
+
+    /**
+     * Default max execute time in ms, before blocked thread warning
+     */
+    private static final long DEFAULT_MAX_EXECUTE_TIME = 60000;
+
+    private final JsonObject config;
+
+    private final int defaultPoolSize;
+
+    public WorkerPoolOptions(JsonObject config, int defaultPoolSize) {
+        Objects.requireNonNull(config);
+        this.config = config;
+        this.defaultPoolSize = defaultPoolSize;
+    }
+
+    public int getPoolSize() {
+        return config.getInteger("pool_size", defaultPoolSize);
+    }
+
+    /**
+     * @return a max execute time in nanoseconds
+     */
+    public long getMaxExecuteTime() {
+        return TimeUnit.MILLISECONDS.toNanos(DurationParser.parse(config.getString("max_execute_time", null), DEFAULT_MAX_EXECUTE_TIME));
+    }
+}
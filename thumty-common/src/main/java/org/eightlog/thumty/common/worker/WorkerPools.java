@@ -0,0 +1,156 @@
+package org.eightlog.thumty.common.worker;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import org.eightlog.thumty.common.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of worker pools, dedicated to processing stages.
+ * <p>
+ * CPU bound stages are sized by number of cores by default, so that one heavy stage doesn't starve others.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class WorkerPools implements Shareable {
+
+    /**
+     * Image decoding stage
+     */
+    public static final String DECODE = "decode";
+
+    /**
+     * Image filtering stage
+     */
+    public static final String FILTER = "filter";
+
+    /**
+     * Image encoding stage
+     */
+    public static final String ENCODE = "encode";
+
+    /**
+     * Feature detection stage
+     */
+    public static final String DETECT = "detect";
+
+    /**
+     * Blocking store operations
+     */
+    public static final String STORE = "store";
+
+    /**
+     * Worker pools shared data lookup name
+     */
+    private static final String WORKER_POOLS_LOCAL_MAP_NAME = "__thumty.WorkerPools";
+
+    /**
+     * Default worker pools name
+     */
+    private static final String DEFAULT_WORKER_POOLS_NAME = "__thumty.WorkerPools.default";
+
+    /**
+     * Worker pools vertx config key
+     */
+    private static final String WORKERS_CONFIG_KEY = "workers";
+
+    /**
+     * Default I/O bound pool size, same as vertx default worker pool size
+     */
+    private static final int DEFAULT_IO_POOL_SIZE = 20;
+
+    /**
+     * Default CPU bound pool size
+     */
+    private static final int DEFAULT_CPU_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+    private final Vertx vertx;
+
+    private final JsonObject config;
+
+    private final Metrics metrics;
+
+    private final Map<String, WorkerPool> pools = new ConcurrentHashMap<>();
+
+    public WorkerPools(Vertx vertx, JsonObject config) {
+        Objects.requireNonNull(vertx, "vertx");
+        Objects.requireNonNull(config, "config");
+
+        this.vertx = vertx;
+        this.config = config;
+        this.metrics = Metrics.createShared(vertx);
+    }
+
+    /**
+     * Create shared worker pools with default name and configuration from vertx
+     *
+     * @param vertx the vertx instance
+     * @return a worker pools
+     */
+    public static WorkerPools createShared(Vertx vertx) {
+        JsonObject config = vertx.getOrCreateContext().config();
+        return createShared(vertx, config != null ? config.getJsonObject(WORKERS_CONFIG_KEY, new JsonObject()) : new JsonObject(), DEFAULT_WORKER_POOLS_NAME);
+    }
+
+    /**
+     * Create shared worker pools
+     *
+     * @param vertx  the vertx instance
+     * @param config the worker pools configuration
+     * @param name   the worker pools name
+     * @return a worker pools
+     */
+    public synchronized static WorkerPools createShared(Vertx vertx, JsonObject config, String name) {
+        LocalMap<String, WorkerPools> localMap = vertx.sharedData().getLocalMap(WORKER_POOLS_LOCAL_MAP_NAME);
+
+        WorkerPools pools = localMap.get(name);
+
+        if (pools == null) {
+            localMap.put(name, pools = new WorkerPools(vertx, config));
+        }
+
+        return pools;
+    }
+
+    /**
+     * Get or create worker pool for stage
+     *
+     * @param name the stage name
+     * @return a worker pool
+     */
+    public WorkerPool getPool(String name) {
+        Objects.requireNonNull(name, "name");
+
+        return pools.computeIfAbsent(name, this::createPool);
+    }
+
+    /**
+     * @return a created worker pools
+     */
+    public Collection<WorkerPool> getPools() {
+        return new ArrayList<>(pools.values());
+    }
+
+    private WorkerPool createPool(String name) {
+        int defaultPoolSize = STORE.equals(name) ? DEFAULT_IO_POOL_SIZE : DEFAULT_CPU_POOL_SIZE;
+
+        WorkerPoolOptions options = new WorkerPoolOptions(config.getJsonObject(name, new JsonObject()), defaultPoolSize);
+
+        WorkerPool pool = new WorkerPool(name, options.getPoolSize(),
+                vertx.createSharedWorkerExecutor("thumty-" + name, options.getPoolSize(), options.getMaxExecuteTime()));
+
+        metrics.gauge("thumty_worker_queued", "Number of tasks waiting for worker", pool::getQueued, "pool", name);
+        metrics.gauge("thumty_worker_active", "Number of tasks being executed", pool::getActive, "pool", name);
+        metrics.gauge("thumty_worker_pool_size", "Number of workers", pool::getPoolSize, "pool", name);
+        metrics.counter("thumty_worker_completed_total", "Number of completed tasks", pool::getCompleted, "pool", name);
+
+        return pool;
+    }
+}
@@ -0,0 +1,30 @@
+package org.eightlog.thumty.common.metrics;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class HistogramTest {
+
+    @Test
+    public void shouldCountCumulativeBuckets() throws Exception {
+        Histogram histogram = new Histogram(1, 2, 5);
+
+        histogram.observe(0.5);
+        histogram.observe(1);
+        histogram.observe(3);
+        histogram.observe(10);
+
+        assertThat(histogram.getCumulativeCounts()).isEqualTo(new long[]{2, 2, 3, 4});
+        assertThat(histogram.getCount()).isEqualTo(4);
+        assertThat(histogram.getSum()).isEqualTo(14.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRequireAscendingBuckets() throws Exception {
+        new Histogram(2, 1);
+    }
+}
@@ -0,0 +1,68 @@
+package org.eightlog.thumty.common.metrics;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class MetricsTest {
+
+    @Test
+    public void shouldReturnSameMetricForSameLabels() throws Exception {
+        Metrics metrics = new Metrics();
+
+        metrics.counter("requests_total", "Requests", "cache", "thumb").inc();
+        metrics.counter("requests_total", "Requests", "cache", "thumb").inc(2);
+        metrics.counter("requests_total", "Requests", "cache", "http").inc();
+
+        assertThat(metrics.counter("requests_total", "Requests", "cache", "thumb").get()).isEqualTo(3);
+        assertThat(metrics.counter("requests_total", "Requests", "cache", "http").get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldFormatCountersAndGauges() throws Exception {
+        Metrics metrics = new Metrics();
+
+        metrics.counter("bytes_total", "Bytes").inc(10);
+        metrics.gauge("queued", "Queued \"tasks\"", () -> 5, "pool", "de\"code");
+
+        assertThat(metrics.format()).isEqualTo(
+                "# HELP bytes_total Bytes\n" +
+                "# TYPE bytes_total counter\n" +
+                "bytes_total 10\n" +
+                "# HELP queued Queued \"tasks\"\n" +
+                "# TYPE queued gauge\n" +
+                "queued{pool=\"de\\\"code\"} 5\n");
+    }
+
+    @Test
+    public void shouldFormatHistogram() throws Exception {
+        Metrics metrics = new Metrics();
+
+        metrics.histogram("decode_seconds", "Decode", "format", "jpeg").observe(0.3);
+
+        String text = metrics.format();
+
+        assertThat(text).contains("# TYPE decode_seconds histogram\n");
+        assertThat(text).contains("decode_seconds_bucket{format=\"jpeg\",le=\"0.25\"} 0\n");
+        assertThat(text).contains("decode_seconds_bucket{format=\"jpeg\",le=\"0.5\"} 1\n");
+        assertThat(text).contains("decode_seconds_bucket{format=\"jpeg\",le=\"+Inf\"} 1\n");
+        assertThat(text).contains("decode_seconds_sum{format=\"jpeg\"} 0.3\n");
+        assertThat(text).contains("decode_seconds_count{format=\"jpeg\"} 1\n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldFailOnTypeConflict() throws Exception {
+        Metrics metrics = new Metrics();
+
+        metrics.counter("metric", "Metric");
+        metrics.histogram("metric", "Metric");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldFailOnUnpairedLabels() throws Exception {
+        new Metrics().counter("metric", "Metric", "label");
+    }
+}
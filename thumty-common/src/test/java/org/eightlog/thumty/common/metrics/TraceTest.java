@@ -0,0 +1,51 @@
+package org.eightlog.thumty.common.metrics;
+
+import io.vertx.core.Future;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class TraceTest {
+
+    @Test
+    public void shouldFormatServerTiming() throws Exception {
+        Trace trace = new Trace();
+
+        trace.record("load", System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(2));
+        trace.record("decode", System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(10));
+        trace.describe("decode", "jpeg 640x480 1/2");
+
+        assertThat(trace.toServerTiming()).matches("load;dur=\\d+\\.\\d, decode;dur=\\d+\\.\\d;desc=\"jpeg 640x480 1/2\"");
+    }
+
+    @Test
+    public void shouldSumRepeatedStages() throws Exception {
+        Trace trace = new Trace();
+
+        trace.record("cache-lookup", System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(1));
+        trace.record("cache-lookup", System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertThat(trace.getDuration("cache-lookup")).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(2));
+        assertThat(trace.getDuration("load")).isEqualTo(-1);
+    }
+
+    @Test
+    public void shouldTimeFailedStages() throws Exception {
+        Trace trace = new Trace();
+
+        Future<String> task = Future.future();
+        Future<String> result = trace.time("load", () -> task);
+
+        assertThat(trace.getDuration("load")).isEqualTo(-1);
+
+        task.fail("error");
+
+        assertThat(result.failed()).isTrue();
+        assertThat(trace.getDuration("load")).isGreaterThanOrEqualTo(0);
+    }
+}
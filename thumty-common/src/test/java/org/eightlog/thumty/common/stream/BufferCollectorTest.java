@@ -0,0 +1,57 @@
+package org.eightlog.thumty.common.stream;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.core.streams.WriteStream;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class BufferCollectorTest {
+
+    @Test
+    public void shouldCollectChunksWithoutCopying() throws Exception {
+        Buffer first = Buffer.buffer("first");
+        Buffer second = Buffer.buffer("second");
+
+        WriteStream<Buffer>[] writer = new WriteStream[1];
+        Future<List<Buffer>>[] result = new Future[1];
+
+        new PipeStream<Buffer>().handle((Handler<WriteStream<Buffer>>) ws -> writer[0] = ws,
+                (Handler<ReadStream<Buffer>>) rs -> result[0] = BufferCollector.collect(rs, 100));
+
+        writer[0].write(first);
+        writer[0].write(second);
+
+        assertThat(result[0].isComplete()).isFalse();
+
+        writer[0].end();
+
+        assertThat(result[0].result()).hasSize(2);
+        assertThat(result[0].result().get(0)).isSameAs(first);
+        assertThat(result[0].result().get(1)).isSameAs(second);
+    }
+
+    @Test
+    public void shouldFailWhenMaxSizeExceeded() throws Exception {
+        WriteStream<Buffer>[] writer = new WriteStream[1];
+        Future<List<Buffer>>[] result = new Future[1];
+
+        new PipeStream<Buffer>().handle((Handler<WriteStream<Buffer>>) ws -> writer[0] = ws,
+                (Handler<ReadStream<Buffer>>) rs -> result[0] = BufferCollector.collect(rs, 8));
+
+        writer[0].write(Buffer.buffer("first"));
+        writer[0].write(Buffer.buffer("second"));
+
+        assertThat(result[0].failed()).isTrue();
+        assertThat(result[0].cause()).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,261 @@
+package org.eightlog.thumty.common.stream;
+
+import com.google.common.io.ByteStreams;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+@RunWith(VertxUnitRunner.class)
+public class ChunkQueueInputStreamTest {
+
+    @Rule
+    public RunTestOnContext rule = new RunTestOnContext();
+
+    @Test
+    public void shouldRead(TestContext ctx) throws Exception {
+        Async async = ctx.async();
+
+        FakeReadStream readStream = new FakeReadStream(1);
+
+        InputStream in = new ChunkQueueInputStream(rule.vertx(), readStream, 64 * 1024, 16 * 1024, 0, TimeUnit.MILLISECONDS);
+
+        rule.vertx().executeBlocking(f -> {
+            try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+                try (InputStream input = in) {
+                    ByteStreams.copy(input, out);
+                }
+                f.complete(out.toByteArray());
+            } catch (IOException e) {
+                f.fail(e);
+            }
+        }, res -> {
+            ctx.assertTrue(res.succeeded());
+            byte[] result = (byte[]) res.result();
+
+            ctx.assertEquals(result.length, 64 * 1024 * 16);
+
+            for (int j = 0; j < 64; j++) {
+                for (int i = 0; i < 1024 * 16; i++) {
+                    ctx.assertEquals(result[j * 1024 * 16 + i], (byte) ((i + j) % 256));
+                }
+            }
+
+            ctx.assertTrue(readStream.pauses > 0);
+            async.complete();
+        });
+
+        for (int j = 0; j < 64; j++) {
+            byte[] data = new byte[1024 * 16];
+
+            for (int i = 0; i < 1024 * 16; i++) {
+                data[i] = (byte) ((i + j) % 256);
+            }
+            readStream.write(data);
+        }
+        readStream.end();
+    }
+
+    @Test
+    public void shouldReadBytes(TestContext ctx) throws Exception {
+        Async async = ctx.async();
+
+        FakeReadStream readStream = new FakeReadStream(1);
+
+        InputStream in = new ChunkQueueInputStream(rule.vertx(), readStream);
+
+        rule.vertx().executeBlocking(f -> {
+            try (InputStream input = in) {
+                byte[] bytes = new byte[4];
+
+                int first = input.read();
+
+                ByteStreams.skipFully(input, 2);
+                ByteStreams.readFully(input, bytes);
+
+                f.complete(first == 0 && input.read() == -1 ? bytes : null);
+            } catch (IOException e) {
+                f.fail(e);
+            }
+        }, res -> {
+            ctx.assertTrue(res.succeeded());
+            ctx.assertEquals(Buffer.buffer((byte[]) res.result()), Buffer.buffer(new byte[]{3, 4, 5, 6}));
+            async.complete();
+        });
+
+        readStream.write(new byte[]{0x00, 0x01});
+        readStream.write(new byte[]{});
+        readStream.write(new byte[]{0x02, 0x03, 0x04});
+        readStream.write(new byte[]{0x05, 0x06});
+        readStream.end();
+    }
+
+    @Test
+    public void shouldFailOnTimeout(TestContext ctx) throws Exception {
+        Async async = ctx.async();
+
+        FakeReadStream readStream = new FakeReadStream(200);
+
+        InputStream in = new ChunkQueueInputStream(rule.vertx(), readStream, 100, TimeUnit.MILLISECONDS);
+
+        rule.vertx().executeBlocking(f -> {
+            try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+                try (InputStream input = in) {
+                    ByteStreams.copy(input, out);
+                }
+                f.complete(out.toByteArray());
+            } catch (IOException e) {
+                f.fail(e);
+            }
+        }, res -> {
+            ctx.assertTrue(res.failed());
+            async.complete();
+        });
+
+        readStream.write(new byte[]{0x00, 0x01, 0x02});
+        readStream.write(new byte[]{0x00, 0x01, 0x02});
+        readStream.end();
+    }
+
+    @Test
+    public void shouldFailOnException(TestContext ctx) throws Exception {
+        Async async = ctx.async();
+
+        FakeReadStream readStream = new FakeReadStream(10);
+
+        InputStream in = new ChunkQueueInputStream(rule.vertx(), readStream);
+
+        rule.vertx().executeBlocking(f -> {
+            try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+                try (InputStream input = in) {
+                    ByteStreams.copy(input, out);
+                }
+                f.complete(out.toByteArray());
+            } catch (IOException e) {
+                f.fail(e);
+            }
+        }, res -> {
+            ctx.assertTrue(res.failed());
+            async.complete();
+        });
+
+        readStream.write(new byte[]{0x00, 0x01, 0x02});
+        rule.vertx().setTimer(50, v -> readStream.error(new Exception("Error")));
+    }
+
+    @Test
+    public void shouldResumeOnClose(TestContext ctx) throws Exception {
+        Async async = ctx.async();
+
+        FakeReadStream readStream = new FakeReadStream(1);
+
+        InputStream in = new ChunkQueueInputStream(rule.vertx(), readStream, 4, 2, 0, TimeUnit.MILLISECONDS);
+
+        readStream.endHandler = v -> async.complete();
+
+        rule.vertx().executeBlocking(f -> {
+            try (InputStream input = in) {
+                f.complete(input.read());
+            } catch (IOException e) {
+                f.fail(e);
+            }
+        }, res -> ctx.assertTrue(res.succeeded()));
+
+        for (int i = 0; i < 10; i++) {
+            readStream.write(new byte[]{0x00, 0x01, 0x02, 0x03});
+        }
+        readStream.end();
+    }
+
+    private class FakeReadStream implements ReadStream<Buffer> {
+
+        private Handler<Throwable> exceptionHandler;
+        private Handler<Buffer> handler;
+        private Handler<Void> endHandler;
+
+        private Deque<Buffer> deque = new ArrayDeque<>();
+
+        private boolean paused;
+
+        private boolean ended;
+
+        private int pauses;
+
+        public FakeReadStream(long delay) {
+            rule.vertx().setPeriodic(delay, v -> {
+                if (ended && deque.size() == 0) {
+                    rule.vertx().cancelTimer(v);
+
+                    endHandler.handle(null);
+                }
+
+                if (!paused && deque.size() > 0) {
+                    if (handler != null) {
+                        handler.handle(deque.poll());
+                    }
+                }
+            });
+        }
+
+        @Override
+        public ReadStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+            this.exceptionHandler = handler;
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> handler(Handler<Buffer> handler) {
+            this.handler = handler;
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> pause() {
+            paused = true;
+            pauses++;
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> resume() {
+            paused = false;
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
+            this.endHandler = endHandler;
+            return this;
+        }
+
+        public void write(byte[] bytes) {
+            deque.add(Buffer.buffer(bytes));
+        }
+
+        public void end() {
+            ended = true;
+        }
+
+        public void error(Throwable error) {
+            if (exceptionHandler != null) {
+                exceptionHandler.handle(error);
+            }
+        }
+    }
+}
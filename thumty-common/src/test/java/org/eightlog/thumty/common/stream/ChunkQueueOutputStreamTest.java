@@ -0,0 +1,184 @@
+package org.eightlog.thumty.common.stream;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+@RunWith(VertxUnitRunner.class)
+public class ChunkQueueOutputStreamTest {
+
+    @Rule
+    public RunTestOnContext rule = new RunTestOnContext();
+
+    @Test
+    public void shouldWriteChunks(TestContext ctx) throws Exception {
+        Async async = ctx.async();
+
+        FakeWriteStream writeStream = new FakeWriteStream();
+
+        OutputStream out = new ChunkQueueOutputStream(rule.vertx(), writeStream, 4096, 0, TimeUnit.MILLISECONDS);
+
+        rule.vertx().executeBlocking(f -> {
+            try (OutputStream output = out) {
+                for (int i = 0; i < 1024 * 64; i++) {
+                    output.write(i);
+                }
+
+                output.write(new byte[]{0x00, 0x01, 0x02});
+                f.complete();
+            } catch (IOException e) {
+                f.fail(e);
+            }
+        }, res -> {
+            ctx.assertTrue(res.succeeded());
+            ctx.assertTrue(writeStream.end);
+            ctx.assertEquals(writeStream.content.length(), 1024 * 64 + 3);
+            ctx.assertEquals(writeStream.writes, 17);
+
+            for (int i = 0; i < 1024 * 64; i++) {
+                ctx.assertEquals(writeStream.content.getByte(i), (byte) (i % 256));
+            }
+
+            async.complete();
+        });
+    }
+
+    @Test
+    public void shouldHandleQueueFull(TestContext ctx) throws Exception {
+        Async async = ctx.async();
+
+        FakeWriteStream writeStream = new FakeWriteStream(20).setWriteQueueMaxSize(1024);
+
+        OutputStream out = new ChunkQueueOutputStream(rule.vertx(), writeStream, 1024, 1000, TimeUnit.MILLISECONDS);
+
+        rule.vertx().executeBlocking(f -> {
+            try (OutputStream output = out) {
+                byte[] bytes = new byte[100];
+
+                for (int i = 0; i < 1024 * 64; i += bytes.length) {
+                    for (int j = 0; j < bytes.length; j++) {
+                        bytes[j] = (byte) ((i + j) % 256);
+                    }
+                    output.write(bytes);
+                }
+                f.complete();
+            } catch (IOException e) {
+                f.fail(e);
+            }
+        }, res -> {
+            ctx.assertTrue(res.succeeded());
+            ctx.assertTrue(writeStream.end);
+
+            for (int i = 0; i < writeStream.content.length(); i++) {
+                ctx.assertEquals(writeStream.content.getByte(i), (byte) (i % 256));
+            }
+
+            async.complete();
+        });
+    }
+
+    @Test
+    public void shouldFailOnTimeout(TestContext ctx) throws Exception {
+        Async async = ctx.async();
+
+        FakeWriteStream writeStream = new FakeWriteStream(500).setWriteQueueMaxSize(1024);
+
+        OutputStream out = new ChunkQueueOutputStream(rule.vertx(), writeStream, 1024, 100, TimeUnit.MILLISECONDS);
+
+        rule.vertx().executeBlocking(f -> {
+            try (OutputStream output = out) {
+                for (int i = 0; i < 1024 * 64; i++) {
+                    output.write(i);
+                }
+                f.complete();
+            } catch (IOException e) {
+                f.fail(e);
+            }
+        }, res -> {
+            ctx.assertTrue(res.failed());
+            async.complete();
+        });
+    }
+
+    private class FakeWriteStream implements WriteStream<Buffer> {
+        private Buffer content = Buffer.buffer();
+        private Handler<Void> drainHandler;
+        private boolean end;
+        private boolean queueFull;
+        private int writes;
+
+        private int queueMaxSize = 1024;
+        private int queued;
+        private long delay;
+
+        public FakeWriteStream() {
+        }
+
+        public FakeWriteStream(long delay) {
+            this.delay = delay;
+        }
+
+        @Override
+        public FakeWriteStream exceptionHandler(Handler<Throwable> handler) {
+            return this;
+        }
+
+        @Override
+        public FakeWriteStream write(Buffer data) {
+            content.appendBuffer(data);
+            queued += data.length();
+            writes++;
+
+            if (queued >= queueMaxSize && delay > 0) {
+                queueFull = true;
+
+                rule.vertx().setTimer(delay, event -> {
+                    queueFull = false;
+                    queued = 0;
+
+                    if (drainHandler != null) {
+                        drainHandler.handle(null);
+                    }
+                });
+            }
+
+            return this;
+        }
+
+        @Override
+        public void end() {
+            end = true;
+        }
+
+        @Override
+        public FakeWriteStream setWriteQueueMaxSize(int maxSize) {
+            this.queueMaxSize = maxSize;
+            return this;
+        }
+
+        @Override
+        public boolean writeQueueFull() {
+            return queueFull;
+        }
+
+        @Override
+        public FakeWriteStream drainHandler(Handler<Void> handler) {
+            this.drainHandler = handler;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.eightlog.thumty.common.stream;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Encoder output bridges benchmark, writes encoder like sequence of small arrays and reports time, allocated bytes
+ * and number of write stream writes per encoded image.
+ * <p>
+ * Run with {@code java -cp <test classpath> org.eightlog.thumty.common.stream.OutputStreamBenchmark [iterations] [image size]}
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class OutputStreamBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 32 * 1024;
+
+        Vertx vertx = Vertx.vertx();
+
+        try {
+            byte[] data = new byte[size];
+            new Random(0).nextBytes(data);
+
+            for (int round = 0; round < 2; round++) {
+                run(vertx, "WriteStreamOutputStream", data, iterations,
+                        stream -> new WriteStreamOutputStream(stream, 1, TimeUnit.SECONDS));
+                run(vertx, "ChunkQueueOutputStream", data, iterations,
+                        stream -> new ChunkQueueOutputStream(vertx, stream, 1, TimeUnit.SECONDS));
+            }
+        } finally {
+            vertx.close();
+        }
+    }
+
+    private static void run(Vertx vertx, String name, byte[] data, int iterations,
+                            Function<WriteStream<Buffer>, OutputStream> factory) throws Exception {
+        CountingWriteStream stream = new CountingWriteStream();
+
+        CompletableFuture<long[]> result = new CompletableFuture<>();
+
+        // Streams are created on context and written from worker, as by thumb builder
+        vertx.runOnContext(v -> {
+            OutputStream[] outputs = new OutputStream[iterations];
+
+            for (int i = 0; i < iterations; i++) {
+                outputs[i] = factory.apply(stream);
+            }
+
+            vertx.executeBlocking(f -> {
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+                long thread = Thread.currentThread().getId();
+
+                long allocated = threads.getThreadAllocatedBytes(thread);
+                long start = System.nanoTime();
+
+                try {
+                    for (OutputStream output : outputs) {
+                        encode(output, data);
+                    }
+                } catch (Exception e) {
+                    f.fail(e);
+                    return;
+                }
+
+                f.complete(new long[]{System.nanoTime() - start, threads.getThreadAllocatedBytes(thread) - allocated});
+            }, false, res -> {
+                if (res.succeeded()) {
+                    result.complete((long[]) res.result());
+                } else {
+                    result.completeExceptionally(res.cause());
+                }
+            });
+        });
+
+        long[] measured = result.get();
+
+        System.out.println(String.format(Locale.ROOT, "%-24s %8.1f us/op %10d bytes/op %6d writes/op",
+                name,
+                measured[0] / 1000.0 / iterations,
+                measured[1] / iterations,
+                stream.writes.get() / iterations));
+    }
+
+    /**
+     * Write data in small arrays of varying size, as ImageIO writers do
+     */
+    private static void encode(OutputStream output, byte[] data) throws Exception {
+        try (OutputStream out = output) {
+            int offset = 0;
+            int step = 0;
+
+            while (offset < data.length) {
+                int length = Math.min(data.length - offset, 16 + (step++ % 48) * 8);
+
+                out.write(data, offset, length);
+                offset += length;
+            }
+        }
+    }
+
+    private static class CountingWriteStream implements WriteStream<Buffer> {
+
+        private final AtomicLong writes = new AtomicLong();
+
+        @Override
+        public WriteStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+            return this;
+        }
+
+        @Override
+        public WriteStream<Buffer> write(Buffer data) {
+            writes.incrementAndGet();
+            return this;
+        }
+
+        @Override
+        public void end() {
+        }
+
+        @Override
+        public WriteStream<Buffer> setWriteQueueMaxSize(int maxSize) {
+            return this;
+        }
+
+        @Override
+        public boolean writeQueueFull() {
+            return false;
+        }
+
+        @Override
+        public WriteStream<Buffer> drainHandler(Handler<Void> handler) {
+            return this;
+        }
+    }
+}
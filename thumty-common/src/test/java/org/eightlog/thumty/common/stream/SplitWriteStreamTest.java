@@ -1,8 +1,94 @@
 package org.eightlog.thumty.common.stream;
 
+import io.vertx.core.Handler;
+import io.vertx.core.streams.WriteStream;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 /**
  * @author Iliya Grushevskiy <iliya.gr@gmail.com>
  */
 public class SplitWriteStreamTest {
 
-}
\ No newline at end of file
+    @Test
+    public void shouldWriteToAllStreams() throws Exception {
+        FakeWriteStream first = new FakeWriteStream();
+        FakeWriteStream second = new FakeWriteStream();
+
+        SplitWriteStream<String> split = new SplitWriteStream<>(first, second);
+        split.write("a");
+        split.end();
+
+        assertEquals(first.content.size(), 1);
+        assertEquals(second.content.size(), 1);
+        assertTrue(first.end);
+        assertTrue(second.end);
+    }
+
+    @Test
+    public void shouldNotWaitForDetachedStream() throws Exception {
+        FakeWriteStream client = new FakeWriteStream();
+        FakeWriteStream cache = new FakeWriteStream();
+        boolean[] drained = {false};
+
+        SplitWriteStream<String> split = new SplitWriteStream<>(cache, client);
+        split.drainHandler(v -> drained[0] = true);
+
+        cache.queueFull = true;
+
+        assertTrue(split.writeQueueFull());
+
+        split.detach(cache);
+
+        assertFalse(split.writeQueueFull());
+        assertTrue(drained[0]);
+
+        split.write("a");
+
+        assertEquals(client.content.size(), 1);
+        assertEquals(cache.content.size(), 0);
+    }
+
+    private static class FakeWriteStream implements WriteStream<String> {
+        private List<String> content = new ArrayList<>();
+        private boolean queueFull;
+        private boolean end;
+
+        @Override
+        public FakeWriteStream exceptionHandler(Handler<Throwable> handler) {
+            return this;
+        }
+
+        @Override
+        public FakeWriteStream write(String data) {
+            content.add(data);
+            return this;
+        }
+
+        @Override
+        public void end() {
+            end = true;
+        }
+
+        @Override
+        public FakeWriteStream setWriteQueueMaxSize(int maxSize) {
+            return this;
+        }
+
+        @Override
+        public boolean writeQueueFull() {
+            return queueFull;
+        }
+
+        @Override
+        public FakeWriteStream drainHandler(Handler<Void> handler) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.eightlog.thumty.common.worker;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+@RunWith(VertxUnitRunner.class)
+public class WorkerPoolsTest {
+
+    @Rule
+    public RunTestOnContext rule = new RunTestOnContext();
+
+    @Test
+    public void shouldConfigurePoolSize(TestContext ctx) throws Exception {
+        JsonObject config = new JsonObject().put("decode", new JsonObject().put("pool_size", 3));
+
+        WorkerPools pools = WorkerPools.createShared(rule.vertx(), config, "test");
+
+        ctx.assertEquals(3, pools.getPool(WorkerPools.DECODE).getPoolSize());
+        ctx.assertEquals(WorkerPools.DECODE, pools.getPool(WorkerPools.DECODE).getName());
+        ctx.assertEquals(1, pools.getPools().size());
+    }
+
+    @Test
+    public void shouldReturnSharedInstance(TestContext ctx) throws Exception {
+        WorkerPools pools = WorkerPools.createShared(rule.vertx(), new JsonObject(), "shared");
+
+        ctx.assertTrue(pools == WorkerPools.createShared(rule.vertx(), new JsonObject(), "shared"));
+        ctx.assertTrue(pools.getPool(WorkerPools.FILTER) == pools.getPool(WorkerPools.FILTER));
+    }
+
+    @Test
+    public void shouldExecuteBlockingCode(TestContext ctx) throws Exception {
+        Async async = ctx.async();
+
+        WorkerPool pool = WorkerPools.createShared(rule.vertx(), new JsonObject(), "execute").getPool(WorkerPools.ENCODE);
+
+        pool.<String>execute(future -> {
+            ctx.assertEquals(1, pool.getActive());
+            future.complete("result");
+        }).setHandler(res -> {
+            ctx.assertTrue(res.succeeded());
+            ctx.assertEquals("result", res.result());
+            ctx.assertEquals(0, pool.getActive());
+            ctx.assertEquals(0, pool.getQueued());
+            ctx.assertEquals(1L, pool.getCompleted());
+            async.complete();
+        });
+    }
+}
@@ -6,23 +6,28 @@ import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
-import io.vertx.core.streams.ReadStream;
 import org.eightlog.thumty.cache.Cache;
 import org.eightlog.thumty.cache.CacheManager;
-import org.eightlog.thumty.common.stream.ReadStreamInputStream;
+import org.eightlog.thumty.common.stream.BufferCollector;
+import org.eightlog.thumty.common.stream.ChunkQueueInputStream;
+import org.eightlog.thumty.common.worker.WorkerPool;
+import org.eightlog.thumty.common.worker.WorkerPools;
 import org.eightlog.thumty.feature.detector.CommonFeatureDetector;
 import org.eightlog.thumty.feature.detector.FeatureDetector;
 import org.eightlog.thumty.feature.detector.FrontFaceDetector;
 import org.eightlog.thumty.feature.detector.ProfileFaceDetector;
 import org.eightlog.thumty.image.Image;
+import org.eightlog.thumty.image.io.BufferImageInput;
 import org.eightlog.thumty.image.io.InputStreamImageInput;
 import org.eightlog.thumty.image.io.UnsupportedFormatException;
 import org.eightlog.thumty.image.io.sampler.SizeSampler;
 import org.eightlog.thumty.loader.Loaders;
+import org.eightlog.thumty.store.ExpirableAttributedContent;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -48,6 +53,8 @@ public class FeatureDetectionServiceImpl implements FeatureDetectionService {
 
     private final FeatureDetectionServiceOptions options;
 
+    private final WorkerPool workers;
+
     private FeatureDetector faceDetector;
 
     private FeatureDetector anyDetector;
@@ -59,6 +66,7 @@ public class FeatureDetectionServiceImpl implements FeatureDetectionService {
         this.loaders = Loaders.createShared(vertx);
         this.options = new FeatureDetectionServiceOptions(config);
         this.cache = CacheManager.createShared(vertx).getCache(FEATURE_CACHE_NAME, options.getCacheConfig());
+        this.workers = WorkerPools.createShared(vertx).getPool(WorkerPools.DETECT);
 
         FrontFaceDetector frontFaceDetector = new FrontFaceDetector(options.getFrontFaceWeight());
         ProfileFaceDetector profileFaceDetector = new ProfileFaceDetector(options.getProfileFaceWeight());
@@ -110,11 +118,27 @@ public class FeatureDetectionServiceImpl implements FeatureDetectionService {
                 );
     }
 
-    private Future<Features> detect(ReadStream<Buffer> stream, FeatureDetector detector) {
+    /**
+     * Detect features, content of known size within limit is collected in memory before decoding
+     *
+     * @param content  the source content
+     * @param detector the features detector
+     * @return a future features
+     */
+    private Future<Features> detect(ExpirableAttributedContent content, FeatureDetector detector) {
+        long size = content.getAttributes().getSize();
+        long maxCollectedSize = options.getMaxCollectedSize();
+
+        if (size > 0 && size <= maxCollectedSize) {
+            return BufferCollector.collect(content, maxCollectedSize).compose(chunks -> detect(chunks, detector));
+        }
+
+        InputStream stream = new ChunkQueueInputStream(vertx, content, READ_STREAM_TIMEOUT, TimeUnit.MILLISECONDS);
+
         Future<Features> future = Future.future();
-        vertx.executeBlocking(result -> {
+        workers.<Features>executeBlocking(result -> {
             try {
-                try (InputStream input = new ReadStreamInputStream(vertx, stream, READ_STREAM_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                try (InputStream input = stream) {
                     Image image = new InputStreamImageInput(new SizeSampler(options.getResize())).read(input);
                     BufferedImage source = image.getSource();
 
@@ -128,4 +152,19 @@ public class FeatureDetectionServiceImpl implements FeatureDetectionService {
         }, false, future.completer());
         return future;
     }
+
+    private Future<Features> detect(List<Buffer> chunks, FeatureDetector detector) {
+        Future<Features> future = Future.future();
+        workers.<Features>executeBlocking(result -> {
+            try {
+                Image image = new BufferImageInput(new SizeSampler(options.getResize())).read(chunks);
+                BufferedImage source = image.getSource();
+
+                result.complete(new Features(source, detector.detect(source)));
+            } catch (Throwable t) {
+                result.fail(t);
+            }
+        }, false, future.completer());
+        return future;
+    }
 }
@@ -1,6 +1,7 @@
 package org.eightlog.thumty.feature;
 
 import io.vertx.core.json.JsonObject;
+import org.eightlog.thumty.common.text.ByteSizeParser;
 import org.eightlog.thumty.image.geometry.RelativeOrAbsoluteSize;
 import org.eightlog.thumty.image.geometry.Size;
 
@@ -29,6 +30,11 @@ public class FeatureDetectionServiceOptions {
      */
     private final static String CACHE_CONFIG_KEY = "cache";
 
+    /**
+     * Default max size of source collected in memory before decoding
+     */
+    private final static long DEFAULT_MAX_COLLECTED_SIZE = 32 * 1000 * 1000;
+
 
     private final JsonObject config;
 
@@ -40,6 +46,14 @@ public class FeatureDetectionServiceOptions {
         return config.getJsonObject(CACHE_CONFIG_KEY, new JsonObject());
     }
 
+    /**
+     * @return a max size of source, that is collected in memory before decoding, 0 to always decode from stream
+     */
+    public long getMaxCollectedSize() {
+        String size = config.getString("max_collected_size", null);
+        return size != null ? ByteSizeParser.parse(size) : DEFAULT_MAX_COLLECTED_SIZE;
+    }
+
     public double getFeatureWeight() {
         return getWeightsConfig().getDouble("features", DEFAULT_FEATURE_WEIGHT);
     }
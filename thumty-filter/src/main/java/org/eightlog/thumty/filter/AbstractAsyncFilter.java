@@ -2,8 +2,14 @@ package org.eightlog.thumty.filter;
 
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import org.eightlog.thumty.common.metrics.Metrics;
+import org.eightlog.thumty.common.metrics.Trace;
+import org.eightlog.thumty.common.worker.WorkerPool;
+import org.eightlog.thumty.common.worker.WorkerPools;
 import org.eightlog.thumty.image.Image;
 
+import javax.annotation.Nullable;
+
 /**
  * @author Iliya Grushevskiy <iliya.gr@gmail.com>
  */
@@ -11,17 +17,28 @@ public abstract class AbstractAsyncFilter implements AsyncFilter {
 
     private final Vertx vertx;
 
+    private final WorkerPool workers;
+
+    private final Metrics metrics;
+
     public AbstractAsyncFilter(Vertx vertx) {
         this.vertx = vertx;
+        this.workers = WorkerPools.createShared(vertx).getPool(WorkerPools.FILTER);
+        this.metrics = Metrics.createShared(vertx);
     }
 
     @Override
     public Future<Image> apply(Image image) {
+        return apply(image, null);
+    }
+
+    @Override
+    public Future<Image> apply(Image image, @Nullable Trace trace) {
         Future<Image> future = Future.future();
 
-        vertx.executeBlocking(f -> {
+        workers.<Image>executeBlocking(f -> {
             try {
-                f.complete(applyBlocking(image));
+                f.complete(applyTimed(image, trace));
             } catch (Throwable t) {
                 f.fail(t);
             }
@@ -30,26 +47,101 @@ public abstract class AbstractAsyncFilter implements AsyncFilter {
         return future;
     }
 
+    /**
+     * Compose filters, blocking filters are composed into one blocking filter, that records time of each of them
+     *
+     * @param after the after filter
+     * @return a composite filter
+     */
     @Override
     public AsyncFilter andThen(AsyncFilter after) {
         if (after instanceof AbstractAsyncFilter) {
-            final AbstractAsyncFilter afterFilter = (AbstractAsyncFilter) after;
+            return new CompositeAsyncFilter(vertx, this, (AbstractAsyncFilter) after);
+        }
+        return AsyncFilter.super.andThen(after);
+    }
 
-            return new AbstractAsyncFilter(vertx) {
-                @Override
-                protected Image applyBlocking(Image image) {
-                    return afterFilter.applyBlocking(applyBlocking(image));
-                }
-            };
+    protected abstract Image applyBlocking(Image image);
+
+    /**
+     * Apply filter, recording its time to metrics and to request trace as {@code filter-<name>} stage
+     *
+     * @param image the source image
+     * @param trace the request trace, null if request isn't traced
+     * @return a result image
+     */
+    protected Image applyTimed(Image image, @Nullable Trace trace) {
+        long start = System.nanoTime();
+
+        Image result = applyBlocking(image);
+
+        metrics.histogram("thumty_filter_seconds", "Image filter time", "filter", getName()).observeSince(start);
 
+        if (trace != null) {
+            String stage = "filter-" + getName();
+
+            trace.record(stage, start);
+
+            if (getDescription() != null) {
+                trace.describe(stage, getDescription());
+            }
         }
-        return image -> apply(image).compose(after::apply);
+
+        return result;
     }
 
-    protected abstract Image applyBlocking(Image image);
+    /**
+     * @return a filter name used in metrics and trace
+     */
+    protected String getName() {
+        return getName(getClass());
+    }
+
+    /**
+     * @return a filter description used in trace, null if filter has none
+     */
+    @Nullable
+    protected String getDescription() {
+        return null;
+    }
+
+    /**
+     * @return a simple name of filter class, anonymous classes and lambdas have no usable name
+     */
+    static String getName(Class<?> type) {
+        return type.isAnonymousClass() || type.isSynthetic() ? "anonymous" : type.getSimpleName();
+    }
 
     protected Vertx getVertx() {
         return vertx;
     }
 
+    /**
+     * Blocking filters applied one after another on the same worker
+     */
+    private static class CompositeAsyncFilter extends AbstractAsyncFilter {
+
+        private final AbstractAsyncFilter first;
+
+        private final AbstractAsyncFilter second;
+
+        CompositeAsyncFilter(Vertx vertx, AbstractAsyncFilter first, AbstractAsyncFilter second) {
+            super(vertx);
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        protected Image applyBlocking(Image image) {
+            return second.applyBlocking(first.applyBlocking(image));
+        }
+
+        /**
+         * Filters record their own time, so composite isn't recorded as a single filter
+         */
+        @Override
+        protected Image applyTimed(Image image, @Nullable Trace trace) {
+            return second.applyTimed(first.applyTimed(image, trace), trace);
+        }
+    }
 }
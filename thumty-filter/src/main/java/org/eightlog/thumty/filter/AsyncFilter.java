@@ -1,6 +1,7 @@
 package org.eightlog.thumty.filter;
 
 import io.vertx.core.Future;
+import org.eightlog.thumty.common.metrics.Trace;
 import org.eightlog.thumty.image.Image;
 
 import java.util.Arrays;
@@ -20,6 +21,17 @@ public interface AsyncFilter {
      */
     Future<Image> apply(Image image);
 
+    /**
+     * Applies filter asynchronously, recording filters time to request trace
+     *
+     * @param image the source image
+     * @param trace the request trace
+     * @return a future result image
+     */
+    default Future<Image> apply(Image image, Trace trace) {
+        return apply(image);
+    }
+
     /**
      * Compose async filters
      *
@@ -55,6 +67,18 @@ public interface AsyncFilter {
      * @return a composite filter
      */
     default AsyncFilter andThen(AsyncFilter after) {
-        return (image) -> apply(image).compose(after::apply);
+        AsyncFilter before = this;
+
+        return new AsyncFilter() {
+            @Override
+            public Future<Image> apply(Image image) {
+                return before.apply(image).compose(after::apply);
+            }
+
+            @Override
+            public Future<Image> apply(Image image, Trace trace) {
+                return before.apply(image, trace).compose(result -> after.apply(result, trace));
+            }
+        };
     }
 }
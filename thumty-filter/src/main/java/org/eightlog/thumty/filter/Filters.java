@@ -86,6 +86,22 @@ public class Filters implements Shareable {
         }
     }
 
+    /**
+     * @param name the filter name
+     * @return true if filter is applied before image transformations
+     */
+    public boolean isPreProcessFilter(String name) {
+        return getPreProcessFilters().containsKey(name);
+    }
+
+    /**
+     * @param name the filter name
+     * @return true if filter is applied after image transformations
+     */
+    public boolean isPostProcessFilter(String name) {
+        return getPostProcessFilters().containsKey(name);
+    }
+
     private synchronized Map<String, AsyncFilterProvider> getPreProcessFilters() {
         if (preProcessFilters == null) {
             log.debug("Initializing preprocess filters");
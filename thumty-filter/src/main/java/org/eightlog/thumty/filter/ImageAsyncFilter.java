@@ -4,20 +4,80 @@ import io.vertx.core.Vertx;
 import org.eightlog.thumty.image.Image;
 import org.eightlog.thumty.image.filter.ImageFilter;
 
+import javax.annotation.Nullable;
+
 /**
  * @author Iliya Grushevskiy <iliya.gr@gmail.com>
  */
 public class ImageAsyncFilter extends AbstractAsyncFilter {
 
+    /**
+     * Name of composed image filters, filter chains come from urls, so they aren't named after their filters
+     */
+    private final static String FUSED_NAME = "fused";
+
     private final ImageFilter op;
 
+    private final String name;
+
+    /**
+     * Names of composed filters, null if filter isn't composed
+     */
+    private final String composed;
+
     public ImageAsyncFilter(Vertx vertx, ImageFilter op) {
+        this(vertx, op, getName(op.getClass()), null);
+    }
+
+    /**
+     * Create filter of image filter
+     *
+     * @param vertx    the vertx instance
+     * @param op       the image filter
+     * @param name     the filter name used in metrics, names must come from a bounded set
+     * @param composed the names of composed filters used in trace, null if filter isn't composed
+     */
+    private ImageAsyncFilter(Vertx vertx, ImageFilter op, String name, @Nullable String composed) {
         super(vertx);
         this.op = op;
+        this.name = name;
+        this.composed = composed;
+    }
+
+    /**
+     * Compose filters, image filters are composed to a single image filter, so consecutive color filters are fused
+     * and applied in one pass. Their time is recorded at once, under the fixed "fused" name, trace describes the
+     * composed filters.
+     *
+     * @param after the after filter
+     * @return a composite filter
+     */
+    @Override
+    public AsyncFilter andThen(AsyncFilter after) {
+        if (after instanceof ImageAsyncFilter) {
+            ImageAsyncFilter filter = (ImageAsyncFilter) after;
+            return new ImageAsyncFilter(getVertx(), op.andThen(filter.op), FUSED_NAME,
+                    getComposed() + "+" + filter.getComposed());
+        }
+        return super.andThen(after);
     }
 
     @Override
     protected Image applyBlocking(Image image) {
         return op.apply(image);
     }
+
+    @Override
+    protected String getName() {
+        return name;
+    }
+
+    @Override
+    protected String getDescription() {
+        return composed;
+    }
+
+    private String getComposed() {
+        return composed != null ? composed : name;
+    }
 }
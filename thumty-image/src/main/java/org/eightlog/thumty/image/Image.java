@@ -1,6 +1,8 @@
 package org.eightlog.thumty.image;
 
+import org.eightlog.thumty.image.exif.Orientation;
 import org.eightlog.thumty.image.geometry.Feature;
+import org.eightlog.thumty.image.utils.RasterPool;
 
 import java.awt.image.BufferedImage;
 import java.util.Collections;
@@ -21,11 +23,27 @@ public class Image {
 
     private final List<Feature> features;
 
-    public Image(BufferedImage source, String format, float quality, List<Feature> features) {
+    private final Orientation orientation;
+
+    /**
+     * Image source constructor
+     *
+     * @param source      the buffered image
+     * @param format      the original image format
+     * @param quality     the original image quality
+     * @param features    the image features
+     * @param orientation the orientation of buffered image, that isn't applied yet
+     */
+    public Image(BufferedImage source, String format, float quality, List<Feature> features, Orientation orientation) {
         this.source = source;
         this.format = format;
         this.quality = quality;
         this.features = features;
+        this.orientation = orientation;
+    }
+
+    public Image(BufferedImage source, String format, float quality, List<Feature> features) {
+        this(source, format, quality, features, Orientation.TOP_LEFT);
     }
 
     /**
@@ -80,19 +98,43 @@ public class Image {
         return features;
     }
 
+    /**
+     * Get orientation of buffered image, that isn't applied yet. Features are in oriented image coordinates.
+     *
+     * @return the pending orientation, {@link Orientation#TOP_LEFT} if buffered image is oriented
+     */
+    public Orientation getOrientation() {
+        return orientation;
+    }
+
     public Image withQuality(float quality) {
-        return new Image(source, format, quality, features);
+        return new Image(source, format, quality, features, orientation);
     }
 
     public Image withFormat(String format) {
-        return new Image(source, format, quality, features);
+        return new Image(source, format, quality, features, orientation);
     }
 
+    /**
+     * Replace buffered image, replaced image is released to {@link RasterPool#DEFAULT}, unless new image shares its
+     * pixels, so this image must not be used afterwards
+     *
+     * @param source the new buffered image
+     * @return an image with new source
+     */
     public Image withSource(BufferedImage source) {
-        return new Image(source, format, quality, features);
+        if (this.source != null && source != null && this.source.getRaster().getDataBuffer() != source.getRaster().getDataBuffer()) {
+            RasterPool.DEFAULT.release(this.source);
+        }
+
+        return new Image(source, format, quality, features, orientation);
     }
 
     public Image withFeatures(List<Feature> features) {
-        return new Image(source, format, quality, features);
+        return new Image(source, format, quality, features, orientation);
+    }
+
+    public Image withOrientation(Orientation orientation) {
+        return new Image(source, format, quality, features, orientation);
     }
 }
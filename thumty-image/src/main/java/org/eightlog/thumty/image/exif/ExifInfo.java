@@ -0,0 +1,61 @@
+package org.eightlog.thumty.image.exif;
+
+/**
+ * Exif data used in decoding, the orientation and the position of embedded JPEG thumbnail.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class ExifInfo {
+
+    /**
+     * Exif info of image without Exif data
+     */
+    public static final ExifInfo EMPTY = new ExifInfo(Orientation.TOP_LEFT, -1, 0);
+
+    private final Orientation orientation;
+
+    private final long thumbnailOffset;
+
+    private final int thumbnailLength;
+
+    /**
+     * Create Exif info
+     *
+     * @param orientation     the image orientation
+     * @param thumbnailOffset the embedded thumbnail offset in image stream, -1 if there is no thumbnail
+     * @param thumbnailLength the embedded thumbnail length in bytes
+     */
+    public ExifInfo(Orientation orientation, long thumbnailOffset, int thumbnailLength) {
+        this.orientation = orientation;
+        this.thumbnailOffset = thumbnailOffset;
+        this.thumbnailLength = thumbnailLength;
+    }
+
+    /**
+     * @return an image orientation, {@link Orientation#TOP_LEFT} if orientation isn't specified
+     */
+    public Orientation getOrientation() {
+        return orientation;
+    }
+
+    /**
+     * @return true if image has embedded JPEG thumbnail
+     */
+    public boolean hasThumbnail() {
+        return thumbnailOffset >= 0 && thumbnailLength > 0;
+    }
+
+    /**
+     * @return an embedded thumbnail offset in image stream, -1 if there is no thumbnail
+     */
+    public long getThumbnailOffset() {
+        return thumbnailOffset;
+    }
+
+    /**
+     * @return an embedded thumbnail length in bytes
+     */
+    public int getThumbnailLength() {
+        return thumbnailLength;
+    }
+}
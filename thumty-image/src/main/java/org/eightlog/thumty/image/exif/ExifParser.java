@@ -0,0 +1,225 @@
+package org.eightlog.thumty.image.exif;
+
+import javax.imageio.stream.ImageInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming Exif parser, reads orientation and embedded thumbnail position of JPEG and TIFF images.
+ * <p>
+ * JPEG segments are skipped up to Exif APP1 segment, only IFD0 orientation and IFD1 thumbnail entries are read.
+ * Neither segment is read into memory nor metadata tree is built, as with {@link ExifUtils}.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public final class ExifParser {
+
+    private static final int SOI = 0xd8;
+    private static final int EOI = 0xd9;
+    private static final int SOS = 0xda;
+    private static final int APP1 = 0xe1;
+
+    private static final int TIFF_MAGIC = 42;
+
+    private static final int ORIENTATION_TAG = 0x0112;
+    private static final int JPEG_INTERCHANGE_FORMAT_TAG = 0x0201;
+    private static final int JPEG_INTERCHANGE_FORMAT_LENGTH_TAG = 0x0202;
+
+    /**
+     * IFD entry length in bytes
+     */
+    private static final int ENTRY_LENGTH = 12;
+
+    /**
+     * "Exif\0\0" APP1 segment header length in bytes
+     */
+    private static final int EXIF_HEADER_LENGTH = 6;
+
+    /**
+     * This class should not be instantiated.
+     */
+    private ExifParser() {
+    }
+
+    /**
+     * Read Exif info of image, stream position and byte order are left unchanged
+     *
+     * @param input the image input stream
+     * @return an Exif info, {@link ExifInfo#EMPTY} if image has no Exif data or data is broken
+     * @throws IOException on IO exception
+     */
+    public static ExifInfo read(ImageInputStream input) throws IOException {
+        ByteOrder order = input.getByteOrder();
+
+        input.mark();
+
+        try {
+            return parse(input);
+        } catch (EOFException e) {
+            return ExifInfo.EMPTY;
+        } finally {
+            input.reset();
+            input.setByteOrder(order);
+        }
+    }
+
+    private static ExifInfo parse(ImageInputStream input) throws IOException {
+        long start = input.getStreamPosition();
+
+        int first = input.read();
+        int second = input.read();
+
+        if (first == 0xff && second == SOI) {
+            return parseJpeg(input);
+        }
+
+        if ((first == 'I' && second == 'I') || (first == 'M' && second == 'M')) {
+            long length = input.length();
+            ExifInfo info = parseTiff(input, start, length < 0 ? Long.MAX_VALUE : length - start);
+
+            // IFD1 of TIFF image is the next page rather than thumbnail
+            return new ExifInfo(info.getOrientation(), -1, 0);
+        }
+
+        return ExifInfo.EMPTY;
+    }
+
+    private static ExifInfo parseJpeg(ImageInputStream input) throws IOException {
+        input.setByteOrder(ByteOrder.BIG_ENDIAN);
+
+        while (true) {
+            if (input.read() != 0xff) {
+                return ExifInfo.EMPTY;
+            }
+
+            int marker = input.read();
+
+            // Fill bytes
+            while (marker == 0xff) {
+                marker = input.read();
+            }
+
+            if (marker < 0 || marker == SOS || marker == EOI) {
+                return ExifInfo.EMPTY;
+            }
+
+            // Standalone markers
+            if (marker == 0x01 || (marker >= 0xd0 && marker <= 0xd7)) {
+                continue;
+            }
+
+            int length = input.readUnsignedShort() - 2;
+
+            if (length < 0) {
+                return ExifInfo.EMPTY;
+            }
+
+            long next = input.getStreamPosition() + length;
+
+            if (marker == APP1 && length > EXIF_HEADER_LENGTH && isExifHeader(input)) {
+                return parseTiff(input, input.getStreamPosition(), length - EXIF_HEADER_LENGTH);
+            }
+
+            input.seek(next);
+        }
+    }
+
+    private static boolean isExifHeader(ImageInputStream input) throws IOException {
+        return input.read() == 'E' && input.read() == 'x' && input.read() == 'i' && input.read() == 'f'
+                && input.read() == 0 && input.read() == 0;
+    }
+
+    /**
+     * Parse TIFF structure
+     *
+     * @param base   the TIFF header position, offsets are relative to
+     * @param length the TIFF structure length
+     */
+    private static ExifInfo parseTiff(ImageInputStream input, long base, long length) throws IOException {
+        input.seek(base);
+
+        int first = input.read();
+        int second = input.read();
+
+        if (first == 'I' && second == 'I') {
+            input.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        } else if (first == 'M' && second == 'M') {
+            input.setByteOrder(ByteOrder.BIG_ENDIAN);
+        } else {
+            return ExifInfo.EMPTY;
+        }
+
+        if (input.readUnsignedShort() != TIFF_MAGIC) {
+            return ExifInfo.EMPTY;
+        }
+
+        Orientation orientation = Orientation.TOP_LEFT;
+        long thumbnailOffset = -1;
+        long thumbnailLength = 0;
+
+        // IFD0
+        long ifd = input.readUnsignedInt();
+
+        if (!seekIfd(input, base, length, ifd)) {
+            return ExifInfo.EMPTY;
+        }
+
+        int entries = input.readUnsignedShort();
+
+        for (int i = 0; i < entries; i++) {
+            int tag = input.readUnsignedShort();
+
+            if (tag == ORIENTATION_TAG) {
+                input.skipBytes(6);
+                Orientation value = Orientation.typeOf(input.readUnsignedShort());
+                orientation = value != null ? value : Orientation.TOP_LEFT;
+                input.skipBytes(2);
+            } else {
+                input.skipBytes(ENTRY_LENGTH - 2);
+            }
+        }
+
+        // IFD1, the thumbnail IFD
+        ifd = input.readUnsignedInt();
+
+        if (ifd != 0 && seekIfd(input, base, length, ifd)) {
+            entries = input.readUnsignedShort();
+
+            for (int i = 0; i < entries; i++) {
+                int tag = input.readUnsignedShort();
+
+                if (tag == JPEG_INTERCHANGE_FORMAT_TAG || tag == JPEG_INTERCHANGE_FORMAT_LENGTH_TAG) {
+                    input.skipBytes(6);
+                    long value = input.readUnsignedInt();
+
+                    if (tag == JPEG_INTERCHANGE_FORMAT_TAG) {
+                        thumbnailOffset = value;
+                    } else {
+                        thumbnailLength = value;
+                    }
+                } else {
+                    input.skipBytes(ENTRY_LENGTH - 2);
+                }
+            }
+        }
+
+        if (thumbnailOffset <= 0 || thumbnailLength <= 0 || thumbnailOffset + thumbnailLength > length) {
+            return new ExifInfo(orientation, -1, 0);
+        }
+
+        return new ExifInfo(orientation, base + thumbnailOffset, (int) thumbnailLength);
+    }
+
+    /**
+     * Seek to IFD, if its entries count is within TIFF structure
+     */
+    private static boolean seekIfd(ImageInputStream input, long base, long length, long ifd) throws IOException {
+        if (ifd < 8 || ifd + 2 > length) {
+            return false;
+        }
+
+        input.seek(base + ifd);
+        return true;
+    }
+}
@@ -1,5 +1,9 @@
 package org.eightlog.thumty.image.exif;
 
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+
 /**
  * Representation for the Orientation (Tag 274) in the Exif metadata, as
  * defined in Section 4.6.4 of the Exif Specification version 2.3.
@@ -104,6 +108,86 @@ public enum Orientation {
         return null;
     }
 
+    /**
+     * Returns the Exif orientation value.
+     *
+     * @return The orientation value, 1 to 8.
+     */
+    public int value() {
+        return value;
+    }
+
+    /**
+     * Returns whether rows and columns are swapped, that is oriented image width is source image height.
+     *
+     * @return {@code true} for orientations 5 to 8, {@code false} otherwise.
+     */
+    public boolean isTransposed() {
+        return value >= LEFT_TOP.value;
+    }
+
+    /**
+     * Returns the size of oriented image.
+     *
+     * @param width  The source image width.
+     * @param height The source image height.
+     * @return The oriented image size.
+     */
+    public Dimension getSize(int width, int height) {
+        return isTransposed() ? new Dimension(height, width) : new Dimension(width, height);
+    }
+
+    /**
+     * Returns the transform of source image coordinates to oriented image
+     * coordinates.
+     *
+     * @param width  The source image width.
+     * @param height The source image height.
+     * @return The orientation transform.
+     */
+    public AffineTransform getTransform(int width, int height) {
+        switch (this) {
+            case TOP_RIGHT:
+                return new AffineTransform(-1, 0, 0, 1, width, 0);
+            case BOTTOM_RIGHT:
+                return new AffineTransform(-1, 0, 0, -1, width, height);
+            case BOTTOM_LEFT:
+                return new AffineTransform(1, 0, 0, -1, 0, height);
+            case LEFT_TOP:
+                return new AffineTransform(0, 1, 1, 0, 0, 0);
+            case RIGHT_TOP:
+                return new AffineTransform(0, 1, -1, 0, height, 0);
+            case RIGHT_BOTTOM:
+                return new AffineTransform(0, -1, -1, 0, height, width);
+            case LEFT_BOTTOM:
+                return new AffineTransform(0, -1, 1, 0, 0, width);
+            default:
+                return new AffineTransform();
+        }
+    }
+
+    /**
+     * Returns the source image region, that is shown in the given region of
+     * oriented image.
+     *
+     * @param region The oriented image region.
+     * @param width  The source image width.
+     * @param height The source image height.
+     * @return The source image region.
+     */
+    public Rectangle getSourceRegion(Rectangle region, int width, int height) {
+        if (this == TOP_LEFT) {
+            return new Rectangle(region);
+        }
+
+        try {
+            return getTransform(width, height).createInverse().createTransformedShape(region).getBounds();
+        } catch (NoninvertibleTransformException e) {
+            // Orientation transforms are always invertible
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * Returns a textual {@link String} reprensentation of this enum.
      *
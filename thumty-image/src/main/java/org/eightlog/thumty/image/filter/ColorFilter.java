@@ -0,0 +1,49 @@
+package org.eightlog.thumty.image.filter;
+
+import java.awt.image.BufferedImage;
+import java.util.Objects;
+
+/**
+ * Abstract {@link ImageFilter} that transforms color of each pixel independently of others.
+ * <p>
+ * Color filter followed by another one is fused to a single filter, that transforms image in one pass.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public abstract class ColorFilter extends TranslateFilter {
+
+    /**
+     * Create color filter of transform
+     *
+     * @param transform the color transform
+     * @return a color filter
+     */
+    public static ColorFilter of(ColorTransform transform) {
+        Objects.requireNonNull(transform);
+
+        return new ColorFilter() {
+            @Override
+            public ColorTransform getTransform() {
+                return transform;
+            }
+        };
+    }
+
+    /**
+     * @return a color transform of filter
+     */
+    public abstract ColorTransform getTransform();
+
+    @Override
+    protected BufferedImage apply(BufferedImage image) {
+        return getTransform().apply(image);
+    }
+
+    @Override
+    public ImageFilter andThen(ImageFilter after) {
+        if (after instanceof ColorFilter) {
+            return of(getTransform().andThen(((ColorFilter) after).getTransform()));
+        }
+        return super.andThen(after);
+    }
+}
@@ -0,0 +1,455 @@
+package org.eightlog.thumty.image.filter;
+
+import org.eightlog.thumty.image.utils.BufferedImages;
+import org.eightlog.thumty.image.utils.RasterPool;
+
+import javax.annotation.Nullable;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Per pixel color transform, a chain of channel lookup tables and color matrices applied in a single image pass.
+ * <p>
+ * Adjacent lookup tables are composed into one table, color lookup tables followed by matrix become matrix input
+ * tables. Adjacent matrices are multiplied if the first one keeps colors in range, so dropping clamp between them
+ * doesn't change result. Matrix results are truncated, as integer filters do, so composed matrices differ from
+ * separate ones by less than a color level.
+ * <p>
+ * Colors are transformed not premultiplied, as {@link BufferedImage#getRGB(int, int)} returns them.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public final class ColorTransform {
+
+    /**
+     * Identity transform, that doesn't change image
+     */
+    public static final ColorTransform IDENTITY = new ColorTransform(new Stage[0]);
+
+    /**
+     * Bias added to matrix results before truncation, so results of exact integer division aren't truncated down
+     */
+    private final static float TRUNCATION_BIAS = 1f / 1024;
+
+    private final Stage[] stages;
+
+    private ColorTransform(Stage[] stages) {
+        this.stages = stages;
+    }
+
+    /**
+     * Create color transform of red, green and blue lookup tables
+     *
+     * @param red   the red channel table of 256 values
+     * @param green the green channel table of 256 values
+     * @param blue  the blue channel table of 256 values
+     * @return a color transform
+     */
+    public static ColorTransform lookup(int[] red, int[] green, int[] blue) {
+        return new ColorTransform(new Stage[]{new Lookup(red, green, blue, identityTable())});
+    }
+
+    /**
+     * Create color transform of alpha lookup table, colors are left unchanged
+     *
+     * @param alpha the alpha table of 256 values
+     * @return a color transform
+     */
+    public static ColorTransform alpha(int[] alpha) {
+        int[] identity = identityTable();
+        return new ColorTransform(new Stage[]{new Lookup(identity, identity, identity, alpha)});
+    }
+
+    /**
+     * Create color transform, that applies same transfer function to red, green and blue channels
+     *
+     * @param function the transfer function of channel value in range [0;1], result is clamped
+     * @return a color transform
+     */
+    public static ColorTransform transfer(DoubleUnaryOperator function) {
+        int[] table = table(function);
+        return lookup(table, table, table);
+    }
+
+    /**
+     * Create color transform of 3x4 color matrix
+     * <p>
+     * Colors are multiplied as column {@code (r, g, b, 1)} with values in range [0;255], result is truncated and
+     * clamped to the same range.
+     *
+     * @param matrix the 12 matrix values, row by row
+     * @return a color transform
+     */
+    public static ColorTransform matrix(float... matrix) {
+        if (matrix.length != 12) {
+            throw new IllegalArgumentException("Color matrix must have 12 values");
+        }
+
+        return new ColorTransform(new Stage[]{new Matrix(matrix.clone(), null, null, null)});
+    }
+
+    /**
+     * Build lookup table of transfer function
+     *
+     * @param function the transfer function of channel value in range [0;1]
+     * @return a table of 256 values
+     */
+    public static int[] table(DoubleUnaryOperator function) {
+        int[] table = new int[256];
+
+        for (int i = 0; i < 256; i++) {
+            table[i] = clamp((int) (255 * (float) function.applyAsDouble(i / 255f)));
+        }
+
+        return table;
+    }
+
+    /**
+     * Compose transforms
+     *
+     * @param after the transform applied after this one
+     * @return a composite transform
+     */
+    public ColorTransform andThen(ColorTransform after) {
+        List<Stage> composite = new ArrayList<>(Arrays.asList(stages));
+
+        for (Stage stage : after.stages) {
+            Stage last = composite.isEmpty() ? null : composite.get(composite.size() - 1);
+            Stage merged = last != null ? last.andThen(stage) : null;
+
+            if (merged != null) {
+                composite.set(composite.size() - 1, merged);
+            } else {
+                composite.add(stage);
+            }
+        }
+
+        return new ColorTransform(composite.toArray(new Stage[composite.size()]));
+    }
+
+    /**
+     * @return true if transform doesn't change colors
+     */
+    public boolean isIdentity() {
+        return stages.length == 0;
+    }
+
+    /**
+     * @return true if transform changes alpha
+     */
+    public boolean isAlphaChanged() {
+        for (Stage stage : stages) {
+            if (stage.isAlphaChanged()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Transform color
+     *
+     * @param argb the ARGB color
+     * @return a transformed ARGB color
+     */
+    public int filter(int argb) {
+        for (Stage stage : stages) {
+            argb = stage.filter(argb);
+        }
+        return argb;
+    }
+
+    /**
+     * Transform image colors in place, images without alpha are copied to image with alpha if transform
+     * changes alpha
+     *
+     * @param image the image
+     * @return a transformed image
+     */
+    public BufferedImage apply(BufferedImage image) {
+        if (isIdentity()) {
+            return image;
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        if (isAlphaChanged() && !image.getColorModel().hasAlpha()) {
+            BufferedImage result = RasterPool.DEFAULT.createImage(width, height, BufferedImages.getAlphaType(image));
+            filterRows(image, result);
+            return result;
+        }
+
+        int type = image.getType();
+        WritableRaster raster = image.getRaster();
+
+        if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB
+                || type == BufferedImage.TYPE_INT_ARGB_PRE) && raster.getDataBuffer() instanceof DataBufferInt) {
+            int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+            int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+            int offset = raster.getDataBuffer().getOffset()
+                    - raster.getSampleModelTranslateY() * stride - raster.getSampleModelTranslateX();
+
+            if (type == BufferedImage.TYPE_INT_RGB) {
+                for (int y = 0; y < height; y++) {
+                    for (int i = offset + y * stride, end = i + width; i < end; i++) {
+                        data[i] = filter(0xff000000 | data[i]) & 0xffffff;
+                    }
+                }
+            } else if (type == BufferedImage.TYPE_INT_ARGB_PRE) {
+                for (int y = 0; y < height; y++) {
+                    for (int i = offset + y * stride, end = i + width; i < end; i++) {
+                        data[i] = BufferedImages.premultiply(filter(BufferedImages.unpremultiply(data[i])));
+                    }
+                }
+            } else {
+                for (int y = 0; y < height; y++) {
+                    for (int i = offset + y * stride, end = i + width; i < end; i++) {
+                        data[i] = filter(data[i]);
+                    }
+                }
+            }
+
+            return image;
+        }
+
+        filterRows(image, image);
+        return image;
+    }
+
+    private void filterRows(BufferedImage source, BufferedImage destination) {
+        int width = source.getWidth();
+        int[] row = new int[width];
+
+        for (int y = 0; y < source.getHeight(); y++) {
+            source.getRGB(0, y, width, 1, row, 0, width);
+
+            for (int x = 0; x < width; x++) {
+                row[x] = filter(row[x]);
+            }
+
+            destination.setRGB(0, y, width, 1, row, 0, width);
+        }
+    }
+
+    private static int[] identityTable() {
+        int[] table = new int[256];
+
+        for (int i = 0; i < 256; i++) {
+            table[i] = i;
+        }
+
+        return table;
+    }
+
+    /**
+     * Compose lookup tables
+     *
+     * @param first  the first table
+     * @param second the second table, null if it doesn't change values
+     * @return a composite table
+     */
+    private static int[] compose(int[] first, @Nullable int[] second) {
+        if (second == null) {
+            return first;
+        }
+
+        int[] table = new int[256];
+
+        for (int i = 0; i < 256; i++) {
+            table[i] = second[first[i]];
+        }
+
+        return table;
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+
+    /**
+     * Transform stage
+     */
+    private static abstract class Stage {
+
+        abstract int filter(int argb);
+
+        abstract boolean isAlphaChanged();
+
+        /**
+         * Merge stage with the next one
+         *
+         * @param next the next stage
+         * @return a merged stage, or null if stages couldn't be merged
+         */
+        abstract Stage andThen(Stage next);
+    }
+
+    /**
+     * Channel lookup tables
+     */
+    private static class Lookup extends Stage {
+
+        private final int[] red;
+
+        private final int[] green;
+
+        private final int[] blue;
+
+        private final int[] alpha;
+
+        Lookup(int[] red, int[] green, int[] blue, int[] alpha) {
+            if (red.length != 256 || green.length != 256 || blue.length != 256 || alpha.length != 256) {
+                throw new IllegalArgumentException("Lookup table must have 256 values");
+            }
+
+            this.red = red;
+            this.green = green;
+            this.blue = blue;
+            this.alpha = alpha;
+        }
+
+        @Override
+        int filter(int argb) {
+            return alpha[argb >>> 24] << 24
+                    | red[(argb >> 16) & 0xff] << 16
+                    | green[(argb >> 8) & 0xff] << 8
+                    | blue[argb & 0xff];
+        }
+
+        @Override
+        boolean isAlphaChanged() {
+            for (int i = 0; i < 256; i++) {
+                if (alpha[i] != i) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        Stage andThen(Stage next) {
+            if (next instanceof Lookup) {
+                Lookup after = (Lookup) next;
+                return new Lookup(compose(red, after.red), compose(green, after.green), compose(blue, after.blue),
+                        compose(alpha, after.alpha));
+            }
+
+            if (next instanceof Matrix && !isAlphaChanged()) {
+                Matrix after = (Matrix) next;
+                return new Matrix(after.m, compose(red, after.red), compose(green, after.green), compose(blue, after.blue));
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * 3x4 color matrix, with optional input lookup tables
+     */
+    private static class Matrix extends Stage {
+
+        private final float[] m;
+
+        private final int[] red;
+
+        private final int[] green;
+
+        private final int[] blue;
+
+        /**
+         * Create matrix stage
+         *
+         * @param m     the 12 matrix values
+         * @param red   the red input table, null if channel isn't changed
+         * @param green the green input table, null if channel isn't changed
+         * @param blue  the blue input table, null if channel isn't changed
+         */
+        Matrix(float[] m, @Nullable int[] red, @Nullable int[] green, @Nullable int[] blue) {
+            this.m = m;
+            this.red = red;
+            this.green = green;
+            this.blue = blue;
+        }
+
+        @Override
+        int filter(int argb) {
+            int r = (argb >> 16) & 0xff;
+            int g = (argb >> 8) & 0xff;
+            int b = argb & 0xff;
+
+            if (red != null) {
+                r = red[r];
+                g = green[g];
+                b = blue[b];
+            }
+
+            return argb & 0xff000000
+                    | channel(m[0] * r + m[1] * g + m[2] * b + m[3]) << 16
+                    | channel(m[4] * r + m[5] * g + m[6] * b + m[7]) << 8
+                    | channel(m[8] * r + m[9] * g + m[10] * b + m[11]);
+        }
+
+        @Override
+        boolean isAlphaChanged() {
+            return false;
+        }
+
+        @Override
+        Stage andThen(Stage next) {
+            if (next instanceof Matrix && ((Matrix) next).red == null && isInRange()) {
+                float[] a = m;
+                float[] b = ((Matrix) next).m;
+                float[] result = new float[12];
+
+                for (int row = 0; row < 3; row++) {
+                    for (int col = 0; col < 4; col++) {
+                        float value = col == 3 ? b[row * 4 + 3] : 0;
+
+                        for (int k = 0; k < 3; k++) {
+                            value += b[row * 4 + k] * a[k * 4 + col];
+                        }
+
+                        result[row * 4 + col] = value;
+                    }
+                }
+
+                return new Matrix(result, red, green, blue);
+            }
+            return null;
+        }
+
+        /**
+         * @return true if colors in range [0;255] are transformed to the same range
+         */
+        private boolean isInRange() {
+            for (int row = 0; row < 3; row++) {
+                float sum = 0;
+
+                for (int k = 0; k < 3; k++) {
+                    if (m[row * 4 + k] < 0) {
+                        return false;
+                    }
+                    sum += m[row * 4 + k];
+                }
+
+                float offset = m[row * 4 + 3];
+
+                if (offset < 0 || sum * 255 + offset > 255 + TRUNCATION_BIAS) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int channel(float value) {
+            return clamp((int) (value + TRUNCATION_BIAS));
+        }
+    }
+}
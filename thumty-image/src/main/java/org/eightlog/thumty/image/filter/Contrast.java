@@ -1,31 +1,23 @@
 package org.eightlog.thumty.image.filter;
 
-import com.jhlabs.image.TransferFilter;
-
-import java.awt.image.BufferedImage;
 import java.text.MessageFormat;
 
 /**
  * @author Iliya Grushevskiy <iliya.gr@gmail.com>
  */
-public class Contrast extends TranslateFilter {
+public class Contrast extends ColorFilter {
 
-    private final float amount;
+    private final ColorTransform transform;
 
     public Contrast(float amount) {
         if (amount < -1 || amount > 1) {
             throw new IllegalArgumentException(MessageFormat.format("Invalid brightness amount: {0}, must be in range [-1;1]", amount));
         }
-        this.amount = amount;
+        this.transform = ColorTransform.transfer(v -> (v - 0.5f) * (amount + 1) + 0.5f);
     }
 
     @Override
-    protected BufferedImage apply(BufferedImage image) {
-        return new TransferFilter() {
-            @Override
-            protected float transferFunction(float v) {
-                return (v - 0.5f) * (amount + 1) + 0.5f;
-            }
-        }.filter(image, image);
+    public ColorTransform getTransform() {
+        return transform;
     }
 }
@@ -2,6 +2,7 @@ package org.eightlog.thumty.image.filter;
 
 import org.eightlog.thumty.image.geometry.Direction;
 import org.eightlog.thumty.image.geometry.Feature;
+import org.eightlog.thumty.image.utils.RasterPool;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
@@ -43,7 +44,7 @@ public class Flip extends TransformFilter {
         int width = source.getWidth();
         int height = source.getHeight();
 
-        BufferedImage result = new BufferedImage(width, height, source.getType());
+        BufferedImage result = RasterPool.DEFAULT.createImage(width, height, source.getType());
         Graphics2D g = result.createGraphics();
 
         if (direction == Direction.HORIZONTAL) {
@@ -1,16 +1,21 @@
 package org.eightlog.thumty.image.filter;
 
-import com.jhlabs.image.GrayscaleFilter;
-
-import java.awt.image.BufferedImage;
-
 /**
  * @author Iliya Grushevskiy <iliya.gr@gmail.com>
  */
-public class Grayscale extends TranslateFilter {
+public class Grayscale extends ColorFilter {
+
+    private final static float RED = 77 / 256f;
+    private final static float GREEN = 151 / 256f;
+    private final static float BLUE = 28 / 256f;
+
+    private final static ColorTransform TRANSFORM = ColorTransform.matrix(
+            RED, GREEN, BLUE, 0,
+            RED, GREEN, BLUE, 0,
+            RED, GREEN, BLUE, 0);
 
     @Override
-    public BufferedImage apply(BufferedImage image) {
-        return new GrayscaleFilter().filter(image, image);
+    public ColorTransform getTransform() {
+        return TRANSFORM;
     }
 }
@@ -21,13 +21,13 @@ public interface ImageFilter {
      * @return a composite filter
      */
     static ImageFilter compose(Iterable<ImageFilter> operations) {
-        ImageFilter composite = ImageFilter.IDENTITY;
+        ImageFilter composite = null;
 
         for (ImageFilter filter : operations) {
-            composite = composite.andThen(filter);
+            composite = composite == null ? filter : composite.andThen(filter);
         }
 
-        return composite;
+        return composite == null ? IDENTITY : composite;
     }
 
     /**
@@ -41,7 +41,7 @@ public interface ImageFilter {
     }
 
     /**
-     * Compose two filter
+     * Compose two filter, filters that could be applied in a single pass may override composition
      *
      * @param after the after filter
      * @return an image filter
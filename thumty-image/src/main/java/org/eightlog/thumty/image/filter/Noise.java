@@ -1,6 +1,7 @@
 package org.eightlog.thumty.image.filter;
 
 import com.jhlabs.image.NoiseFilter;
+import org.eightlog.thumty.image.utils.RasterPool;
 
 import java.awt.image.BufferedImage;
 
@@ -31,7 +32,7 @@ public class Noise extends TranslateFilter {
         filter.setDistribution(distribution == Distribution.UNIFORM ? NoiseFilter.UNIFORM : NoiseFilter.GAUSSIAN);
         filter.setDensity(density);
         filter.setMonochrome(monochrome);
-        return filter.filter(image, null);
+        return filter.filter(image, RasterPool.DEFAULT.createImage(image.getWidth(), image.getHeight(), image.getType()));
     }
 
     public enum Distribution {
@@ -0,0 +1,63 @@
+package org.eightlog.thumty.image.filter;
+
+import org.eightlog.thumty.image.Image;
+import org.eightlog.thumty.image.exif.Orientation;
+import org.eightlog.thumty.image.utils.RasterPool;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * An {@link ImageFilter} that applies pending image orientation.
+ * <p>
+ * Image is flipped and rotated in a single copy. Features are already in oriented image coordinates, so they are
+ * left unchanged.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class Orient implements ImageFilter {
+
+    /**
+     * An {@code Orient} filter instance
+     */
+    public static final Orient INSTANCE = new Orient();
+
+    @Override
+    public Image apply(Image image) {
+        Orientation orientation = image.getOrientation();
+
+        if (orientation == Orientation.TOP_LEFT) {
+            return image;
+        }
+
+        return image.withSource(apply(image.getSource(), orientation)).withOrientation(Orientation.TOP_LEFT);
+    }
+
+    /**
+     * Orient buffered image
+     *
+     * @param source      the source image
+     * @param orientation the source image orientation
+     * @return an oriented image
+     */
+    public static BufferedImage apply(BufferedImage source, Orientation orientation) {
+        Dimension size = orientation.getSize(source.getWidth(), source.getHeight());
+        return apply(source, RasterPool.DEFAULT.createImage(size.width, size.height, source.getType()), orientation);
+    }
+
+    /**
+     * Orient buffered image to destination image of oriented size
+     *
+     * @param source      the source image
+     * @param destination the destination image
+     * @param orientation the source image orientation
+     * @return a destination image
+     */
+    public static BufferedImage apply(BufferedImage source, BufferedImage destination, Orientation orientation) {
+        Graphics2D g = destination.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(source, orientation.getTransform(source.getWidth(), source.getHeight()), null);
+        g.dispose();
+        return destination;
+    }
+}
@@ -1,26 +1,22 @@
 package org.eightlog.thumty.image.filter;
 
-import com.jhlabs.image.RGBAdjustFilter;
-
-import java.awt.image.BufferedImage;
-
 /**
  * @author Iliya Grushevskiy <iliya.gr@gmail.com>
  */
-public class RGBAdjust extends TranslateFilter {
+public class RGBAdjust extends ColorFilter {
 
-    private final float red;
-    private final float green;
-    private final float blue;
+    private final ColorTransform transform;
 
     public RGBAdjust(float red, float green, float blue) {
-        this.red = red;
-        this.green = green;
-        this.blue = blue;
+        this.transform = ColorTransform.lookup(table(red), table(green), table(blue));
     }
 
     @Override
-    public BufferedImage apply(BufferedImage image) {
-        return new RGBAdjustFilter(red, green ,blue).filter(image, image);
+    public ColorTransform getTransform() {
+        return transform;
+    }
+
+    private static int[] table(float adjust) {
+        return ColorTransform.table(v -> v * (1 + adjust));
     }
 }
@@ -1,12 +1,15 @@
 package org.eightlog.thumty.image.filter;
 
 import com.google.common.collect.ImmutableMap;
+import org.eightlog.thumty.image.Image;
+import org.eightlog.thumty.image.exif.Orientation;
 import org.eightlog.thumty.image.geometry.Align;
 import org.eightlog.thumty.image.geometry.Feature;
 import org.eightlog.thumty.image.geometry.Size;
 import org.eightlog.thumty.image.resize.BicubicResizer;
-import org.eightlog.thumty.image.resize.LanczosResizer;
 import org.eightlog.thumty.image.resize.Resizer;
+import org.eightlog.thumty.image.resize.SeparableResizer;
+import org.eightlog.thumty.image.utils.RasterPool;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
@@ -48,26 +51,43 @@ public class ResizeToFill extends TransformFilter {
         this(size, align, ImmutableMap.of(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON));
     }
 
+    /**
+     * Resize image, pending orientation is applied in the same pass
+     *
+     * @param image the original image
+     * @return a result image
+     */
+    @Override
+    public Image apply(Image image) {
+        BufferedImage src = image.getSource();
+        Orientation orientation = image.getOrientation();
+        Dimension current = orientation.getSize(src.getWidth(), src.getHeight());
+
+        return image.withSource(resize(src, current, orientation))
+                .withOrientation(Orientation.TOP_LEFT)
+                .withFeatures(apply(image.getFeatures(), current));
+    }
+
     @Override
     protected BufferedImage apply(BufferedImage source) {
-        Dimension current = new Dimension(source.getWidth(), source.getHeight());
-        Dimension resulting = size.calculate(source.getWidth(), source.getHeight());
+        return resize(source, new Dimension(source.getWidth(), source.getHeight()), Orientation.TOP_LEFT);
+    }
 
-        double scale = getScale(current, resulting);
-        Point offset = getOffset(current, resulting);
+    private BufferedImage resize(BufferedImage source, Dimension current, Orientation orientation) {
+        Dimension resulting = size.calculate(current.width, current.height);
 
-        Rectangle region = new Rectangle((int)(offset.x * scale), (int)(offset.y * scale),
-                (int)(scale * resulting.width), (int)(scale * resulting.height));
+        double scale = getScale(current, resulting);
+        Rectangle region = orientation.getSourceRegion(getRegion(current, resulting), source.getWidth(), source.getHeight());
 
         Resizer resizer;
 
         if (scale > 1) {
-            resizer = new LanczosResizer(region);
+            resizer = new SeparableResizer(region);
         } else {
             resizer = new BicubicResizer(region, hints);
         }
 
-        return resizer.resize(source, new BufferedImage(resulting.width, resulting.height, source.getType()));
+        return resizer.resize(source, RasterPool.DEFAULT.createImage(resulting.width, resulting.height, source.getType()), orientation);
     }
 
     @Override
@@ -75,10 +95,7 @@ public class ResizeToFill extends TransformFilter {
         Dimension resulting = size.calculate(current.width, current.height);
 
         double scale = getScale(current, resulting);
-        Point offset = getOffset(current, resulting);
-
-        Rectangle region = new Rectangle((int)(offset.x * scale), (int)(offset.y * scale),
-                (int)(scale * resulting.width), (int)(scale * resulting.height));
+        Rectangle region = getRegion(current, resulting);
 
         return features.stream()
                 .map(f -> f.crop(region))
@@ -86,6 +103,26 @@ public class ResizeToFill extends TransformFilter {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Calculates region of the original image, that is visible in thumb
+     *
+     * @param width  the original image width
+     * @param height the original image height
+     * @return the visible region
+     */
+    public Rectangle getRegion(int width, int height) {
+        Dimension current = new Dimension(width, height);
+        return getRegion(current, size.calculate(width, height));
+    }
+
+    private Rectangle getRegion(Dimension current, Dimension resulting) {
+        double scale = getScale(current, resulting);
+        Point offset = getOffset(current, resulting);
+
+        return new Rectangle((int)(offset.x * scale), (int)(offset.y * scale),
+                (int)(scale * resulting.width), (int)(scale * resulting.height));
+    }
+
     private double getScale(Dimension current, Dimension resulting) {
         double scaleX = current.getWidth() / resulting.getWidth();
         double scaleY = current.getHeight() / resulting.getHeight();
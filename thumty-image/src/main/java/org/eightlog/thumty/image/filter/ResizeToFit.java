@@ -1,11 +1,14 @@
 package org.eightlog.thumty.image.filter;
 
 import com.google.common.collect.ImmutableMap;
+import org.eightlog.thumty.image.Image;
+import org.eightlog.thumty.image.exif.Orientation;
 import org.eightlog.thumty.image.geometry.Feature;
 import org.eightlog.thumty.image.geometry.Size;
 import org.eightlog.thumty.image.resize.BicubicResizer;
-import org.eightlog.thumty.image.resize.LanczosResizer;
 import org.eightlog.thumty.image.resize.Resizer;
+import org.eightlog.thumty.image.resize.SeparableResizer;
+import org.eightlog.thumty.image.utils.RasterPool;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
@@ -43,23 +46,43 @@ public class ResizeToFit extends TransformFilter {
         this(size, ImmutableMap.of(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON));
     }
 
+    /**
+     * Resize image, pending orientation is applied in the same pass
+     *
+     * @param image the original image
+     * @return a result image
+     */
+    @Override
+    public Image apply(Image image) {
+        BufferedImage src = image.getSource();
+        Orientation orientation = image.getOrientation();
+        Dimension current = orientation.getSize(src.getWidth(), src.getHeight());
+
+        return image.withSource(resize(src, current, orientation))
+                .withOrientation(Orientation.TOP_LEFT)
+                .withFeatures(apply(image.getFeatures(), current));
+    }
+
     @Override
     protected BufferedImage apply(BufferedImage source) {
-        Dimension current = new Dimension(source.getWidth(), source.getHeight());
-        Dimension resulting = size.calculate(source.getWidth(), source.getHeight());
+        return resize(source, new Dimension(source.getWidth(), source.getHeight()), Orientation.TOP_LEFT);
+    }
+
+    private BufferedImage resize(BufferedImage source, Dimension current, Orientation orientation) {
+        Dimension resulting = size.calculate(current.width, current.height);
 
         double scale = getScale(current, resulting);
 
         Resizer resizer;
 
         if (scale > 1) {
-            resizer = new LanczosResizer();
+            resizer = new SeparableResizer();
         } else {
             resizer = new BicubicResizer(hints);
         }
 
         return resizer.resize(source,
-                new BufferedImage((int) (source.getWidth() / scale), (int) (source.getHeight() / scale), source.getType()));
+                RasterPool.DEFAULT.createImage((int) (current.width / scale), (int) (current.height / scale), source.getType()), orientation);
     }
 
     @Override
@@ -1,6 +1,8 @@
 package org.eightlog.thumty.image.filter;
 
 import org.eightlog.thumty.image.geometry.Feature;
+import org.eightlog.thumty.image.utils.BufferedImages;
+import org.eightlog.thumty.image.utils.RasterPool;
 
 import java.awt.*;
 import java.awt.geom.AffineTransform;
@@ -65,9 +67,9 @@ public class Rotate extends TransformFilter {
         BufferedImage target;
 
         if (fill.getAlpha() != 0x00) {
-            target = new BufferedImage(width, height, image.getType());
+            target = RasterPool.DEFAULT.createImage(width, height, image.getType());
         } else {
-            target = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            target = RasterPool.DEFAULT.createImage(width, height, BufferedImages.getAlphaType(image));
         }
 
         Graphics2D g = target.createGraphics();
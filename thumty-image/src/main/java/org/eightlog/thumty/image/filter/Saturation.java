@@ -1,27 +1,31 @@
 package org.eightlog.thumty.image.filter;
 
-import com.jhlabs.image.SaturationFilter;
-
-import java.awt.image.BufferedImage;
 import java.text.MessageFormat;
 
 /**
  * @author Iliya Grushevskiy <iliya.gr@gmail.com>
  */
-public class Saturation extends TranslateFilter {
+public class Saturation extends ColorFilter {
 
-    private final float amount;
+    private final ColorTransform transform;
 
     public Saturation(float amount) {
         if (amount < -1 || amount > 1) {
             throw new IllegalArgumentException(MessageFormat.format("Invalid saturation amount: {0}, must be in range [-1;1]", amount));
         }
 
-        this.amount = amount;
+        // Color moves from channels average by saturation
+        float s = amount + 1;
+        float g = (1 - s) / 3;
+
+        this.transform = amount == 0 ? ColorTransform.IDENTITY : ColorTransform.matrix(
+                s + g, g, g, 0,
+                g, s + g, g, 0,
+                g, g, s + g, 0);
     }
 
     @Override
-    public BufferedImage apply(BufferedImage image) {
-        return new SaturationFilter(amount + 1).filter(image, image);
+    public ColorTransform getTransform() {
+        return transform;
     }
 }
@@ -1,16 +1,14 @@
 package org.eightlog.thumty.image.filter;
 
-import com.jhlabs.image.SolarizeFilter;
-
-import java.awt.image.BufferedImage;
-
 /**
  * @author Iliya Grushevskiy <iliya.gr@gmail.com>
  */
-public class Solarize extends TranslateFilter {
+public class Solarize extends ColorFilter {
+
+    private final static ColorTransform TRANSFORM = ColorTransform.transfer(v -> v > 0.5f ? 2 * (v - 0.5f) : 2 * (0.5f - v));
 
     @Override
-    public BufferedImage apply(BufferedImage image) {
-        return new SolarizeFilter().filter(image, image);
+    public ColorTransform getTransform() {
+        return TRANSFORM;
     }
 }
@@ -12,8 +12,16 @@ import java.util.List;
  */
 public abstract class TransformFilter implements ImageFilter {
 
+    /**
+     * Applies transformation to oriented image, pending orientation is applied first
+     *
+     * @param image the original image
+     * @return a result image
+     */
     @Override
     public Image apply(Image image) {
+        image = Orient.INSTANCE.apply(image);
+
         BufferedImage src = image.getSource();
         Dimension size = new Dimension(src.getWidth(), src.getHeight());
         List<Feature> features = image.getFeatures();
@@ -13,7 +13,8 @@ public abstract class TranslateFilter implements ImageFilter {
 
     @Override
     public Image apply(Image image) {
-        return image.withSource(apply(image.getSource()));
+        Image oriented = Orient.INSTANCE.apply(image);
+        return oriented.withSource(apply(oriented.getSource()));
     }
 
     protected abstract BufferedImage apply(BufferedImage image);
@@ -1,16 +1,13 @@
 package org.eightlog.thumty.image.filter;
 
-import java.awt.*;
-import java.awt.image.BufferedImage;
-
 /**
  * An {@link ImageFilter} that makes image transparent
  *
  * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
  */
-public class Transparency extends TranslateFilter {
+public class Transparency extends ColorFilter {
 
-    private final float alpha;
+    private final ColorTransform transform;
 
     /**
      * Create {@code Transparency} image filter
@@ -21,16 +18,23 @@ public class Transparency extends TranslateFilter {
         if (alpha < 0 || alpha > 1) {
             throw new IllegalArgumentException("The alpha must be in range [0;1] inclusive");
         }
-        this.alpha = alpha;
+
+        int[] table = new int[256];
+
+        for (int i = 0; i < 256; i++) {
+            table[i] = Math.round(i * alpha);
+        }
+
+        this.transform = ColorTransform.alpha(table);
     }
 
+    /**
+     * Image without alpha is copied to ARGB image
+     *
+     * @return a color transform
+     */
     @Override
-    public BufferedImage apply(BufferedImage source) {
-        BufferedImage result = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g = result.createGraphics();
-        g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
-        g.drawImage(source, 0, 0, null);
-        g.dispose();
-        return result;
+    public ColorTransform getTransform() {
+        return transform;
     }
 }
@@ -1,31 +1,75 @@
 package org.eightlog.thumty.image.filter;
 
 import org.eightlog.thumty.image.Image;
+import org.eightlog.thumty.image.utils.BufferedImages;
 import org.eightlog.thumty.image.utils.ColorConverter;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 
 /**
+ * An {@link ImageFilter} that trims image borders of color similar to the given one.
+ * <p>
+ * Pixels differing from color by more than tolerance in LAB space are content. Borders are scanned inward from each
+ * edge up to the first content pixel, so only borders are read. Top and bottom borders are scanned first, then left
+ * and right ones between them, pairs of large images are scanned in parallel.
+ *
  * @author Iliya Grushevskiy <iliya.gr@gmail.com>
  */
 public class Trim implements ImageFilter {
 
     private final static ColorConverter COLOR_CONVERTER = new ColorConverter();
 
+    /**
+     * Min number of pixels for borders of image to be scanned in parallel
+     */
+    private final static long MIN_PARALLEL_PIXELS = 1024 * 1024;
+
+    /**
+     * Number of colors each border scan remembers distance check of
+     */
+    private final static int MATCH_CACHE_SIZE = 4096;
+
+    private final int rgb;
+
     private final double color[];
 
     private final float tolerance;
 
+    private final ForkJoinPool pool;
+
     public Trim(Color color, float tolerance) {
-        this.color = COLOR_CONVERTER.RGBtoLAB(color.getRGB());
+        this(color, tolerance, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create {@code Trim} image filter
+     *
+     * @param color     the border color
+     * @param tolerance the max LAB distance of border pixels from color
+     * @param pool      the pool borders of large images are scanned on
+     */
+    public Trim(Color color, float tolerance, ForkJoinPool pool) {
+        this.rgb = color.getRGB() & 0xffffff;
+        this.color = COLOR_CONVERTER.RGBtoLAB(rgb, new double[3]);
         this.tolerance = tolerance;
+        this.pool = pool;
     }
 
     @Override
     public Image apply(Image image) {
+        image = Orient.INSTANCE.apply(image);
+
         BufferedImage src = image.getSource();
         Rectangle bounds = new Rectangle(0, 0, src.getWidth(), src.getHeight());
 
@@ -44,57 +88,301 @@ public class Trim implements ImageFilter {
                 );
     }
 
-
+    /**
+     * Get content bounds
+     *
+     * @param image the image
+     * @return a content bounds, empty if image has no content
+     */
     private Rectangle getBounds(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        Scan scan = new Scan(height);
+
+        boolean parallel = (long) width * height >= MIN_PARALLEL_PIXELS && pool.getParallelism() > 1;
+
+        execute(parallel, () -> scanTop(image, scan), () -> scanBottom(image, scan));
+
+        if (scan.top < 0) {
+            return new Rectangle();
+        }
+
+        execute(parallel, () -> scanLeft(image, scan), () -> scanRight(image, scan));
+
+        return new Rectangle(scan.left, scan.top, scan.right - scan.left + 1, scan.bottom - scan.top + 1);
+    }
+
+    /**
+     * Scan rows down to the first content row, or to rows bottom scan found clean
+     */
+    private void scanTop(BufferedImage image, Scan scan) {
+        Rows rows = new Rows(image);
+        Matcher matcher = new Matcher();
+        int[] row = new int[image.getWidth()];
+
+        for (int y = 0; y < scan.bottomClean; y++) {
+            rows.read(y, 0, row.length, row);
+
+            if (matcher.find(row, 0, row.length, 1) >= 0) {
+                scan.top = y;
+                return;
+            }
+
+            scan.topClean = y + 1;
+        }
+    }
+
+    /**
+     * Scan rows up to the first content row, or to rows top scan found clean
+     */
+    private void scanBottom(BufferedImage image, Scan scan) {
+        Rows rows = new Rows(image);
+        Matcher matcher = new Matcher();
+        int[] row = new int[image.getWidth()];
+
+        for (int y = image.getHeight() - 1; y >= scan.topClean; y--) {
+            rows.read(y, 0, row.length, row);
+
+            if (matcher.find(row, 0, row.length, 1) >= 0) {
+                scan.bottom = y;
+                return;
+            }
+
+            scan.bottomClean = y;
+        }
+    }
+
+    /**
+     * Scan rows between top and bottom from the left edge up to the leftmost content pixel found so far
+     */
+    private void scanLeft(BufferedImage image, Scan scan) {
+        Rows rows = new Rows(image);
+        Matcher matcher = new Matcher();
+        int[] row = new int[image.getWidth()];
+
         int left = image.getWidth();
-        int top = image.getHeight();
-        int right = 0;
-        int bottom = 0;
 
-        int[] pixels = new int[image.getWidth()];
+        for (int y = scan.top; y <= scan.bottom && left > 0; y++) {
+            rows.read(y, 0, left, row);
 
-        for (int i = 0; i < image.getHeight(); i++) {
-            pixels = image.getRGB(0, i, image.getWidth(), 1, pixels, 0, image.getWidth());
+            int x = matcher.find(row, 0, left, 1);
 
-            int j;
+            if (x >= 0) {
+                left = x;
+            }
+        }
 
-            for (j = 0; j < image.getWidth(); j++) {
-                if (diff(pixels[j]) > tolerance) {
-                    if (j < left) {
-                        left = j;
-                    }
+        scan.left = left;
+    }
 
-                    if (i < top) {
-                        top = i;
-                    }
+    /**
+     * Scan rows between top and bottom from the right edge up to the rightmost content pixel found so far
+     */
+    private void scanRight(BufferedImage image, Scan scan) {
+        Rows rows = new Rows(image);
+        Matcher matcher = new Matcher();
+        int[] row = new int[image.getWidth()];
 
-                    bottom = i;
-                    break;
-                }
+        int right = -1;
+
+        for (int y = scan.top; y <= scan.bottom && right < row.length - 1; y++) {
+            rows.read(y, right + 1, row.length, row);
+
+            int x = matcher.find(row, row.length - 1, right, -1);
+
+            if (x >= 0) {
+                right = x;
             }
+        }
+
+        scan.right = right;
+    }
+
+    private void execute(boolean parallel, Runnable first, Runnable second) {
+        if (!parallel) {
+            first.run();
+            second.run();
+        } else if (ForkJoinTask.getPool() == pool) {
+            ForkJoinTask.invokeAll(ForkJoinTask.adapt(first), ForkJoinTask.adapt(second));
+        } else {
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(ForkJoinTask.adapt(first), ForkJoinTask.adapt(second))));
+        }
+    }
 
-            int min = j > right ? j : right;
+    /**
+     * Border scan state, top and bottom scans stop at rows the other one found clean
+     */
+    private static class Scan {
 
-            for (j = image.getWidth() - 1; j > min; j--) {
-                if (diff(pixels[j]) > tolerance) {
-                    if (j > right) {
-                        right = j;
-                    }
-                    break;
+        private volatile int topClean;
+
+        private volatile int bottomClean;
+
+        private volatile int top = -1;
+
+        private volatile int bottom = -1;
+
+        private volatile int left;
+
+        private volatile int right;
+
+        Scan(int height) {
+            this.bottomClean = height;
+        }
+    }
+
+    /**
+     * Content pixel matcher, remembers distance checks of recent colors, since borders mostly have a few colors
+     */
+    private class Matcher {
+
+        private final int[] colors = new int[MATCH_CACHE_SIZE];
+
+        private final boolean[] content = new boolean[MATCH_CACHE_SIZE];
+
+        private final double[] lab = new double[3];
+
+        private final double maxDistance = (double) tolerance * tolerance;
+
+        Matcher() {
+            // Packed RGB colors are never negative
+            Arrays.fill(colors, -1);
+        }
+
+        /**
+         * Find content pixel
+         *
+         * @param row  the row of RGB pixels
+         * @param from the first index
+         * @param to   the index scan stops at, exclusive
+         * @param step the scan direction
+         * @return an index of content pixel, or -1 if there is no such pixel
+         */
+        int find(int[] row, int from, int to, int step) {
+            for (int i = from; i != to; i += step) {
+                if (isContent(row[i])) {
+                    return i;
                 }
             }
+            return -1;
         }
 
-        return new Rectangle(left, top, right - left, bottom - top);
+        boolean isContent(int pixel) {
+            pixel &= 0xffffff;
+
+            if (pixel == rgb) {
+                return false;
+            }
+
+            int slot = (pixel ^ (pixel >>> 12)) & (MATCH_CACHE_SIZE - 1);
+
+            if (colors[slot] == pixel) {
+                return content[slot];
+            }
+
+            COLOR_CONVERTER.RGBtoLAB(pixel, lab);
+
+            double distance = (lab[0] - color[0]) * (lab[0] - color[0]) +
+                    (lab[1] - color[1]) * (lab[1] - color[1]) +
+                    (lab[2] - color[2]) * (lab[2] - color[2]);
+
+            colors[slot] = pixel;
+            return content[slot] = distance > maxDistance;
+        }
     }
 
-    private double diff(int target) {
-        double[] lab = COLOR_CONVERTER.RGBtoLAB(target);
+    /**
+     * Image rows reader, rasters of 8 bit RGB and ARGB images are read directly
+     */
+    private static class Rows {
 
-        return Math.sqrt(
-                (lab[0] - color[0]) * (lab[0] - color[0]) +
-                        (lab[1] - color[1]) * (lab[1] - color[1]) +
-                        (lab[2] - color[2]) * (lab[2] - color[2])
-        );
+        private final BufferedImage image;
+
+        private final int[] ints;
+
+        private final byte[] bytes;
+
+        private final int offset;
+
+        private final int pixelStride;
+
+        private final int scanlineStride;
+
+        private final int[] bandOffsets;
+
+        private final boolean premultiplied;
+
+        Rows(BufferedImage image) {
+            this.image = image;
+
+            WritableRaster raster = image.getRaster();
+            int type = image.getType();
+            int translate = -raster.getSampleModelTranslateY();
+
+            this.premultiplied = type == BufferedImage.TYPE_INT_ARGB_PRE;
+
+            if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB || premultiplied)
+                    && raster.getDataBuffer() instanceof DataBufferInt) {
+                this.ints = ((DataBufferInt) raster.getDataBuffer()).getData();
+                this.bytes = null;
+                this.pixelStride = 1;
+                this.scanlineStride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+                this.offset = raster.getDataBuffer().getOffset() + translate * scanlineStride - raster.getSampleModelTranslateX();
+                this.bandOffsets = null;
+            } else if ((type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR)
+                    && raster.getDataBuffer() instanceof DataBufferByte) {
+                ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+
+                this.ints = null;
+                this.bytes = ((DataBufferByte) raster.getDataBuffer()).getData();
+                this.pixelStride = model.getPixelStride();
+                this.scanlineStride = model.getScanlineStride();
+                this.offset = raster.getDataBuffer().getOffset() + translate * scanlineStride
+                        - raster.getSampleModelTranslateX() * pixelStride;
+                this.bandOffsets = model.getBandOffsets();
+            } else {
+                this.ints = null;
+                this.bytes = null;
+                this.pixelStride = 1;
+                this.scanlineStride = 0;
+                this.offset = 0;
+                this.bandOffsets = null;
+            }
+        }
+
+        /**
+         * Read RGB pixels of row, pixels are written at their x index
+         *
+         * @param y    the row
+         * @param from the first pixel x
+         * @param to   the last pixel x, exclusive
+         * @param row  the row pixels
+         */
+        void read(int y, int from, int to, int[] row) {
+            if (from >= to) {
+                return;
+            }
+
+            if (ints != null) {
+                System.arraycopy(ints, offset + y * scanlineStride + from, row, from, to - from);
+
+                if (premultiplied) {
+                    for (int x = from; x < to; x++) {
+                        row[x] = BufferedImages.unpremultiply(row[x]);
+                    }
+                }
+            } else if (bytes != null) {
+                int r = bandOffsets[0];
+                int g = bandOffsets[1];
+                int b = bandOffsets[2];
+
+                for (int x = from, i = offset + y * scanlineStride + from * pixelStride; x < to; x++, i += pixelStride) {
+                    row[x] = (bytes[i + r] & 0xff) << 16 | (bytes[i + g] & 0xff) << 8 | (bytes[i + b] & 0xff);
+                }
+            } else {
+                image.getRGB(from, y, to - from, 1, row, from, row.length);
+            }
+        }
     }
 }
@@ -1,6 +1,7 @@
 package org.eightlog.thumty.image.filter;
 
 import org.eightlog.thumty.image.geometry.Position;
+import org.eightlog.thumty.image.utils.RasterPool;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
@@ -55,7 +56,7 @@ public class Watermark extends TranslateFilter {
         int height = img.getHeight();
         int type = img.getType();
 
-        BufferedImage imgWithWatermark = new BufferedImage(width, height, type);
+        BufferedImage imgWithWatermark = RasterPool.DEFAULT.createImage(width, height, type);
 
         int watermarkWidth = watermarkImg.getWidth();
         int watermarkHeight = watermarkImg.getHeight();
@@ -1,15 +1,28 @@
 package org.eightlog.thumty.image.io;
 
+import com.google.common.collect.ImmutableSet;
 import org.eightlog.thumty.image.Image;
+import org.eightlog.thumty.image.exif.ExifInfo;
+import org.eightlog.thumty.image.exif.ExifParser;
+import org.eightlog.thumty.image.exif.Orientation;
 import org.eightlog.thumty.image.io.sampler.ImageSampler;
+import org.eightlog.thumty.image.utils.PixelLayout;
+import org.w3c.dom.Node;
 
-import javax.imageio.ImageIO;
 import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.metadata.IIOMetadata;
 import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.*;
+import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.Set;
 
 /**
  * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
@@ -18,10 +31,50 @@ public abstract class AbstractImageInput<T> implements ImageInput<T> {
 
     private final static int FIRST_IMAGE_INDEX = 0;
 
-    private final ImageSampler sampler;
+    /**
+     * Max relative difference of embedded thumbnail and image aspect ratios
+     */
+    private final static double ASPECT_RATIO_TOLERANCE = 0.02;
+
+    private final static Set<String> TIFF_FORMATS = ImmutableSet.of("tif", "tiff");
+
+    /**
+     * Formats, that could store Exif orientation
+     */
+    private final static Set<String> EXIF_FORMATS = ImmutableSet.<String>builder()
+            .addAll(TIFF_FORMATS).add("jpg", "jpeg").build();
+
+    /**
+     * Formats, that could store reduced resolution images of the same picture
+     */
+    private final static Set<String> MULTI_RESOLUTION_FORMATS = ImmutableSet.<String>builder()
+            .addAll(TIFF_FORMATS).add("ico").build();
+
+    /**
+     * TIFF NewSubfileType tag number and its reduced resolution image flag
+     */
+    private final static String NEW_SUBFILE_TYPE_TAG = "254";
+    private final static long REDUCED_RESOLUTION = 1;
+
+    private final ImageReadPlanner planner;
+
+    private final CodecRegistry codecs;
 
     public AbstractImageInput(ImageSampler sampler) {
-        this.sampler = sampler;
+        this(sampler, CodecRegistry.DEFAULT);
+    }
+
+    public AbstractImageInput(ImageSampler sampler, CodecRegistry codecs) {
+        this((ImageReadPlanner) (width, height) -> new ImageReadPlan(sampler.getSampling(width, height)), codecs);
+    }
+
+    public AbstractImageInput(ImageReadPlanner planner) {
+        this(planner, CodecRegistry.DEFAULT);
+    }
+
+    public AbstractImageInput(ImageReadPlanner planner, CodecRegistry codecs) {
+        this.planner = planner;
+        this.codecs = codecs;
     }
 
     protected abstract ImageInputStream getImageInput(T t) throws IOException;
@@ -30,32 +83,362 @@ public abstract class AbstractImageInput<T> implements ImageInput<T> {
     public Image read(T t) throws IOException, UnsupportedFormatException {
         try(ImageInputStream input = getImageInput(t)) {
 
-            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            ImageReader reader = codecs.getReader(input);
+
+            try {
+                ExifInfo exif = getExifInfo(reader, input);
+
+                reader.setInput(input);
+                return read(reader, input, exif);
+            } finally {
+                codecs.release(reader);
+            }
+        }
+    }
+
+    @Override
+    public ImageInfo probe(T t) throws IOException, UnsupportedFormatException {
+        try (ImageInputStream input = getImageInput(t)) {
+
+            ImageReader reader = codecs.getReader(input);
 
-            if (!readers.hasNext()) {
-                throw new UnsupportedFormatException("Unsupported image format");
+            try {
+                ExifInfo exif = getExifInfo(reader, input);
+
+                reader.setInput(input);
+                return getImageInfo(reader, exif);
+            } finally {
+                codecs.release(reader);
             }
+        }
+    }
+
+    /**
+     * Read image, decoded image isn't oriented. Image is planned in oriented image coordinates, orientation is left
+     * pending, so it's applied in resize pass rather than by a full size copy.
+     */
+    private Image read(ImageReader reader, ImageInputStream input, ExifInfo exif) throws IOException {
+        Orientation orientation = exif.getOrientation();
 
-            ImageReader reader = readers.next();
-            reader.setInput(input);
+        // Read default params
+        ImageReadParam param = reader.getDefaultReadParam();
 
-//            Orientation orientation = ExifUtils.getExifOrientation(reader, FIRST_IMAGE_INDEX);
+        ImageInfo info = getImageInfo(reader, exif);
 
-            // Read default params
-            ImageReadParam param = reader.getDefaultReadParam();
+        int width = info.getWidth();
+        int height = info.getHeight();
 
-            int width = reader.getWidth(FIRST_IMAGE_INDEX);
-            int height = reader.getHeight(FIRST_IMAGE_INDEX);
+        ImageReadPlan plan = planner.plan(info);
+
+        BufferedImage thumbnail = readThumbnail(reader, input, exif, plan, width, height);
+
+        if (thumbnail != null) {
+            planner.thumbnailDecoded(thumbnail.getWidth(), thumbnail.getHeight());
+            return new Image(thumbnail, reader.getFormatName(), Float.NaN, Collections.emptyList(), orientation);
+        }
+
+        Rectangle region = getRegion(plan, orientation, width, height);
+        int sampling = plan.getSampling();
+
+        int index = getImageIndex(reader, plan, orientation, width, height);
+
+        if (index != FIRST_IMAGE_INDEX) {
+            int w = reader.getWidth(index);
+            int h = reader.getHeight(index);
+
+            // Reduced image is already close to resized one
+            region = scale(region, (double) w / width, (double) h / height, w, h);
+            sampling = 1;
+
+            planner.subimageDecoded(index, w, h);
+        }
+
+        BufferedImage source = null;
+        AreaSamplingDecoder decoder = AreaSamplingDecoder.create(reader, index, sampling);
+
+        if (decoder != null) {
+            source = decoder.read(region);
+        }
+
+        if (source == null) {
+            if (region != null) {
+                param.setSourceRegion(region);
+            }
 
-            int sampling = sampler.getSampling(width, height);
             param.setSourceSubsampling(sampling, sampling, 0, 0);
 
-            BufferedImage source = reader.read(FIRST_IMAGE_INDEX, param);
+            if (plan.isGray()) {
+                ImageTypeSpecifier gray = getGrayType(reader, index);
+
+                if (gray != null) {
+                    param.setDestinationType(gray);
+                }
+            }
+
+            source = reader.read(index, param);
+        }
+
+        return new Image(source, reader.getFormatName(), Float.NaN, Collections.emptyList(), orientation);
+    }
+
+    /**
+     * Read image info from image header, pixels aren't decoded
+     */
+    private ImageInfo getImageInfo(ImageReader reader, ExifInfo exif) throws IOException {
+        return new ImageInfo(reader.getFormatName(), reader.getWidth(FIRST_IMAGE_INDEX), reader.getHeight(FIRST_IMAGE_INDEX),
+                exif.getOrientation(), hasAlpha(reader));
+    }
 
-            reader.dispose();
+    /**
+     * Check alpha channel of image type, the raw type if reader reports it or the first of supported types otherwise
+     */
+    private boolean hasAlpha(ImageReader reader) throws IOException {
+        ImageTypeSpecifier type = reader.getRawImageType(FIRST_IMAGE_INDEX);
 
-            return new Image(source, reader.getFormatName());
-//            return new Image(ExifFilterUtils.getFilterForOrientation(orientation).apply(source), reader.getFormatName());
+        if (type == null) {
+            Iterator<ImageTypeSpecifier> types = reader.getImageTypes(FIRST_IMAGE_INDEX);
+            type = types.hasNext() ? types.next() : null;
         }
+
+        return type != null && type.getColorModel().hasAlpha();
+    }
+
+    /**
+     * Read Exif info of JPEG and TIFF images, broken Exif data is ignored
+     */
+    private ExifInfo getExifInfo(ImageReader reader, ImageInputStream input) throws IOException {
+        if (!EXIF_FORMATS.contains(reader.getFormatName().toLowerCase())) {
+            return ExifInfo.EMPTY;
+        }
+
+        return ExifParser.read(input);
+    }
+
+    /**
+     * Read smallest embedded thumbnail, that is at least of plan thumbnail size and has the same aspect ratio as
+     * image, letterboxed thumbnails are skipped. Exif JPEG thumbnail is read, if reader doesn't provide thumbnails.
+     *
+     * @return a thumbnail, null if there is no suitable thumbnail
+     */
+    private BufferedImage readThumbnail(ImageReader reader, ImageInputStream input, ExifInfo exif, ImageReadPlan plan,
+                                        int width, int height) {
+        if (plan.getThumbnail() == null) {
+            return null;
+        }
+
+        // Thumbnails are stored in the same orientation as image
+        Dimension min = exif.getOrientation().getSize(plan.getThumbnail().width, plan.getThumbnail().height);
+
+        try {
+            int thumbnails = reader.readerSupportsThumbnails() ? reader.getNumThumbnails(FIRST_IMAGE_INDEX) : 0;
+
+            if (thumbnails == 0) {
+                return exif.hasThumbnail() ? readExifThumbnail(input, exif, min, width, height) : null;
+            }
+
+            int index = -1;
+            long area = Long.MAX_VALUE;
+
+            for (int i = 0; i < thumbnails; i++) {
+                int w = reader.getThumbnailWidth(FIRST_IMAGE_INDEX, i);
+                int h = reader.getThumbnailHeight(FIRST_IMAGE_INDEX, i);
+
+                if (w >= min.width && h >= min.height && (long) w * h < area && isSameAspectRatio(w, h, width, height)) {
+                    index = i;
+                    area = (long) w * h;
+                }
+            }
+
+            return index >= 0 ? toStandardType(reader.readThumbnail(FIRST_IMAGE_INDEX, index)) : null;
+        } catch (IOException | RuntimeException e) {
+            // Broken thumbnail, decode image
+            return null;
+        }
+    }
+
+    /**
+     * Read Exif JPEG thumbnail, input position is left unchanged
+     *
+     * @return a thumbnail, null if thumbnail isn't suitable
+     */
+    private BufferedImage readExifThumbnail(ImageInputStream input, ExifInfo exif, Dimension min, int width, int height)
+            throws IOException {
+        byte[] bytes = new byte[exif.getThumbnailLength()];
+
+        input.mark();
+
+        try {
+            input.seek(exif.getThumbnailOffset());
+            input.readFully(bytes);
+        } finally {
+            input.reset();
+        }
+
+        try (ImageInputStream stream = new MemoryCacheImageInputStream(new ByteArrayInputStream(bytes))) {
+            ImageReader reader = codecs.getReader(stream);
+
+            try {
+                reader.setInput(stream);
+
+                int w = reader.getWidth(FIRST_IMAGE_INDEX);
+                int h = reader.getHeight(FIRST_IMAGE_INDEX);
+
+                if (w < min.width || h < min.height || !isSameAspectRatio(w, h, width, height)) {
+                    return null;
+                }
+
+                return toStandardType(reader.read(FIRST_IMAGE_INDEX));
+            } finally {
+                codecs.release(reader);
+            }
+        } catch (UnsupportedFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Convert custom type thumbnail to RGB, so filters could create images of the same type
+     */
+    private BufferedImage toStandardType(BufferedImage image) {
+        return PixelLayout.DECODED.apply(image);
+    }
+
+    /**
+     * Compare aspect ratios, allowing thumbnail rounding error
+     */
+    private boolean isSameAspectRatio(int thumbnailWidth, int thumbnailHeight, int width, int height) {
+        double expected = (double) width * thumbnailHeight / height;
+        return Math.abs(expected - thumbnailWidth) <= Math.max(1, thumbnailWidth * ASPECT_RATIO_TOLERANCE);
+    }
+
+    /**
+     * Get index of smallest image, that is at least of plan resolution and has the same aspect ratio as the first one.
+     * Only reduced resolution TIFF subfiles and ICO entries are images of the same picture, other formats store
+     * pages, frames or layers as separate images.
+     *
+     * @return an image index
+     */
+    private int getImageIndex(ImageReader reader, ImageReadPlan plan, Orientation orientation, int width, int height) throws IOException {
+        String format = reader.getFormatName().toLowerCase();
+
+        if (plan.getResolution() == null || !MULTI_RESOLUTION_FORMATS.contains(format)) {
+            return FIRST_IMAGE_INDEX;
+        }
+
+        Dimension min = orientation.getSize(plan.getResolution().width, plan.getResolution().height);
+
+        int images = reader.getNumImages(true);
+        int index = FIRST_IMAGE_INDEX;
+        long area = (long) width * height;
+        boolean fits = width >= min.width && height >= min.height;
+
+        for (int i = 1; i < images; i++) {
+            int w = reader.getWidth(i);
+            int h = reader.getHeight(i);
+
+            if (!isSameAspectRatio(w, h, width, height) || (TIFF_FORMATS.contains(format) && !isReducedResolution(reader, i))) {
+                continue;
+            }
+
+            boolean large = w >= min.width && h >= min.height;
+
+            // Smallest image large enough, or largest one if none is
+            if ((large && (!fits || (long) w * h < area)) || (!large && !fits && (long) w * h > area)) {
+                index = i;
+                area = (long) w * h;
+                fits = large;
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Check TIFF NewSubfileType reduced resolution flag
+     */
+    private boolean isReducedResolution(ImageReader reader, int index) throws IOException {
+        IIOMetadata metadata = reader.getImageMetadata(index);
+
+        if (metadata == null || metadata.getNativeMetadataFormatName() == null) {
+            return false;
+        }
+
+        Node ifd = metadata.getAsTree(metadata.getNativeMetadataFormatName()).getFirstChild();
+
+        for (Node field = ifd != null ? ifd.getFirstChild() : null; field != null; field = field.getNextSibling()) {
+            if (NEW_SUBFILE_TYPE_TAG.equals(getAttribute(field, "number"))) {
+                Node values = field.getFirstChild();
+                Node value = values != null ? values.getFirstChild() : null;
+
+                try {
+                    return value != null && (Long.parseLong(getAttribute(value, "value")) & REDUCED_RESOLUTION) != 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static String getAttribute(Node node, String name) {
+        Node attribute = node.getAttributes() != null ? node.getAttributes().getNamedItem(name) : null;
+        return attribute != null ? attribute.getNodeValue() : null;
+    }
+
+    /**
+     * Scale region to reduced image
+     */
+    private Rectangle scale(Rectangle region, double scaleX, double scaleY, int width, int height) {
+        if (region == null) {
+            return null;
+        }
+
+        int x = (int) (region.x * scaleX);
+        int y = (int) (region.y * scaleY);
+
+        Rectangle scaled = new Rectangle(x, y,
+                Math.max(1, (int) Math.ceil((region.x + region.width) * scaleX) - x),
+                Math.max(1, (int) Math.ceil((region.y + region.height) * scaleY) - y));
+
+        Rectangle clipped = scaled.intersection(new Rectangle(0, 0, width, height));
+
+        return clipped.isEmpty() ? null : clipped;
+    }
+
+    /**
+     * Get plan region clipped to oriented image bounds, in source image coordinates
+     *
+     * @return a source region, null if whole image is decoded
+     */
+    private Rectangle getRegion(ImageReadPlan plan, Orientation orientation, int width, int height) {
+        if (plan.getRegion() == null) {
+            return null;
+        }
+
+        Dimension oriented = orientation.getSize(width, height);
+        Rectangle region = plan.getRegion().intersection(new Rectangle(0, 0, oriented.width, oriented.height));
+
+        return region.isEmpty() ? null : orientation.getSourceRegion(region, width, height);
+    }
+
+    /**
+     * Find single band grayscale type image could be decoded to
+     *
+     * @return a grayscale image type, null if image can't be decoded to grayscale
+     */
+    private ImageTypeSpecifier getGrayType(ImageReader reader, int index) throws IOException {
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(index);
+
+        while (types.hasNext()) {
+            ImageTypeSpecifier type = types.next();
+
+            if (type.getNumBands() == 1 && type.getBufferedImageType() == BufferedImage.TYPE_BYTE_GRAY
+                    && type.getColorModel().getColorSpace().getType() == ColorSpace.TYPE_GRAY) {
+                return type;
+            }
+        }
+
+        return null;
     }
 }
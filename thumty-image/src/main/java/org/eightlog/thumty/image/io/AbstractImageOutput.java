@@ -1,37 +1,56 @@
 package org.eightlog.thumty.image.io;
 
 import org.eightlog.thumty.image.utils.BufferedImages;
+import org.eightlog.thumty.image.utils.RasterPool;
 
 import javax.imageio.IIOImage;
-import javax.imageio.ImageIO;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
 import javax.imageio.stream.ImageOutputStream;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.util.*;
+import java.util.List;
+import java.util.Objects;
 
 /**
  * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
  */
 public abstract class AbstractImageOutput implements ImageOutput {
 
+    private final CodecRegistry codecs;
+
+    public AbstractImageOutput() {
+        this(CodecRegistry.DEFAULT);
+    }
+
+    public AbstractImageOutput(CodecRegistry codecs) {
+        this.codecs = codecs;
+    }
+
     protected abstract ImageOutputStream getImageOutputStream() throws IOException;
 
+    @Override
+    public boolean isSupportedFormat(String format) {
+        return codecs.canWrite(format);
+    }
+
     @Override
     public void write(BufferedImage image, String format, String compressionType, float quality)
             throws IOException, UnsupportedFormatException {
         Objects.requireNonNull(image, "image must not be null");
         Objects.requireNonNull(format, "format must not be null");
 
-        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        ImageWriter writer = codecs.getWriter(format);
 
-        if (!writers.hasNext()) {
-            throw new UnsupportedFormatException("Unsupported output format " + format);
+        try {
+            write(writer, image, format, compressionType, quality);
+        } finally {
+            codecs.release(writer);
         }
+    }
 
-        ImageWriter writer = writers.next();
-
+    private void write(ImageWriter writer, BufferedImage image, String format, String compressionType, float quality)
+            throws IOException {
         // Get default write params
         ImageWriteParam writeParam = writer.getDefaultWriteParam();
 
@@ -41,7 +60,7 @@ public abstract class AbstractImageOutput implements ImageOutput {
             if (compressionType != null) {
                 writeParam.setCompressionType(compressionType);
             } else {
-                List<String> compressionTypes = getSupportedOutputFormatTypes(format);
+                List<String> compressionTypes = codecs.getCompressionTypes(format);
 
                 if (!compressionTypes.isEmpty()) {
                     writeParam.setCompressionType(compressionTypes.iterator().next());
@@ -53,37 +72,24 @@ public abstract class AbstractImageOutput implements ImageOutput {
             }
         }
 
-        try (ImageOutputStream os = getImageOutputStream()) {
-            if (format.equalsIgnoreCase("jpg")
-                    || format.equalsIgnoreCase("jpeg")
-                    || format.equalsIgnoreCase("bmp")) {
-                image = BufferedImages.copy(image, BufferedImage.TYPE_INT_RGB);
-            }
+        BufferedImage converted = image;
 
-            writer.setOutput(os);
-            writer.write(null, new IIOImage(image, null, null), writeParam);
-            writer.dispose();
-        }
-    }
-
-    private List<String> getSupportedOutputFormatTypes(String format) {
-        if (format == null) {
-            return Collections.emptyList();
-        }
-
-        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
-        if (!writers.hasNext()) {
-            return Collections.emptyList();
+        if (format.equalsIgnoreCase("jpg")
+                || format.equalsIgnoreCase("jpeg")
+                || format.equalsIgnoreCase("bmp")) {
+            converted = BufferedImages.convert(image, BufferedImage.TYPE_INT_RGB);
+        } else if (image.getColorModel().isAlphaPremultiplied()) {
+            // Writers store samples as is, so premultiplied colors would be darkened
+            converted = BufferedImages.convert(image, BufferedImage.TYPE_INT_ARGB);
         }
 
-        String[] types;
-
-        try {
-            types = writers.next().getDefaultWriteParam().getCompressionTypes();
-        } catch (UnsupportedOperationException e) {
-            return Collections.emptyList();
+        try (ImageOutputStream os = getImageOutputStream()) {
+            writer.setOutput(os);
+            writer.write(null, new IIOImage(converted, null, null), writeParam);
+        } finally {
+            if (converted != image) {
+                RasterPool.DEFAULT.release(converted);
+            }
         }
-
-        return types != null ? Arrays.asList(types) : Collections.emptyList();
     }
 }
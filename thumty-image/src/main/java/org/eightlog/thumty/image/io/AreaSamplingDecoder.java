@@ -0,0 +1,525 @@
+package org.eightlog.thumty.image.io;
+
+import com.google.common.collect.ImmutableSet;
+import org.eightlog.thumty.image.utils.RasterPool;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import java.awt.*;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Decodes rows of images with samples wider than 8 bits in bands, reducing them to 8 bits and to the sampled size with
+ * area filter on the fly. Decoded image takes half of the memory of the one decoded by reader.
+ * <p>
+ * 8 bit images are left to readers, they point sample them about twice as fast, allocating only sampled image too.
+ * <p>
+ * Rows of sequential formats are taken from the reader by destination raster, that keeps only the band of rows
+ * being sampled, so the whole image is decoded in single pass. Random access formats are read band by band with
+ * source regions. Peak memory is proportional to the sampled image, not to the source one.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+class AreaSamplingDecoder {
+
+    /**
+     * Readers, that decode rows sequentially through sample model of destination raster, so they accept its custom
+     * data buffer. Other readers, e.g. JDK BMP one, cast destination buffer to standard one.
+     */
+    private final static Set<String> SEQUENTIAL_READERS = ImmutableSet.of("com.sun.imageio.plugins.png.PNGImageReader");
+
+    /**
+     * Formats, that decode source regions without decoding preceding rows
+     */
+    private final static Set<String> BANDED_FORMATS = ImmutableSet.of("tif", "tiff");
+
+    /**
+     * Source pixels decoded per band of random access formats
+     */
+    private final static int BAND_PIXELS = 256 * 1024;
+
+    private final ImageReader reader;
+
+    private final int index;
+
+    private final int sampling;
+
+    private final ImageTypeSpecifier type;
+
+    private final boolean sequential;
+
+    private AreaSamplingDecoder(ImageReader reader, int index, int sampling, ImageTypeSpecifier type, boolean sequential) {
+        this.reader = reader;
+        this.index = index;
+        this.sampling = sampling;
+        this.type = type;
+        this.sequential = sequential;
+    }
+
+    /**
+     * Create decoder for wide samples image
+     *
+     * @param reader   the image reader
+     * @param index    the image index
+     * @param sampling the sampling ratio
+     * @return a decoder, null if image is decoded by reader better
+     * @throws IOException if image header can't be read
+     */
+    static AreaSamplingDecoder create(ImageReader reader, int index, int sampling) throws IOException {
+        boolean sequential = SEQUENTIAL_READERS.contains(reader.getClass().getName());
+
+        if (!sequential && !BANDED_FORMATS.contains(reader.getFormatName().toLowerCase())) {
+            return null;
+        }
+
+        ImageTypeSpecifier type = reader.getRawImageType(index);
+
+        if (type == null || !isSupported(type.getColorModel(), type.getSampleModel())
+                || !hasWideSamples(type.getSampleModel())) {
+            return null;
+        }
+
+        return new AreaSamplingDecoder(reader, index, sampling, type, sequential);
+    }
+
+    /**
+     * Decode image region
+     *
+     * @param region the source region, null to decode whole image
+     * @return a sampled image, null if reader didn't decode rows in order
+     * @throws IOException if image can't be read
+     */
+    BufferedImage read(Rectangle region) throws IOException {
+        if (region == null) {
+            region = new Rectangle(0, 0, reader.getWidth(index), reader.getHeight(index));
+        }
+
+        Accumulator accumulator = new Accumulator(type.getColorModel(), type.getSampleModel(),
+                region.width, region.height, sampling);
+
+        if (sequential) {
+            return readSequential(region, accumulator);
+        }
+
+        return readBanded(region, accumulator);
+    }
+
+    private BufferedImage readSequential(Rectangle region, Accumulator accumulator) throws IOException {
+        SampleModel model = type.getSampleModel(region.width, region.height);
+        SampleModel bandModel = model.createCompatibleSampleModel(region.width, sampling);
+
+        int stride = getScanlineStride(model);
+
+        if (stride <= 0 || stride != getScanlineStride(bandModel) || (long) stride * region.height > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        BandBuffer buffer = new BandBuffer(bandModel, stride, region.height, sampling, accumulator);
+        WritableRaster raster = new BandRaster(model, buffer);
+
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(region);
+        param.setDestination(new BufferedImage(type.getColorModel(), raster, false, null));
+
+        try {
+            reader.read(index, param);
+        } catch (IOException | RuntimeException e) {
+            accumulator.discard();
+
+            if (!isUnsupported(e)) {
+                throw e;
+            }
+
+            return null;
+        }
+
+        buffer.flush();
+        return accumulator.finish();
+    }
+
+    private BufferedImage readBanded(Rectangle region, Accumulator accumulator) throws IOException {
+        int rows = Math.min(region.height, Math.max(1, BAND_PIXELS / region.width / sampling) * sampling);
+
+        // Band destination is reused
+        BufferedImage band = type.createBufferedImage(region.width, rows);
+
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setDestination(band);
+
+        for (int y = 0; y < region.height; y += rows) {
+            int height = Math.min(rows, region.height - y);
+
+            param.setSourceRegion(new Rectangle(region.x, region.y + y, region.width, height));
+            reader.read(index, param);
+
+            for (int row = 0; row < height; row++) {
+                accumulator.accept(band.getRaster(), row, y + row);
+            }
+        }
+
+        return accumulator.finish();
+    }
+
+    /**
+     * Check if destination raster isn't supported by reader: rows are decoded out of order or destination buffer is
+     * cast to standard one. Readers could wrap destination exceptions.
+     */
+    private static boolean isUnsupported(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OutOfOrderException || cause instanceof ClassCastException) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isSupported(ColorModel colorModel, SampleModel sampleModel) {
+        if (getScanlineStride(sampleModel) <= 0) {
+            return false;
+        }
+
+        if (!(colorModel instanceof ComponentColorModel) || colorModel.isAlphaPremultiplied() || colorModel.getNumComponents() != sampleModel.getNumBands()) {
+            return false;
+        }
+
+        ColorSpace space = colorModel.getColorSpace();
+
+        return space.isCS_sRGB() || space.getType() == ColorSpace.TYPE_GRAY && space.getNumComponents() == 1;
+    }
+
+    private static boolean hasWideSamples(SampleModel sampleModel) {
+        for (int size : sampleModel.getSampleSize()) {
+            if (size > 8) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Get data elements per row of single bank sample model
+     *
+     * @return a scanline stride, 0 if sample model isn't supported
+     */
+    private static int getScanlineStride(SampleModel sampleModel) {
+        if (!(sampleModel instanceof ComponentSampleModel)) {
+            return 0;
+        }
+
+        ComponentSampleModel model = (ComponentSampleModel) sampleModel;
+
+        for (int bank : model.getBankIndices()) {
+            if (bank != 0) {
+                return 0;
+            }
+        }
+
+        return model.getScanlineStride();
+    }
+
+    /**
+     * Thrown when rows are decoded out of order, e.g. interlaced
+     */
+    private static class OutOfOrderException extends RuntimeException {
+        OutOfOrderException() {
+            super("Rows are decoded out of order", null, false, false);
+        }
+    }
+
+    /**
+     * Generic destination raster, JDK 8 rasters factory accepts only standard data buffers
+     */
+    private static class BandRaster extends WritableRaster {
+        BandRaster(SampleModel model, BandBuffer buffer) {
+            super(model, buffer, new Point());
+        }
+    }
+
+    /**
+     * Destination data buffer, that keeps only the band of rows being decoded. Band is handed over to accumulator,
+     * when reader starts the next one, rows could be decoded top-down or bottom-up.
+     */
+    private static class BandBuffer extends DataBuffer {
+
+        private final Raster raster;
+
+        private final DataBuffer band;
+
+        private final int stride;
+
+        private final int height;
+
+        private final int sampling;
+
+        private final Accumulator accumulator;
+
+        /**
+         * Current band index, its first data element and band direction
+         */
+        private int current = -1;
+        private int offset;
+        private int direction;
+
+        BandBuffer(SampleModel bandModel, int stride, int height, int sampling, Accumulator accumulator) {
+            super(bandModel.getDataType(), stride * height);
+
+            this.band = bandModel.createDataBuffer();
+            this.raster = Raster.createRaster(bandModel, band, null);
+            this.stride = stride;
+            this.height = height;
+            this.sampling = sampling;
+            this.accumulator = accumulator;
+        }
+
+        @Override
+        public int getElem(int bank, int i) {
+            int local = i - offset;
+            return current >= 0 && local >= 0 && local < band.getSize() ? band.getElem(local) : 0;
+        }
+
+        @Override
+        public void setElem(int bank, int i, int val) {
+            int local = i - offset;
+
+            if (current < 0 || local < 0 || local >= band.getSize()) {
+                start(i / stride / sampling);
+                local = i - offset;
+            }
+
+            band.setElem(local, val);
+        }
+
+        /**
+         * Hand over the current band to accumulator
+         */
+        void flush() {
+            if (current < 0) {
+                return;
+            }
+
+            int y = current * sampling;
+            int rows = Math.min(sampling, height - y);
+
+            for (int row = 0; row < rows; row++) {
+                accumulator.accept(raster, row, y + row);
+            }
+
+            // Rows could be decoded partially
+            for (int i = 0; i < band.getSize(); i++) {
+                band.setElem(i, 0);
+            }
+        }
+
+        private void start(int next) {
+            if (current >= 0) {
+                int step = next - current;
+
+                if (Math.abs(step) != 1 || (direction != 0 && step != direction)) {
+                    throw new OutOfOrderException();
+                }
+
+                direction = step;
+            }
+
+            flush();
+
+            current = next;
+            offset = next * sampling * stride;
+        }
+    }
+
+    /**
+     * Area filter, sums 8 bit samples of source rows by sampled pixels. Color is weighted by alpha.
+     */
+    private static class Accumulator {
+
+        /**
+         * Right shift of source samples to 8 bits
+         */
+        private final int[] shifts;
+
+        private final int bands;
+
+        private final boolean alpha;
+
+        private final boolean gray;
+
+        private final int width;
+
+        private final int sampling;
+
+        private final BufferedImage image;
+
+        private final int[] pixels;
+
+        /**
+         * Alpha and alpha weighted color sums of sampled pixels in the current row
+         */
+        private final long[] sums;
+
+        private final int[] counts;
+
+        private final int[] row;
+
+        private int current = -1;
+
+        Accumulator(ColorModel colorModel, SampleModel sampleModel, int width, int height, int sampling) {
+            this.width = width;
+            this.sampling = sampling;
+            this.alpha = colorModel.hasAlpha();
+            this.bands = sampleModel.getNumBands();
+            this.gray = colorModel.getNumColorComponents() == 1;
+            this.shifts = new int[bands];
+
+            for (int band = 0; band < bands; band++) {
+                shifts[band] = Math.max(0, sampleModel.getSampleSize(band) - 8);
+            }
+
+            int sampledWidth = (width + sampling - 1) / sampling;
+            int sampledHeight = (height + sampling - 1) / sampling;
+
+            int imageType = alpha ? BufferedImage.TYPE_INT_ARGB
+                    : gray ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB;
+
+            this.image = RasterPool.DEFAULT.createImage(sampledWidth, sampledHeight, imageType);
+            this.pixels = new int[sampledWidth];
+            this.sums = new long[sampledWidth * 4];
+            this.counts = new int[sampledWidth];
+            this.row = new int[width * bands];
+        }
+
+        /**
+         * Add source row
+         *
+         * @param raster the raster of row
+         * @param y      the row in raster
+         * @param target the row in source image
+         */
+        void accept(Raster raster, int y, int target) {
+            int next = target / sampling;
+
+            if (next != current) {
+                emit();
+                current = next;
+            }
+
+            raster.getPixels(raster.getMinX(), raster.getMinY() + y, width, 1, row);
+            normalize();
+
+            for (int sampled = 0, x = 0; sampled < pixels.length; sampled++) {
+                int end = Math.min(width, x + sampling);
+                int sum = sampled * 4;
+
+                counts[sampled] += end - x;
+
+                if (alpha) {
+                    for (int i = x * bands; x < end; x++, i += bands) {
+                        int a = row[i + bands - 1];
+                        int r = row[i];
+
+                        sums[sum] += a;
+                        sums[sum + 1] += r * a;
+                        sums[sum + 2] += (gray ? r : row[i + 1]) * a;
+                        sums[sum + 3] += (gray ? r : row[i + 2]) * a;
+                    }
+                } else {
+                    // Opaque pixels are summed unweighted
+                    long r = 0, g = 0, b = 0;
+                    int n = end - x;
+
+                    for (int i = x * bands; x < end; x++, i += bands) {
+                        r += row[i];
+                        g += gray ? row[i] : row[i + 1];
+                        b += gray ? row[i] : row[i + 2];
+                    }
+
+                    sums[sum] += 0xff * n;
+                    sums[sum + 1] += r * 0xff;
+                    sums[sum + 2] += g * 0xff;
+                    sums[sum + 3] += b * 0xff;
+                }
+            }
+        }
+
+        /**
+         * Write the last sampled row
+         *
+         * @return a sampled image
+         */
+        BufferedImage finish() {
+            emit();
+            return image;
+        }
+
+        /**
+         * Release sampled image, when image is decoded by reader instead
+         */
+        void discard() {
+            RasterPool.DEFAULT.release(image);
+        }
+
+        /**
+         * Reduce row samples to 8 bits
+         */
+        private void normalize() {
+            for (int band = 0; band < bands; band++) {
+                int shift = shifts[band];
+
+                if (shift == 0) {
+                    continue;
+                }
+
+                for (int i = band; i < row.length; i += bands) {
+                    row[i] >>= shift;
+                }
+            }
+        }
+
+        private void emit() {
+            if (current < 0 || current >= image.getHeight()) {
+                return;
+            }
+
+            for (int x = 0; x < pixels.length; x++) {
+                int sum = x * 4;
+                long a = sums[sum];
+
+                if (a == 0 || counts[x] == 0) {
+                    pixels[x] = 0;
+                } else {
+                    int r = (int) ((sums[sum + 1] + a / 2) / a);
+                    int g = (int) ((sums[sum + 2] + a / 2) / a);
+                    int b = (int) ((sums[sum + 3] + a / 2) / a);
+
+                    pixels[x] = (int) ((a + counts[x] / 2) / counts[x]) << 24 | r << 16 | g << 8 | b;
+                }
+
+                sums[sum] = sums[sum + 1] = sums[sum + 2] = sums[sum + 3] = 0;
+                counts[x] = 0;
+            }
+
+            if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+                WritableRaster raster = image.getRaster();
+
+                for (int x = 0; x < pixels.length; x++) {
+                    raster.setSample(x, current, 0, pixels[x] & 0xff);
+                }
+            } else {
+                image.setRGB(0, current, pixels.length, 1, pixels, 0, pixels.length);
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.eightlog.thumty.image.io;
+
+import io.vertx.core.buffer.Buffer;
+import org.eightlog.thumty.image.io.sampler.DefaultSampler;
+import org.eightlog.thumty.image.io.sampler.ImageSampler;
+
+import javax.imageio.stream.ImageInputStream;
+import java.util.List;
+
+/**
+ * Reads image from collected in memory buffer chunks.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class BufferImageInput extends AbstractImageInput<List<Buffer>> {
+
+    public BufferImageInput() {
+        this(DefaultSampler.INSTANCE);
+    }
+
+    public BufferImageInput(ImageSampler sampler) {
+        super(sampler);
+    }
+
+    public BufferImageInput(CodecRegistry codecs) {
+        super(DefaultSampler.INSTANCE, codecs);
+    }
+
+    public BufferImageInput(ImageReadPlanner planner) {
+        super(planner);
+    }
+
+    public BufferImageInput(ImageReadPlanner planner, CodecRegistry codecs) {
+        super(planner, codecs);
+    }
+
+    @Override
+    protected ImageInputStream getImageInput(List<Buffer> chunks) {
+        return new BufferImageInputStream(chunks);
+    }
+}
@@ -0,0 +1,142 @@
+package org.eightlog.thumty.image.io;
+
+import io.vertx.core.buffer.Buffer;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link javax.imageio.stream.ImageInputStream} over in memory buffer chunks.
+ * <p>
+ * Reads and seeks are served directly from chunks, so neither chunks are copied into single array nor stream
+ * is cached in memory or temporary file as streams created by {@link javax.imageio.ImageIO#createImageInputStream}.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class BufferImageInputStream extends ImageInputStreamImpl {
+
+    private final Buffer[] chunks;
+
+    /**
+     * Chunks start positions
+     */
+    private final long[] offsets;
+
+    private final long length;
+
+    /**
+     * Current chunk index
+     */
+    private int chunk;
+
+    public BufferImageInputStream(List<Buffer> chunks) {
+        this.chunks = chunks.toArray(new Buffer[chunks.size()]);
+        this.offsets = new long[this.chunks.length];
+
+        long offset = 0;
+
+        for (int i = 0; i < this.chunks.length; i++) {
+            offsets[i] = offset;
+            offset += this.chunks[i].length();
+        }
+
+        this.length = offset;
+    }
+
+    @Override
+    public int read() {
+        if (streamPos >= length) {
+            return -1;
+        }
+
+        bitOffset = 0;
+
+        int i = locate(streamPos);
+        int value = Byte.toUnsignedInt(chunks[i].getByte((int) (streamPos - offsets[i])));
+
+        streamPos++;
+
+        return value;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (len == 0) {
+            return 0;
+        }
+
+        if (streamPos >= length) {
+            return -1;
+        }
+
+        bitOffset = 0;
+
+        int total = (int) Math.min(len, length - streamPos);
+        int remains = total;
+
+        while (remains > 0) {
+            int i = locate(streamPos);
+            int start = (int) (streamPos - offsets[i]);
+            int count = Math.min(remains, chunks[i].length() - start);
+
+            chunks[i].getBytes(start, start + count, b, off);
+
+            off += count;
+            remains -= count;
+            streamPos += count;
+        }
+
+        return total;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public boolean isCached() {
+        return true;
+    }
+
+    @Override
+    public boolean isCachedMemory() {
+        return true;
+    }
+
+    /**
+     * Find chunk containing position, sequential reads are resolved without search
+     *
+     * @param position the stream position, less than length
+     * @return a chunk index
+     */
+    private int locate(long position) {
+        if (position >= offsets[chunk] && position - offsets[chunk] < chunks[chunk].length()) {
+            return chunk;
+        }
+
+        int next = chunk + 1;
+
+        if (next < chunks.length && position >= offsets[next] && position - offsets[next] < chunks[next].length()) {
+            return chunk = next;
+        }
+
+        int i = Arrays.binarySearch(offsets, position);
+
+        if (i < 0) {
+            i = -i - 2;
+        }
+
+        // Skip empty chunks sharing the same offset
+        while (chunks[i].length() == 0 || position - offsets[i] >= chunks[i].length()) {
+            i++;
+        }
+
+        return chunk = i;
+    }
+}
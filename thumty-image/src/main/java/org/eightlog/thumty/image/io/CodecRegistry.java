@@ -0,0 +1,332 @@
+package org.eightlog.thumty.image.io;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.spi.IIORegistry;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.spi.ImageReaderWriterSpi;
+import javax.imageio.spi.ImageWriterSpi;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The image readers and writers registry.
+ * <p>
+ * Plugin is resolved once per format, the preferred plugin of format is chosen by class name prefix, e.g.
+ * {@code com.twelvemonkeys} or {@code com.sun.imageio}. Input format is detected by magic bytes, inputs of unknown
+ * formats are passed to registered readers as by {@link ImageIO}.
+ * <p>
+ * Readers and writers are pooled per thread and reset on release, so they must be released by the thread they were
+ * taken by.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class CodecRegistry {
+
+    public final static CodecRegistry DEFAULT = new CodecRegistry(Collections.emptyMap());
+
+    /**
+     * Max pooled readers or writers of plugin per thread
+     */
+    private final static int MAX_POOLED = 2;
+
+    /**
+     * Bytes read to detect input format
+     */
+    private final static int MAGIC_LENGTH = 8;
+
+    private final Map<String, String> preferences = new HashMap<>();
+
+    private final ConcurrentMap<String, Optional<ImageReaderSpi>> readers = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Optional<ImageWriterSpi>> writers = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, List<String>> compressionTypes = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<Map<Object, Deque<Object>>> pools = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * Create registry
+     *
+     * @param preferences the preferred plugin class name prefixes by format name
+     */
+    public CodecRegistry(Map<String, String> preferences) {
+        Objects.requireNonNull(preferences, "preferences must not be null");
+
+        preferences.forEach((format, prefix) -> this.preferences.put(format.toLowerCase(), prefix));
+    }
+
+    /**
+     * Get reader of input, input position is left unchanged
+     *
+     * @param input the image input stream
+     * @return an image reader, which input isn't set
+     * @throws IOException                on IO exception
+     * @throws UnsupportedFormatException if there is no reader of input format
+     */
+    public ImageReader getReader(ImageInputStream input) throws IOException, UnsupportedFormatException {
+        String format = getFormat(input);
+
+        if (format != null) {
+            Optional<ImageReaderSpi> spi = readers.computeIfAbsent(format, f -> resolve(ImageReaderSpi.class, f));
+
+            if (spi.isPresent()) {
+                ImageReader reader = (ImageReader) take(spi.get());
+                return reader != null ? reader : spi.get().createReaderInstance();
+            }
+        }
+
+        // Unknown format, readers check input themselves
+        Iterator<ImageReader> iterator = ImageIO.getImageReaders(input);
+
+        if (!iterator.hasNext()) {
+            throw new UnsupportedFormatException("Unsupported image format");
+        }
+
+        return iterator.next();
+    }
+
+    /**
+     * Get writer of format
+     *
+     * @param format the format name
+     * @return an image writer
+     * @throws IOException                if writer can't be created
+     * @throws UnsupportedFormatException if there is no writer of format
+     */
+    public ImageWriter getWriter(String format) throws IOException, UnsupportedFormatException {
+        ImageWriterSpi spi = getWriterSpi(format)
+                .orElseThrow(() -> new UnsupportedFormatException("Unsupported output format " + format));
+
+        ImageWriter writer = (ImageWriter) take(spi);
+        return writer != null ? writer : spi.createWriterInstance();
+    }
+
+    /**
+     * @param format the format name
+     * @return true if there is writer of format
+     */
+    public boolean canWrite(String format) {
+        return format != null && getWriterSpi(format).isPresent();
+    }
+
+    /**
+     * Get compression types of format writer
+     *
+     * @param format the format name
+     * @return a list of compression types, empty if writer doesn't support compression types
+     */
+    public List<String> getCompressionTypes(String format) {
+        if (format == null) {
+            return Collections.emptyList();
+        }
+
+        return compressionTypes.computeIfAbsent(format.toLowerCase(), f -> {
+            try {
+                ImageWriter writer = getWriter(f);
+
+                try {
+                    String[] types = writer.getDefaultWriteParam().getCompressionTypes();
+                    return types != null ? Collections.unmodifiableList(Arrays.asList(types)) : Collections.emptyList();
+                } finally {
+                    release(writer);
+                }
+            } catch (IOException | UnsupportedFormatException | UnsupportedOperationException e) {
+                return Collections.emptyList();
+            }
+        });
+    }
+
+    /**
+     * Get MIME type of format writer
+     *
+     * @param format the format name
+     * @return a MIME type, null if there is no writer of format
+     */
+    public String getMimeType(String format) {
+        if (format == null) {
+            return null;
+        }
+
+        String[] types = getWriterSpi(format).map(ImageReaderWriterSpi::getMIMETypes).orElse(null);
+        return types != null && types.length > 0 ? types[0] : null;
+    }
+
+    /**
+     * Reset reader and return it to the pool of current thread
+     *
+     * @param reader the image reader
+     */
+    public void release(ImageReader reader) {
+        try {
+            reader.reset();
+        } catch (RuntimeException e) {
+            reader.dispose();
+            return;
+        }
+
+        if (!give(reader.getOriginatingProvider(), reader)) {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Reset writer and return it to the pool of current thread
+     *
+     * @param writer the image writer
+     */
+    public void release(ImageWriter writer) {
+        try {
+            writer.reset();
+        } catch (RuntimeException e) {
+            writer.dispose();
+            return;
+        }
+
+        if (!give(writer.getOriginatingProvider(), writer)) {
+            writer.dispose();
+        }
+    }
+
+    private Optional<ImageWriterSpi> getWriterSpi(String format) {
+        return writers.computeIfAbsent(format.toLowerCase(), f -> resolve(ImageWriterSpi.class, f));
+    }
+
+    private Object take(Object spi) {
+        Deque<Object> pool = pools.get().get(spi);
+        return pool != null ? pool.pollFirst() : null;
+    }
+
+    private boolean give(Object spi, Object codec) {
+        if (spi == null) {
+            return false;
+        }
+
+        Deque<Object> pool = pools.get().computeIfAbsent(spi, s -> new ArrayDeque<>());
+
+        if (pool.size() >= MAX_POOLED) {
+            return false;
+        }
+
+        pool.offerFirst(codec);
+        return true;
+    }
+
+    /**
+     * Find preferred plugin of format, the first registered one if there is no preferred plugin
+     */
+    private <T extends ImageReaderWriterSpi> Optional<T> resolve(Class<T> category, String format) {
+        List<T> providers = new ArrayList<>();
+
+        IIORegistry.getDefaultInstance()
+                .getServiceProviders(category, provider -> hasFormatName(provider, format), true)
+                .forEachRemaining(providers::add);
+
+        if (providers.isEmpty()) {
+            return Optional.empty();
+        }
+
+        String prefix = getPreference(format, providers.get(0));
+
+        if (prefix != null) {
+            for (T provider : providers) {
+                if (provider.getClass().getName().startsWith(prefix)) {
+                    return Optional.of(provider);
+                }
+            }
+        }
+
+        return Optional.of(providers.get(0));
+    }
+
+    /**
+     * Get preferred plugin prefix of format or its synonyms, e.g. jpg and jpeg
+     */
+    private String getPreference(String format, ImageReaderWriterSpi provider) {
+        String prefix = preferences.get(format);
+
+        for (int i = 0; prefix == null && i < provider.getFormatNames().length; i++) {
+            prefix = preferences.get(provider.getFormatNames()[i].toLowerCase());
+        }
+
+        return prefix;
+    }
+
+    private static boolean hasFormatName(Object provider, String format) {
+        for (String name : ((ImageReaderWriterSpi) provider).getFormatNames()) {
+            if (name.equalsIgnoreCase(format)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Detect format by magic bytes
+     *
+     * @return a format name, null if format is unknown
+     */
+    private static String getFormat(ImageInputStream input) throws IOException {
+        byte[] magic = new byte[MAGIC_LENGTH];
+        int length = 0;
+
+        input.mark();
+
+        try {
+            int read;
+
+            while (length < magic.length && (read = input.read(magic, length, magic.length - length)) > 0) {
+                length += read;
+            }
+        } finally {
+            input.reset();
+        }
+
+        if (startsWith(magic, length, 0xff, 0xd8, 0xff)) {
+            return "jpeg";
+        } else if (startsWith(magic, length, 0x89, 'P', 'N', 'G', 0x0d, 0x0a, 0x1a, 0x0a)) {
+            return "png";
+        } else if (startsWith(magic, length, 'G', 'I', 'F', '8')) {
+            return "gif";
+        } else if (startsWith(magic, length, 'I', 'I', 0x2a, 0x00) || startsWith(magic, length, 'M', 'M', 0x00, 0x2a)) {
+            return "tiff";
+        } else if (startsWith(magic, length, '8', 'B', 'P', 'S')) {
+            return "psd";
+        } else if (startsWith(magic, length, 'B', 'M')) {
+            return "bmp";
+        } else if (startsWith(magic, length, 0x00, 0x00, 0x01, 0x00)) {
+            return "ico";
+        }
+
+        return null;
+    }
+
+    private static boolean startsWith(byte[] bytes, int length, int... prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length; i++) {
+            if ((bytes[i] & 0xff) != prefix[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,111 @@
+package org.eightlog.thumty.image.io;
+
+import org.eightlog.thumty.image.exif.Orientation;
+
+import java.awt.*;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Image info read from image header, without decoding pixels.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class ImageInfo implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String format;
+
+    private final int width;
+
+    private final int height;
+
+    private final Orientation orientation;
+
+    private final boolean alpha;
+
+    /**
+     * Create image info
+     *
+     * @param format      the image format name
+     * @param width       the stored image width, before orientation is applied
+     * @param height      the stored image height, before orientation is applied
+     * @param orientation the Exif orientation
+     * @param alpha       true if image has alpha channel
+     */
+    public ImageInfo(String format, int width, int height, Orientation orientation, boolean alpha) {
+        Objects.requireNonNull(format);
+        Objects.requireNonNull(orientation);
+
+        this.format = format;
+        this.width = width;
+        this.height = height;
+        this.orientation = orientation;
+        this.alpha = alpha;
+    }
+
+    /**
+     * @return an image format name
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * @return a stored image width, before orientation is applied
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return a stored image height, before orientation is applied
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return an image size with orientation applied, the size image is displayed at
+     */
+    public Dimension getSize() {
+        return orientation.getSize(width, height);
+    }
+
+    /**
+     * @return an Exif orientation, {@link Orientation#TOP_LEFT} if orientation isn't specified
+     */
+    public Orientation getOrientation() {
+        return orientation;
+    }
+
+    /**
+     * @return true if image has alpha channel
+     */
+    public boolean hasAlpha() {
+        return alpha;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ImageInfo imageInfo = (ImageInfo) o;
+        return width == imageInfo.width &&
+                height == imageInfo.height &&
+                alpha == imageInfo.alpha &&
+                Objects.equals(format, imageInfo.format) &&
+                orientation == imageInfo.orientation;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(format, width, height, orientation, alpha);
+    }
+
+    @Override
+    public String toString() {
+        return format + " " + width + "x" + height + " orientation " + orientation.value() + (alpha ? " alpha" : "");
+    }
+}
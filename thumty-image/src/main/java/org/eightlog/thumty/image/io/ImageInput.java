@@ -18,4 +18,14 @@ public interface ImageInput<T> {
      * @throws UnsupportedFormatException if format of image is not supported
      */
     Image read(T t) throws IOException, UnsupportedFormatException;
+
+    /**
+     * Read {@link ImageInfo} from image header of resource of type T, pixels aren't decoded
+     *
+     * @param t the source
+     * @return a source image info
+     * @throws IOException                on IO exception
+     * @throws UnsupportedFormatException if format of image is not supported
+     */
+    ImageInfo probe(T t) throws IOException, UnsupportedFormatException;
 }
@@ -0,0 +1,110 @@
+package org.eightlog.thumty.image.io;
+
+import javax.annotation.Nullable;
+import javax.imageio.ImageReadParam;
+import java.awt.*;
+
+/**
+ * Image decoding plan, what part of image is decoded and how.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class ImageReadPlan {
+
+    private final Rectangle region;
+
+    private final int sampling;
+
+    private final boolean gray;
+
+    private final Dimension thumbnail;
+
+    private final Dimension resolution;
+
+    /**
+     * Create image read plan
+     *
+     * @param region     the source region in original image pixels, null to decode whole image
+     * @param sampling   the sampling ratio for X and Y as in {@link ImageReadParam}
+     * @param gray       true if image could be decoded to grayscale
+     * @param thumbnail  the min size of embedded thumbnail decoded instead of image, null to always decode image
+     * @param resolution the min size of reduced resolution image decoded instead of original, null to always decode original
+     */
+    public ImageReadPlan(@Nullable Rectangle region, int sampling, boolean gray, @Nullable Dimension thumbnail, @Nullable Dimension resolution) {
+        this.region = region;
+        this.sampling = sampling;
+        this.gray = gray;
+        this.thumbnail = thumbnail;
+        this.resolution = resolution;
+    }
+
+    /**
+     * Create image read plan
+     *
+     * @param region    the source region in original image pixels, null to decode whole image
+     * @param sampling  the sampling ratio for X and Y as in {@link ImageReadParam}
+     * @param gray      true if image could be decoded to grayscale
+     * @param thumbnail the min size of embedded thumbnail decoded instead of image, null to always decode image
+     */
+    public ImageReadPlan(@Nullable Rectangle region, int sampling, boolean gray, @Nullable Dimension thumbnail) {
+        this(region, sampling, gray, thumbnail, null);
+    }
+
+    /**
+     * Create image read plan
+     *
+     * @param region   the source region in original image pixels, null to decode whole image
+     * @param sampling the sampling ratio for X and Y as in {@link ImageReadParam}
+     * @param gray     true if image could be decoded to grayscale
+     */
+    public ImageReadPlan(@Nullable Rectangle region, int sampling, boolean gray) {
+        this(region, sampling, gray, null);
+    }
+
+    /**
+     * Create whole image read plan
+     *
+     * @param sampling the sampling ratio for X and Y as in {@link ImageReadParam}
+     */
+    public ImageReadPlan(int sampling) {
+        this(null, sampling, false);
+    }
+
+    /**
+     * @return a source region in original image pixels, null if whole image is decoded
+     */
+    @Nullable
+    public Rectangle getRegion() {
+        return region;
+    }
+
+    /**
+     * @return a sampling ratio for X and Y
+     */
+    public int getSampling() {
+        return sampling;
+    }
+
+    /**
+     * @return true if image could be decoded to grayscale
+     */
+    public boolean isGray() {
+        return gray;
+    }
+
+    /**
+     * @return a min size of embedded thumbnail decoded instead of image, null if image is always decoded
+     */
+    @Nullable
+    public Dimension getThumbnail() {
+        return thumbnail;
+    }
+
+    /**
+     * @return a min size of reduced resolution image decoded instead of original, null if original is always decoded
+     */
+    @Nullable
+    public Dimension getResolution() {
+        return resolution;
+    }
+}
@@ -0,0 +1,50 @@
+package org.eightlog.thumty.image.io;
+
+import java.awt.*;
+
+/**
+ * Image read planner, plans decoding based on source image header.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public interface ImageReadPlanner {
+
+    /**
+     * Plan image decoding, plan is in coordinates of image with Exif orientation applied
+     *
+     * @param width  the oriented source width
+     * @param height the oriented source height
+     * @return an image read plan
+     */
+    ImageReadPlan plan(int width, int height);
+
+    /**
+     * Plan image decoding from image header info, called by image input instead of {@link #plan(int, int)}
+     *
+     * @param info the source image info
+     * @return an image read plan
+     */
+    default ImageReadPlan plan(ImageInfo info) {
+        Dimension size = info.getSize();
+        return plan(size.width, size.height);
+    }
+
+    /**
+     * Called when embedded thumbnail is decoded instead of image
+     *
+     * @param width  the thumbnail width
+     * @param height the thumbnail height
+     */
+    default void thumbnailDecoded(int width, int height) {
+    }
+
+    /**
+     * Called when reduced resolution image is decoded instead of original
+     *
+     * @param index  the image index
+     * @param width  the image width
+     * @param height the image height
+     */
+    default void subimageDecoded(int index, int width, int height) {
+    }
+}
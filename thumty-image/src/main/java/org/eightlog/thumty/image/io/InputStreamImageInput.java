@@ -21,6 +21,18 @@ public class InputStreamImageInput extends AbstractImageInput<InputStream> {
         super(sampler);
     }
 
+    public InputStreamImageInput(CodecRegistry codecs) {
+        super(DefaultSampler.INSTANCE, codecs);
+    }
+
+    public InputStreamImageInput(ImageReadPlanner planner) {
+        super(planner);
+    }
+
+    public InputStreamImageInput(ImageReadPlanner planner, CodecRegistry codecs) {
+        super(planner, codecs);
+    }
+
     @Override
     protected ImageInputStream getImageInput(InputStream inputStream) throws IOException {
         return ImageIO.createImageInputStream(inputStream);
@@ -16,6 +16,11 @@ public class OutputStreamImageOutput extends AbstractImageOutput {
         this.outputStream = outputStream;
     }
 
+    public OutputStreamImageOutput(OutputStream outputStream, CodecRegistry codecs) {
+        super(codecs);
+        this.outputStream = outputStream;
+    }
+
     @Override
     protected ImageOutputStream getImageOutputStream() throws IOException {
         return ImageIO.createImageOutputStream(outputStream);
@@ -1,5 +1,9 @@
 package org.eightlog.thumty.image.resize;
 
+import org.eightlog.thumty.image.exif.Orientation;
+import org.eightlog.thumty.image.filter.Orient;
+import org.eightlog.thumty.image.utils.RasterPool;
+
 import javax.annotation.Nullable;
 import java.awt.*;
 import java.awt.image.BufferedImage;
@@ -38,7 +42,7 @@ public abstract class AbstractResizer implements Resizer {
         Rectangle region = getSourceRegion(image);
 
         if (!region.equals(image.getRaster().getBounds())) {
-            BufferedImage result = new BufferedImage(region.width, region.height, image.getType());
+            BufferedImage result = RasterPool.DEFAULT.createImage(region.width, region.height, image.getType());
 
             Graphics2D g = result.createGraphics();
             g.drawImage(image,
@@ -51,6 +55,18 @@ public abstract class AbstractResizer implements Resizer {
         return image;
     }
 
+    /**
+     * Release source region copy made by {@link #getSourceImage(BufferedImage)}
+     *
+     * @param source the source image returned by {@link #getSourceImage(BufferedImage)}
+     * @param image  the image
+     */
+    protected void releaseSourceImage(BufferedImage source, BufferedImage image) {
+        if (source != image) {
+            RasterPool.DEFAULT.release(source);
+        }
+    }
+
     /**
      * Perform simple resize.
      * <p>
@@ -73,4 +89,56 @@ public abstract class AbstractResizer implements Resizer {
         return dst;
     }
 
+    /**
+     * Perform simple resize and orientation in a single draw.
+     * <p>
+     * Subclasses, that override {@link #resize(BufferedImage, BufferedImage)}, should override this method as well
+     *
+     * @param src         the source image
+     * @param dst         the destination image of oriented size
+     * @param orientation the source image orientation
+     * @return a destination image
+     */
+    @Override
+    public BufferedImage resize(BufferedImage src, BufferedImage dst, Orientation orientation) {
+        if (orientation == Orientation.TOP_LEFT) {
+            return resize(src, dst);
+        }
+
+        Rectangle region = getSourceRegion(src);
+        Dimension oriented = orientation.getSize(region.width, region.height);
+
+        Graphics2D g = dst.createGraphics();
+        g.setRenderingHints(getRenderingHints());
+        g.setComposite(AlphaComposite.Src);
+        g.scale((double) dst.getWidth() / oriented.width, (double) dst.getHeight() / oriented.height);
+        g.transform(orientation.getTransform(region.width, region.height));
+        g.drawImage(src, 0, 0, region.width, region.height,
+                region.x, region.y, region.x + region.width, region.y + region.height, null);
+        g.dispose();
+        return dst;
+    }
+
+    /**
+     * Resize image to destination size before orientation, then orient resized image to destination
+     *
+     * @param src         the source image
+     * @param dst         the destination image of oriented size
+     * @param orientation the source image orientation
+     * @return a destination image
+     */
+    protected BufferedImage resizeAndOrient(BufferedImage src, BufferedImage dst, Orientation orientation) {
+        if (orientation == Orientation.TOP_LEFT) {
+            return resize(src, dst);
+        }
+
+        Dimension size = orientation.getSize(dst.getWidth(), dst.getHeight());
+        BufferedImage resized = resize(src, RasterPool.DEFAULT.createImage(size.width, size.height, dst.getType()));
+
+        Orient.apply(resized, dst, orientation);
+        RasterPool.DEFAULT.release(resized);
+
+        return dst;
+    }
+
 }
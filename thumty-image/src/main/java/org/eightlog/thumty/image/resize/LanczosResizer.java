@@ -1,6 +1,7 @@
 package org.eightlog.thumty.image.resize;
 
 import com.twelvemonkeys.image.ResampleOp;
+import org.eightlog.thumty.image.exif.Orientation;
 
 import javax.annotation.Nullable;
 import java.awt.*;
@@ -23,7 +24,17 @@ public class LanczosResizer extends AbstractResizer {
 
     @Override
     public BufferedImage resize(BufferedImage src, BufferedImage dst) {
-        return new ResampleOp(dst.getWidth(), dst.getHeight(), ResampleOp.FILTER_LANCZOS).filter(getSourceImage(src), dst);
+        BufferedImage source = getSourceImage(src);
+        BufferedImage resized = new ResampleOp(dst.getWidth(), dst.getHeight(), ResampleOp.FILTER_LANCZOS).filter(source, dst);
+
+        releaseSourceImage(source, src);
+
+        return resized;
+    }
+
+    @Override
+    public BufferedImage resize(BufferedImage src, BufferedImage dst, Orientation orientation) {
+        return resizeAndOrient(src, dst, orientation);
     }
 
     @Override
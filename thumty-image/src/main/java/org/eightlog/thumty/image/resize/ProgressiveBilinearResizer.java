@@ -1,5 +1,8 @@
 package org.eightlog.thumty.image.resize;
 
+import org.eightlog.thumty.image.exif.Orientation;
+import org.eightlog.thumty.image.utils.RasterPool;
+
 import javax.annotation.Nullable;
 import java.awt.*;
 import java.awt.image.BufferedImage;
@@ -49,7 +52,7 @@ public class ProgressiveBilinearResizer extends BilinearResizer {
         int tempWidth = (int) (dstWidth * Math.pow(2, steps));
         int tempHeight = (int) (dstHeight * Math.pow(2, steps));
 
-        BufferedImage temp = new BufferedImage(tempWidth, tempHeight, src.getType());
+        BufferedImage temp = RasterPool.DEFAULT.createImage(tempWidth, tempHeight, src.getType());
 
         Graphics2D gTemp = temp.createGraphics();
         gTemp.setRenderingHints(getRenderingHints());
@@ -73,7 +76,13 @@ public class ProgressiveBilinearResizer extends BilinearResizer {
                 0, 0, dstWidth, dstHeight, null);
         g.dispose();
 
+        RasterPool.DEFAULT.release(temp);
+
         return dst;
     }
 
+    @Override
+    public BufferedImage resize(BufferedImage src, BufferedImage dst, Orientation orientation) {
+        return resizeAndOrient(src, dst, orientation);
+    }
 }
@@ -1,5 +1,10 @@
 package org.eightlog.thumty.image.resize;
 
+import org.eightlog.thumty.image.exif.Orientation;
+import org.eightlog.thumty.image.filter.Orient;
+import org.eightlog.thumty.image.utils.RasterPool;
+
+import java.awt.*;
 import java.awt.image.BufferedImage;
 
 /**
@@ -20,4 +25,29 @@ public interface Resizer {
      */
     BufferedImage resize(BufferedImage src, BufferedImage dst);
 
+    /**
+     * Resize and orient image
+     * <p>
+     * The source image is resized to destination image dimensions, as they are before orientation, and oriented
+     * to destination image. Only resized image is copied, not the source one.
+     *
+     * @param src         the source image
+     * @param dst         the destination image of oriented size
+     * @param orientation the source image orientation
+     * @return a destination image
+     */
+    default BufferedImage resize(BufferedImage src, BufferedImage dst, Orientation orientation) {
+        if (orientation == Orientation.TOP_LEFT) {
+            return resize(src, dst);
+        }
+
+        Dimension size = orientation.getSize(dst.getWidth(), dst.getHeight());
+        BufferedImage resized = resize(src, RasterPool.DEFAULT.createImage(size.width, size.height, dst.getType()));
+
+        Orient.apply(resized, dst, orientation);
+        RasterPool.DEFAULT.release(resized);
+
+        return dst;
+    }
+
 }
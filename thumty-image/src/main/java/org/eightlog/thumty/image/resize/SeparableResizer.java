@@ -0,0 +1,756 @@
+package org.eightlog.thumty.image.resize;
+
+import org.eightlog.thumty.image.exif.Orientation;
+
+import javax.annotation.Nullable;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Resizer, that resamples image with separable kernel, horizontal pass first and vertical one second.
+ * <p>
+ * Kernel weights are computed once per destination column and row. Source region is read in place, rasters of 8 bit
+ * RGB, ARGB and gray images are read and written directly, other images by {@code getRGB} and {@code setRGB}. Colors
+ * are filtered premultiplied by alpha.
+ * <p>
+ * Source is box averaged by power of two first, so kernel itself reduces image less than 4 times. Destination rows
+ * are split into stripes, each stripe box averages and filters only source rows it needs. Stripes of large images are
+ * resized on fork-join pool in parallel.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class SeparableResizer extends AbstractResizer {
+
+    /**
+     * Min ratio of source to destination size left to kernel after box reduction
+     */
+    private final static int MIN_KERNEL_RATIO = 2;
+
+    /**
+     * Min number of source pixels for image to be resized in parallel
+     */
+    private final static long MIN_PARALLEL_PIXELS = 1024 * 1024;
+
+    /**
+     * Min number of destination rows per stripe
+     */
+    private final static int MIN_STRIPE_ROWS = 8;
+
+    /**
+     * Resampling kernels
+     */
+    public enum Kernel {
+
+        /**
+         * Lanczos windowed sinc with 3 lobes, the sharpest one
+         */
+        LANCZOS(3) {
+            @Override
+            double weight(double x) {
+                x = Math.abs(x);
+                return x < 3 ? sinc(x) * sinc(x / 3) : 0;
+            }
+        },
+
+        /**
+         * Mitchell-Netravali cubic (B = 1/3, C = 1/3), balanced blur and ringing
+         */
+        MITCHELL(2) {
+            @Override
+            double weight(double x) {
+                return cubic(x, 1.0 / 3, 1.0 / 3);
+            }
+        },
+
+        /**
+         * Catmull-Rom cubic (B = 0, C = 1/2), sharp with slight ringing
+         */
+        CATMULL_ROM(2) {
+            @Override
+            double weight(double x) {
+                return cubic(x, 0, 0.5);
+            }
+        };
+
+        private final double support;
+
+        Kernel(double support) {
+            this.support = support;
+        }
+
+        /**
+         * @return a kernel radius in source pixels at scale 1
+         */
+        public double getSupport() {
+            return support;
+        }
+
+        /**
+         * Kernel value
+         *
+         * @param x the distance from sample center in source pixels at scale 1
+         * @return a not normalized weight
+         */
+        abstract double weight(double x);
+
+        private static double sinc(double x) {
+            if (x == 0) {
+                return 1;
+            }
+
+            x *= Math.PI;
+            return Math.sin(x) / x;
+        }
+
+        private static double cubic(double x, double b, double c) {
+            x = Math.abs(x);
+
+            if (x < 1) {
+                return ((12 - 9 * b - 6 * c) * x * x * x + (-18 + 12 * b + 6 * c) * x * x + (6 - 2 * b)) / 6;
+            } else if (x < 2) {
+                return ((-b - 6 * c) * x * x * x + (6 * b + 30 * c) * x * x + (-12 * b - 48 * c) * x + (8 * b + 24 * c)) / 6;
+            }
+
+            return 0;
+        }
+    }
+
+    private final Kernel kernel;
+
+    private final ForkJoinPool pool;
+
+    public SeparableResizer() {
+        this(null);
+    }
+
+    public SeparableResizer(@Nullable Rectangle sourceRegion) {
+        this(sourceRegion, Kernel.LANCZOS);
+    }
+
+    public SeparableResizer(@Nullable Rectangle sourceRegion, Kernel kernel) {
+        this(sourceRegion, kernel, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create separable resizer
+     *
+     * @param sourceRegion the source resize region, null to resize whole image
+     * @param kernel       the resampling kernel
+     * @param pool         the pool stripes of large images are resized on
+     */
+    public SeparableResizer(@Nullable Rectangle sourceRegion, Kernel kernel, ForkJoinPool pool) {
+        super(sourceRegion);
+        this.kernel = kernel;
+        this.pool = pool;
+    }
+
+    @Override
+    public BufferedImage resize(BufferedImage src, BufferedImage dst) {
+        return resize(src, dst, Orientation.TOP_LEFT);
+    }
+
+    /**
+     * Resize image and write it oriented to destination, orientation costs nothing but destination write order
+     *
+     * @param src         the source image
+     * @param dst         the destination image of oriented size
+     * @param orientation the source image orientation
+     * @return a destination image
+     */
+    @Override
+    public BufferedImage resize(BufferedImage src, BufferedImage dst, Orientation orientation) {
+        Rectangle region = getSourceRegion(src).intersection(new Rectangle(0, 0, src.getWidth(), src.getHeight()));
+
+        if (region.isEmpty()) {
+            return dst;
+        }
+
+        Dimension size = orientation.getSize(dst.getWidth(), dst.getHeight());
+        int width = size.width;
+        int height = size.height;
+
+        boolean direct = src.getType() == dst.getType() && Pixels.isDirect(src);
+        int bands = direct ? Pixels.getBands(src) : (src.getColorModel().hasAlpha() ? 4 : 3);
+
+        Pixels source = new Pixels(src, region.x, region.y, region.width, region.height, bands, direct);
+        Pixels target = new Pixels(dst, 0, 0, dst.getWidth(), dst.getHeight(), bands, direct);
+
+        int reduction = getBoxReduction(region.width, region.height, width, height);
+
+        double scaleX = (double) region.width / reduction / width;
+        double scaleY = (double) region.height / reduction / height;
+
+        Weights columns = new Weights(kernel, Reduced.getLength(region.width, reduction), width, scaleX);
+        Weights rows = new Weights(kernel, Reduced.getLength(region.height, reduction), height, scaleY);
+
+        Writer output = new Writer(target, orientation, width, height);
+
+        // Each stripe reduces only source rows it needs, reduced rows are never kept whole
+        execute(height, (long) region.width * region.height, (from, to) -> resample(
+                reduction > 1 ? new Reduced(source, reduction) : source, output, columns, rows, bands, from, to));
+
+        return dst;
+    }
+
+    @Override
+    protected Map<RenderingHints.Key, Object> getRenderingHints() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Get power of two box reduction, that leaves at least {@link #MIN_KERNEL_RATIO} reduction to kernel
+     */
+    private int getBoxReduction(int srcWidth, int srcHeight, int dstWidth, int dstHeight) {
+        double ratio = Math.min((double) srcWidth / dstWidth, (double) srcHeight / dstHeight);
+        int reduction = 1;
+
+        while (ratio / (reduction * 2) >= MIN_KERNEL_RATIO) {
+            reduction *= 2;
+        }
+
+        return reduction;
+    }
+
+    /**
+     * Resample destination rows stripe, source rows the stripe needs are filtered horizontally first
+     */
+    private static void resample(Rows source, Writer output, Weights columns, Weights rows, int bands, int from, int to) {
+        int first = rows.start[from];
+        int last = first;
+
+        for (int y = from; y < to; y++) {
+            last = Math.max(last, rows.start[y] + rows.count[y]);
+        }
+
+        int width = columns.length;
+        int length = width * bands;
+
+        float[] row = new float[source.getWidth() * bands];
+        float[] filtered = new float[(last - first) * length];
+
+        // Horizontal pass
+        for (int sy = first; sy < last; sy++) {
+            source.read(sy, row);
+
+            int offset = (sy - first) * length;
+
+            for (int x = 0; x < width; x++) {
+                int start = columns.start[x] * bands;
+                int count = columns.count[x];
+                int w = x * columns.stride;
+
+                for (int b = 0; b < bands; b++) {
+                    float sum = 0;
+
+                    for (int t = 0, i = start + b; t < count; t++, i += bands) {
+                        sum += columns.weights[w + t] * row[i];
+                    }
+
+                    filtered[offset + x * bands + b] = sum;
+                }
+            }
+        }
+
+        // Vertical pass
+        float[] out = new float[length];
+
+        for (int y = from; y < to; y++) {
+            Arrays.fill(out, 0);
+
+            int count = rows.count[y];
+            int w = y * rows.stride;
+
+            for (int t = 0; t < count; t++) {
+                float weight = rows.weights[w + t];
+                int offset = (rows.start[y] + t - first) * length;
+
+                for (int i = 0; i < length; i++) {
+                    out[i] += weight * filtered[offset + i];
+                }
+            }
+
+            output.write(y, out);
+        }
+    }
+
+    /**
+     * Run stripes of rows, in parallel on pool if there is enough work
+     *
+     * @param rows   the number of rows
+     * @param pixels the number of source pixels processed
+     * @param stripe the stripe task
+     */
+    private void execute(int rows, long pixels, Stripe stripe) {
+        int stripes = pixels < MIN_PARALLEL_PIXELS ? 1 : Math.min(pool.getParallelism(), rows / MIN_STRIPE_ROWS);
+
+        if (stripes <= 1) {
+            stripe.run(0, rows);
+            return;
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(stripes);
+
+        for (int i = 0; i < stripes; i++) {
+            int from = (int) ((long) rows * i / stripes);
+            int to = (int) ((long) rows * (i + 1) / stripes);
+
+            tasks.add(ForkJoinTask.adapt(() -> stripe.run(from, to)));
+        }
+
+        if (ForkJoinTask.getPool() == pool) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        }
+    }
+
+    /**
+     * Rows stripe task
+     */
+    private interface Stripe {
+        void run(int from, int to);
+    }
+
+    /**
+     * Kernel weights of each destination pixel along one axis, source pixels outside of image are clamped out and
+     * weights are normalized
+     */
+    private static class Weights {
+
+        private final int length;
+
+        private final int stride;
+
+        private final int[] start;
+
+        private final int[] count;
+
+        private final float[] weights;
+
+        Weights(Kernel kernel, int srcLength, int dstLength, double scale) {
+            double filterScale = Math.max(1, scale);
+            double support = kernel.getSupport() * filterScale;
+
+            this.length = dstLength;
+            this.stride = (int) Math.ceil(support) * 2 + 1;
+            this.start = new int[dstLength];
+            this.count = new int[dstLength];
+            this.weights = new float[dstLength * stride];
+
+            for (int i = 0; i < dstLength; i++) {
+                double center = (i + 0.5) * scale - 0.5;
+
+                int left = Math.max(0, (int) Math.ceil(center - support));
+                int right = Math.min(srcLength - 1, (int) Math.floor(center + support));
+
+                // Destination pixel outside of source, take the nearest one
+                if (left > right) {
+                    left = right = Math.min(srcLength - 1, Math.max(0, (int) Math.round(center)));
+                }
+
+                right = Math.min(right, left + stride - 1);
+
+                double sum = 0;
+
+                for (int j = left; j <= right; j++) {
+                    sum += kernel.weight((j - center) / filterScale);
+                }
+
+                for (int j = left; j <= right; j++) {
+                    double weight = kernel.weight((j - center) / filterScale);
+                    weights[i * stride + j - left] = (float) (sum != 0 ? weight / sum : 1.0 / (right - left + 1));
+                }
+
+                start[i] = left;
+                count[i] = right - left + 1;
+            }
+        }
+    }
+
+    /**
+     * Source rows of premultiplied band values in 0..255 range
+     */
+    private interface Rows {
+
+        int getWidth();
+
+        int getHeight();
+
+        int getBands();
+
+        /**
+         * Read source row
+         *
+         * @param y   the row index
+         * @param row the row values, bands interleaved
+         */
+        void read(int y, float[] row);
+    }
+
+    /**
+     * Box reduced source, that averages source rows in blocks of {@code factor x factor} when reduced row is read.
+     * Edge blocks are averaged over pixels they have. Reduced source keeps its row buffers, so it's used by single
+     * stripe.
+     */
+    private static class Reduced implements Rows {
+
+        private final Rows source;
+
+        private final int factor;
+
+        private final int width;
+
+        private final int height;
+
+        private final int bands;
+
+        private final float[] row;
+
+        Reduced(Rows source, int factor) {
+            this.source = source;
+            this.factor = factor;
+            this.width = getLength(source.getWidth(), factor);
+            this.height = getLength(source.getHeight(), factor);
+            this.bands = source.getBands();
+            this.row = new float[source.getWidth() * bands];
+        }
+
+        /**
+         * @return a reduced length of source length
+         */
+        static int getLength(int length, int factor) {
+            return (length + factor - 1) / factor;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public int getBands() {
+            return bands;
+        }
+
+        @Override
+        public void read(int y, float[] sum) {
+            int count = Math.min(factor, source.getHeight() - y * factor);
+
+            Arrays.fill(sum, 0, width * bands, 0);
+
+            for (int sy = y * factor; sy < y * factor + count; sy++) {
+                source.read(sy, row);
+
+                for (int x = 0, o = 0; x < source.getWidth(); x += factor, o += bands) {
+                    int end = Math.min(x + factor, source.getWidth()) * bands;
+
+                    for (int b = 0; b < bands; b++) {
+                        float block = 0;
+
+                        for (int i = x * bands + b; i < end; i += bands) {
+                            block += row[i];
+                        }
+
+                        sum[o + b] += block;
+                    }
+                }
+            }
+
+            for (int x = 0, o = 0; x < width; x++, o += bands) {
+                float area = Math.min(factor, source.getWidth() - x * factor) * count;
+
+                for (int b = 0; b < bands; b++) {
+                    sum[o + b] /= area;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes resized rows to destination, mapping them to oriented destination pixels
+     */
+    private static class Writer {
+
+        private final Pixels pixels;
+
+        private final int bands;
+
+        private final int width;
+
+        private final int xx, xy, x0;
+
+        private final int yx, yy, y0;
+
+        Writer(Pixels pixels, Orientation orientation, int width, int height) {
+            AffineTransform transform = orientation.getTransform(width, height);
+
+            this.pixels = pixels;
+            this.bands = pixels.getBands();
+            this.width = width;
+
+            // Pixel centers are mapped to pixel centers, transform is a multiple of 90 degrees rotation with flips
+            this.xx = (int) transform.getScaleX();
+            this.xy = (int) transform.getShearX();
+            this.x0 = (int) transform.getTranslateX() - (xx + xy < 0 ? 1 : 0);
+            this.yx = (int) transform.getShearY();
+            this.yy = (int) transform.getScaleY();
+            this.y0 = (int) transform.getTranslateY() - (yx + yy < 0 ? 1 : 0);
+        }
+
+        void write(int y, float[] row) {
+            for (int x = 0; x < width; x++) {
+                pixels.write(xx * x + xy * y + x0, yx * x + yy * y + y0, row, x * bands);
+            }
+        }
+    }
+
+    /**
+     * Image pixels access, rasters of 8 bit RGB, ARGB, premultiplied ARGB and gray images are accessed directly
+     */
+    private static class Pixels implements Rows {
+
+        private final BufferedImage image;
+
+        private final int x;
+
+        private final int y;
+
+        private final int width;
+
+        private final int height;
+
+        private final int bands;
+
+        private final boolean alpha;
+
+        /**
+         * True if directly accessed pixels are premultiplied by alpha already
+         */
+        private final boolean premultiplied;
+
+        private final int[] ints;
+
+        private final byte[] bytes;
+
+        private final int origin;
+
+        private final int pixelStride;
+
+        private final int scanlineStride;
+
+        private final int[] bandOffsets;
+
+        Pixels(BufferedImage image, int x, int y, int width, int height, int bands, boolean direct) {
+            this.image = image;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.bands = bands;
+            this.alpha = bands == 4;
+            this.premultiplied = direct && image.getType() == BufferedImage.TYPE_INT_ARGB_PRE;
+
+            WritableRaster raster = image.getRaster();
+
+            int tx = x - raster.getSampleModelTranslateX();
+            int ty = y - raster.getSampleModelTranslateY();
+
+            if (direct && raster.getDataBuffer() instanceof DataBufferInt) {
+                SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) raster.getSampleModel();
+                DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+
+                this.ints = buffer.getData();
+                this.bytes = null;
+                this.pixelStride = 1;
+                this.scanlineStride = model.getScanlineStride();
+                this.origin = buffer.getOffset() + ty * scanlineStride + tx;
+                this.bandOffsets = null;
+            } else if (direct) {
+                ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+                DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+
+                this.ints = null;
+                this.bytes = buffer.getData();
+                this.pixelStride = model.getPixelStride();
+                this.scanlineStride = model.getScanlineStride();
+                this.origin = buffer.getOffset() + ty * scanlineStride + tx * pixelStride;
+                this.bandOffsets = model.getBandOffsets();
+            } else {
+                this.ints = null;
+                this.bytes = null;
+                this.pixelStride = 1;
+                this.scanlineStride = width;
+                this.origin = 0;
+                this.bandOffsets = null;
+            }
+        }
+
+        /**
+         * @return true if image raster could be accessed directly
+         */
+        static boolean isDirect(BufferedImage image) {
+            switch (image.getType()) {
+                case BufferedImage.TYPE_INT_RGB:
+                case BufferedImage.TYPE_INT_ARGB:
+                case BufferedImage.TYPE_INT_ARGB_PRE:
+                case BufferedImage.TYPE_3BYTE_BGR:
+                case BufferedImage.TYPE_4BYTE_ABGR:
+                case BufferedImage.TYPE_BYTE_GRAY:
+                    return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return a number of bands of directly accessed image
+         */
+        static int getBands(BufferedImage image) {
+            switch (image.getType()) {
+                case BufferedImage.TYPE_BYTE_GRAY:
+                    return 1;
+                case BufferedImage.TYPE_INT_ARGB:
+                case BufferedImage.TYPE_INT_ARGB_PRE:
+                case BufferedImage.TYPE_4BYTE_ABGR:
+                    return 4;
+            }
+            return 3;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public int getBands() {
+            return bands;
+        }
+
+        @Override
+        public void read(int row, float[] values) {
+            if (bytes != null) {
+                int offset = origin + row * scanlineStride;
+
+                for (int b = 0; b < bands; b++) {
+                    for (int i = 0, o = b, p = offset + bandOffsets[b]; i < width; i++, o += bands, p += pixelStride) {
+                        values[o] = bytes[p] & 0xff;
+                    }
+                }
+
+                if (alpha) {
+                    for (int i = 0, o = 0; i < width; i++, o += bands) {
+                        premultiply(values, o);
+                    }
+                }
+                return;
+            }
+
+            int[] pixels = ints;
+            int offset = origin + row * scanlineStride;
+
+            // Region row is copied, not the region, rows are read by stripes in parallel
+            if (pixels == null) {
+                pixels = image.getRGB(x, y + row, width, 1, null, 0, width);
+                offset = 0;
+            }
+
+            for (int i = 0, o = 0; i < width; i++, o += bands) {
+                int pixel = pixels[offset + i];
+
+                values[o] = (pixel >> 16) & 0xff;
+                values[o + 1] = (pixel >> 8) & 0xff;
+                values[o + 2] = pixel & 0xff;
+
+                if (alpha) {
+                    values[o + 3] = pixel >>> 24;
+
+                    if (!premultiplied) {
+                        premultiply(values, o);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Write pixel
+         *
+         * @param px     the pixel x
+         * @param py     the pixel y
+         * @param values the premultiplied band values
+         * @param i      the pixel values offset
+         */
+        void write(int px, int py, float[] values, int i) {
+            int a = alpha ? clamp(values[i + 3]) : 0xff;
+            float unpremultiply = alpha && a > 0 && !premultiplied ? 255f / values[i + 3] : 1;
+
+            if (a == 0) {
+                unpremultiply = 0;
+            }
+
+            if (premultiplied) {
+                // Premultiplied colors never exceed alpha
+                ints[origin + py * scanlineStride + px] = (a << 24)
+                        | (Math.min(a, clamp(values[i])) << 16)
+                        | (Math.min(a, clamp(values[i + 1])) << 8)
+                        | Math.min(a, clamp(values[i + 2]));
+                return;
+            }
+
+            if (bytes != null) {
+                int offset = origin + py * scanlineStride + px * pixelStride;
+
+                for (int b = 0; b < bands; b++) {
+                    bytes[offset + bandOffsets[b]] = (byte) (b == 3 ? a : clamp(values[i + b] * unpremultiply));
+                }
+                return;
+            }
+
+            int pixel = (a << 24)
+                    | (clamp(values[i] * unpremultiply) << 16)
+                    | (clamp(values[i + 1] * unpremultiply) << 8)
+                    | clamp(values[i + 2] * unpremultiply);
+
+            if (ints != null) {
+                ints[origin + py * scanlineStride + px] = pixel;
+            } else {
+                image.setRGB(x + px, y + py, pixel);
+            }
+        }
+
+        private static void premultiply(float[] values, int o) {
+            float a = values[o + 3] / 255f;
+
+            values[o] *= a;
+            values[o + 1] *= a;
+            values[o + 2] *= a;
+        }
+
+        private static int clamp(float value) {
+            int v = (int) (value + 0.5f);
+            return v < 0 ? 0 : (v > 255 ? 255 : v);
+        }
+    }
+}
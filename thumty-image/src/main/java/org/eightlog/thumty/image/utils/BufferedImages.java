@@ -2,12 +2,38 @@ package org.eightlog.thumty.image.utils;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 
 /**
  * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
  */
 public class BufferedImages {
 
+    /**
+     * Products of alpha and color divided by 255, indexed by alpha and color as {@code a << 8 | c}
+     */
+    private final static byte[] MULTIPLY = new byte[256 * 256];
+
+    /**
+     * Quotients of color and alpha multiplied by 255, indexed by alpha and color as {@code a << 8 | c}
+     */
+    private final static byte[] DIVIDE = new byte[256 * 256];
+
+    static {
+        for (int a = 0; a < 256; a++) {
+            for (int c = 0; c < 256; c++) {
+                MULTIPLY[a << 8 | c] = (byte) ((c * a + 127) / 255);
+                DIVIDE[a << 8 | c] = (byte) (a > 0 ? Math.min(255, (c * 255 + a / 2) / a) : c);
+            }
+        }
+    }
+
     public static BufferedImage copy(BufferedImage image) {
         return copy(image, image.getType());
     }
@@ -19,4 +45,199 @@ public class BufferedImages {
         graphics.dispose();
         return copy;
     }
+
+    /**
+     * Convert image to INT RGB, ARGB or premultiplied ARGB type, converted image is created by {@link RasterPool#DEFAULT}.
+     * <p>
+     * Opaque images of standard types are drawn, Java2D has native loops for them. Images with alpha and custom images
+     * are converted by raster loops, since drawing premultiplies them pixel by pixel through color model. Rasters of
+     * INT ARGB and 8 bit interleaved sRGB images are read directly, other images by
+     * {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}. Images with alpha converted to RGB are composed
+     * over black, as drawing does. Images of other target types are drawn.
+     *
+     * @param image the image
+     * @param type  the target image type
+     * @return a converted image, or the same image if it's already of target type
+     */
+    public static BufferedImage convert(BufferedImage image, int type) {
+        if (image.getType() == type) {
+            return image;
+        }
+
+        BufferedImage result = RasterPool.DEFAULT.createImage(image.getWidth(), image.getHeight(), type);
+
+        boolean alpha = image.getColorModel().hasAlpha();
+
+        if ((type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_INT_ARGB && type != BufferedImage.TYPE_INT_ARGB_PRE)
+                || (!alpha && image.getType() != BufferedImage.TYPE_CUSTOM)) {
+            Graphics graphics = result.createGraphics();
+            graphics.drawImage(image, 0, 0, null);
+            graphics.dispose();
+            return result;
+        }
+
+        // Pooled array could be larger than image
+        int[] data = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+        int size = image.getWidth() * image.getHeight();
+
+        // Alpha of opaque pixels, RGB pixels have none
+        int opaque = type == BufferedImage.TYPE_INT_RGB ? 0 : 0xff000000;
+
+        boolean premultiplied = read(image, data, opaque);
+
+        if (alpha) {
+            boolean toPremultiplied = type != BufferedImage.TYPE_INT_ARGB;
+            int mask = type == BufferedImage.TYPE_INT_RGB ? 0xffffff : 0xffffffff;
+
+            for (int i = 0; i < size; i++) {
+                int pixel = data[i];
+
+                if (premultiplied != toPremultiplied) {
+                    pixel = premultiplied ? unpremultiply(pixel) : premultiply(pixel);
+                }
+
+                data[i] = pixel & mask;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Get type of image with alpha, that keeps pixel layout of the given image. Images of canonical layout, INT RGB and
+     * premultiplied ones, get premultiplied ARGB type, other images get ARGB.
+     *
+     * @param image the image
+     * @return an image type with alpha
+     */
+    public static int getAlphaType(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB || image.getColorModel().isAlphaPremultiplied()) {
+            return BufferedImage.TYPE_INT_ARGB_PRE;
+        }
+        return BufferedImage.TYPE_INT_ARGB;
+    }
+
+    /**
+     * Premultiply ARGB color by alpha
+     *
+     * @param argb the ARGB color
+     * @return a premultiplied ARGB color
+     */
+    public static int premultiply(int argb) {
+        int a = argb >>> 24;
+
+        if (a == 0xff) {
+            return argb;
+        }
+
+        int row = a << 8;
+
+        return argb & 0xff000000
+                | (MULTIPLY[row | (argb >> 16) & 0xff] & 0xff) << 16
+                | (MULTIPLY[row | (argb >> 8) & 0xff] & 0xff) << 8
+                | (MULTIPLY[row | argb & 0xff] & 0xff);
+    }
+
+    /**
+     * Divide premultiplied ARGB color by alpha
+     *
+     * @param argb the premultiplied ARGB color
+     * @return an ARGB color
+     */
+    public static int unpremultiply(int argb) {
+        int a = argb >>> 24;
+
+        if (a == 0xff || a == 0) {
+            return argb;
+        }
+
+        int row = a << 8;
+
+        return argb & 0xff000000
+                | (DIVIDE[row | (argb >> 16) & 0xff] & 0xff) << 16
+                | (DIVIDE[row | (argb >> 8) & 0xff] & 0xff) << 8
+                | (DIVIDE[row | argb & 0xff] & 0xff);
+    }
+
+    /**
+     * Read image pixels as packed ARGB to array of image size
+     *
+     * @param opaque the alpha of pixels of opaque image
+     * @return true if colors are premultiplied by alpha
+     */
+    private static boolean read(BufferedImage image, int[] data, int opaque) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int type = image.getType();
+
+        WritableRaster raster = image.getRaster();
+        ColorModel model = image.getColorModel();
+
+        int tx = -raster.getSampleModelTranslateX();
+        int ty = -raster.getSampleModelTranslateY();
+
+        if ((type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_ARGB_PRE)
+                && raster.getDataBuffer() instanceof DataBufferInt) {
+            int[] pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+            int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+            int offset = raster.getDataBuffer().getOffset() + ty * stride + tx;
+
+            for (int y = 0; y < height; y++) {
+                System.arraycopy(pixels, offset + y * stride, data, y * width, width);
+            }
+
+            return type == BufferedImage.TYPE_INT_ARGB_PRE;
+        }
+
+        if (model instanceof ComponentColorModel && model.getColorSpace().isCS_sRGB()
+                && raster.getSampleModel() instanceof PixelInterleavedSampleModel
+                && raster.getDataBuffer() instanceof DataBufferByte
+                && raster.getNumBands() == (model.hasAlpha() ? 4 : 3)) {
+            PixelInterleavedSampleModel sampleModel = (PixelInterleavedSampleModel) raster.getSampleModel();
+
+            byte[] pixels = ((DataBufferByte) raster.getDataBuffer()).getData();
+            int pixelStride = sampleModel.getPixelStride();
+            int stride = sampleModel.getScanlineStride();
+            int offset = raster.getDataBuffer().getOffset() + ty * stride + tx * pixelStride;
+            int[] bands = sampleModel.getBandOffsets();
+
+            int r = offset + bands[0];
+            int g = offset + bands[1];
+            int b = offset + bands[2];
+
+            for (int y = 0; y < height; y++) {
+                int i = y * stride;
+                int o = y * width;
+
+                if (model.hasAlpha()) {
+                    int a = offset + bands[3];
+
+                    for (int x = 0; x < width; x++, i += pixelStride) {
+                        data[o + x] = (pixels[a + i] & 0xff) << 24
+                                | (pixels[r + i] & 0xff) << 16 | (pixels[g + i] & 0xff) << 8 | (pixels[b + i] & 0xff);
+                    }
+                } else {
+                    for (int x = 0; x < width; x++, i += pixelStride) {
+                        data[o + x] = opaque
+                                | (pixels[r + i] & 0xff) << 16 | (pixels[g + i] & 0xff) << 8 | (pixels[b + i] & 0xff);
+                    }
+                }
+            }
+
+            return model.isAlphaPremultiplied();
+        }
+
+        // Color model converts pixels, including color profile of custom images
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, data, y * width, width);
+        }
+
+        if (opaque == 0 && !model.hasAlpha()) {
+            for (int i = 0, size = width * height; i < size; i++) {
+                data[i] &= 0xffffff;
+            }
+        }
+
+        return false;
+    }
 }
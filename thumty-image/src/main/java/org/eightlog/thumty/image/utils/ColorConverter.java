@@ -6,6 +6,18 @@ import java.awt.*;
  * @author Iliya Grushevskiy <iliya.gr@gmail.com>
  */
 public class ColorConverter {
+    /**
+     * sRGB channel values linearized to 0..100 range
+     */
+    private static final double[] LINEAR = new double[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            double c = i / 255.0;
+            LINEAR[i] = (c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4)) * 100.0;
+        }
+    }
+
     /**
      * reference white in XYZ coordinates
      */
@@ -203,6 +215,32 @@ public class ColorConverter {
         return RGBtoLAB((rgb & 0xff0000) >> 16, (rgb & 0xff00) >> 8, rgb & 0xff);
     }
 
+    /**
+     * Convert RGB to LAB without allocation, channels are linearized by lookup table.
+     * @param rgb packed RGB color, alpha is ignored
+     * @param lab the array Lab values are written to
+     * @return Lab values
+     */
+    public double[] RGBtoLAB(int rgb, double[] lab) {
+        double r = LINEAR[(rgb >> 16) & 0xff];
+        double g = LINEAR[(rgb >> 8) & 0xff];
+        double b = LINEAR[rgb & 0xff];
+
+        double x = labPivot(((r * M[0][0]) + (g * M[0][1]) + (b * M[0][2])) / whitePoint[0]);
+        double y = labPivot(((r * M[1][0]) + (g * M[1][1]) + (b * M[1][2])) / whitePoint[1]);
+        double z = labPivot(((r * M[2][0]) + (g * M[2][1]) + (b * M[2][2])) / whitePoint[2]);
+
+        lab[0] = (116.0 * y) - 16.0;
+        lab[1] = 500.0 * (x - y);
+        lab[2] = 200.0 * (y - z);
+
+        return lab;
+    }
+
+    private static double labPivot(double t) {
+        return t > 0.008856 ? Math.cbrt(t) : (7.787 * t) + (16.0 / 116.0);
+    }
+
     /**
      * Convert RGB to XYZ
      * @param R
@@ -0,0 +1,52 @@
+package org.eightlog.thumty.image.utils;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Pixel layout decoded images are normalized to, before they are filtered and resized.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public enum PixelLayout {
+
+    /**
+     * Decoded image type is kept, only custom type images are converted to RGB or ARGB, so filters could create
+     * images of the same type
+     */
+    DECODED {
+        @Override
+        public BufferedImage apply(BufferedImage image) {
+            if (image.getType() != BufferedImage.TYPE_CUSTOM) {
+                return image;
+            }
+
+            return BufferedImages.convert(image, image.getColorModel().hasAlpha()
+                    ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        }
+    },
+
+    /**
+     * Opaque images are converted to RGB, images with alpha to premultiplied ARGB, so every stage works on packed int
+     * pixels of one of two types. Grayscale images are kept, since they are decoded to gray on purpose and are
+     * a third of RGB size.
+     */
+    CANONICAL {
+        @Override
+        public BufferedImage apply(BufferedImage image) {
+            if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+                return image;
+            }
+
+            return BufferedImages.convert(image, image.getColorModel().hasAlpha()
+                    ? BufferedImage.TYPE_INT_ARGB_PRE : BufferedImage.TYPE_INT_RGB);
+        }
+    };
+
+    /**
+     * Normalize image pixel layout
+     *
+     * @param image the decoded image
+     * @return an image of this layout, the same image if it already is
+     */
+    public abstract BufferedImage apply(BufferedImage image);
+}
@@ -0,0 +1,325 @@
+package org.eightlog.thumty.image.utils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Hashtable;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Pool of pixel arrays of large images, so full size intermediate images don't churn humongous allocations.
+ * <p>
+ * Arrays are pooled by size classes, four classes per power of two, so pooled array is at most a quarter larger than
+ * requested one. Images smaller than {@link #MIN_POOLED_BYTES} are allocated as usual. Released arrays are retained
+ * up to max retained bytes, the rest are left to garbage collector.
+ * <p>
+ * Pooled images are marked by lease property, that their subimages share. Lease is returned once, so releasing
+ * both image and its subimage or releasing image twice is safe. Images that aren't released are just collected,
+ * since pool doesn't track leased arrays.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class RasterPool {
+
+    /**
+     * Default max retained bytes
+     */
+    public final static long DEFAULT_MAX_RETAINED_BYTES = 256L * 1024 * 1024;
+
+    public final static RasterPool DEFAULT = new RasterPool(DEFAULT_MAX_RETAINED_BYTES);
+
+    /**
+     * Min size of pooled array, smaller arrays aren't humongous allocations
+     */
+    private final static int MIN_POOLED_BYTES = 256 * 1024;
+
+    /**
+     * Max length of pooled array, as large as arrays could be allocated
+     */
+    private final static int MAX_POOLED_LENGTH = Integer.MAX_VALUE - 8;
+
+    /**
+     * Size classes per power of two
+     */
+    private final static int CLASS_STEPS = 4;
+
+    private final static int CLASS_COUNT = 32 * CLASS_STEPS;
+
+    /**
+     * Image property, that holds lease of pooled array
+     */
+    private final static String LEASE_PROPERTY = "thumty.raster.lease";
+
+    private final Deque<int[]>[] ints = newClasses();
+
+    private final Deque<byte[]>[] bytes = newClasses();
+
+    private final AtomicLong retained = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private volatile long maxRetainedBytes;
+
+    /**
+     * Create pool
+     *
+     * @param maxRetainedBytes the max bytes of released arrays retained by pool
+     */
+    public RasterPool(long maxRetainedBytes) {
+        this.maxRetainedBytes = maxRetainedBytes;
+    }
+
+    /**
+     * Set max bytes of released arrays retained by pool, arrays retained over limit are dropped
+     *
+     * @param maxRetainedBytes the max retained bytes
+     */
+    public void setMaxRetainedBytes(long maxRetainedBytes) {
+        this.maxRetainedBytes = maxRetainedBytes;
+        trim(ints);
+        trim(bytes);
+    }
+
+    /**
+     * Create cleared image, large images of INT and 8 bit BGR, ABGR and gray types get pooled pixels arrays
+     *
+     * @param width  the image width
+     * @param height the image height
+     * @param type   the image type
+     * @return an image
+     */
+    public BufferedImage createImage(int width, int height, int type) {
+        Format format = Format.of(type);
+        long length = (long) width * height * (format != null ? format.samples : 0);
+
+        if (format == null || length * format.bytes < MIN_POOLED_BYTES || length > MAX_POOLED_LENGTH) {
+            return new BufferedImage(width, height, type);
+        }
+
+        int size = (int) length;
+        int index = getClassIndex(size);
+
+        DataBuffer buffer;
+        Object array;
+
+        if (format.bytes == 4) {
+            int[] data = take(ints, index, int[]::new);
+            Arrays.fill(data, 0, size, 0);
+            buffer = new DataBufferInt(data, size);
+            array = data;
+        } else {
+            byte[] data = take(bytes, index, byte[]::new);
+            Arrays.fill(data, 0, size, (byte) 0);
+            buffer = new DataBufferByte(data, size);
+            array = data;
+        }
+
+        SampleModel sampleModel = format.sampleModel.createCompatibleSampleModel(width, height);
+        WritableRaster raster = Raster.createWritableRaster(sampleModel, buffer, null);
+
+        Hashtable<String, Object> properties = new Hashtable<>();
+        properties.put(LEASE_PROPERTY, new Lease(array));
+
+        return new BufferedImage(format.colorModel, raster, format.colorModel.isAlphaPremultiplied(), properties);
+    }
+
+    /**
+     * Return pixels array of pooled image to pool, image must not be used after release. Images, that aren't pooled,
+     * are ignored.
+     *
+     * @param image the image, or its subimage
+     */
+    public void release(BufferedImage image) {
+        Object property = image.getProperty(LEASE_PROPERTY);
+
+        if (!(property instanceof Lease) || !((Lease) property).released.compareAndSet(false, true)) {
+            return;
+        }
+
+        Object array = ((Lease) property).array;
+
+        if (array instanceof int[]) {
+            put(ints, (int[]) array);
+        } else {
+            put(bytes, (byte[]) array);
+        }
+    }
+
+    /**
+     * @return a number of images created with pooled array
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return a number of pooled size images created with new array
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return a ratio of pooled size images created with pooled array
+     */
+    public double getHitRate() {
+        long hits = this.hits.get();
+        long total = hits + misses.get();
+        return total > 0 ? (double) hits / total : 0;
+    }
+
+    /**
+     * @return a bytes of released arrays retained by pool
+     */
+    public long getRetainedBytes() {
+        return retained.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Deque<T>[] newClasses() {
+        Deque<T>[] classes = new Deque[CLASS_COUNT];
+
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            classes[i] = new ConcurrentLinkedDeque<>();
+        }
+
+        return classes;
+    }
+
+    /**
+     * Get index of the smallest class, which arrays are at least of size
+     */
+    private static int getClassIndex(int size) {
+        int exponent = 31 - Integer.numberOfLeadingZeros(size);
+        long base = 1L << exponent;
+        int step = (int) (((size - base) * CLASS_STEPS + base - 1) / base);
+
+        return exponent * CLASS_STEPS + step;
+    }
+
+    /**
+     * Get length of class arrays
+     */
+    private static int getClassSize(int index) {
+        long base = 1L << (index / CLASS_STEPS);
+        return (int) Math.min(base + base * (index % CLASS_STEPS) / CLASS_STEPS, MAX_POOLED_LENGTH);
+    }
+
+    private <T> T take(Deque<T>[] classes, int index, IntFunction<T> factory) {
+        T array = classes[index].pollFirst();
+
+        if (array != null) {
+            retained.addAndGet(-getBytes(array));
+            hits.incrementAndGet();
+            return array;
+        }
+
+        misses.incrementAndGet();
+        return factory.apply(getClassSize(index));
+    }
+
+    private <T> void put(Deque<T>[] classes, T array) {
+        long size = getBytes(array);
+
+        if (retained.addAndGet(size) > maxRetainedBytes) {
+            retained.addAndGet(-size);
+            return;
+        }
+
+        // Arrays are created of class size, so array is returned to class it was taken from
+        classes[getClassIndex(Array.getLength(array))].offerFirst(array);
+    }
+
+    /**
+     * Drop retained arrays over limit, largest first
+     */
+    private <T> void trim(Deque<T>[] classes) {
+        for (int index = CLASS_COUNT - 1; index >= 0 && retained.get() > maxRetainedBytes; index--) {
+            T array;
+
+            while (retained.get() > maxRetainedBytes && (array = classes[index].pollLast()) != null) {
+                retained.addAndGet(-getBytes(array));
+            }
+        }
+    }
+
+    private static long getBytes(Object array) {
+        return array instanceof int[] ? ((int[]) array).length * 4L : ((byte[]) array).length;
+    }
+
+    /**
+     * Pooled array lease
+     */
+    private static class Lease {
+
+        private final Object array;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Lease(Object array) {
+            this.array = array;
+        }
+    }
+
+    /**
+     * Pooled image type, its color and sample models
+     */
+    private enum Format {
+        INT_RGB(BufferedImage.TYPE_INT_RGB, 4, 1),
+        INT_ARGB(BufferedImage.TYPE_INT_ARGB, 4, 1),
+        INT_ARGB_PRE(BufferedImage.TYPE_INT_ARGB_PRE, 4, 1),
+        INT_BGR(BufferedImage.TYPE_INT_BGR, 4, 1),
+        BYTE_3BGR(BufferedImage.TYPE_3BYTE_BGR, 1, 3),
+        BYTE_4ABGR(BufferedImage.TYPE_4BYTE_ABGR, 1, 4),
+        BYTE_4ABGR_PRE(BufferedImage.TYPE_4BYTE_ABGR_PRE, 1, 4),
+        BYTE_GRAY(BufferedImage.TYPE_BYTE_GRAY, 1, 1);
+
+        private final int type;
+
+        /**
+         * Bytes per array element
+         */
+        private final int bytes;
+
+        /**
+         * Array elements per pixel
+         */
+        private final int samples;
+
+        private final ColorModel colorModel;
+
+        private final SampleModel sampleModel;
+
+        Format(int type, int bytes, int samples) {
+            BufferedImage template = new BufferedImage(1, 1, type);
+
+            this.type = type;
+            this.bytes = bytes;
+            this.samples = samples;
+            this.colorModel = template.getColorModel();
+            this.sampleModel = template.getSampleModel();
+        }
+
+        static Format of(int type) {
+            for (Format format : values()) {
+                if (format.type == type) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.eightlog.thumty.image.exif;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Creates JPEG images with Exif APP1 segment
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class ExifJpegs {
+
+    /**
+     * Create JPEG with Exif orientation and JPEG thumbnail
+     *
+     * @param image       the image
+     * @param orientation the Exif orientation value
+     * @param thumbnail   the Exif thumbnail, null to create JPEG without thumbnail
+     * @return a JPEG bytes
+     */
+    public static byte[] create(BufferedImage image, int orientation, BufferedImage thumbnail) throws IOException {
+        byte[] jpeg = write(image);
+        byte[] app1 = createApp1(orientation, thumbnail != null ? write(thumbnail) : null);
+
+        // Exif segment follows JFIF segment
+        int offset = 2;
+
+        if ((jpeg[2] & 0xff) == 0xff && (jpeg[3] & 0xff) == 0xe0) {
+            offset = 4 + (((jpeg[4] & 0xff) << 8) | (jpeg[5] & 0xff));
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(jpeg, 0, offset);
+        output.write(app1);
+        output.write(jpeg, offset, jpeg.length - offset);
+
+        return output.toByteArray();
+    }
+
+    private static byte[] createApp1(int orientation, byte[] thumbnail) throws IOException {
+        ByteArrayOutputStream tiff = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(tiff);
+
+        // Header, IFD0 at 8
+        data.writeBytes("MM");
+        data.writeShort(42);
+        data.writeInt(8);
+
+        // IFD0 with orientation, IFD1 at 26
+        data.writeShort(1);
+        data.writeShort(0x0112);
+        data.writeShort(3);
+        data.writeInt(1);
+        data.writeShort(orientation);
+        data.writeShort(0);
+        data.writeInt(thumbnail != null ? 26 : 0);
+
+        // IFD1 with thumbnail at 56
+        if (thumbnail != null) {
+            data.writeShort(2);
+            data.writeShort(0x0201);
+            data.writeShort(4);
+            data.writeInt(1);
+            data.writeInt(56);
+            data.writeShort(0x0202);
+            data.writeShort(4);
+            data.writeInt(1);
+            data.writeInt(thumbnail.length);
+            data.writeInt(0);
+            data.write(thumbnail);
+        }
+
+        ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        DataOutputStream app1 = new DataOutputStream(segment);
+
+        app1.writeShort(0xffe1);
+        app1.writeShort(2 + 6 + tiff.size());
+        app1.writeBytes("Exif");
+        app1.writeShort(0);
+        app1.write(tiff.toByteArray());
+
+        return segment.toByteArray();
+    }
+
+    private static byte[] write(BufferedImage image) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", output);
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,75 @@
+package org.eightlog.thumty.image.exif;
+
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteOrder;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class ExifParserTest {
+
+    @Test
+    public void shouldReadOrientation() throws Exception {
+        for (int i = 1; i <= 8; i++) {
+            try (ImageInputStream input = ImageIO.createImageInputStream(new File("src/test/resources/exif/orientation_" + i + ".jpg"))) {
+                ExifInfo info = ExifParser.read(input);
+
+                assertThat(info.getOrientation()).isEqualTo(Orientation.typeOf(i));
+                assertThat(info.hasThumbnail()).isFalse();
+                assertThat(input.getStreamPosition()).isEqualTo(0);
+            }
+        }
+    }
+
+    @Test
+    public void shouldReadThumbnailPosition() throws Exception {
+        BufferedImage thumbnail = new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB);
+        byte[] jpeg = ExifJpegs.create(new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB), 6, thumbnail);
+
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(jpeg))) {
+            input.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+
+            ExifInfo info = ExifParser.read(input);
+
+            assertThat(info.getOrientation()).isEqualTo(Orientation.RIGHT_TOP);
+            assertThat(info.hasThumbnail()).isTrue();
+            assertThat(input.getStreamPosition()).isEqualTo(0);
+            assertThat(input.getByteOrder()).isEqualTo(ByteOrder.LITTLE_ENDIAN);
+
+            input.seek(info.getThumbnailOffset());
+            byte[] bytes = new byte[info.getThumbnailLength()];
+            input.readFully(bytes);
+
+            BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(bytes));
+
+            assertThat(decoded.getWidth()).isEqualTo(40);
+            assertThat(decoded.getHeight()).isEqualTo(30);
+        }
+    }
+
+    @Test
+    public void shouldIgnoreImageWithoutExif() throws Exception {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB), "png", png);
+
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(png.toByteArray()))) {
+            assertThat(ExifParser.read(input)).isSameAs(ExifInfo.EMPTY);
+        }
+
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB), "jpeg", jpeg);
+
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(jpeg.toByteArray()))) {
+            assertThat(ExifParser.read(input)).isSameAs(ExifInfo.EMPTY);
+        }
+    }
+}
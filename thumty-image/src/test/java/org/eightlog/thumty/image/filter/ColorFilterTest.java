@@ -0,0 +1,122 @@
+package org.eightlog.thumty.image.filter;
+
+import org.eightlog.thumty.image.Image;
+import org.eightlog.thumty.image.geometry.Direction;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.eightlog.thumty.image.ImageAssertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class ColorFilterTest {
+
+    @Test
+    public void shouldFuseColorFilters() throws Exception {
+        ImageFilter fused = ImageFilter.compose(new Brightness(0.1f), new Contrast(0.2f), new Saturation(-0.3f), new Grayscale());
+
+        assertThat(fused).isInstanceOf(ColorFilter.class);
+        assertThat(ImageFilter.compose(new Brightness(0.1f), new Flip(Direction.HORIZONTAL)))
+                .isNotInstanceOf(ColorFilter.class);
+    }
+
+    @Test
+    public void shouldApplyFusedAsSeparate() throws Exception {
+        ColorFilter[][] chains = {
+                {new Brightness(0.1f), new Contrast(0.2f), new Saturation(-0.3f), new Grayscale()},
+                {new RGBAdjust(0.1f, -0.2f, 0.3f), new Solarize(), new Sepia(10)},
+                {new Saturation(-0.5f), new Grayscale(), new Brightness(-0.2f), new Transparency(0.5f)},
+        };
+
+        for (ColorFilter[] chain : chains) {
+            BufferedImage separate = createNoise(64, 64);
+            BufferedImage fused = copy(separate);
+
+            for (ColorFilter filter : chain) {
+                separate = filter.apply(new Image(separate, "png")).getSource();
+            }
+
+            fused = ImageFilter.compose(chain).apply(new Image(fused, "png")).getSource();
+
+            assertThat(fused).hasWidth(64).hasHeight(64);
+
+            for (int y = 0; y < 64; y++) {
+                for (int x = 0; x < 64; x++) {
+                    assertThat(fused).at(x, y).hasSimilarColor(new Color(separate.getRGB(x, y), true));
+                    assertThat(fused.getRGB(x, y) >>> 24).isEqualTo(separate.getRGB(x, y) >>> 24);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldComposeLookupTablesExactly() throws Exception {
+        BufferedImage separate = createNoise(32, 32);
+        BufferedImage fused = copy(separate);
+
+        new Contrast(0.5f).apply(new Brightness(0.2f).apply(separate));
+        new Brightness(0.2f).andThen(new Contrast(0.5f)).apply(new Image(fused, "png"));
+
+        for (int y = 0; y < 32; y++) {
+            for (int x = 0; x < 32; x++) {
+                assertThat(fused).at(x, y).hasColor(new Color(separate.getRGB(x, y)));
+            }
+        }
+    }
+
+    @Test
+    public void shouldGrayscale() throws Exception {
+        BufferedImage image = create(Color.RED);
+
+        assertThat(new Grayscale().apply(image)).at(0, 0).hasColor(new Color(76, 76, 76));
+    }
+
+    @Test
+    public void shouldSepia() throws Exception {
+        BufferedImage image = create(new Color(90, 120, 150));
+
+        assertThat(new Sepia(10).apply(image)).at(0, 0).hasColor(new Color(160, 140, 110));
+    }
+
+    @Test
+    public void shouldMakeImageTransparent() throws Exception {
+        BufferedImage image = new Transparency(0.5f).apply(create(Color.RED));
+
+        assertThat(image.getColorModel().hasAlpha()).isTrue();
+        assertThat(image).at(0, 0).hasColor(new Color(255, 0, 0, 128));
+    }
+
+    private BufferedImage create(Color color) {
+        BufferedImage image = new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB);
+
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, 2, 2);
+        g.dispose();
+
+        return image;
+    }
+
+    private BufferedImage createNoise(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(1);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+
+        return image;
+    }
+
+    private BufferedImage copy(BufferedImage image) {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+        copy.setData(image.getData());
+        return copy;
+    }
+}
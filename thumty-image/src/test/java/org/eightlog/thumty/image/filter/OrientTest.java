@@ -0,0 +1,86 @@
+package org.eightlog.thumty.image.filter;
+
+import org.eightlog.thumty.image.Image;
+import org.eightlog.thumty.image.exif.Orientation;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.eightlog.thumty.image.ImageAssertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class OrientTest {
+
+    @Test
+    public void shouldRotateRight() throws Exception {
+        Image image = Orient.INSTANCE.apply(create().withOrientation(Orientation.RIGHT_TOP));
+
+        // 0 1 2    3 0
+        // 3 4 5 -> 4 1
+        //          5 2
+        assertThat(image.getOrientation()).isEqualTo(Orientation.TOP_LEFT);
+        assertThat(image.getSource().getWidth()).isEqualTo(2);
+        assertThat(image.getSource().getHeight()).isEqualTo(3);
+        assertThat(pixels(image.getSource())).isEqualTo(new int[]{3, 0, 4, 1, 5, 2});
+    }
+
+    @Test
+    public void shouldRotateLeft() throws Exception {
+        Image image = Orient.INSTANCE.apply(create().withOrientation(Orientation.LEFT_BOTTOM));
+
+        assertThat(pixels(image.getSource())).isEqualTo(new int[]{2, 5, 1, 4, 0, 3});
+    }
+
+    @Test
+    public void shouldTranspose() throws Exception {
+        Image image = Orient.INSTANCE.apply(create().withOrientation(Orientation.LEFT_TOP));
+
+        assertThat(pixels(image.getSource())).isEqualTo(new int[]{0, 3, 1, 4, 2, 5});
+
+        image = Orient.INSTANCE.apply(create().withOrientation(Orientation.RIGHT_BOTTOM));
+
+        assertThat(pixels(image.getSource())).isEqualTo(new int[]{5, 2, 4, 1, 3, 0});
+    }
+
+    @Test
+    public void shouldFlip() throws Exception {
+        assertThat(pixels(Orient.INSTANCE.apply(create().withOrientation(Orientation.TOP_RIGHT)).getSource()))
+                .isEqualTo(new int[]{2, 1, 0, 5, 4, 3});
+        assertThat(pixels(Orient.INSTANCE.apply(create().withOrientation(Orientation.BOTTOM_RIGHT)).getSource()))
+                .isEqualTo(new int[]{5, 4, 3, 2, 1, 0});
+        assertThat(pixels(Orient.INSTANCE.apply(create().withOrientation(Orientation.BOTTOM_LEFT)).getSource()))
+                .isEqualTo(new int[]{3, 4, 5, 0, 1, 2});
+    }
+
+    @Test
+    public void shouldKeepOrientedImage() throws Exception {
+        Image image = create();
+
+        assertThat(Orient.INSTANCE.apply(image)).isSameAs(image);
+    }
+
+    /**
+     * Create 3x2 image with pixel values of their indexes
+     */
+    private Image create() {
+        BufferedImage source = new BufferedImage(3, 2, BufferedImage.TYPE_INT_RGB);
+
+        for (int i = 0; i < 6; i++) {
+            source.setRGB(i % 3, i / 3, i);
+        }
+
+        return new Image(source, "png");
+    }
+
+    private int[] pixels(BufferedImage image) {
+        int[] pixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] &= 0xffffff;
+        }
+
+        return pixels;
+    }
+}
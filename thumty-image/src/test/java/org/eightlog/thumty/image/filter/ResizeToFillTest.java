@@ -1,5 +1,7 @@
 package org.eightlog.thumty.image.filter;
 
+import org.eightlog.thumty.image.Image;
+import org.eightlog.thumty.image.exif.Orientation;
 import org.eightlog.thumty.image.geometry.FixedAlign;
 import org.eightlog.thumty.image.geometry.RelativeOrAbsoluteSize;
 import org.junit.Test;
@@ -103,6 +105,42 @@ public class ResizeToFillTest {
         assertThat(image).at(99, 199).hasSimilarColor(Color.BLACK);
     }
 
+    @Test
+    public void shouldCalculateVisibleRegion() throws Exception {
+        ResizeToFill center = new ResizeToFill(new RelativeOrAbsoluteSize(20, 20), FixedAlign.CENTER);
+
+        assertThat(center.getRegion(200, 100)).isEqualTo(new Rectangle(50, 0, 100, 100));
+        assertThat(center.getRegion(100, 100)).isEqualTo(new Rectangle(0, 0, 100, 100));
+
+        ResizeToFill top = new ResizeToFill(new RelativeOrAbsoluteSize(20, 10), FixedAlign.TOP);
+
+        assertThat(top.getRegion(100, 100)).isEqualTo(new Rectangle(0, 0, 100, 50));
+    }
+
+    @Test
+    public void shouldOrientWhileResizing() throws Exception {
+        // Rotated right image has black top half, its center is visible
+        BufferedImage source = create(400, 200, 0);
+
+        Graphics2D g = source.createGraphics();
+        g.setColor(Color.BLACK);
+        g.fill(new Rectangle(0, 0, 200, 200));
+        g.dispose();
+
+        Image image = new ResizeToFill(new RelativeOrAbsoluteSize(20, 20), FixedAlign.CENTER)
+                .apply(new Image(source, "png").withOrientation(Orientation.RIGHT_TOP));
+
+        assertThat(image.getOrientation()).isEqualTo(Orientation.TOP_LEFT);
+        assertThat(image.getSource()).hasWidth(20).hasHeight(20);
+        assertThat(image.getSource()).at(10, 2).hasSimilarColor(Color.BLACK);
+        assertThat(image.getSource()).at(10, 17).hasSimilarColor(Color.WHITE);
+
+        image = new ResizeToFill(new RelativeOrAbsoluteSize(20, 20), FixedAlign.TOP)
+                .apply(new Image(source, "png").withOrientation(Orientation.RIGHT_TOP));
+
+        assertThat(image.getSource()).at(10, 17).hasSimilarColor(Color.BLACK);
+    }
+
     private BufferedImage create(int width, int height, int border) {
         BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
         Graphics2D g = image.createGraphics();
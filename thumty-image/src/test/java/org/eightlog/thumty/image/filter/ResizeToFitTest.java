@@ -1,8 +1,11 @@
 package org.eightlog.thumty.image.filter;
 
+import org.eightlog.thumty.image.Image;
+import org.eightlog.thumty.image.exif.Orientation;
 import org.eightlog.thumty.image.geometry.RelativeOrAbsoluteSize;
 import org.junit.Test;
 
+import java.awt.*;
 import java.awt.image.BufferedImage;
 
 import static org.eightlog.thumty.image.ImageAssertions.assertThat;
@@ -36,6 +39,39 @@ public class ResizeToFitTest {
         assertThat(image).hasWidth(50).hasHeight(100);
     }
 
+    @Test
+    public void shouldOrientWhileResizing() throws Exception {
+        // Left half of rotated right image is its top half
+        Image image = new ResizeToFit(new RelativeOrAbsoluteSize(100, 100))
+                .apply(new Image(createHalves(40, 20), "png").withOrientation(Orientation.RIGHT_TOP));
+
+        assertThat(image.getOrientation()).isEqualTo(Orientation.TOP_LEFT);
+        assertThat(image.getSource()).hasWidth(50).hasHeight(100);
+        assertThat(image.getSource()).at(25, 5).hasColor(Color.BLACK);
+        assertThat(image.getSource()).at(25, 95).hasColor(Color.WHITE);
+
+        image = new ResizeToFit(new RelativeOrAbsoluteSize(10, 10))
+                .apply(new Image(createHalves(400, 200), "png").withOrientation(Orientation.RIGHT_TOP));
+
+        assertThat(image.getSource()).hasWidth(5).hasHeight(10);
+        assertThat(image.getSource()).at(2, 1).hasSimilarColor(Color.BLACK);
+        assertThat(image.getSource()).at(2, 8).hasSimilarColor(Color.WHITE);
+    }
+
+    /**
+     * Create image with black left half and white right half
+     */
+    private BufferedImage createHalves(int width, int height) {
+        BufferedImage image = create(width, height);
+
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(width / 2, 0, width - width / 2, height);
+        g.dispose();
+
+        return image;
+    }
+
     private BufferedImage create(int width, int height) {
         return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
     }
@@ -0,0 +1,84 @@
+package org.eightlog.thumty.image.filter;
+
+import org.eightlog.thumty.image.Image;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.eightlog.thumty.image.ImageAssertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class TrimTest {
+
+    @Test
+    public void shouldTrimBorders() throws Exception {
+        for (int type : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY}) {
+            BufferedImage image = create(100, 80, type);
+            fill(image, Color.BLACK, 10, 20, 30, 40);
+
+            BufferedImage trimmed = trim(image, Color.WHITE, 5);
+
+            assertThat(trimmed).hasWidth(30).hasHeight(40);
+            assertThat(trimmed).at(0, 0).hasColor(Color.BLACK);
+            assertThat(trimmed).at(29, 39).hasColor(Color.BLACK);
+        }
+    }
+
+    @Test
+    public void shouldKeepSinglePixelRows() throws Exception {
+        BufferedImage image = create(20, 3, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(5, 0, 0);
+        image.setRGB(15, 1, 0);
+        image.setRGB(3, 2, 0);
+
+        assertThat(trim(image, Color.WHITE, 5)).hasWidth(13).hasHeight(3);
+    }
+
+    @Test
+    public void shouldIgnoreSimilarColors() throws Exception {
+        BufferedImage image = create(50, 50, BufferedImage.TYPE_INT_RGB);
+        fill(image, new Color(250, 250, 252), 0, 0, 50, 10);
+        fill(image, Color.RED, 20, 20, 10, 10);
+
+        BufferedImage trimmed = trim(image, Color.WHITE, 5);
+
+        assertThat(trimmed).hasWidth(10).hasHeight(10);
+        assertThat(trimmed).at(5, 5).hasColor(Color.RED);
+    }
+
+    @Test
+    public void shouldTrimImageWithoutContent() throws Exception {
+        assertThat(trim(create(50, 50, BufferedImage.TYPE_INT_RGB), Color.WHITE, 5)).hasWidth(1).hasHeight(1);
+    }
+
+    @Test
+    public void shouldTrimLargeImageInParallel() throws Exception {
+        BufferedImage image = create(2000, 1000, BufferedImage.TYPE_INT_RGB);
+        fill(image, Color.BLUE, 700, 100, 600, 500);
+
+        BufferedImage trimmed = new Trim(Color.WHITE, 5, new ForkJoinPool(4)).apply(new Image(image, "png")).getSource();
+
+        assertThat(trimmed).hasWidth(600).hasHeight(500);
+    }
+
+    private BufferedImage trim(BufferedImage image, Color color, float tolerance) {
+        return new Trim(color, tolerance).apply(new Image(image, "png")).getSource();
+    }
+
+    private void fill(BufferedImage image, Color color, int x, int y, int width, int height) {
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(x, y, width, height);
+        g.dispose();
+    }
+
+    private BufferedImage create(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        fill(image, Color.WHITE, 0, 0, width, height);
+        return image;
+    }
+}
@@ -0,0 +1,150 @@
+package org.eightlog.thumty.image.io;
+
+import org.junit.Test;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class AreaSamplingDecoderTest {
+
+    @Test
+    public void shouldAverageSampledPixels() throws Exception {
+        BufferedImage image = read(write(checkerboard(wide(8, 6, false)), "png"), null, 2);
+
+        assertThat(image.getType()).isEqualTo(BufferedImage.TYPE_INT_RGB);
+        assertThat(image.getWidth()).isEqualTo(4);
+        assertThat(image.getHeight()).isEqualTo(3);
+        assertThat(image.getRGB(0, 0) & 0xffffff).isEqualTo(0x808080);
+        assertThat(image.getRGB(3, 2) & 0xffffff).isEqualTo(0x808080);
+    }
+
+    @Test
+    public void shouldSampleRegion() throws Exception {
+        BufferedImage source = wide(8, 6, false);
+        source.setRGB(0, 0, 8, 2, filled(16, 0xff0000), 0, 8);
+        source.setRGB(0, 2, 8, 4, filled(32, 0x0000ff), 0, 8);
+
+        BufferedImage image = read(write(source, "png"), new Rectangle(0, 1, 8, 5), 2);
+
+        assertThat(image.getHeight()).isEqualTo(3);
+        assertThat(image.getRGB(0, 0) & 0xffffff).isEqualTo(0x800080);
+        assertThat(image.getRGB(0, 2) & 0xffffff).isEqualTo(0x0000ff);
+    }
+
+    @Test
+    public void shouldLeaveNarrowSamplesToReader() throws Exception {
+        BufferedImage image = read(write(checkerboard(new BufferedImage(8, 6, BufferedImage.TYPE_INT_RGB)), "png"), null, 2);
+
+        assertThat(image.getWidth()).isEqualTo(4);
+        assertThat(image.getRGB(0, 0) & 0xffffff).isEqualTo(0xffffff);
+    }
+
+    @Test
+    public void shouldWeightColorByAlpha() throws Exception {
+        BufferedImage source = wide(2, 2, true);
+        source.setRGB(0, 0, 2, 2, new int[]{0xffff0000, 0x000000ff, 0x000000ff, 0x000000ff}, 0, 2);
+
+        BufferedImage image = read(write(source, "png"), null, 2);
+
+        assertThat(image.getType()).isEqualTo(BufferedImage.TYPE_INT_ARGB);
+        assertThat(image.getRGB(0, 0)).isEqualTo(0x40ff0000);
+    }
+
+    @Test
+    public void shouldReduceWideSamples() throws Exception {
+        BufferedImage source = new BufferedImage(4, 4, BufferedImage.TYPE_USHORT_GRAY);
+        WritableRaster raster = source.getRaster();
+
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                raster.setSample(x, y, 0, 0x8000);
+            }
+        }
+
+        for (String format : new String[]{"png", "tiff"}) {
+            BufferedImage image = read(write(source, format), null, 1);
+
+            assertThat(image.getType()).isEqualTo(BufferedImage.TYPE_BYTE_GRAY);
+            assertThat(image.getWidth()).isEqualTo(4);
+            assertThat(image.getRaster().getSample(3, 3, 0)).isEqualTo(0x80);
+        }
+    }
+
+    @Test
+    public void shouldFallBackForInterlacedRows() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(checkerboard(wide(8, 6, false)), null, null), param);
+        } finally {
+            writer.dispose();
+        }
+
+        BufferedImage image = read(output.toByteArray(), null, 2);
+
+        assertThat(image.getWidth()).isEqualTo(4);
+        assertThat(image.getHeight()).isEqualTo(3);
+    }
+
+    /**
+     * Create image of 16 bit sRGB samples
+     */
+    private BufferedImage wide(int width, int height, boolean alpha) {
+        ColorModel model = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), alpha, false,
+                alpha ? Transparency.TRANSLUCENT : Transparency.OPAQUE, DataBuffer.TYPE_USHORT);
+
+        return new BufferedImage(model, model.createCompatibleWritableRaster(width, height), false, null);
+    }
+
+    /**
+     * Fill image with white and black pixels
+     */
+    private BufferedImage checkerboard(BufferedImage image) {
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, (x + y) % 2 == 0 ? 0xffffffff : 0xff000000);
+            }
+        }
+
+        return image;
+    }
+
+    private int[] filled(int length, int rgb) {
+        int[] pixels = new int[length];
+        Arrays.fill(pixels, rgb);
+        return pixels;
+    }
+
+    private byte[] write(BufferedImage image, String format) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, format, output);
+        return output.toByteArray();
+    }
+
+    private BufferedImage read(byte[] bytes, Rectangle region, int sampling) throws Exception {
+        ImageReadPlanner planner = (width, height) -> new ImageReadPlan(region, sampling, false);
+        return new InputStreamImageInput(planner).read(new ByteArrayInputStream(bytes)).getSource();
+    }
+}
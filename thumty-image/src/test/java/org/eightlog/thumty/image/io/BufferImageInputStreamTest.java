@@ -0,0 +1,74 @@
+package org.eightlog.thumty.image.io;
+
+import com.google.common.io.ByteStreams;
+import io.vertx.core.buffer.Buffer;
+import org.eightlog.thumty.image.Image;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class BufferImageInputStreamTest {
+
+    @Test
+    public void shouldReadAcrossChunks() throws Exception {
+        BufferImageInputStream input = new BufferImageInputStream(Arrays.asList(
+                Buffer.buffer(new byte[]{0, 1, 2}), Buffer.buffer(), Buffer.buffer(new byte[]{3}), Buffer.buffer(new byte[]{4, 5, 6, 7})));
+
+        byte[] bytes = new byte[6];
+
+        assertThat(input.length()).isEqualTo(8);
+        assertThat(input.read()).isEqualTo(0);
+        assertThat(input.read(bytes, 0, 6)).isEqualTo(6);
+        assertThat(bytes).isEqualTo(new byte[]{1, 2, 3, 4, 5, 6});
+        assertThat(input.read(bytes, 0, 6)).isEqualTo(1);
+        assertThat(input.read()).isEqualTo(-1);
+    }
+
+    @Test
+    public void shouldSeek() throws Exception {
+        BufferImageInputStream input = new BufferImageInputStream(Arrays.asList(
+                Buffer.buffer(new byte[]{0, 1, 2}), Buffer.buffer(new byte[]{3}), Buffer.buffer(new byte[]{4, 5, 6, (byte) 255})));
+
+        input.seek(7);
+        assertThat(input.read()).isEqualTo(255);
+
+        input.seek(3);
+        assertThat(input.read()).isEqualTo(3);
+
+        input.seek(1);
+        assertThat(input.readShort()).isEqualTo((short) 0x0102);
+    }
+
+    @Test
+    public void shouldDecodeImageFromChunks() throws Exception {
+        byte[] bytes;
+
+        try (InputStream in = getClass().getResourceAsStream("/original.jpg")) {
+            bytes = ByteStreams.toByteArray(in);
+        }
+
+        List<Buffer> chunks = new ArrayList<>();
+
+        for (int i = 0; i < bytes.length; i += 1000) {
+            chunks.add(Buffer.buffer(Arrays.copyOfRange(bytes, i, Math.min(bytes.length, i + 1000))));
+        }
+
+        BufferedImage expected = ImageIO.read(getClass().getResourceAsStream("/original.jpg"));
+        Image image = new BufferImageInput().read(chunks);
+
+        assertThat(image.getFormat()).isEqualToIgnoringCase("jpeg");
+        assertThat(image.getSource().getWidth()).isEqualTo(expected.getWidth());
+        assertThat(image.getSource().getHeight()).isEqualTo(expected.getHeight());
+        assertThat(image.getSource().getRGB(10, 10)).isEqualTo(expected.getRGB(10, 10));
+    }
+}
@@ -0,0 +1,102 @@
+package org.eightlog.thumty.image.io;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class CodecRegistryTest {
+
+    @Test
+    public void shouldDetectFormatByMagic() throws Exception {
+        CodecRegistry codecs = new CodecRegistry(Collections.emptyMap());
+
+        for (String format : new String[]{"png", "jpeg", "gif", "bmp", "tiff"}) {
+            try (ImageInputStream input = createInput(format)) {
+                ImageReader reader = codecs.getReader(input);
+
+                assertThat(reader.getOriginatingProvider().getFormatNames()).contains(format);
+                assertThat(input.getStreamPosition()).isEqualTo(0);
+            }
+        }
+    }
+
+    @Test
+    public void shouldFallBackToRegisteredReaders() throws Exception {
+        CodecRegistry codecs = new CodecRegistry(Collections.emptyMap());
+
+        try (ImageInputStream input = createInput("wbmp")) {
+            assertThat(codecs.getReader(input).getFormatName()).isEqualToIgnoringCase("wbmp");
+        }
+    }
+
+    @Test(expected = UnsupportedFormatException.class)
+    public void shouldFailOnUnknownFormat() throws Exception {
+        CodecRegistry codecs = new CodecRegistry(Collections.emptyMap());
+
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(new byte[]{1, 2, 3}))) {
+            codecs.getReader(input);
+        }
+    }
+
+    @Test
+    public void shouldResolvePreferredPlugin() throws Exception {
+        for (String prefix : new String[]{"com.sun.imageio", "com.twelvemonkeys"}) {
+            CodecRegistry codecs = new CodecRegistry(ImmutableMap.of("jpeg", prefix));
+
+            try (ImageInputStream input = createInput("jpeg")) {
+                assertThat(codecs.getReader(input).getClass().getName()).startsWith(prefix);
+            }
+        }
+    }
+
+    @Test
+    public void shouldReuseReleasedReadersAndWriters() throws Exception {
+        CodecRegistry codecs = new CodecRegistry(Collections.emptyMap());
+
+        try (ImageInputStream input = createInput("png")) {
+            ImageReader reader = codecs.getReader(input);
+
+            reader.setInput(input);
+            codecs.release(reader);
+
+            assertThat(reader.getInput()).isNull();
+            assertThat(codecs.getReader(input)).isSameAs(reader);
+        }
+
+        ImageWriter writer = codecs.getWriter("png");
+        codecs.release(writer);
+
+        assertThat(codecs.getWriter("PNG")).isSameAs(writer);
+    }
+
+    @Test
+    public void shouldDescribeWriters() throws Exception {
+        CodecRegistry codecs = new CodecRegistry(Collections.emptyMap());
+
+        assertThat(codecs.canWrite("jpg")).isTrue();
+        assertThat(codecs.canWrite("unknown")).isFalse();
+        assertThat(codecs.getMimeType("png")).isEqualTo("image/png");
+        assertThat(codecs.getMimeType("unknown")).isNull();
+        assertThat(codecs.getCompressionTypes("jpeg")).isNotEmpty();
+    }
+
+    private ImageInputStream createInput(String format) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(16, 16, BufferedImage.TYPE_BYTE_BINARY), format, output);
+
+        return ImageIO.createImageInputStream(new ByteArrayInputStream(output.toByteArray()));
+    }
+}
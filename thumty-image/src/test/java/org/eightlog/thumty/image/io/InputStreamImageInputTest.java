@@ -0,0 +1,335 @@
+package org.eightlog.thumty.image.io;
+
+import org.eightlog.thumty.image.Image;
+import org.eightlog.thumty.image.exif.ExifJpegs;
+import org.eightlog.thumty.image.exif.Orientation;
+import org.junit.Test;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class InputStreamImageInputTest {
+
+    private final static int TIFF_IFD_ENTRIES = 11;
+
+    @Test
+    public void shouldDecodeRegion() throws Exception {
+        BufferedImage expected = read((width, height) -> new ImageReadPlan(1)).getSource();
+        BufferedImage image = read((width, height) -> new ImageReadPlan(new Rectangle(16, 8, 40, 24), 1, false)).getSource();
+
+        assertThat(image.getWidth()).isEqualTo(40);
+        assertThat(image.getHeight()).isEqualTo(24);
+        assertThat(image.getRGB(0, 0)).isEqualTo(expected.getRGB(16, 8));
+        assertThat(image.getRGB(39, 23)).isEqualTo(expected.getRGB(55, 31));
+    }
+
+    @Test
+    public void shouldDecodeSampledRegion() throws Exception {
+        BufferedImage image = read((width, height) -> new ImageReadPlan(new Rectangle(16, 8, 40, 24), 2, false)).getSource();
+
+        assertThat(image.getWidth()).isEqualTo(20);
+        assertThat(image.getHeight()).isEqualTo(12);
+    }
+
+    @Test
+    public void shouldClipRegion() throws Exception {
+        Rectangle[] bounds = new Rectangle[1];
+
+        BufferedImage image = read((width, height) -> {
+            bounds[0] = new Rectangle(0, 0, width, height);
+            return new ImageReadPlan(new Rectangle(width - 10, height - 10, 40, 40), 1, false);
+        }).getSource();
+
+        assertThat(image.getWidth()).isEqualTo(10);
+        assertThat(image.getHeight()).isEqualTo(10);
+
+        image = read((width, height) -> new ImageReadPlan(new Rectangle(width, height, 40, 40), 1, false)).getSource();
+
+        assertThat(image.getWidth()).isEqualTo(bounds[0].width);
+        assertThat(image.getHeight()).isEqualTo(bounds[0].height);
+    }
+
+    @Test
+    public void shouldDecodeGray() throws Exception {
+        BufferedImage image = read((width, height) -> new ImageReadPlan(null, 1, true)).getSource();
+        BufferedImage expected = ImageIO.read(getClass().getResourceAsStream("/original.jpg"));
+
+        assertThat(image.getType()).isEqualTo(BufferedImage.TYPE_BYTE_GRAY);
+        assertThat(image.getWidth()).isEqualTo(expected.getWidth());
+        assertThat(image.getHeight()).isEqualTo(expected.getHeight());
+    }
+
+    @Test
+    public void shouldDecodeEmbeddedThumbnail() throws Exception {
+        byte[] jpeg = createJpeg(400, 300, 160, 120);
+        Dimension[] decoded = new Dimension[1];
+
+        BufferedImage image = new InputStreamImageInput(new ImageReadPlanner() {
+            @Override
+            public ImageReadPlan plan(int width, int height) {
+                return new ImageReadPlan(null, 1, false, new Dimension(100, 75));
+            }
+
+            @Override
+            public void thumbnailDecoded(int width, int height) {
+                decoded[0] = new Dimension(width, height);
+            }
+        }).read(new ByteArrayInputStream(jpeg)).getSource();
+
+        assertThat(image.getWidth()).isEqualTo(160);
+        assertThat(image.getHeight()).isEqualTo(120);
+        assertThat(image.getType()).isNotEqualTo(BufferedImage.TYPE_CUSTOM);
+        assertThat(decoded[0]).isEqualTo(new Dimension(160, 120));
+    }
+
+    @Test
+    public void shouldSkipSmallEmbeddedThumbnail() throws Exception {
+        byte[] jpeg = createJpeg(400, 300, 160, 120);
+
+        BufferedImage image = read(jpeg, (width, height) -> new ImageReadPlan(null, 2, false, new Dimension(200, 150))).getSource();
+
+        assertThat(image.getWidth()).isEqualTo(200);
+        assertThat(image.getHeight()).isEqualTo(150);
+    }
+
+    @Test
+    public void shouldSkipLetterboxedEmbeddedThumbnail() throws Exception {
+        byte[] jpeg = createJpeg(400, 300, 120, 120);
+
+        BufferedImage image = read(jpeg, (width, height) -> new ImageReadPlan(null, 1, false, new Dimension(100, 75))).getSource();
+
+        assertThat(image.getWidth()).isEqualTo(400);
+        assertThat(image.getHeight()).isEqualTo(300);
+    }
+
+    @Test
+    public void shouldDecodeExifThumbnail() throws Exception {
+        byte[] jpeg = ExifJpegs.create(new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB), 1,
+                new BufferedImage(160, 120, BufferedImage.TYPE_INT_RGB));
+
+        BufferedImage image = read(jpeg, (width, height) -> new ImageReadPlan(null, 1, false, new Dimension(100, 75))).getSource();
+
+        assertThat(image.getWidth()).isEqualTo(160);
+        assertThat(image.getHeight()).isEqualTo(120);
+
+        image = read(jpeg, (width, height) -> new ImageReadPlan(null, 2, false, new Dimension(200, 150))).getSource();
+
+        assertThat(image.getWidth()).isEqualTo(200);
+        assertThat(image.getHeight()).isEqualTo(150);
+    }
+
+    @Test
+    public void shouldPlanOrientedImage() throws Exception {
+        byte[] jpeg = ExifJpegs.create(new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB), 6, null);
+        Dimension[] planned = new Dimension[1];
+
+        // Top of rotated right image is left side of source
+        Image image = read(jpeg, (width, height) -> {
+            planned[0] = new Dimension(width, height);
+            return new ImageReadPlan(new Rectangle(0, 0, 300, 100), 1, false);
+        });
+
+        assertThat(planned[0]).isEqualTo(new Dimension(300, 400));
+        assertThat(image.getOrientation()).isEqualTo(Orientation.RIGHT_TOP);
+        assertThat(image.getSource().getWidth()).isEqualTo(100);
+        assertThat(image.getSource().getHeight()).isEqualTo(300);
+    }
+
+    @Test
+    public void shouldDecodeOrientedExifThumbnail() throws Exception {
+        byte[] jpeg = ExifJpegs.create(new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB), 8,
+                new BufferedImage(160, 120, BufferedImage.TYPE_INT_RGB));
+
+        Image image = read(jpeg, (width, height) -> new ImageReadPlan(null, 1, false, new Dimension(75, 100)));
+
+        assertThat(image.getOrientation()).isEqualTo(Orientation.LEFT_BOTTOM);
+        assertThat(image.getSource().getWidth()).isEqualTo(160);
+        assertThat(image.getSource().getHeight()).isEqualTo(120);
+    }
+
+    @Test
+    public void shouldProbeOrientedImage() throws Exception {
+        byte[] jpeg = ExifJpegs.create(new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB), 6, null);
+
+        ImageInfo info = new InputStreamImageInput().probe(new ByteArrayInputStream(jpeg));
+
+        assertThat(info.getFormat()).isEqualToIgnoringCase("jpeg");
+        assertThat(info.getWidth()).isEqualTo(400);
+        assertThat(info.getHeight()).isEqualTo(300);
+        assertThat(info.getSize()).isEqualTo(new Dimension(300, 400));
+        assertThat(info.getOrientation()).isEqualTo(Orientation.RIGHT_TOP);
+        assertThat(info.hasAlpha()).isFalse();
+    }
+
+    @Test
+    public void shouldProbeAlpha() throws Exception {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(40, 30, BufferedImage.TYPE_INT_ARGB), "png", png);
+
+        ImageInfo info = new InputStreamImageInput().probe(new ByteArrayInputStream(png.toByteArray()));
+
+        assertThat(info.getFormat()).isEqualToIgnoringCase("png");
+        assertThat(info.getSize()).isEqualTo(new Dimension(40, 30));
+        assertThat(info.getOrientation()).isEqualTo(Orientation.TOP_LEFT);
+        assertThat(info.hasAlpha()).isTrue();
+    }
+
+    @Test
+    public void shouldPlanImageInfo() throws Exception {
+        byte[] jpeg = ExifJpegs.create(new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB), 6, null);
+        ImageInfo[] planned = new ImageInfo[1];
+
+        read(jpeg, new ImageReadPlanner() {
+            @Override
+            public ImageReadPlan plan(int width, int height) {
+                return new ImageReadPlan(1);
+            }
+
+            @Override
+            public ImageReadPlan plan(ImageInfo info) {
+                planned[0] = info;
+                return ImageReadPlanner.super.plan(info);
+            }
+        });
+
+        assertThat(planned[0]).isEqualTo(new ImageInfo(planned[0].getFormat(), 400, 300, Orientation.RIGHT_TOP, false));
+    }
+
+    @Test
+    public void shouldDecodeReducedResolutionSubfile() throws Exception {
+        byte[] tiff = createTiff(false, true);
+        int[] decoded = new int[3];
+
+        Image image = read(tiff, new ImageReadPlanner() {
+            @Override
+            public ImageReadPlan plan(int width, int height) {
+                return new ImageReadPlan(new Rectangle(200, 0, 200, 300), 2, false, null, new Dimension(90, 60));
+            }
+
+            @Override
+            public void subimageDecoded(int index, int width, int height) {
+                decoded[0] = index;
+                decoded[1] = width;
+                decoded[2] = height;
+            }
+        });
+
+        // Region is scaled to subfile, subfile isn't sampled
+        assertThat(image.getSource().getWidth()).isEqualTo(50);
+        assertThat(image.getSource().getHeight()).isEqualTo(75);
+        assertThat(decoded).isEqualTo(new int[]{2, 100, 75});
+    }
+
+    @Test
+    public void shouldSkipSmallSubfilesAndPages() throws Exception {
+        byte[] tiff = createTiff(false, true);
+
+        BufferedImage image = read(tiff, (width, height) -> new ImageReadPlan(null, 1, false, null, new Dimension(150, 100))).getSource();
+
+        assertThat(image.getWidth()).isEqualTo(400);
+        assertThat(image.getHeight()).isEqualTo(300);
+    }
+
+    /**
+     * Create uncompressed 400x300 RGB TIFF with subfiles of halving size. IFDs are written by hand, since not every
+     * TIFF writer keeps NewSubfileType field of merged metadata.
+     *
+     * @param reduced the reduced resolution flags of subfiles
+     */
+    private byte[] createTiff(boolean... reduced) throws Exception {
+        ByteArrayOutputStream tiff = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(tiff);
+
+        // Header, first IFD at 8
+        data.writeBytes("MM");
+        data.writeShort(42);
+        data.writeInt(8);
+
+        for (int i = 0; i <= reduced.length; i++) {
+            int width = 400 >> i;
+            int height = 300 >> i;
+            int type = i > 0 && reduced[i - 1] ? 1 : 0;
+
+            // IFD is followed by BitsPerSample values and strip of pixels
+            int bits = data.size() + 2 + TIFF_IFD_ENTRIES * 12 + 4;
+            int pixels = bits + 6;
+            int next = i < reduced.length ? pixels + width * height * 3 : 0;
+
+            data.writeShort(TIFF_IFD_ENTRIES);
+            writeTiffField(data, 254, 4, 1, type);
+            writeTiffField(data, 256, 4, 1, width);
+            writeTiffField(data, 257, 4, 1, height);
+            writeTiffField(data, 258, 3, 3, bits);
+            writeTiffField(data, 259, 3, 1, 1 << 16);
+            writeTiffField(data, 262, 3, 1, 2 << 16);
+            writeTiffField(data, 273, 4, 1, pixels);
+            writeTiffField(data, 277, 3, 1, 3 << 16);
+            writeTiffField(data, 278, 4, 1, height);
+            writeTiffField(data, 279, 4, 1, width * height * 3);
+            writeTiffField(data, 284, 3, 1, 1 << 16);
+            data.writeInt(next);
+
+            data.writeShort(8);
+            data.writeShort(8);
+            data.writeShort(8);
+            data.write(new byte[width * height * 3]);
+        }
+
+        return tiff.toByteArray();
+    }
+
+    /**
+     * Write TIFF IFD entry, short values are left justified in value field
+     */
+    private void writeTiffField(DataOutputStream data, int tag, int type, int count, int value) throws IOException {
+        data.writeShort(tag);
+        data.writeShort(type);
+        data.writeInt(count);
+        data.writeInt(value);
+    }
+
+    /**
+     * Create JPEG with embedded JFIF thumbnail
+     */
+    private byte[] createJpeg(int width, int height, int thumbnailWidth, int thumbnailHeight) throws Exception {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        BufferedImage thumbnail = new BufferedImage(thumbnailWidth, thumbnailHeight, BufferedImage.TYPE_INT_RGB);
+
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(stream);
+            writer.write(new IIOImage(image, Collections.singletonList(thumbnail), null));
+        } finally {
+            writer.dispose();
+        }
+
+        return output.toByteArray();
+    }
+
+    private Image read(byte[] bytes, ImageReadPlanner planner) throws Exception {
+        return new InputStreamImageInput(planner).read(new ByteArrayInputStream(bytes));
+    }
+
+    private Image read(ImageReadPlanner planner) throws Exception {
+        try (InputStream input = getClass().getResourceAsStream("/original.jpg")) {
+            return new InputStreamImageInput(planner).read(input);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.eightlog.thumty.image.resize;
+
+import org.eightlog.thumty.image.exif.Orientation;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.eightlog.thumty.image.ImageAssertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class SeparableResizerTest {
+
+    @Test
+    public void shouldResizeHalves() throws Exception {
+        for (SeparableResizer.Kernel kernel : SeparableResizer.Kernel.values()) {
+            BufferedImage image = new SeparableResizer(null, kernel)
+                    .resize(createHalves(400, 200, BufferedImage.TYPE_INT_RGB), create(40, 20, BufferedImage.TYPE_INT_RGB));
+
+            assertThat(image).hasWidth(40).hasHeight(20);
+            assertThat(image).at(5, 10).hasColor(Color.BLACK);
+            assertThat(image).at(35, 10).hasColor(Color.WHITE);
+        }
+    }
+
+    @Test
+    public void shouldResizeByteImages() throws Exception {
+        for (int type : new int[]{BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_USHORT_GRAY}) {
+            BufferedImage image = new SeparableResizer()
+                    .resize(createHalves(300, 300, type), create(30, 30, type));
+
+            assertThat(image).at(5, 15).hasColor(Color.BLACK);
+            assertThat(image).at(25, 15).hasColor(Color.WHITE);
+        }
+    }
+
+    @Test
+    public void shouldKeepColorOfTransparentPixels() throws Exception {
+        for (int type : new int[]{BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_4BYTE_ABGR}) {
+            BufferedImage source = create(200, 200, type);
+
+            Graphics2D g = source.createGraphics();
+            g.setColor(Color.RED);
+            g.fillRect(0, 0, 100, 200);
+            g.dispose();
+
+            BufferedImage image = new SeparableResizer().resize(source, create(20, 20, type));
+
+            assertThat(image).at(5, 10).hasColor(Color.RED);
+            assertThat(image).at(15, 10).hasColor(new Color(0, true));
+
+            // Transparent half doesn't darken edge pixel
+            assertThat(image).at(9, 10).hasSimilarColor(Color.RED);
+        }
+    }
+
+    @Test
+    public void shouldResizeRegion() throws Exception {
+        BufferedImage image = new SeparableResizer(new Rectangle(200, 0, 200, 200))
+                .resize(createHalves(400, 200, BufferedImage.TYPE_INT_RGB), create(20, 20, BufferedImage.TYPE_INT_RGB));
+
+        assertThat(image).at(1, 1).hasColor(Color.WHITE);
+        assertThat(image).at(18, 18).hasColor(Color.WHITE);
+    }
+
+    @Test
+    public void shouldOrientWhileResizing() throws Exception {
+        // Top half of rotated right image is its left half
+        BufferedImage image = new SeparableResizer()
+                .resize(createHalves(400, 200, BufferedImage.TYPE_INT_RGB), create(10, 20, BufferedImage.TYPE_INT_RGB),
+                        Orientation.RIGHT_TOP);
+
+        assertThat(image).hasWidth(10).hasHeight(20);
+        assertThat(image).at(5, 2).hasColor(Color.BLACK);
+        assertThat(image).at(5, 17).hasColor(Color.WHITE);
+
+        image = new SeparableResizer()
+                .resize(createHalves(400, 200, BufferedImage.TYPE_INT_RGB), create(40, 20, BufferedImage.TYPE_INT_RGB),
+                        Orientation.TOP_RIGHT);
+
+        assertThat(image).at(5, 10).hasColor(Color.WHITE);
+        assertThat(image).at(35, 10).hasColor(Color.BLACK);
+    }
+
+    @Test
+    public void shouldResizeInParallelAsSerial() throws Exception {
+        BufferedImage source = create(2000, 1500, BufferedImage.TYPE_INT_RGB);
+
+        Graphics2D g = source.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.RED, 2000, 1500, Color.BLUE));
+        g.fillRect(0, 0, 2000, 1500);
+        g.dispose();
+
+        BufferedImage serial = new SeparableResizer(null, SeparableResizer.Kernel.LANCZOS, new ForkJoinPool(1))
+                .resize(source, create(300, 225, BufferedImage.TYPE_INT_RGB));
+
+        BufferedImage parallel = new SeparableResizer(null, SeparableResizer.Kernel.LANCZOS, new ForkJoinPool(4))
+                .resize(source, create(300, 225, BufferedImage.TYPE_INT_RGB));
+
+        for (int y = 0; y < 225; y += 7) {
+            for (int x = 0; x < 300; x += 7) {
+                assertThat(parallel).at(x, y).hasColor(new Color(serial.getRGB(x, y)));
+            }
+        }
+    }
+
+    /**
+     * Create image with black left half and white right half
+     */
+    private BufferedImage createHalves(int width, int height, int type) {
+        BufferedImage image = create(width, height, type);
+
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(width / 2, 0, width - width / 2, height);
+        g.dispose();
+
+        return image;
+    }
+
+    private BufferedImage create(int width, int height, int type) {
+        return new BufferedImage(width, height, type);
+    }
+}
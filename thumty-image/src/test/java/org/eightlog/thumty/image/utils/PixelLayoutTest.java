@@ -0,0 +1,107 @@
+package org.eightlog.thumty.image.utils;
+
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+
+import static org.eightlog.thumty.image.ImageAssertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class PixelLayoutTest {
+
+    @Test
+    public void shouldConvertOpaqueImagesToRGB() throws Exception {
+        for (int type : new int[]{BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_INT_BGR, BufferedImage.TYPE_USHORT_565_RGB}) {
+            BufferedImage image = PixelLayout.CANONICAL.apply(create(type, new Color(200, 100, 50)));
+
+            assertThat(image.getType()).isEqualTo(BufferedImage.TYPE_INT_RGB);
+            assertThat(image).at(1, 1).hasSimilarColor(new Color(200, 100, 50));
+        }
+    }
+
+    @Test
+    public void shouldConvertAlphaImagesToPremultipliedARGB() throws Exception {
+        for (int type : new int[]{BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_4BYTE_ABGR_PRE}) {
+            BufferedImage image = PixelLayout.CANONICAL.apply(create(type, new Color(200, 100, 50, 128)));
+
+            assertThat(image.getType()).isEqualTo(BufferedImage.TYPE_INT_ARGB_PRE);
+            assertThat(image).at(1, 1).hasSimilarColor(new Color(200, 100, 50));
+            assertThat(image.getRGB(1, 1) >>> 24).isEqualTo(128);
+        }
+    }
+
+    @Test
+    public void shouldKeepCanonicalAndGrayImages() throws Exception {
+        for (int type : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB_PRE, BufferedImage.TYPE_BYTE_GRAY}) {
+            BufferedImage image = create(type, Color.GRAY);
+
+            assertThat(PixelLayout.CANONICAL.apply(image)).isSameAs(image);
+        }
+    }
+
+    @Test
+    public void shouldConvertOnlyCustomImagesOfDecodedLayout() throws Exception {
+        BufferedImage image = create(BufferedImage.TYPE_3BYTE_BGR, Color.RED);
+
+        assertThat(PixelLayout.DECODED.apply(image)).isSameAs(image);
+
+        ColorModel model = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), false, false,
+                Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+        WritableRaster raster = model.createCompatibleWritableRaster(4, 4);
+        raster.setPixel(1, 1, new int[]{10, 20, 30});
+
+        BufferedImage converted = PixelLayout.DECODED.apply(new BufferedImage(model, raster, false, null));
+
+        assertThat(converted.getType()).isEqualTo(BufferedImage.TYPE_INT_RGB);
+        assertThat(converted).at(1, 1).hasColor(new Color(10, 20, 30));
+    }
+
+    @Test
+    public void shouldComposeAlphaOverBlackWhenConvertedToRGB() throws Exception {
+        BufferedImage image = create(BufferedImage.TYPE_INT_ARGB, new Color(200, 100, 50, 128));
+
+        BufferedImage converted = BufferedImages.convert(image, BufferedImage.TYPE_INT_RGB);
+        BufferedImage drawn = BufferedImages.copy(image, BufferedImage.TYPE_INT_RGB);
+
+        assertThat(converted).at(1, 1).hasSimilarColor(new Color(drawn.getRGB(1, 1)));
+    }
+
+    @Test
+    public void shouldPremultiplyColors() throws Exception {
+        for (int argb : new int[]{0x80c86432, 0xffc86432, 0x01ffffff, 0x00ffffff, 0xfe0080ff}) {
+            int premultiplied = BufferedImages.premultiply(argb);
+            int restored = BufferedImages.unpremultiply(premultiplied);
+
+            assertThat(premultiplied >>> 24).isEqualTo(argb >>> 24);
+
+            // Premultiplied colors of opaque enough pixels are restored up to rounding
+            if ((argb >>> 24) >= 0x80) {
+                for (int shift = 0; shift < 24; shift += 8) {
+                    assertThat(Math.abs(((restored >> shift) & 0xff) - ((argb >> shift) & 0xff))).isLessThanOrEqualTo(1);
+                }
+            }
+        }
+
+        assertThat(BufferedImages.premultiply(0x00ffffff)).isEqualTo(0);
+    }
+
+    private BufferedImage create(int type, Color color) {
+        BufferedImage image = new BufferedImage(4, 4, type);
+
+        Graphics2D g = image.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.setColor(color);
+        g.fillRect(0, 0, 4, 4);
+        g.dispose();
+
+        return image;
+    }
+}
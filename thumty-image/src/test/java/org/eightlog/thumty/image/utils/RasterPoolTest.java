@@ -0,0 +1,127 @@
+package org.eightlog.thumty.image.utils;
+
+import org.eightlog.thumty.image.Image;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import static org.eightlog.thumty.image.ImageAssertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class RasterPoolTest {
+
+    @Test
+    public void shouldCreateImagesOfRequestedType() throws Exception {
+        RasterPool pool = new RasterPool(RasterPool.DEFAULT_MAX_RETAINED_BYTES);
+
+        for (int type : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB_PRE, BufferedImage.TYPE_3BYTE_BGR,
+                BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY}) {
+            BufferedImage image = pool.createImage(1000, 600, type);
+
+            assertThat(image.getType()).isEqualTo(type);
+            assertThat(image).hasWidth(1000).hasHeight(600);
+        }
+    }
+
+    @Test
+    public void shouldReuseReleasedPixelsCleared() throws Exception {
+        RasterPool pool = new RasterPool(RasterPool.DEFAULT_MAX_RETAINED_BYTES);
+
+        BufferedImage image = fill(pool.createImage(1000, 600, BufferedImage.TYPE_INT_RGB), Color.RED);
+        int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+        pool.release(image);
+
+        assertThat(pool.getRetainedBytes()).isEqualTo(data.length * 4L);
+
+        BufferedImage reused = pool.createImage(990, 600, BufferedImage.TYPE_INT_RGB);
+
+        assertThat(((DataBufferInt) reused.getRaster().getDataBuffer()).getData()).isSameAs(data);
+        assertThat(reused).hasWidth(990).hasHeight(600);
+        assertThat(reused).at(989, 599).hasColor(Color.BLACK);
+        assertThat(pool.getHits()).isEqualTo(1);
+        assertThat(pool.getMisses()).isEqualTo(1);
+        assertThat(pool.getHitRate()).isEqualTo(0.5);
+        assertThat(pool.getRetainedBytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldNotPoolSmallImages() throws Exception {
+        RasterPool pool = new RasterPool(RasterPool.DEFAULT_MAX_RETAINED_BYTES);
+
+        pool.release(pool.createImage(100, 100, BufferedImage.TYPE_INT_RGB));
+        pool.release(new BufferedImage(1000, 600, BufferedImage.TYPE_INT_RGB));
+
+        assertThat(pool.getMisses()).isEqualTo(0);
+        assertThat(pool.getRetainedBytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldReleaseOnce() throws Exception {
+        RasterPool pool = new RasterPool(RasterPool.DEFAULT_MAX_RETAINED_BYTES);
+
+        BufferedImage image = pool.createImage(1000, 600, BufferedImage.TYPE_INT_RGB);
+
+        pool.release(image.getSubimage(10, 10, 100, 100));
+        pool.release(image);
+
+        assertThat(pool.getRetainedBytes()).isGreaterThan(0);
+
+        BufferedImage first = pool.createImage(1000, 600, BufferedImage.TYPE_INT_RGB);
+        BufferedImage second = pool.createImage(1000, 600, BufferedImage.TYPE_INT_RGB);
+
+        assertThat(first.getRaster().getDataBuffer()).isNotSameAs(second.getRaster().getDataBuffer());
+        assertThat(pool.getHits()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotRetainOverLimit() throws Exception {
+        RasterPool pool = new RasterPool(RasterPool.DEFAULT_MAX_RETAINED_BYTES);
+
+        BufferedImage first = pool.createImage(1000, 600, BufferedImage.TYPE_INT_RGB);
+        BufferedImage second = pool.createImage(1000, 600, BufferedImage.TYPE_INT_RGB);
+
+        pool.release(first);
+        pool.release(second);
+
+        long retained = pool.getRetainedBytes();
+
+        pool.setMaxRetainedBytes(retained / 2);
+
+        assertThat(pool.getRetainedBytes()).isEqualTo(retained / 2);
+
+        pool.setMaxRetainedBytes(0);
+        pool.release(pool.createImage(1000, 600, BufferedImage.TYPE_INT_RGB));
+
+        assertThat(pool.getRetainedBytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldReleaseReplacedImageSource() throws Exception {
+        BufferedImage source = RasterPool.DEFAULT.createImage(1000, 600, BufferedImage.TYPE_INT_RGB);
+        Image image = new Image(source, "png");
+
+        long retained = RasterPool.DEFAULT.getRetainedBytes();
+
+        image = image.withSource(source.getSubimage(10, 10, 500, 500));
+
+        assertThat(RasterPool.DEFAULT.getRetainedBytes()).isEqualTo(retained);
+
+        image.withSource(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB));
+
+        assertThat(RasterPool.DEFAULT.getRetainedBytes()).isGreaterThan(retained);
+    }
+
+    private BufferedImage fill(BufferedImage image, Color color) {
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.dispose();
+
+        return image;
+    }
+}
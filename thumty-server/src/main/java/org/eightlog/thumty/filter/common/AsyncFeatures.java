@@ -2,6 +2,7 @@ package org.eightlog.thumty.filter.common;
 
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import org.eightlog.thumty.common.metrics.Metrics;
 import org.eightlog.thumty.feature.DetectionTarget;
 import org.eightlog.thumty.feature.FeatureDetectionService;
 import org.eightlog.thumty.feature.Features;
@@ -10,6 +11,7 @@ import org.eightlog.thumty.image.Image;
 import org.eightlog.thumty.server.params.ThumbAlign;
 import org.eightlog.thumty.server.params.ThumbResize;
 
+import java.awt.*;
 import java.awt.image.BufferedImage;
 
 /**
@@ -21,12 +23,14 @@ public class AsyncFeatures implements AsyncFilter {
     private final String resource;
     private final ThumbAlign align;
     private final ThumbResize resize;
+    private final Metrics metrics;
 
     public AsyncFeatures(Vertx vertx, String resource, ThumbAlign align, ThumbResize resize) {
         this.detector = FeatureDetectionService.createProxy(vertx, FeatureDetectionService.FEATURE_DETECTOR_ADDRESS);
         this.resource = resource;
         this.align = align;
         this.resize = resize;
+        this.metrics = Metrics.createShared(vertx);
     }
 
     @Override
@@ -34,21 +38,31 @@ public class AsyncFeatures implements AsyncFilter {
         Future<Features> future = Future.succeededFuture(new Features());
 
         if (align != null && (resize == null || resize == ThumbResize.FILL)) {
-            future = Future.future();
             switch (align.getType()) {
                 case FACE:
-                    detector.detect(resource, DetectionTarget.FACE, future.completer());
+                    future = Future.future();
+                    detect(DetectionTarget.FACE, future);
                     break;
                 case AUTO:
-                    detector.detect(resource, DetectionTarget.ALL, future.completer());
+                    future = Future.future();
+                    detect(DetectionTarget.ALL, future);
                     break;
             }
         }
 
+        // Features are in oriented image coordinates
         BufferedImage source = image.getSource();
-        int width = source.getWidth();
-        int height = source.getHeight();
+        Dimension size = image.getOrientation().getSize(source.getWidth(), source.getHeight());
 
-        return future.map(features -> features.resize(width, height)).map(features -> image.withFeatures(features.getFeatures()));
+        return future.map(features -> features.resize(size.width, size.height)).map(features -> image.withFeatures(features.getFeatures()));
+    }
+
+    private void detect(DetectionTarget target, Future<Features> future) {
+        long start = System.nanoTime();
+
+        detector.detect(resource, target, res -> {
+            metrics.histogram("thumty_feature_detection_seconds", "Feature detection time", "target", target.name().toLowerCase()).observeSince(start);
+            future.handle(res);
+        });
     }
 }
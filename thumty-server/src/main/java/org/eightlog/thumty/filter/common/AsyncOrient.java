@@ -0,0 +1,37 @@
+package org.eightlog.thumty.filter.common;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import org.eightlog.thumty.common.metrics.Trace;
+import org.eightlog.thumty.filter.AbstractAsyncFilter;
+import org.eightlog.thumty.image.Image;
+import org.eightlog.thumty.image.exif.Orientation;
+import org.eightlog.thumty.image.filter.Orient;
+
+import javax.annotation.Nullable;
+
+/**
+ * Applies pending orientation, that wasn't applied by resize or other filters
+ *
+ * @author Iliya Grushevskiy <iliya.gr@gmail.com>
+ */
+public class AsyncOrient extends AbstractAsyncFilter {
+
+    public AsyncOrient(Vertx vertx) {
+        super(vertx);
+    }
+
+    @Override
+    public Future<Image> apply(Image image, @Nullable Trace trace) {
+        if (image.getOrientation() == Orientation.TOP_LEFT) {
+            return Future.succeededFuture(image);
+        }
+
+        return super.apply(image, trace);
+    }
+
+    @Override
+    protected Image applyBlocking(Image image) {
+        return Orient.INSTANCE.apply(image);
+    }
+}
@@ -8,6 +8,7 @@ import org.eightlog.thumty.image.geometry.*;
 import org.eightlog.thumty.server.params.ThumbAlign;
 import org.eightlog.thumty.server.params.ThumbAlignType;
 
+import javax.annotation.Nullable;
 import java.util.Collections;
 
 /**
@@ -39,12 +40,26 @@ public class AsyncResizeToFill extends AbstractAsyncFilter {
             if (align.getType() == ThumbAlignType.AUTO) {
                 return getAutoAlign(image);
             }
+        }
 
-            if (align.getType() == ThumbAlignType.FOCUS) {
-                return new FocusAlign(new RelativeOrAbsoluteCoordinate(align.getX(), align.getY()));
-            }
+        return getFixedAlign(align);
+    }
 
+    /**
+     * Get align, that doesn't depend on image features
+     *
+     * @param align the thumb align
+     * @return an image align, null if align depends on image features
+     */
+    @Nullable
+    public static Align getFixedAlign(@Nullable ThumbAlign align) {
+        if (align != null) {
             switch (align.getType()) {
+                case FACE:
+                case AUTO:
+                    return null;
+                case FOCUS:
+                    return new FocusAlign(new RelativeOrAbsoluteCoordinate(align.getX(), align.getY()));
                 case BOTTOM:
                     return FixedAlign.BOTTOM;
                 case TOP:
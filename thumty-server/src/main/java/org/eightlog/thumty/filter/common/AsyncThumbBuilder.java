@@ -2,6 +2,7 @@ package org.eightlog.thumty.filter.common;
 
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import org.eightlog.thumty.common.metrics.Trace;
 import org.eightlog.thumty.filter.AsyncFilter;
 import org.eightlog.thumty.filter.Filters;
 import org.eightlog.thumty.image.Image;
@@ -19,26 +20,41 @@ public class AsyncThumbBuilder implements AsyncFilter {
 
     private final Filters filters;
 
+    private final Trace trace;
+
     public AsyncThumbBuilder(Vertx vertx, ThumbParams params) {
+        this(vertx, params, new Trace());
+    }
+
+    public AsyncThumbBuilder(Vertx vertx, ThumbParams params, Trace trace) {
         this.vertx = vertx;
         this.params = params;
         this.filters = Filters.createShared(vertx);
+        this.trace = trace;
     }
 
     /**
-     * Applies converters to image
+     * Applies converters to image, features detection and transformations are traced as separate stages, each filter
+     * records its own stage too.
+     * <p>
+     * Pending image orientation is applied by the first geometry filter, usually in resize pass, or at the end
+     * if no filter applied it.
      *
      * @param image the source image
      * @return a result image future
      */
     @Override
     public Future<Image> apply(Image image) {
-        return AsyncFilter.compose(
-                getFeatureFilter(),
-                getPreProcessFilter(),
-                getTransformFilter(),
-                getPostProcessFilter()
-        ).apply(image);
+        AsyncFilter preProcess = getPreProcessFilter();
+        AsyncFilter transform = getTransformFilter();
+        AsyncFilter postProcess = getPostProcessFilter();
+        AsyncFilter orient = new AsyncOrient(vertx);
+
+        return trace.time("detect", () -> getFeatureFilter().apply(image, trace))
+                .compose(detected -> trace.time("transform", () -> preProcess.apply(detected, trace)
+                        .compose(result -> transform.apply(result, trace))
+                        .compose(result -> postProcess.apply(result, trace))
+                        .compose(result -> orient.apply(result, trace))));
     }
 
     private AsyncFilter getTrim() {
@@ -92,6 +108,11 @@ public class AsyncThumbBuilder implements AsyncFilter {
             for (ThumbFilter params : filterParams) {
                 AsyncFilter filter = filters.getPreProcessFilter(params.getName(), params.getArguments());
 
+                // Filters of other stage would split consecutive filters, that are applied together
+                if (filter == IDENTITY) {
+                    continue;
+                }
+
                 if (composite == null) {
                     composite = filter;
                 } else {
@@ -112,6 +133,11 @@ public class AsyncThumbBuilder implements AsyncFilter {
             for (ThumbFilter params : filterParams) {
                 AsyncFilter filter = filters.getPostProcessFilter(params.getName(), params.getArguments());
 
+                // Filters of other stage would split consecutive filters, that are applied together
+                if (filter == IDENTITY) {
+                    continue;
+                }
+
                 if (composite == null) {
                     composite = filter;
                 } else {
@@ -0,0 +1,253 @@
+package org.eightlog.thumty.server;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Limits number of concurrently executing tasks.
+ * <p>
+ * Tasks exceeding concurrency limit wait in a bounded queue, when queue is full tasks are rejected immediately
+ * with {@link BuildRejectedException}. Queued tasks are started on the context they were submitted from.
+ * Tasks waiting in queue longer than max queue wait are rejected too, tasks abandoned while waiting, e.g. because
+ * their request is already answered, are dropped without starting. Zero concurrency limit disables admission control.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class AdmissionController {
+
+    private final int maxConcurrent;
+
+    private final int maxQueued;
+
+    private final long retryAfter;
+
+    private final long maxQueueWait;
+
+    private final Deque<Waiting> queue = new ArrayDeque<>();
+
+    private int running;
+
+    private long rejected;
+
+    private long abandoned;
+
+    /**
+     * Construct admission controller
+     *
+     * @param maxConcurrent the max number of concurrently running tasks, 0 if not limited
+     * @param maxQueued     the max number of waiting tasks
+     * @param retryAfter    the retry after seconds reported on rejection
+     */
+    public AdmissionController(int maxConcurrent, int maxQueued, long retryAfter) {
+        this(maxConcurrent, maxQueued, retryAfter, 0);
+    }
+
+    /**
+     * Construct admission controller
+     *
+     * @param maxConcurrent the max number of concurrently running tasks, 0 if not limited
+     * @param maxQueued     the max number of waiting tasks
+     * @param retryAfter    the retry after seconds reported on rejection
+     * @param maxQueueWait  the max time in milliseconds task waits in queue, 0 if not limited
+     */
+    public AdmissionController(int maxConcurrent, int maxQueued, long retryAfter, long maxQueueWait) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.retryAfter = retryAfter;
+        this.maxQueueWait = maxQueueWait;
+    }
+
+    /**
+     * Execute task when concurrency limit allows
+     *
+     * @param task the task supplier
+     * @return a task result future
+     */
+    public <T> Future<T> submit(Supplier<Future<T>> task) {
+        return submit(task, () -> false);
+    }
+
+    /**
+     * Execute task when concurrency limit allows, unless it's abandoned while waiting in queue
+     *
+     * @param task      the task supplier
+     * @param abandoned the check if task result is no longer needed
+     * @return a task result future
+     */
+    public <T> Future<T> submit(Supplier<Future<T>> task, BooleanSupplier abandoned) {
+        Objects.requireNonNull(task, "task");
+        Objects.requireNonNull(abandoned, "abandoned");
+
+        if (maxConcurrent <= 0) {
+            return run(task);
+        }
+
+        Future<T> future = Future.future();
+
+        synchronized (this) {
+            if (running < maxConcurrent) {
+                running++;
+            } else if (queue.size() < maxQueued) {
+                Context context = Vertx.currentContext();
+                Waiting waiting = new Waiting(context, () -> start(task, future), future::tryFail, abandoned);
+
+                queue.add(waiting);
+
+                // Expired tasks are also skipped when slot is released, timer rejects them without waiting for it
+                if (context != null && maxQueueWait > 0) {
+                    context.owner().setTimer(maxQueueWait, id -> expire(waiting));
+                }
+
+                return future;
+            } else {
+                rejected++;
+                return Future.failedFuture(new BuildRejectedException("Too many builds in progress", retryAfter));
+            }
+        }
+
+        start(task, future);
+
+        return future;
+    }
+
+    /**
+     * @return a number of running tasks
+     */
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    /**
+     * @return a number of tasks waiting in queue
+     */
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * @return a total number of rejected tasks
+     */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return a total number of queued tasks dropped, since they were abandoned
+     */
+    public synchronized long getAbandoned() {
+        return abandoned;
+    }
+
+    private <T> void start(Supplier<Future<T>> task, Future<T> future) {
+        run(task).setHandler(res -> {
+            release();
+            future.handle(res);
+        });
+    }
+
+    private void release() {
+        Waiting next;
+
+        while (true) {
+            String reason;
+
+            synchronized (this) {
+                next = queue.poll();
+
+                if (next == null) {
+                    running--;
+                    return;
+                }
+
+                if (next.abandoned.getAsBoolean()) {
+                    abandoned++;
+                    reason = "Build abandoned in queue";
+                } else if (next.isExpired()) {
+                    rejected++;
+                    reason = "Build waited in queue too long";
+                } else {
+                    break;
+                }
+            }
+
+            next.reject(new BuildRejectedException(reason, retryAfter));
+        }
+
+        // Slot is passed to the next queued task
+        next.run(next.start);
+    }
+
+    /**
+     * Reject task waiting in queue longer than max queue wait
+     */
+    private void expire(Waiting waiting) {
+        synchronized (this) {
+            if (!queue.remove(waiting)) {
+                return;
+            }
+
+            rejected++;
+        }
+
+        waiting.reject(new BuildRejectedException("Build waited in queue too long", retryAfter));
+    }
+
+    private <T> Future<T> run(Supplier<Future<T>> task) {
+        try {
+            return task.get();
+        } catch (Throwable t) {
+            return Future.failedFuture(t);
+        }
+    }
+
+    /**
+     * Task waiting in queue
+     */
+    private class Waiting {
+
+        private final Context context;
+
+        private final Runnable start;
+
+        private final Handler<Throwable> fail;
+
+        private final BooleanSupplier abandoned;
+
+        private final long queued = System.nanoTime();
+
+        Waiting(Context context, Runnable start, Handler<Throwable> fail, BooleanSupplier abandoned) {
+            this.context = context;
+            this.start = start;
+            this.fail = fail;
+            this.abandoned = abandoned;
+        }
+
+        boolean isExpired() {
+            return maxQueueWait > 0 && System.nanoTime() - queued >= TimeUnit.MILLISECONDS.toNanos(maxQueueWait);
+        }
+
+        void reject(Throwable t) {
+            run(() -> fail.handle(t));
+        }
+
+        /**
+         * Run action on the context task was submitted from
+         */
+        void run(Runnable action) {
+            if (context != null) {
+                context.runOnContext(v -> action.run());
+            } else {
+                action.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.eightlog.thumty.server;
+
+/**
+ * Thrown when thumb build is rejected by admission control.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class BuildRejectedException extends Exception {
+
+    private final long retryAfter;
+
+    public BuildRejectedException(String message, long retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return a number of seconds client should wait before retry
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
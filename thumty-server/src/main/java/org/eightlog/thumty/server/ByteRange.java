@@ -0,0 +1,129 @@
+package org.eightlog.thumty.server;
+
+import javax.annotation.Nullable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Single byte range of the HTTP {@code Range} request header.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class ByteRange {
+
+    /**
+     * Range which doesn't overlap content
+     */
+    public static final ByteRange UNSATISFIABLE = new ByteRange(0, -1);
+
+    private static final Pattern RANGE_PATTERN = Pattern.compile("^\\s*bytes\\s*=\\s*(\\d*)\\s*-\\s*(\\d*)\\s*$");
+
+    private final long start;
+
+    private final long end;
+
+    private ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Parse {@code Range} header value for content of given size.
+     * <p>
+     * Only a single range is supported, for malformed and multiple ranges header should be ignored
+     * and the whole content sent.
+     *
+     * @param header the range header value
+     * @param size   the content size
+     * @return a byte range, {@link #UNSATISFIABLE} or {@code null} if header should be ignored
+     */
+    @Nullable
+    public static ByteRange parse(@Nullable String header, long size) {
+        if (header == null) {
+            return null;
+        }
+
+        Matcher matcher = RANGE_PATTERN.matcher(header);
+
+        if (!matcher.matches()) {
+            return null;
+        }
+
+        String first = matcher.group(1);
+        String last = matcher.group(2);
+
+        try {
+            if (first.isEmpty()) {
+                if (last.isEmpty()) {
+                    return null;
+                }
+
+                // Suffix range
+                long length = Long.parseLong(last);
+
+                if (length == 0 || size == 0) {
+                    return UNSATISFIABLE;
+                }
+
+                return new ByteRange(Math.max(0, size - length), size - 1);
+            } else {
+                long start = Long.parseLong(first);
+                long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+
+                if (!last.isEmpty() && Long.parseLong(last) < start) {
+                    return null;
+                }
+
+                if (start >= size) {
+                    return UNSATISFIABLE;
+                }
+
+                return new ByteRange(start, end);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return true if range overlaps content
+     */
+    public boolean isSatisfiable() {
+        return end >= start;
+    }
+
+    /**
+     * @return a first byte offset
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return a last byte offset, inclusive
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * @return a range length in bytes
+     */
+    public long getLength() {
+        return end - start + 1;
+    }
+
+    /**
+     * Format {@code Content-Range} header value
+     *
+     * @param size the content size
+     * @return a content range header value
+     */
+    public String toContentRange(long size) {
+        if (isSatisfiable()) {
+            return "bytes " + start + "-" + end + "/" + size;
+        } else {
+            return "bytes */" + size;
+        }
+    }
+}
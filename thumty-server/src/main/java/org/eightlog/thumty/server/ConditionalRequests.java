@@ -0,0 +1,96 @@
+package org.eightlog.thumty.server;
+
+import javax.annotation.Nullable;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+
+import static java.time.format.DateTimeFormatter.RFC_1123_DATE_TIME;
+
+/**
+ * Helpers for HTTP conditional requests evaluation.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public final class ConditionalRequests {
+
+    private ConditionalRequests() {
+    }
+
+    /**
+     * Create strong entity tag from content hash
+     *
+     * @param sha1 the content sha1 hash
+     * @return an entity tag or {@code null} if hash is unknown
+     */
+    @Nullable
+    public static String entityTag(@Nullable String sha1) {
+        return sha1 != null ? "\"" + sha1 + "\"" : null;
+    }
+
+    /**
+     * Check whether {@code If-None-Match} header matches entity tag, using weak comparison
+     *
+     * @param ifNoneMatch the header value
+     * @param etag        the current entity tag
+     * @return true if header matches entity tag
+     */
+    public static boolean matches(@Nullable String ifNoneMatch, @Nullable String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+
+            if (tag.equals("*")) {
+                return true;
+            }
+
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Check whether content wasn't modified since {@code If-Modified-Since} header date
+     *
+     * @param ifModifiedSince the header value
+     * @param lastModified    the content modification time
+     * @return true if content wasn't modified
+     */
+    public static boolean notModifiedSince(@Nullable String ifModifiedSince, @Nullable LocalDateTime lastModified) {
+        if (ifModifiedSince == null || lastModified == null) {
+            return false;
+        }
+
+        try {
+            ZonedDateTime since = ZonedDateTime.parse(ifModifiedSince.trim(), RFC_1123_DATE_TIME);
+            ZonedDateTime modified = lastModified.atZone(ZoneId.systemDefault()).truncatedTo(ChronoUnit.SECONDS);
+
+            return !modified.isAfter(since);
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Format local time as HTTP date
+     *
+     * @param time the local time
+     * @return a formatted date
+     */
+    public static String formatDate(LocalDateTime time) {
+        return RFC_1123_DATE_TIME.format(time.atZone(ZoneId.systemDefault()).withZoneSameInstant(ZoneOffset.UTC));
+    }
+}
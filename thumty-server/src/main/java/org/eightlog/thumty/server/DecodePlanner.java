@@ -0,0 +1,472 @@
+package org.eightlog.thumty.server;
+
+import com.google.common.collect.ImmutableSet;
+import org.eightlog.thumty.filter.Filters;
+import org.eightlog.thumty.filter.common.AsyncResizeToFill;
+import org.eightlog.thumty.image.Image;
+import org.eightlog.thumty.image.exif.Orientation;
+import org.eightlog.thumty.image.filter.ResizeToFill;
+import org.eightlog.thumty.image.geometry.Align;
+import org.eightlog.thumty.image.io.ImageInfo;
+import org.eightlog.thumty.image.io.ImageReadPlan;
+import org.eightlog.thumty.image.io.ImageReadPlanner;
+import org.eightlog.thumty.image.io.sampler.DefaultSampler;
+import org.eightlog.thumty.image.io.sampler.ImageSampler;
+import org.eightlog.thumty.image.io.sampler.X2Sampler;
+import org.eightlog.thumty.server.params.ThumbAlign;
+import org.eightlog.thumty.server.params.ThumbAlignType;
+import org.eightlog.thumty.server.params.ThumbCrop;
+import org.eightlog.thumty.server.params.ThumbFilter;
+import org.eightlog.thumty.server.params.ThumbFilters;
+import org.eightlog.thumty.server.params.ThumbParams;
+import org.eightlog.thumty.server.params.ThumbResize;
+import org.eightlog.thumty.server.params.ThumbSize;
+
+import javax.annotation.Nullable;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Set;
+
+/**
+ * Plans thumb source decoding from source header dimensions.
+ * <p>
+ * Only crop region and region visible in fixed align fill are decoded, sampling is calculated for decoded region.
+ * Regions are decoded whole, when trim, pre-process filters or features align need the whole image. Image is decoded
+ * to grayscale, when grayscale is the only pixel filter. Embedded thumbnail is decoded instead of image, when it's
+ * at least of resized image size and neither crop, trim nor focus align need original image coordinates. Reduced
+ * resolution image of multi-resolution source is decoded, when it's at least of resized image size times resolution
+ * margin.
+ * <p>
+ * Image is planned in oriented image coordinates, Exif orientation is applied later in resize pass.
+ * <p>
+ * When source info is known from source info index, decoding is planned before source is fetched, the plan is
+ * revised from actual image header on decoding.
+ * <p>
+ * Planner is used for single decode, crop decoded by planner is excluded from {@link #getTransformParams()}, crop
+ * left to crop filter is scaled to sampled image.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+class DecodePlanner implements ImageReadPlanner {
+
+    /**
+     * Formats, that store embedded thumbnails in header segments before image data
+     */
+    private final static Set<String> HEAD_THUMBNAIL_FORMATS = ImmutableSet.of("jpg", "jpeg");
+
+    /**
+     * Grayscale filter name
+     */
+    private final static String GRAY_FILTER = "gray";
+
+    /**
+     * Filters, that don't change pixels
+     */
+    private final static Set<String> NEUTRAL_FILTERS = ImmutableSet.of("format", "quality");
+
+    private final ThumbParams params;
+
+    private final ImageSampler sampler;
+
+    private final boolean regional;
+
+    private final boolean gray;
+
+    private final boolean thumbnails;
+
+    private final boolean subimages;
+
+    private final int minThumbnailSize;
+
+    private final float resolutionMargin;
+
+    /**
+     * Source image info from source info index, null if source isn't known
+     */
+    private final ImageInfo known;
+
+    private int width;
+
+    private int height;
+
+    /**
+     * Decoded image header info, null until image is planned from header
+     */
+    private ImageInfo info;
+
+    private ImageReadPlan plan = new ImageReadPlan(1);
+
+    private boolean cropped;
+
+    /**
+     * Decoded embedded thumbnail size, null if image is decoded
+     */
+    private Dimension thumbnail;
+
+    /**
+     * Decoded reduced resolution image size, null if original image is decoded
+     */
+    private Dimension subimage;
+
+    private int subimageIndex;
+
+    DecodePlanner(ThumbParams params, Filters filters, ThumbBuilderOptions options) {
+        this(params, filters, options, null);
+    }
+
+    /**
+     * Create decode planner, planning decoding of known source in advance
+     *
+     * @param params  the thumb params
+     * @param filters the filters
+     * @param options the thumb builder options
+     * @param known   the source image info from source info index, null if source isn't known
+     */
+    DecodePlanner(ThumbParams params, Filters filters, ThumbBuilderOptions options, @Nullable ImageInfo known) {
+        this.params = params;
+        this.sampler = params.getSize() != null ? new X2Sampler(params.getSize().toImageSize()) : DefaultSampler.INSTANCE;
+        this.regional = isRegional(params, filters);
+        this.gray = isGray(params, filters);
+        this.thumbnails = options.isEmbeddedThumbnails() && isThumbnailed(params, filters);
+        this.subimages = regional && !isFocusAligned(params);
+        this.minThumbnailSize = options.getEmbeddedThumbnailMinSize();
+        this.resolutionMargin = options.getResolutionMargin();
+        this.known = known;
+
+        if (known != null) {
+            Dimension size = known.getSize();
+            plan(size.width, size.height);
+        }
+    }
+
+    @Override
+    public ImageReadPlan plan(ImageInfo info) {
+        this.info = info;
+        return ImageReadPlanner.super.plan(info);
+    }
+
+    @Override
+    public ImageReadPlan plan(int width, int height) {
+        Rectangle bounds = new Rectangle(0, 0, width, height);
+        Rectangle region = bounds;
+        Dimension resolution = null;
+
+        if (regional) {
+            Rectangle crop = getCropRegion(bounds);
+            region = crop;
+
+            // Fill is applied after crop, crop filter needs original image coordinates
+            if (cropped || params.getCrop() == null) {
+                region = getFillRegion(crop);
+
+                if (subimages) {
+                    resolution = getResolution(width, height, crop);
+                }
+            }
+        }
+
+        this.width = width;
+        this.height = height;
+        this.plan = new ImageReadPlan(region.equals(bounds) ? null : region, sampler.getSampling(region.width, region.height),
+                gray, thumbnails ? getThumbnailSize(width, height) : null, resolution);
+
+        return plan;
+    }
+
+    @Override
+    public void thumbnailDecoded(int width, int height) {
+        this.thumbnail = new Dimension(width, height);
+    }
+
+    @Override
+    public void subimageDecoded(int index, int width, int height) {
+        this.subimageIndex = index;
+        this.subimage = new Dimension(width, height);
+    }
+
+    /**
+     * @return a current plan, planned in advance for known source until image header is read
+     */
+    ImageReadPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Check whether embedded thumbnail of known source is planned to be decoded. Such thumbnail is stored in the head
+     * of source, so there is no need to collect the whole source before decoding.
+     *
+     * @return true if header embedded thumbnail is planned
+     */
+    boolean isHeadThumbnailPlanned() {
+        return known != null && plan.getThumbnail() != null
+                && HEAD_THUMBNAIL_FORMATS.contains(known.getFormat().toLowerCase());
+    }
+
+    /**
+     * @return a decoded image header info, null if image wasn't planned from header
+     */
+    @Nullable
+    ImageInfo getImageInfo() {
+        return info;
+    }
+
+    /**
+     * @return true if embedded thumbnail was decoded instead of image
+     */
+    boolean isThumbnail() {
+        return thumbnail != null;
+    }
+
+    /**
+     * @return a sampling ratio of decoded image
+     */
+    int getSampling() {
+        return subimage != null ? 1 : plan.getSampling();
+    }
+
+    /**
+     * @return a thumb params for decoded image transformations
+     */
+    ThumbParams getTransformParams() {
+        if (cropped) {
+            ThumbParams transform = new ThumbParams(params);
+            transform.setCrop(null);
+            return transform;
+        }
+
+        // Crop filter is applied to sampled image, absolute insets are in original image pixels
+        if (params.getCrop() != null && getSampling() > 1) {
+            ThumbParams transform = new ThumbParams(params);
+            transform.setCrop(getSampledCrop(params.getCrop(), getSampling()));
+            return transform;
+        }
+
+        return params;
+    }
+
+    /**
+     * Describe decoding for trace
+     *
+     * @param image the decoded image
+     * @return a decode description
+     */
+    String describe(Image image) {
+        StringBuilder description = new StringBuilder()
+                .append(image.getFormat().toLowerCase()).append(' ')
+                .append(width).append('x').append(height);
+
+        Rectangle region = plan.getRegion();
+
+        if (thumbnail != null) {
+            description.append(" thumbnail ").append(thumbnail.width).append('x').append(thumbnail.height);
+        } else {
+            if (subimage != null) {
+                description.append(" subimage ").append(subimageIndex).append(' ')
+                        .append(subimage.width).append('x').append(subimage.height);
+            }
+
+            description.append(" 1/").append(getSampling());
+
+            if (region != null) {
+                description.append(" region ").append(region.width).append('x').append(region.height)
+                        .append('+').append(region.x).append('+').append(region.y);
+            }
+        }
+
+        if (image.getSource().getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            description.append(" gray");
+        }
+
+        if (image.getOrientation() != Orientation.TOP_LEFT) {
+            description.append(" orientation ").append(image.getOrientation().value());
+        }
+
+        return description.toString();
+    }
+
+    /**
+     * Get crop region, crop outside of image is left to crop filter
+     */
+    private Rectangle getCropRegion(Rectangle bounds) {
+        ThumbCrop crop = params.getCrop();
+
+        if (crop == null) {
+            return bounds;
+        }
+
+        Rectangle region = crop.toInsets().calculate(bounds);
+
+        if (!region.intersects(bounds)) {
+            return bounds;
+        }
+
+        cropped = true;
+        return region.intersection(bounds);
+    }
+
+    /**
+     * Scale absolute crop insets to sampled image, relative insets are kept
+     */
+    private static ThumbCrop getSampledCrop(ThumbCrop crop, int sampling) {
+        return new ThumbCrop(getSampledInset(crop.getTop(), sampling), getSampledInset(crop.getLeft(), sampling),
+                getSampledInset(crop.getBottom(), sampling), getSampledInset(crop.getRight(), sampling));
+    }
+
+    /**
+     * Sampled absolute inset is rounded to whole pixels, so it isn't taken for relative one
+     */
+    private static float getSampledInset(float inset, int sampling) {
+        if (inset < 1) {
+            return inset;
+        }
+
+        return Math.round(inset / sampling);
+    }
+
+    /**
+     * Get region visible in fill
+     */
+    private Rectangle getFillRegion(Rectangle bounds) {
+        ThumbSize size = params.getSize();
+        Align align = AsyncResizeToFill.getFixedAlign(params.getAlign());
+
+        // Relative sizes depend on resized image dimensions
+        if (params.getResize() == ThumbResize.FIT || size == null || align == null
+                || Math.abs(size.getWidth()) < 1 || Math.abs(size.getHeight()) < 1) {
+            return bounds;
+        }
+
+        Rectangle region = new ResizeToFill(size.toImageSize(), align).getRegion(bounds.width, bounds.height);
+
+        if (region.isEmpty()) {
+            return bounds;
+        }
+
+        region.translate(bounds.x, bounds.y);
+        return region.intersection(bounds);
+    }
+
+    /**
+     * Get min embedded thumbnail size, that is the size of resized image
+     *
+     * @return a min thumbnail size, null if resized image isn't smaller than original
+     */
+    private Dimension getThumbnailSize(int width, int height) {
+        double scale = getScale(width, height);
+
+        if (scale <= 0 || scale >= 1) {
+            return null;
+        }
+
+        return new Dimension(Math.max(minThumbnailSize, (int) Math.ceil(width * scale)),
+                Math.max(minThumbnailSize, (int) Math.ceil(height * scale)));
+    }
+
+    /**
+     * Get min reduced resolution image size, resize is applied to cropped image
+     *
+     * @return a min image size, null if there is no need in original image resolution
+     */
+    private Dimension getResolution(int width, int height, Rectangle cropped) {
+        double scale = getScale(cropped.width, cropped.height) * resolutionMargin;
+
+        if (scale <= 0 || scale >= 1) {
+            return null;
+        }
+
+        return new Dimension((int) Math.ceil(width * scale), (int) Math.ceil(height * scale));
+    }
+
+    /**
+     * Get resize scale of image
+     *
+     * @return a scale, 0 if image isn't resized
+     */
+    private double getScale(int width, int height) {
+        ThumbSize size = params.getSize();
+
+        if (size == null) {
+            return 0;
+        }
+
+        Dimension resulting = size.toImageSize().calculate(width, height);
+
+        // Unspecified dimension keeps aspect ratio
+        double scaleX = size.getWidth() != 0 ? resulting.getWidth() / width : 0;
+        double scaleY = size.getHeight() != 0 ? resulting.getHeight() / height : 0;
+
+        if (scaleX == 0 || scaleY == 0) {
+            return Math.max(scaleX, scaleY);
+        } else if (params.getResize() == ThumbResize.FIT) {
+            return Math.min(scaleX, scaleY);
+        } else {
+            return Math.max(scaleX, scaleY);
+        }
+    }
+
+    private static boolean isThumbnailed(ThumbParams params, Filters filters) {
+        if (params.getSize() == null || params.getCrop() != null || params.getTrim() != null) {
+            return false;
+        }
+
+        return !isFocusAligned(params) && !hasPreProcessFilters(params, filters);
+    }
+
+    /**
+     * Focus coordinates could be absolute
+     */
+    private static boolean isFocusAligned(ThumbParams params) {
+        ThumbAlign align = params.getAlign();
+        return align != null && align.getType() == ThumbAlignType.FOCUS;
+    }
+
+    private static boolean isRegional(ThumbParams params, Filters filters) {
+        if (params.getTrim() != null) {
+            return false;
+        }
+
+        // Features are detected in whole image
+        ThumbAlign align = params.getAlign();
+
+        if (align != null && (align.getType() == ThumbAlignType.FACE || align.getType() == ThumbAlignType.AUTO)) {
+            return false;
+        }
+
+        return !hasPreProcessFilters(params, filters);
+    }
+
+    private static boolean hasPreProcessFilters(ThumbParams params, Filters filters) {
+        ThumbFilters filterParams = params.getFilters();
+
+        if (filterParams != null) {
+            for (ThumbFilter filter : filterParams) {
+                if (filters.isPreProcessFilter(filter.getName())) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isGray(ThumbParams params, Filters filters) {
+        ThumbFilters filterParams = params.getFilters();
+
+        boolean gray = false;
+
+        if (filterParams != null) {
+            for (ThumbFilter filter : filterParams) {
+                String name = filter.getName();
+
+                if (GRAY_FILTER.equals(name)) {
+                    gray = true;
+                } else if (!NEUTRAL_FILTERS.contains(name)
+                        && (filters.isPreProcessFilter(name) || filters.isPostProcessFilter(name))) {
+                    return false;
+                }
+            }
+        }
+
+        return gray;
+    }
+}
@@ -0,0 +1,144 @@
+package org.eightlog.thumty.server;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Registry of in-flight asynchronous tasks.
+ * <p>
+ * Concurrent calls with the same key are coalesced into a single task execution. The first caller runs the task,
+ * callers arriving while it is still running attach to it and are completed on their own contexts once it finishes.
+ * The registry is thread safe, so it can be shared by several verticle instances.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class InFlightRegistry<T> {
+
+    private final ConcurrentMap<String, Flight<T>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Execute task, coalescing concurrent executions with the same key.
+     * <p>
+     * The caller that started the task receives the task result as is. Attached callers receive result of
+     * {@code shared} function applied to the task result, since the same result is not always safe to share
+     * (e.g. read streams). Task failure is propagated to all callers.
+     *
+     * @param key    the task key
+     * @param task   the task supplier
+     * @param shared the function applied to the task result for attached callers
+     * @return a result future
+     */
+    public Future<T> execute(String key, Supplier<Future<T>> task, Function<T, Future<T>> shared) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(task, "task");
+        Objects.requireNonNull(shared, "shared");
+
+        Future<T> future = Future.future();
+
+        Flight<T> flight = new Flight<>();
+        Flight<T> existing = flights.putIfAbsent(key, flight);
+
+        if (existing == null) {
+            Future<T> result;
+
+            try {
+                result = task.get();
+            } catch (Throwable t) {
+                result = Future.failedFuture(t);
+            }
+
+            result.setHandler(res -> {
+                flights.remove(key, flight);
+                flight.complete(res);
+                future.handle(res);
+            });
+        } else {
+            Context context = Vertx.currentContext();
+
+            existing.attach(res -> {
+                if (context != null) {
+                    context.runOnContext(v -> share(res, shared, future));
+                } else {
+                    share(res, shared, future);
+                }
+            });
+        }
+
+        return future;
+    }
+
+    /**
+     * @param key the task key
+     * @return a number of callers attached to running task, 0 if there is no such task
+     */
+    public int getAttached(String key) {
+        Flight<T> flight = flights.get(key);
+        return flight != null ? flight.getAttached() : 0;
+    }
+
+    /**
+     * @return a number of tasks in flight
+     */
+    public int size() {
+        return flights.size();
+    }
+
+    private void share(AsyncResult<T> res, Function<T, Future<T>> shared, Future<T> future) {
+        if (res.succeeded()) {
+            try {
+                shared.apply(res.result()).setHandler(future.completer());
+            } catch (Throwable t) {
+                future.fail(t);
+            }
+        } else {
+            future.fail(res.cause());
+        }
+    }
+
+    /**
+     * Running task with attached waiters
+     */
+    private static class Flight<T> {
+
+        private final List<Handler<AsyncResult<T>>> waiters = new ArrayList<>();
+
+        private AsyncResult<T> result;
+
+        synchronized int getAttached() {
+            return waiters.size();
+        }
+
+        synchronized void attach(Handler<AsyncResult<T>> waiter) {
+            if (result != null) {
+                waiter.handle(result);
+            } else {
+                waiters.add(waiter);
+            }
+        }
+
+        void complete(AsyncResult<T> result) {
+            List<Handler<AsyncResult<T>>> handlers;
+
+            synchronized (this) {
+                this.result = result;
+                handlers = new ArrayList<>(waiters);
+                waiters.clear();
+            }
+
+            for (Handler<AsyncResult<T>> handler : handlers) {
+                handler.handle(result);
+            }
+        }
+    }
+}
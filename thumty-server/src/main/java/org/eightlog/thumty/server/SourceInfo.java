@@ -0,0 +1,72 @@
+package org.eightlog.thumty.server;
+
+import io.vertx.core.json.JsonObject;
+import org.eightlog.thumty.image.io.ImageInfo;
+
+import java.awt.*;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Thumb source info, the source image header info and content size. Stored in source info index, so thumbs could
+ * be planned and meta requests answered without reading source.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class SourceInfo implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ImageInfo image;
+
+    private final long size;
+
+    /**
+     * Create source info
+     *
+     * @param image the source image info
+     * @param size  the source content size in bytes, 0 if unknown
+     */
+    public SourceInfo(ImageInfo image, long size) {
+        Objects.requireNonNull(image);
+
+        this.image = image;
+        this.size = Math.max(0, size);
+    }
+
+    /**
+     * @return a source image info
+     */
+    public ImageInfo getImage() {
+        return image;
+    }
+
+    /**
+     * @return a source content size in bytes, 0 if unknown
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Convert to json, width and height are of oriented image
+     *
+     * @return a json object
+     */
+    public JsonObject toJson() {
+        Dimension oriented = image.getSize();
+
+        JsonObject json = new JsonObject()
+                .put("width", oriented.width)
+                .put("height", oriented.height)
+                .put("format", image.getFormat().toLowerCase())
+                .put("orientation", image.getOrientation().value())
+                .put("alpha", image.hasAlpha());
+
+        if (size > 0) {
+            json.put("size", size);
+        }
+
+        return json;
+    }
+}
@@ -0,0 +1,189 @@
+package org.eightlog.thumty.server;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.core.streams.WriteStream;
+import org.eightlog.thumty.store.Attributes;
+import org.eightlog.thumty.store.ExpirableAttributedContent;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Content, that is streamed to client while it's being produced.
+ * <p>
+ * Data is written to {@link #sink()} from any thread and delivered on the context the content was created with.
+ * Data is buffered until read handler is set, the sink is never full, so slow client doesn't block producer.
+ * The stream ends only with {@link #end()}, so failed producer never looks like completed content.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+class StreamingContent implements ExpirableAttributedContent {
+
+    private final Context context;
+
+    private final LocalDateTime expires;
+
+    private volatile Attributes attributes = new Attributes(null, 0, null);
+
+    private final Deque<Buffer> pending = new ArrayDeque<>();
+
+    private Handler<Buffer> handler;
+
+    private Handler<Void> endHandler;
+
+    private Handler<Throwable> exceptionHandler;
+
+    private boolean paused;
+
+    private boolean ended;
+
+    private Throwable failure;
+
+    StreamingContent(Context context, LocalDateTime expires) {
+        this.context = context;
+        this.expires = expires;
+    }
+
+    /**
+     * Set content type, known once producer chooses output format
+     *
+     * @param contentType the content type
+     */
+    void setContentType(String contentType) {
+        this.attributes = new Attributes(null, 0, contentType);
+    }
+
+    /**
+     * End content stream
+     */
+    void end() {
+        context.runOnContext(v -> {
+            ended = true;
+            flush();
+        });
+    }
+
+    /**
+     * Fail content stream
+     *
+     * @param throwable the failure cause
+     */
+    void fail(Throwable throwable) {
+        context.runOnContext(v -> {
+            failure = throwable;
+            if (exceptionHandler != null) {
+                exceptionHandler.handle(throwable);
+            }
+        });
+    }
+
+    /**
+     * @return a write stream feeding content
+     */
+    WriteStream<Buffer> sink() {
+        return new Sink();
+    }
+
+    @Override
+    public Attributes getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public LocalDateTime getExpires() {
+        return expires;
+    }
+
+    @Override
+    public ReadStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+
+        if (failure != null && handler != null) {
+            handler.handle(failure);
+        }
+
+        return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> handler(Handler<Buffer> handler) {
+        this.handler = handler;
+        flush();
+        return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> pause() {
+        paused = true;
+        return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> resume() {
+        paused = false;
+        flush();
+        return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
+        this.endHandler = endHandler;
+        flush();
+        return this;
+    }
+
+    private void flush() {
+        while (!paused && handler != null && failure == null && !pending.isEmpty()) {
+            handler.handle(pending.poll());
+        }
+
+        if (ended && pending.isEmpty() && endHandler != null) {
+            Handler<Void> handler = endHandler;
+            endHandler = null;
+            handler.handle(null);
+        }
+    }
+
+    private class Sink implements WriteStream<Buffer> {
+
+        @Override
+        public WriteStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+            return this;
+        }
+
+        @Override
+        public WriteStream<Buffer> write(Buffer data) {
+            context.runOnContext(v -> {
+                pending.add(data);
+                flush();
+            });
+            return this;
+        }
+
+        /**
+         * Producer end is ignored, the content is ended explicitly when producer succeeded
+         */
+        @Override
+        public void end() {
+        }
+
+        @Override
+        public WriteStream<Buffer> setWriteQueueMaxSize(int maxSize) {
+            return this;
+        }
+
+        @Override
+        public boolean writeQueueFull() {
+            return false;
+        }
+
+        @Override
+        public WriteStream<Buffer> drainHandler(Handler<Void> handler) {
+            return this;
+        }
+    }
+}
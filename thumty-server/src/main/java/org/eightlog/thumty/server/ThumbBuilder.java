@@ -1,29 +1,47 @@
 package org.eightlog.thumty.server;
 
+import io.vertx.core.Context;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
 import io.vertx.core.streams.ReadStream;
 import io.vertx.core.streams.WriteStream;
+import org.eightlog.thumty.cache.Cache;
 import org.eightlog.thumty.cache.CacheManager;
 import org.eightlog.thumty.cache.ContentCache;
+import org.eightlog.thumty.common.metrics.Metrics;
+import org.eightlog.thumty.common.metrics.Trace;
+import org.eightlog.thumty.common.stream.BufferCollector;
+import org.eightlog.thumty.common.stream.ChunkQueueInputStream;
+import org.eightlog.thumty.common.stream.ChunkQueueOutputStream;
 import org.eightlog.thumty.common.stream.PipeStream;
-import org.eightlog.thumty.common.stream.ReadStreamInputStream;
-import org.eightlog.thumty.common.stream.WriteStreamOutputStream;
+import org.eightlog.thumty.common.stream.SplitWriteStream;
+import org.eightlog.thumty.common.worker.WorkerPool;
+import org.eightlog.thumty.common.worker.WorkerPools;
+import org.eightlog.thumty.filter.Filters;
 import org.eightlog.thumty.filter.common.AsyncThumbBuilder;
 import org.eightlog.thumty.image.Image;
+import org.eightlog.thumty.image.io.BufferImageInput;
+import org.eightlog.thumty.image.io.CodecRegistry;
+import org.eightlog.thumty.image.io.ImageInfo;
 import org.eightlog.thumty.image.io.ImageOutput;
+import org.eightlog.thumty.image.io.ImageReadPlanner;
 import org.eightlog.thumty.image.io.InputStreamImageInput;
 import org.eightlog.thumty.image.io.OutputStreamImageOutput;
 import org.eightlog.thumty.image.io.UnsupportedFormatException;
-import org.eightlog.thumty.image.io.sampler.DefaultSampler;
-import org.eightlog.thumty.image.io.sampler.ImageSampler;
-import org.eightlog.thumty.image.io.sampler.X2Sampler;
+import org.eightlog.thumty.image.utils.RasterPool;
+import org.eightlog.thumty.loader.ContentLoader;
 import org.eightlog.thumty.loader.Loaders;
 import org.eightlog.thumty.server.params.ThumbParams;
 import org.eightlog.thumty.store.ExpirableAttributedContent;
 
+import javax.annotation.Nullable;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
@@ -31,11 +49,24 @@ import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 /**
  * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
  */
-public class ThumbBuilder {
+public class ThumbBuilder implements Shareable {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(ThumbBuilder.class);
+
+    /**
+     * Thumb builder shared data lookup name
+     */
+    private static final String THUMB_BUILDER_LOCAL_MAP_NAME = "__thumty.ThumbBuilder";
+
+    /**
+     * Default thumb builder name
+     */
+    private static final String DEFAULT_THUMB_BUILDER_NAME = "__thumty.ThumbBuilder.default";
 
     /**
      * Thumb builder vertx config key
@@ -47,6 +78,11 @@ public class ThumbBuilder {
      */
     private final static String THUMB_CACHE_NAME = "thumb";
 
+    /**
+     * Source info index cache name
+     */
+    private final static String SOURCE_CACHE_NAME = "source";
+
     /**
      * Default read stream timeout
      */
@@ -61,10 +97,34 @@ public class ThumbBuilder {
 
     private final ContentCache cache;
 
+    /**
+     * Source info index, keyed by source location
+     */
+    private final Cache<SourceInfo> sources;
+
     private final Loaders loaders;
 
     private final ThumbBuilderOptions options;
 
+    private final int writeChunkSize;
+
+    private final Filters filters;
+
+    private final CodecRegistry codecs;
+
+    private final WorkerPool decoders;
+
+    private final WorkerPool encoders;
+
+    /**
+     * Builds in progress, keyed by cache key
+     */
+    private final InFlightRegistry<ExpirableAttributedContent> builds = new InFlightRegistry<>();
+
+    private final AdmissionController admission;
+
+    private final Metrics metrics;
+
     public ThumbBuilder(Vertx vertx) {
         this(vertx, getThumbBuilderConfig(vertx.getOrCreateContext().config()));
     }
@@ -76,8 +136,30 @@ public class ThumbBuilder {
         this.vertx = vertx;
         this.loaders = Loaders.createShared(vertx);
         this.options = new ThumbBuilderOptions(config);
+        this.writeChunkSize = options.getWriteChunkSize();
+        this.filters = Filters.createShared(vertx);
+        this.codecs = new CodecRegistry(options.getImagePlugins());
         this.cache = CacheManager.createShared(vertx)
                 .getContentCache(THUMB_CACHE_NAME, options.getCacheConfig());
+        this.sources = CacheManager.createShared(vertx)
+                .getCache(SOURCE_CACHE_NAME, options.getSourceCacheConfig());
+        this.decoders = WorkerPools.createShared(vertx).getPool(WorkerPools.DECODE);
+        this.encoders = WorkerPools.createShared(vertx).getPool(WorkerPools.ENCODE);
+        this.admission = new AdmissionController(options.getMaxConcurrentBuilds(), options.getMaxQueuedBuilds(),
+                options.getRetryAfter(), options.getMaxQueueWait());
+        this.metrics = Metrics.createShared(vertx);
+
+        metrics.gauge("thumty_builds_running", "Number of running thumb builds", admission::getRunning);
+        metrics.gauge("thumty_builds_queued", "Number of queued thumb builds", admission::getQueued);
+        metrics.counter("thumty_builds_rejected_total", "Number of rejected thumb builds", admission::getRejected);
+        metrics.counter("thumty_builds_abandoned_total", "Number of queued thumb builds dropped after request was answered", admission::getAbandoned);
+
+        RasterPool.DEFAULT.setMaxRetainedBytes(options.getRasterPoolSize());
+
+        metrics.counter("thumty_raster_pool_hits_total", "Number of images created with pooled pixels", RasterPool.DEFAULT::getHits);
+        metrics.counter("thumty_raster_pool_misses_total", "Number of pooled size images created with new pixels", RasterPool.DEFAULT::getMisses);
+        metrics.gauge("thumty_raster_pool_hit_ratio", "Ratio of pooled size images created with pooled pixels", RasterPool.DEFAULT::getHitRate);
+        metrics.gauge("thumty_raster_pool_retained_bytes", "Size of released pixels retained for reuse", RasterPool.DEFAULT::getRetainedBytes);
     }
 
     private static JsonObject getThumbBuilderConfig(JsonObject config) {
@@ -88,61 +170,392 @@ public class ThumbBuilder {
         return new ThumbBuilder(vertx);
     }
 
+    /**
+     * Create shared thumb builder with default name and configuration from vertx
+     *
+     * @param vertx the vertx instance
+     * @return a thumb builder
+     */
+    public static ThumbBuilder createShared(Vertx vertx) {
+        return createShared(vertx, getThumbBuilderConfig(vertx.getOrCreateContext().config()), DEFAULT_THUMB_BUILDER_NAME);
+    }
+
+    /**
+     * Create shared thumb builder
+     *
+     * @param vertx  the vertx instance
+     * @param config the thumb builder configuration
+     * @param name   the thumb builder name
+     * @return a thumb builder
+     */
+    public synchronized static ThumbBuilder createShared(Vertx vertx, JsonObject config, String name) {
+        LocalMap<String, ThumbBuilder> localMap = vertx.sharedData().getLocalMap(THUMB_BUILDER_LOCAL_MAP_NAME);
+
+        ThumbBuilder builder = localMap.get(name);
+
+        if (builder == null) {
+            localMap.put(name, builder = new ThumbBuilder(vertx, config));
+        }
+
+        return builder;
+    }
+
     public Future<ExpirableAttributedContent> build(ThumbParams params) {
+        return build(params, new Trace());
+    }
+
+    /**
+     * Build thumb or get it from cache, recording stages durations
+     *
+     * @param params the thumb params
+     * @param trace  the request trace
+     * @return a thumb content future
+     */
+    public Future<ExpirableAttributedContent> build(ThumbParams params, Trace trace) {
+        return build(params, trace, () -> false);
+    }
+
+    /**
+     * Build thumb or get it from cache, recording stages durations. Queued build is dropped if it's abandoned before
+     * it starts.
+     *
+     * @param params    the thumb params
+     * @param trace     the request trace
+     * @param abandoned the check if thumb is no longer needed, e.g. request is already answered
+     * @return a thumb content future
+     */
+    public Future<ExpirableAttributedContent> build(ThumbParams params, Trace trace, BooleanSupplier abandoned) {
+        return build(params, trace, abandoned, false);
+    }
+
+    /**
+     * Build thumb or get it from cache, recording stages durations. Queued build is dropped if it's abandoned before
+     * it starts.
+     * <p>
+     * Built content is streamed as it's encoded, so encode and cache write stages are recorded after content future
+     * completes. When {@code complete} is set, content future completes only once the build is finished and written
+     * to cache, so trace has all the stages; content is buffered meanwhile.
+     *
+     * @param params    the thumb params
+     * @param trace     the request trace
+     * @param abandoned the check if thumb is no longer needed, e.g. request is already answered
+     * @param complete  true to complete content future once the build is finished
+     * @return a thumb content future
+     */
+    public Future<ExpirableAttributedContent> build(ThumbParams params, Trace trace, BooleanSupplier abandoned, boolean complete) {
         Objects.requireNonNull(params);
+        Objects.requireNonNull(trace);
+        Objects.requireNonNull(abandoned);
 
-        return getCached(params).compose(content -> {
+        Context context = vertx.getOrCreateContext();
+
+        return getCached(params, trace).compose(content -> {
             if (content == null) {
-                return buildUncached(params);
+                return buildCoalesced(params, trace, context, abandoned, complete, true);
             } else {
                 return Future.succeededFuture(content);
             }
         });
     }
 
-    private Future<ExpirableAttributedContent> buildUncached(ThumbParams params) {
-        return loaders.getLoader(params.getSource()).load(params.getSource()).compose(content -> buildAndCache(content, params));
+    /**
+     * Get source info from source info index, or probe source image header and index it. Source is read only up to
+     * image header, pixels aren't decoded.
+     *
+     * @param source the source location
+     * @param trace  the request trace
+     * @return a source info future
+     */
+    public Future<SourceInfo> probe(String source, Trace trace) {
+        Objects.requireNonNull(source);
+        Objects.requireNonNull(trace);
+
+        return getSourceInfo(source, trace).compose(info -> {
+            if (info != null) {
+                return Future.succeededFuture(info);
+            }
+
+            return trace.time("load", () -> load(source)).compose(content -> probe(content, trace)
+                    .compose(probed -> index(source, probed, content.getExpires()).map(probed)));
+        });
+    }
+
+    /**
+     * @return a builds admission controller
+     */
+    public AdmissionController getAdmission() {
+        return admission;
     }
 
-    private Future<ExpirableAttributedContent> buildAndCache(ExpirableAttributedContent content, ThumbParams params) {
-        return PipeStream.<ExpirableAttributedContent, Buffer>pipe(ws -> build(content, ws, params), rs -> cache(rs, params, content.getExpires()));
+    /**
+     * Build thumb, concurrent builds of the same thumb are coalesced into single one.
+     * <p>
+     * The request that started the build receives content as it is encoded. Requests attached to running build
+     * read result from cache once it's written, since content stream can be consumed only once. If result isn't
+     * cached, attached requests coalesce into the next build, one of them starts it and the others attach to it.
+     * Coalesced build is retried only once, then attached requests build the thumb each on its own if cache keeps
+     * failing, rather than waiting for a series of builds.
+     *
+     * @param params    the thumb params
+     * @param trace     the request trace
+     * @param context   the request context
+     * @param abandoned the check if thumb is no longer needed by request
+     * @param complete  true to complete streamed content future once the build is finished
+     * @param retry     true if attached requests coalesce into the next build, when result isn't cached
+     * @return a thumb content future
+     */
+    private Future<ExpirableAttributedContent> buildCoalesced(ThumbParams params, Trace trace, Context context,
+                                                              BooleanSupplier abandoned, boolean complete, boolean retry) {
+        Future<ExpirableAttributedContent> streamed = Future.future();
+        boolean[] started = {false};
+
+        Future<ExpirableAttributedContent> cached = builds.execute(params.toString(), () -> {
+            started[0] = true;
+            // Build is needed while any attached request waits for it
+            return buildAdmitted(params, trace, context, streamed,
+                    () -> abandoned.getAsBoolean() && builds.getAttached(params.toString()) == 0);
+        }, built -> getCached(params, trace).compose(content -> {
+            if (content == null) {
+                // Rebuild is coalesced once more, so attached requests don't rebuild the thumb each on its own
+                return retry ? buildCoalesced(params, trace, context, abandoned, complete, false)
+                        : buildAlone(params, trace, context, abandoned, complete);
+            } else {
+                return Future.succeededFuture(content);
+            }
+        }));
+
+        if (!started[0]) {
+            return cached;
+        }
+
+        // Streamed content is buffered until the build is finished
+        return complete ? streamed.compose(content -> cached.map(content)) : streamed;
     }
 
-    private Future<ExpirableAttributedContent> getCached(ThumbParams params) {
-        return cache.getIfPresent(params.toString());
+    /**
+     * Build thumb without coalescing it with concurrent builds
+     *
+     * @param params    the thumb params
+     * @param trace     the request trace
+     * @param context   the request context
+     * @param abandoned the check if thumb is no longer needed by request
+     * @param complete  true to complete streamed content future once the build is finished
+     * @return a thumb content future
+     */
+    private Future<ExpirableAttributedContent> buildAlone(ThumbParams params, Trace trace, Context context,
+                                                          BooleanSupplier abandoned, boolean complete) {
+        Future<ExpirableAttributedContent> streamed = Future.future();
+        Future<ExpirableAttributedContent> cached = buildAdmitted(params, trace, context, streamed, abandoned);
+
+        return complete ? streamed.compose(content -> cached.map(content)) : streamed;
+    }
+
+    /**
+     * Build thumb, streaming it to client and writing to cache
+     *
+     * @param params    the thumb params
+     * @param trace     the request trace
+     * @param context   the request context
+     * @param streamed  the streamed content future, completed when encoding starts
+     * @param abandoned the check if queued build is no longer needed
+     * @return a cached content future, completed when cache write is finished, with null if cache write failed
+     */
+    private Future<ExpirableAttributedContent> buildAdmitted(ThumbParams params, Trace trace, Context context,
+                                                             Future<ExpirableAttributedContent> streamed, BooleanSupplier abandoned) {
+        return admission.submit(() -> buildUncached(params, trace, context, streamed), abandoned).recover(t -> {
+            streamed.tryFail(t);
+            return Future.failedFuture(t);
+        });
+    }
+
+    /**
+     * Build thumb, source info index is looked up before source is loaded, so loaded content is consumed at once
+     */
+    private Future<ExpirableAttributedContent> buildUncached(ThumbParams params, Trace trace, Context context, Future<ExpirableAttributedContent> streamed) {
+        return getSourceInfo(params.getSource(), trace).compose(known -> trace.time("load", () -> load(params.getSource()))
+                .compose(content -> buildAndCache(content, known, params, trace, context, streamed)));
+    }
+
+    private Future<ExpirableAttributedContent> load(String source) {
+        ContentLoader loader = loaders.getLoader(source);
+        String name = loader.getClass().getSimpleName();
+
+        long start = System.nanoTime();
+
+        return loader.load(source).map(content -> {
+            metrics.histogram("thumty_loader_fetch_seconds", "Source content fetch time", "loader", name).observeSince(start);
+            metrics.counter("thumty_bytes_in_total", "Number of loaded source bytes").inc(content.getAttributes().getSize());
+            return content;
+        }).recover(t -> {
+            metrics.counter("thumty_loader_errors_total", "Number of failed source fetches", "loader", name).inc();
+            return Future.failedFuture(t);
+        });
+    }
+
+    /**
+     * Build thumb, encoder output is split between client and cache. Cache write failure doesn't fail the build,
+     * since the content could be already sent to client. Failed cache write is detached from split, so only client
+     * holds back encoder.
+     */
+    private Future<ExpirableAttributedContent> buildAndCache(ExpirableAttributedContent content, @Nullable SourceInfo known,
+                                                             ThumbParams params, Trace trace, Context context,
+                                                             Future<ExpirableAttributedContent> streamed) {
+        StreamingContent client = new StreamingContent(context, content.getExpires());
+
+        Handler<String> started = format -> {
+            client.setContentType(getContentType(format));
+            context.runOnContext(v -> streamed.tryComplete(client));
+        };
+
+        Runnable[] detachCache = {() -> {}};
+
+        return PipeStream.<ExpirableAttributedContent, Buffer>pipe(ws -> {
+                    SplitWriteStream<Buffer> output = new SplitWriteStream<>(ws, client.sink());
+                    detachCache[0] = () -> output.detach(ws);
+
+                    return build(content, known, output, params, trace, started)
+                            .map(v -> {
+                                client.end();
+                                return v;
+                            })
+                            .recover(t -> {
+                                client.fail(t);
+                                return Future.failedFuture(t);
+                            });
+                },
+                rs -> trace.time("cache-write", () -> cache(rs, params, content.getExpires())).recover(t -> {
+                    LOGGER.warn("Failed in caching thumb \"{0}\"", t, params);
+                    detachCache[0].run();
+                    return Future.succeededFuture();
+                }));
+    }
+
+    private Future<ExpirableAttributedContent> getCached(ThumbParams params, Trace trace) {
+        return trace.time("cache-lookup", () -> cache.getIfPresent(params.toString()));
     }
 
     private Future<ExpirableAttributedContent> cache(ReadStream<Buffer> content, ThumbParams params, LocalDateTime expires) {
         return cache.put(params.toString(), content, expires);
     }
 
-    private Future<Void> build(ReadStream<Buffer> input, WriteStream<Buffer> output, ThumbParams params) {
-        return read(input, params)
-                .compose(image -> new AsyncThumbBuilder(vertx, params).apply(image))
-                .compose(image -> write(output, image));
+    private Future<Void> build(ExpirableAttributedContent input, @Nullable SourceInfo known, WriteStream<Buffer> output,
+                               ThumbParams params, Trace trace, Handler<String> started) {
+        DecodePlanner planner = new DecodePlanner(params, filters, options, known != null ? known.getImage() : null);
+
+        return read(input, planner, trace)
+                .compose(image -> {
+                    indexDecoded(params.getSource(), known, planner, input);
+                    return new AsyncThumbBuilder(vertx, planner.getTransformParams(), trace).apply(image);
+                })
+                .compose(image -> write(output, image, trace, started));
+    }
+
+    /**
+     * Look up source info index, index failure doesn't fail the request
+     *
+     * @param source the source location
+     * @param trace  the request trace
+     * @return a source info future, completed with null if source isn't indexed
+     */
+    private Future<SourceInfo> getSourceInfo(String source, Trace trace) {
+        return trace.time("index-lookup", () -> sources.getIfPresent(source)).recover(t -> {
+            LOGGER.warn("Failed in looking up source info \"{0}\"", t, source);
+            return Future.succeededFuture();
+        });
+    }
+
+    /**
+     * Put source info to source info index, expiring with source content
+     *
+     * @param source  the source location
+     * @param info    the source info
+     * @param expires the source content expiration time
+     * @return a future completed once info is indexed or indexing failed
+     */
+    private Future<Void> index(String source, SourceInfo info, @Nullable LocalDateTime expires) {
+        return sources.put(source, info, expires).recover(t -> {
+            LOGGER.warn("Failed in indexing source info \"{0}\"", t, source);
+            return Future.succeededFuture();
+        });
+    }
+
+    /**
+     * Index source image header info read on decoding, if source isn't indexed yet or it has changed
+     */
+    private void indexDecoded(String source, @Nullable SourceInfo known, DecodePlanner planner, ExpirableAttributedContent content) {
+        ImageInfo info = planner.getImageInfo();
+
+        if (info != null && (known == null || !info.equals(known.getImage()))) {
+            index(source, new SourceInfo(info, content.getAttributes().getSize()), content.getExpires());
+        }
+    }
+
+    /**
+     * Probe source image header on decoders pool, source is read from stream and the rest of it is discarded
+     *
+     * @param content the source content
+     * @param trace   the request trace
+     * @return a source info future
+     */
+    private Future<SourceInfo> probe(ExpirableAttributedContent content, Trace trace) {
+        InputStream stream = new ChunkQueueInputStream(vertx, content, READ_STREAM_TIMEOUT, TimeUnit.MILLISECONDS);
+        long size = content.getAttributes().getSize();
+
+        return decoders.<SourceInfo>execute(result -> {
+            long start = System.nanoTime();
+
+            try (InputStream input = stream) {
+                ImageInfo info = new InputStreamImageInput(codecs).probe(input);
+
+                metrics.histogram("thumty_probe_seconds", "Image header probe time", "format", info.getFormat().toLowerCase()).observeSince(start);
+
+                trace.record("probe", start);
+                trace.describe("probe", info.toString());
+
+                result.complete(new SourceInfo(info, size));
+            } catch (Throwable t) {
+                result.fail(t);
+            }
+        });
     }
 
     /**
      * Write image to buffered stream
      *
-     * @param stream the buffered write stream
-     * @param image  the image
+     * @param stream  the buffered write stream
+     * @param image   the image
+     * @param trace   the request trace
+     * @param started the handler called with output format before encoding
      * @return a future result
      */
-    private Future<Void> write(WriteStream<Buffer> stream, Image image) {
+    private Future<Void> write(WriteStream<Buffer> stream, Image image, Trace trace, Handler<String> started) {
         Future<Void> future = Future.future();
 
-        vertx.executeBlocking(result -> {
-            try (OutputStream output = new WriteStreamOutputStream(stream, WRITE_STREAM_TIMEOUT, TimeUnit.MILLISECONDS)) {
-                ImageOutput writer = new OutputStreamImageOutput(output);
+        OutputStream chunks = new ChunkQueueOutputStream(vertx, stream, writeChunkSize, WRITE_STREAM_TIMEOUT, TimeUnit.MILLISECONDS);
+
+        encoders.executeBlocking(result -> {
+            long start = System.nanoTime();
+
+            try (OutputStream output = chunks) {
+                ImageOutput writer = new OutputStreamImageOutput(output, codecs);
 
                 float quality = getWriteQuality(image);
                 String format = getWriteFormat(writer, image);
 
+                started.handle(format);
+
                 writer.write(image.getSource(), format, quality);
+
+                metrics.histogram("thumty_encode_seconds", "Image encoding time", "format", format.toLowerCase()).observeSince(start);
+
+                trace.record("encode", start);
+                trace.describe("encode", format.toLowerCase() + " " + image.getSource().getWidth() + "x" + image.getSource().getHeight());
                 result.complete();
             } catch (IOException | UnsupportedFormatException e) {
                 result.fail(e);
+            } finally {
+                // Thumb is the last image of build
+                RasterPool.DEFAULT.release(image.getSource());
             }
         }, false, res -> {
             if (res.succeeded()) {
@@ -155,22 +568,63 @@ public class ThumbBuilder {
     }
 
     /**
-     * Read image from stream
+     * Read image from content.
+     * <p>
+     * Content of known size within limit is collected in memory on event loop first, so decoder doesn't block
+     * waiting for data, larger content is decoded from stream. Content is decoded from stream as well, when embedded
+     * thumbnail in the head of known source is planned, so the rest of content isn't waited for.
      *
-     * @param stream the buffered read stream
-     * @param params the thumb params
+     * @param content the source content
+     * @param planner the decode planner
+     * @param trace   the request trace
      * @return a future image
      */
-    private Future<Image> read(ReadStream<Buffer> stream, ThumbParams params) {
+    private Future<Image> read(ExpirableAttributedContent content, DecodePlanner planner, Trace trace) {
+        long size = content.getAttributes().getSize();
+        long maxCollectedSize = options.getMaxCollectedSize();
+
+        if (size > 0 && size <= maxCollectedSize && !planner.isHeadThumbnailPlanned()) {
+            return trace.time("collect", () -> BufferCollector.collect(content, maxCollectedSize))
+                    .compose(chunks -> decode(plan -> new BufferImageInput(plan, codecs).read(chunks), planner, trace));
+        }
+
+        InputStream stream = new ChunkQueueInputStream(vertx, content, READ_STREAM_TIMEOUT, TimeUnit.MILLISECONDS);
+
+        return decode(plan -> {
+            try (InputStream input = stream) {
+                return new InputStreamImageInput(plan, codecs).read(input);
+            }
+        }, planner, trace);
+    }
+
+    /**
+     * Decode image on decoders pool
+     *
+     * @param decoder the image decoder
+     * @param planner the decode planner
+     * @param trace   the request trace
+     * @return a future image
+     */
+    private Future<Image> decode(Decoder decoder, DecodePlanner planner, Trace trace) {
         Future<Image> future = Future.future();
 
-        vertx.executeBlocking(result -> {
+        decoders.executeBlocking(result -> {
+            long start = System.nanoTime();
+
             try {
-                try (InputStream input = new ReadStreamInputStream(vertx, stream, READ_STREAM_TIMEOUT, TimeUnit.MILLISECONDS)) {
-                    result.complete(new InputStreamImageInput(sampler(params)).read(input));
-                } catch (IOException | UnsupportedFormatException e) {
-                    result.fail(e);
-                }
+                Image image = decoder.decode(planner);
+
+                // Every following stage keeps decoded layout up to encoder
+                image = image.withSource(options.getPixelLayout().apply(image.getSource()));
+
+                metrics.histogram("thumty_decode_seconds", "Image decoding time",
+                        "format", image.getFormat().toLowerCase(),
+                        "sampling", planner.isThumbnail() ? "thumbnail" : String.valueOf(planner.getSampling())).observeSince(start);
+
+                trace.record("decode", start);
+                trace.describe("decode", planner.describe(image));
+
+                result.complete(image);
             } catch (Throwable t) {
                 result.fail(t);
             }
@@ -185,19 +639,6 @@ public class ThumbBuilder {
         return future;
     }
 
-    /**
-     * Get image sampler for size
-     *
-     * @param params a thumb params
-     * @return an image sampler
-     */
-    private ImageSampler sampler(ThumbParams params) {
-        if (params.getSize() != null) {
-            return new X2Sampler(params.getSize().toImageSize());
-        }
-        return new DefaultSampler();
-    }
-
     private float getWriteQuality(Image image) {
         return Float.isNaN(image.getQuality()) ? options.getQuality() : image.getQuality();
     }
@@ -216,6 +657,18 @@ public class ThumbBuilder {
         return format;
     }
 
+    /**
+     * Blocking image decoder
+     */
+    private interface Decoder {
+        Image decode(ImageReadPlanner planner) throws IOException, UnsupportedFormatException;
+    }
+
+    private String getContentType(String format) {
+        String type = codecs.getMimeType(format);
+        return type != null ? type : "application/octet-stream";
+    }
+
     private String getOutputFormat(BufferedImage image) {
         switch (image.getType()) {
             case BufferedImage.TYPE_4BYTE_ABGR:
@@ -2,7 +2,13 @@ package org.eightlog.thumty.server;
 
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import org.eightlog.thumty.common.text.ByteSizeParser;
+import org.eightlog.thumty.common.text.DurationParser;
+import org.eightlog.thumty.image.utils.PixelLayout;
+import org.eightlog.thumty.image.utils.RasterPool;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -15,11 +21,61 @@ public class ThumbBuilderOptions {
      */
     private final static String CACHE_CONFIG_KEY = "cache";
 
+    /**
+     * Source info index cache configuration key
+     */
+    private final static String SOURCE_CACHE_CONFIG_KEY = "source_cache";
+
     /**
      * Default image quality
      */
     private static final float DEFAULT_QUALITY = 0.85f;
 
+    /**
+     * Default max number of concurrent builds
+     */
+    private static final int DEFAULT_MAX_CONCURRENT_BUILDS = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * Default max number of builds waiting for execution
+     */
+    private static final int DEFAULT_MAX_QUEUED_BUILDS = 100;
+
+    /**
+     * Default retry after time in ms for rejected builds
+     */
+    private static final long DEFAULT_RETRY_AFTER = 1000;
+
+    /**
+     * Default max time in ms build waits in queue
+     */
+    private static final long DEFAULT_MAX_QUEUE_WAIT = 30000;
+
+    /**
+     * Default max size of source collected in memory before decoding
+     */
+    private static final long DEFAULT_MAX_COLLECTED_SIZE = 32 * 1000 * 1000;
+
+    /**
+     * Default size of encoder output chunks, sizes are parsed in decimal units
+     */
+    private static final int DEFAULT_WRITE_CHUNK_SIZE = 64 * 1000;
+
+    /**
+     * Max size of encoder output chunks, pending chunks are kept in memory
+     */
+    private static final long MAX_WRITE_CHUNK_SIZE = 16 * 1000 * 1000;
+
+    /**
+     * Default min width and height of embedded thumbnail used instead of image
+     */
+    private static final int DEFAULT_EMBEDDED_THUMBNAIL_MIN_SIZE = 64;
+
+    /**
+     * Default ratio of reduced resolution image size to resized image size
+     */
+    private static final float DEFAULT_RESOLUTION_MARGIN = 2;
+
     private final JsonObject config;
 
     public ThumbBuilderOptions(JsonObject config) {
@@ -31,10 +87,122 @@ public class ThumbBuilderOptions {
         return config.getJsonObject(CACHE_CONFIG_KEY, new JsonObject());
     }
 
+    /**
+     * @return a source info index cache configuration
+     */
+    public JsonObject getSourceCacheConfig() {
+        return config.getJsonObject(SOURCE_CACHE_CONFIG_KEY, new JsonObject());
+    }
+
     public float getQuality() {
         return config.getFloat("quality", DEFAULT_QUALITY);
     }
 
+    /**
+     * @return a max number of concurrent builds, 0 if not limited
+     */
+    public int getMaxConcurrentBuilds() {
+        return config.getInteger("max_concurrent_builds", DEFAULT_MAX_CONCURRENT_BUILDS);
+    }
+
+    public int getMaxQueuedBuilds() {
+        return config.getInteger("max_queued_builds", DEFAULT_MAX_QUEUED_BUILDS);
+    }
+
+    /**
+     * @return a max time in milliseconds build waits in queue before it's rejected, 0 if not limited
+     */
+    public long getMaxQueueWait() {
+        return DurationParser.parse(config.getString("max_queue_wait", null), DEFAULT_MAX_QUEUE_WAIT);
+    }
+
+    /**
+     * @return a retry after time in seconds reported for rejected builds
+     */
+    public long getRetryAfter() {
+        return Math.max(1, DurationParser.parse(config.getString("retry_after", null), DEFAULT_RETRY_AFTER) / 1000);
+    }
+
+    /**
+     * @return a max size of source, that is collected in memory before decoding, 0 to always decode from stream
+     */
+    public long getMaxCollectedSize() {
+        String size = config.getString("max_collected_size", null);
+        return size != null ? ByteSizeParser.parse(size) : DEFAULT_MAX_COLLECTED_SIZE;
+    }
+
+    /**
+     * @return a size of chunks encoder output is handed over to event loop in
+     * @throws IllegalArgumentException if configured size is invalid or out of range
+     */
+    public int getWriteChunkSize() {
+        String size = config.getString("write_chunk_size", null);
+
+        if (size == null) {
+            return DEFAULT_WRITE_CHUNK_SIZE;
+        }
+
+        long chunkSize = ByteSizeParser.parse(size);
+
+        if (chunkSize <= 0 || chunkSize > MAX_WRITE_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Invalid write chunk size: " + size);
+        }
+
+        return (int) chunkSize;
+    }
+
+    /**
+     * @return true if embedded thumbnails are decoded instead of images for small thumbs
+     */
+    public boolean isEmbeddedThumbnails() {
+        return config.getBoolean("embedded_thumbnails", true);
+    }
+
+    /**
+     * @return a min width and height of embedded thumbnail used instead of image
+     */
+    public int getEmbeddedThumbnailMinSize() {
+        return config.getInteger("embedded_thumbnail_min_size", DEFAULT_EMBEDDED_THUMBNAIL_MIN_SIZE);
+    }
+
+    /**
+     * @return a min ratio of reduced resolution image size to resized image size, for reduced image to be decoded
+     * instead of original
+     */
+    public float getResolutionMargin() {
+        return Math.max(1, config.getFloat("resolution_margin", DEFAULT_RESOLUTION_MARGIN));
+    }
+
+    /**
+     * @return a preferred ImageIO plugin class name prefixes by format name
+     */
+    public Map<String, String> getImagePlugins() {
+        Map<String, String> plugins = new HashMap<>();
+
+        config.getJsonObject("image_plugins", new JsonObject()).forEach(entry -> {
+            if (entry.getValue() instanceof String) {
+                plugins.put(entry.getKey(), (String) entry.getValue());
+            }
+        });
+
+        return plugins;
+    }
+
+    /**
+     * @return a max size of released image pixels retained for reuse
+     */
+    public long getRasterPoolSize() {
+        String size = config.getString("raster_pool_size", null);
+        return size != null ? ByteSizeParser.parse(size) : RasterPool.DEFAULT_MAX_RETAINED_BYTES;
+    }
+
+    /**
+     * @return a pixel layout decoded images are normalized to
+     */
+    public PixelLayout getPixelLayout() {
+        return PixelLayout.valueOf(config.getString("pixel_layout", PixelLayout.CANONICAL.name()).toUpperCase());
+    }
+
     public boolean isSupportedFormat(String format) {
         JsonArray formats = config.getJsonArray("formats", new JsonArray());
         return formats.isEmpty() || formats.contains(format);
@@ -1,8 +1,11 @@
 package org.eightlog.thumty.server;
 
 import io.vertx.core.*;
-import io.vertx.core.http.HttpServer;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import io.vertx.core.streams.Pump;
@@ -11,22 +14,27 @@ import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.LoggerHandler;
 import io.vertx.ext.web.handler.ResponseTimeHandler;
 import io.vertx.ext.web.handler.TimeoutHandler;
-import org.eightlog.thumty.feature.FeatureDetectionVertical;
+import org.eightlog.thumty.common.metrics.EventLoopMonitor;
+import org.eightlog.thumty.common.metrics.Metrics;
+import org.eightlog.thumty.common.metrics.Trace;
 import org.eightlog.thumty.image.io.UnsupportedFormatException;
 import org.eightlog.thumty.loader.LoaderException;
 import org.eightlog.thumty.server.params.ThumbParams;
 import org.eightlog.thumty.server.params.ThumbParamsParser;
+import org.eightlog.thumty.server.params.ThumbSigner;
 import org.eightlog.thumty.store.ExpirableAttributedContent;
+import org.eightlog.thumty.store.content.ContentAttributes;
 
+import javax.annotation.Nullable;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import static java.time.format.DateTimeFormatter.RFC_1123_DATE_TIME;
-
 /**
+ * Http server vertical, several instances can be deployed by {@link ThumtyVertical}.
+ *
  * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
  */
 public class Thumty extends AbstractVerticle {
@@ -41,40 +49,60 @@ public class Thumty extends AbstractVerticle {
 
     private ThumtyOptions options;
 
+    private ThumbParamsParser parser;
+
+    /**
+     * Verifies debug query parameter, null if debug secret isn't set
+     */
+    @Nullable
+    private ThumbSigner debugSigner;
+
+    private Metrics metrics;
+
     @Override
     public void start(Future<Void> startFuture) throws Exception {
-        thumbBuilder = ThumbBuilder.builder(vertx);
+        thumbBuilder = ThumbBuilder.createShared(vertx);
         options = new ThumtyOptions(config());
 
-        DeploymentOptions featureDetectionDeploymentOptions = new DeploymentOptions().setConfig(config());
+        List<String> secrets = options.getSecrets();
+        parser = new ThumbParamsParser(secrets.isEmpty() ? null : new ThumbSigner(secrets), options.getPlanCacheSize());
+        debugSigner = options.getDebugSecret() != null ? new ThumbSigner(options.getDebugSecret()) : null;
+        metrics = Metrics.createShared(vertx);
 
-        Handler<AsyncResult<HttpServer>> onServerStart = res -> {
-            if (res.succeeded()) {
-                LOGGER.debug("Http server started on port \"{0,number,#}\"", res.result().actualPort());
-                startFuture.complete();
-            } else {
-                startFuture.fail(res.cause());
-            }
-        };
+        EventLoopMonitor.start(vertx, metrics.histogram("thumty_event_loop_lag_seconds", "Event loop timer lag"),
+                options.getEventLoopCheckInterval());
 
-        vertx.deployVerticle(new FeatureDetectionVertical(), featureDetectionDeploymentOptions, res -> {
-            if (res.succeeded()) {
-                LOGGER.debug("Succeeded in deploying feature detection vertical");
+        Router router = Router.router(vertx);
 
-                Router router = Router.router(vertx);
+        router.route().handler(LoggerHandler.create());
+        router.route().handler(ResponseTimeHandler.create());
 
-                router.route().handler(LoggerHandler.create());
-                router.route().handler(ResponseTimeHandler.create());
+        if (options.getResponseTimeout() > 0) {
+            router.route().handler(TimeoutHandler.create(options.getResponseTimeout()));
+        }
 
-                if (options.getResponseTimeout() > 0) {
-                    router.route().handler(TimeoutHandler.create(options.getResponseTimeout()));
-                }
+        if (options.isMetricsEnabled()) {
+            router.get(options.getMetricsPath()).handler(this::sendMetrics);
+        }
+
+        if (options.isMetaEnabled()) {
+            router.route(options.getMetaPath() + "/*").method(HttpMethod.GET).method(HttpMethod.HEAD).handler(this::sendMeta);
+        }
+
+        router.route().method(HttpMethod.GET).method(HttpMethod.HEAD).handler(this::buildVariant);
+        router.route().method(HttpMethod.GET).method(HttpMethod.HEAD).handler(this::buildThumb);
 
-                router.get().handler(this::buildVariant);
-                router.get().handler(this::buildThumb);
+        HttpServerOptions serverOptions = new HttpServerOptions()
+                .setHost(options.getHost())
+                .setPort(options.getPort())
+                .setTcpNoDelay(options.isTcpNoDelay())
+                .setReuseAddress(options.isReuseAddress())
+                .setAcceptBacklog(options.getAcceptBacklog());
 
-                vertx.createHttpServer().requestHandler(router::accept)
-                        .listen(options.getPort(), options.getHost(), onServerStart);
+        vertx.createHttpServer(serverOptions).requestHandler(router::accept).listen(res -> {
+            if (res.succeeded()) {
+                LOGGER.debug("Http server started on port \"{0,number,#}\"", res.result().actualPort());
+                startFuture.complete();
             } else {
                 startFuture.fail(res.cause());
             }
@@ -110,7 +138,7 @@ public class Thumty extends AbstractVerticle {
         ThumbParams params = context.get(CONTEXT_THUMB_PARAMS);
 
         if (params == null) {
-            params = ThumbParamsParser.parse(options.getSecret(), request.path());
+            params = parser.parse(request.path());
         }
 
         if (options.isSecured() && !params.isSigned()) {
@@ -118,10 +146,32 @@ public class Thumty extends AbstractVerticle {
         } else {
             LOGGER.debug("Processing request \"{0}\"", request.path());
 
-            thumbBuilder.build(params).setHandler(res -> {
+            boolean immutable = options.isImmutable() && params.isSigned();
+            boolean timing = isServerTimingEnabled(request);
+
+            Trace trace = new Trace();
+            long start = System.nanoTime();
+
+            HttpServerResponse response = context.response();
+
+            // Timed response waits until the build is finished, so timing has encode and cache write stages
+            thumbBuilder.build(params, trace, () -> response.ended() || response.closed(), timing).setHandler(res -> {
+                if (res.failed() && response.ended()) {
+                    LOGGER.debug("Dropped build of answered request \"{0}\"", request.path());
+                    return;
+                }
+
+                if (timing) {
+                    trace.record("total", start);
+                    context.response().putHeader("Server-Timing", trace.toServerTiming());
+                }
+
                 if (res.succeeded()) {
                     LOGGER.debug("Succeeded in processing request \"{0}\"", request.path());
-                    sendContent(context, res.result());
+                    sendContent(context, res.result(), immutable);
+                } else if (res.cause() instanceof BuildRejectedException) {
+                    LOGGER.warn("Rejected request \"{0}\", builds queued: {1}", request.path(), thumbBuilder.getAdmission().getQueued());
+                    sendError(context, res.cause());
                 } else {
                     LOGGER.error("Failed in processing request \"{0}\"", res.cause(), request.path());
                     sendError(context, res.cause());
@@ -130,19 +180,225 @@ public class Thumty extends AbstractVerticle {
         }
     }
 
-    private void sendContent(RoutingContext context, ExpirableAttributedContent content) {
+    /**
+     * Send source image info as json, source is read only up to image header or isn't read at all if it's indexed.
+     * Meta path is followed by optionally signed source location, as thumb url without options.
+     *
+     * @param context the routing context
+     */
+    private void sendMeta(RoutingContext context) {
+        HttpServerRequest request = context.request();
+
+        ThumbParams params = parser.parse(request.path().substring(options.getMetaPath().length()));
+
+        if (options.isSecured() && !params.isSigned()) {
+            sendError(context, "Forbidden", 403);
+            return;
+        }
+
+        thumbBuilder.probe(params.getSource(), new Trace()).setHandler(res -> {
+            if (res.succeeded()) {
+                Buffer body = Buffer.buffer(res.result().toJson().encode());
+
+                HttpServerResponse response = context.response()
+                        .putHeader("Content-Type", "application/json")
+                        .putHeader("Content-Length", String.valueOf(body.length()));
+
+                if (request.method() == HttpMethod.HEAD) {
+                    response.end();
+                } else {
+                    response.end(body);
+                }
+            } else {
+                LOGGER.error("Failed in probing source \"{0}\"", res.cause(), request.path());
+                sendError(context, res.cause());
+            }
+        });
+    }
+
+    /**
+     * In debug mode {@code debug} query parameter should be a signature of request path made with debug secret, so
+     * thumb url signature doesn't grant timing access.
+     *
+     * @param request the thumb request
+     * @return true if Server-Timing header should be sent
+     */
+    private boolean isServerTimingEnabled(HttpServerRequest request) {
+        switch (options.getServerTiming()) {
+            case "all":
+                return true;
+            case "debug":
+                String debug = request.getParam("debug");
+                return debugSigner != null && debug != null && debugSigner.verify(debug, request.path());
+            default:
+                return false;
+        }
+    }
+
+    private void sendMetrics(RoutingContext context) {
         context.response()
-                .putHeader("Content-Type", content.getAttributes().getContentType())
-                .putHeader("Content-Length", String.valueOf(content.getAttributes().getSize()));
+                .putHeader("Content-Type", Metrics.CONTENT_TYPE)
+                .putHeader("Cache-Control", "no-cache")
+                .end(metrics.format());
+    }
+
+    private void sendContent(RoutingContext context, ExpirableAttributedContent content, boolean immutable) {
+        HttpServerRequest request = context.request();
+        HttpServerResponse response = context.response();
+
+        String etag = ConditionalRequests.entityTag(content.getAttributes().getSha1());
+        LocalDateTime lastModified = lastModified(content);
+
+        if (etag != null) {
+            response.putHeader("ETag", etag);
+        }
+
+        if (lastModified != null) {
+            response.putHeader("Last-Modified", ConditionalRequests.formatDate(lastModified));
+        }
 
         if (content.getExpires() != null) {
-            context.response()
+            response
                     .putHeader("Expires", formatExpiration(content.getExpires()))
-                    .putHeader("Cache-Control", formatCacheControl(content.getExpires()));
+                    .putHeader("Cache-Control", formatCacheControl(content.getExpires(), immutable));
+        }
+
+        if (isNotModified(request, etag, lastModified)) {
+            // Content stream is never opened
+            response.setStatusCode(304).end();
+            return;
+        }
+
+        response.putHeader("Content-Type", content.getAttributes().getContentType());
+
+        if (content.getLocalPath() != null) {
+            sendFile(context, content.getLocalPath(), content.getAttributes().getSize());
+        } else if (content.getAttributes().getSize() <= 0) {
+            sendStream(context, content);
+        } else {
+            response.putHeader("Content-Length", String.valueOf(content.getAttributes().getSize()));
+
+            if (context.request().method() == HttpMethod.HEAD) {
+                response.end();
+            } else {
+                countBytesOut(content.getAttributes().getSize());
+                Pump.pump(content, response).start();
+                content.endHandler(v -> response.end());
+            }
         }
+    }
+
+    /**
+     * Send content of unknown size (e.g. streamed from encoder), connection is closed if stream fails
+     *
+     * @param context the routing context
+     * @param content the content
+     */
+    private void sendStream(RoutingContext context, ExpirableAttributedContent content) {
+        HttpServerResponse response = context.response();
+
+        response.setChunked(true);
+
+        if (context.request().method() == HttpMethod.HEAD) {
+            response.end();
+        } else {
+            response.bodyEndHandler(v -> countBytesOut(response.bytesWritten()));
+
+            content.exceptionHandler(t -> {
+                LOGGER.error("Failed in streaming content \"{0}\"", t, context.request().path());
+
+                if (!response.closed()) {
+                    response.close();
+                }
+            });
+
+            Pump.pump(content, response).start();
+            content.endHandler(v -> response.end());
+        }
+    }
+
+    /**
+     * Send file backed content using sendfile, with support of single byte range requests
+     *
+     * @param context the routing context
+     * @param path    the local file path
+     * @param size    the file size
+     */
+    private void sendFile(RoutingContext context, String path, long size) {
+        HttpServerRequest request = context.request();
+        HttpServerResponse response = context.response();
+
+        response.putHeader("Accept-Ranges", "bytes");
+
+        ByteRange range = ByteRange.parse(request.getHeader("Range"), size);
+
+        long offset = 0;
+        long length = size;
+
+        if (range != null) {
+            response.putHeader("Content-Range", range.toContentRange(size));
+
+            if (!range.isSatisfiable()) {
+                sendError(context, "Range not satisfiable", 416);
+                return;
+            }
+
+            response.setStatusCode(206);
+
+            offset = range.getStart();
+            length = range.getLength();
+        }
+
+        response.putHeader("Content-Length", String.valueOf(length));
+
+        if (request.method() == HttpMethod.HEAD) {
+            response.end();
+        } else {
+            countBytesOut(length);
+
+            response.sendFile(path, offset, length, res -> {
+                if (res.failed()) {
+                    LOGGER.error("Failed in sending file \"{0}\"", res.cause(), path);
+
+                    if (!response.headWritten()) {
+                        response.headers().remove("Content-Range").remove("Content-Length");
+                        sendError(context, res.cause());
+                    } else if (!response.closed()) {
+                        response.close();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Evaluate conditional request headers, {@code If-Modified-Since} is ignored when {@code If-None-Match} present
+     *
+     * @param request      the http request
+     * @param etag         the content entity tag
+     * @param lastModified the content modification time
+     * @return true if client has an actual content version
+     */
+    private boolean isNotModified(HttpServerRequest request, @Nullable String etag, @Nullable LocalDateTime lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+
+        if (ifNoneMatch != null) {
+            return ConditionalRequests.matches(ifNoneMatch, etag);
+        }
+
+        return ConditionalRequests.notModifiedSince(request.getHeader("If-Modified-Since"), lastModified);
+    }
+
+    @Nullable
+    private LocalDateTime lastModified(ExpirableAttributedContent content) {
+        if (content.getAttributes() instanceof ContentAttributes) {
+            return ((ContentAttributes) content.getAttributes()).getUpdated();
+        }
+        return null;
+    }
 
-        Pump.pump(content, context.response()).start();
-        content.endHandler(v -> context.response().end());
+    private void countBytesOut(long bytes) {
+        metrics.counter("thumty_bytes_out_total", "Number of sent thumb bytes").inc(bytes);
     }
 
     private void sendError(RoutingContext context, Throwable throwable) {
@@ -150,6 +406,9 @@ public class Thumty extends AbstractVerticle {
             sendError(context, "Unsupported image format", 422);
         } else if (throwable instanceof LoaderException) {
             sendError(context, "Not found", 404);
+        } else if (throwable instanceof BuildRejectedException) {
+            context.response().putHeader("Retry-After", String.valueOf(((BuildRejectedException) throwable).getRetryAfter()));
+            sendError(context, "Service unavailable", 503);
         } else {
             sendError(context, "Internal server error", 500);
         }
@@ -160,13 +419,15 @@ public class Thumty extends AbstractVerticle {
     }
 
     private String formatExpiration(LocalDateTime time) {
-        return RFC_1123_DATE_TIME.format(time.atZone(ZoneId.of("GMT")));
+        return ConditionalRequests.formatDate(time);
     }
 
-    private String formatCacheControl(LocalDateTime time) {
+    private String formatCacheControl(LocalDateTime time, boolean immutable) {
         LocalDateTime now = LocalDateTime.now();
         if (time.isBefore(now)) {
             return "no-cache";
+        } else if (immutable) {
+            return "max-age=" + Duration.between(now, time).getSeconds() + ", immutable";
         } else {
             return "max-age=" + Duration.between(now, time).getSeconds();
         }
@@ -1,10 +1,15 @@
 package org.eightlog.thumty.server;
 
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import org.eightlog.thumty.common.text.DurationParser;
 import org.eightlog.thumty.server.params.ThumbParams;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author Iliya Grushevskiy <iliya.gr@gmail.com>
@@ -21,10 +26,40 @@ public class ThumtyOptions {
      */
     private static final int DEFAULT_PORT = 8080;
 
+    /**
+     * Default number of http server instances
+     */
+    private static final int DEFAULT_INSTANCES = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Default server socket accept backlog
+     */
+    private static final int DEFAULT_ACCEPT_BACKLOG = 1024;
+
+    /**
+     * Default max number of cached url plans
+     */
+    private static final long DEFAULT_PLAN_CACHE_SIZE = 10000;
+
     private final JsonObject config;
 
+    /**
+     * Variants params compiled once
+     */
+    private final Map<String, ThumbParams> variants = new HashMap<>();
+
     public ThumtyOptions(JsonObject config) {
         this.config = config;
+
+        JsonObject variants = getVariants();
+
+        for (String name : variants.fieldNames()) {
+            JsonObject params = variants.getJsonObject(name);
+
+            if (params != null) {
+                this.variants.put(name, ThumbParams.fromJson(params));
+            }
+        }
     }
 
     public String getHost() {
@@ -35,27 +70,151 @@ public class ThumtyOptions {
         return config.getInteger("port", DEFAULT_PORT);
     }
 
+    /**
+     * @return a number of http server instances (event loops)
+     */
+    public int getInstances() {
+        return config.getInteger("instances", DEFAULT_INSTANCES);
+    }
+
+    public boolean isTcpNoDelay() {
+        return config.getBoolean("tcp_no_delay", true);
+    }
+
+    public boolean isReuseAddress() {
+        return config.getBoolean("reuse_address", true);
+    }
+
+    public int getAcceptBacklog() {
+        return config.getInteger("accept_backlog", DEFAULT_ACCEPT_BACKLOG);
+    }
+
     public String getSecret() {
         return config.getString("secret", null);
     }
 
+    /**
+     * Get url signing secrets, the first one is used for signing, others are accepted for verification
+     * to support keys rotation
+     *
+     * @return a list of base64 encoded secrets
+     */
+    public List<String> getSecrets() {
+        List<String> secrets = new ArrayList<>();
+
+        if (getSecret() != null) {
+            secrets.add(getSecret());
+        }
+
+        JsonArray additional = config.getJsonArray("secrets", new JsonArray());
+
+        for (int i = 0; i < additional.size(); i++) {
+            secrets.add(additional.getString(i));
+        }
+
+        return secrets;
+    }
+
     public boolean isSecured() {
         return config.getBoolean("secured", false);
     }
 
+    /**
+     * @return true if signed and variant urls responses should be marked as immutable
+     */
+    public boolean isImmutable() {
+        return config.getBoolean("immutable", false);
+    }
+
     public long getResponseTimeout() {
         return DurationParser.parse(config.getString("response_timeout", null));
     }
 
+    /**
+     * Get {@code Server-Timing} header mode:
+     * <ul>
+     * <li>{@code none} - header is never sent</li>
+     * <li>{@code debug} - header is sent for requests with {@code debug} query parameter signed by debug secret</li>
+     * <li>{@code all} - header is sent with every thumb response</li>
+     * </ul>
+     *
+     * @return a server timing mode
+     */
+    public String getServerTiming() {
+        return config.getString("server_timing", "none");
+    }
+
+    /**
+     * Get debug secret, {@code debug} query parameter is the request path signed with it. Url signing secrets aren't
+     * accepted, so a signed thumb url doesn't grant debug access.
+     *
+     * @return a base64 encoded debug secret or null if debug mode is disabled
+     */
     @Nullable
-    public ThumbParams getVariant(String variant) {
-        JsonObject params = getVariantParams(variant);
-        return params != null ? ThumbParams.fromJson(params) : null;
+    public String getDebugSecret() {
+        return config.getString("debug_secret", null);
+    }
+
+    /**
+     * @return true if metrics route is enabled, disabled by default since it is not authenticated
+     */
+    public boolean isMetricsEnabled() {
+        return getMetricsConfig().getBoolean("enabled", false);
     }
 
+    /**
+     * @return a metrics route path
+     */
+    public String getMetricsPath() {
+        return getMetricsConfig().getString("path", "/metrics");
+    }
+
+    /**
+     * @return an event loop lag check interval in milliseconds
+     */
+    public long getEventLoopCheckInterval() {
+        return DurationParser.parse(getMetricsConfig().getString("event_loop_check_interval", null), 1000);
+    }
+
+    private JsonObject getMetricsConfig() {
+        return config.getJsonObject("metrics", new JsonObject());
+    }
+
+    /**
+     * @return true if source meta route is enabled, disabled by default since it takes over thumb urls under its path
+     */
+    public boolean isMetaEnabled() {
+        return getMetaConfig().getBoolean("enabled", false);
+    }
+
+    /**
+     * @return a source meta route path, the source location follows it
+     */
+    public String getMetaPath() {
+        return getMetaConfig().getString("path", "/meta");
+    }
+
+    private JsonObject getMetaConfig() {
+        return config.getJsonObject("meta", new JsonObject());
+    }
+
+    /**
+     * @return a max number of cached url plans, 0 to disable cache
+     */
+    public long getPlanCacheSize() {
+        return config.getLong("plan_cache_size", DEFAULT_PLAN_CACHE_SIZE);
+    }
+
+    /**
+     * Get variant params
+     *
+     * @param variant the variant name
+     * @return a copy of compiled variant params or null if variant doesn't exists
+     */
     @Nullable
-    private JsonObject getVariantParams(String variant) {
-        return getVariants().getJsonObject(variant);
+    public ThumbParams getVariant(String variant) {
+        ThumbParams params = variants.get(variant);
+        return params != null ? new ThumbParams(params) : null;
     }
 
     private JsonObject getVariants() {
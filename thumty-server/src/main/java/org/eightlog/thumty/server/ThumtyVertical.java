@@ -0,0 +1,50 @@
+package org.eightlog.thumty.server;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.eightlog.thumty.feature.FeatureDetectionVertical;
+
+/**
+ * Main vertical, deploys feature detection service once and configured number of http server instances.
+ * <p>
+ * Http server instances listen to the same port, vertx distributes connections between their event loops.
+ * Thumb builder, cache, loaders and filters are shared between instances.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class ThumtyVertical extends AbstractVerticle {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(ThumtyVertical.class);
+
+    @Override
+    public void start(Future<Void> startFuture) throws Exception {
+        ThumtyOptions options = new ThumtyOptions(config());
+
+        DeploymentOptions featureDetectionDeploymentOptions = new DeploymentOptions().setConfig(config());
+
+        DeploymentOptions serverDeploymentOptions = new DeploymentOptions()
+                .setConfig(config())
+                .setInstances(options.getInstances());
+
+        Future<String> featureDetection = Future.future();
+        vertx.deployVerticle(FeatureDetectionVertical.class.getName(), featureDetectionDeploymentOptions, featureDetection.completer());
+
+        featureDetection.compose(id -> {
+            LOGGER.debug("Succeeded in deploying feature detection vertical");
+
+            Future<String> server = Future.future();
+            vertx.deployVerticle(Thumty.class.getName(), serverDeploymentOptions, server.completer());
+            return server;
+        }).setHandler(res -> {
+            if (res.succeeded()) {
+                LOGGER.debug("Succeeded in deploying \"{0}\" http server instances", options.getInstances());
+                startFuture.complete();
+            } else {
+                startFuture.fail(res.cause());
+            }
+        });
+    }
+}
@@ -30,6 +30,25 @@ public class ThumbParams {
 
     private String source;
 
+    public ThumbParams() {
+    }
+
+    /**
+     * Copy constructor, params parts are immutable and shared
+     *
+     * @param params the params to copy
+     */
+    public ThumbParams(ThumbParams params) {
+        this.resize = params.resize;
+        this.size = params.size;
+        this.align = params.align;
+        this.filters = params.filters;
+        this.crop = params.crop;
+        this.trim = params.trim;
+        this.signed = params.signed;
+        this.source = params.source;
+    }
+
     @Nullable
     public ThumbResize getResize() {
         return resize;
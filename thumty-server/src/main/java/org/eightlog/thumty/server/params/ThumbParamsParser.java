@@ -1,14 +1,16 @@
 package org.eightlog.thumty.server.params;
 
-import com.google.common.io.BaseEncoding;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.nio.charset.Charset;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import javax.annotation.Nullable;
 
 /**
+ * Thumb url parser.
+ * <p>
+ * Parsed thumb options are compiled into immutable plans, cached by url options prefix (the part between signature
+ * and source), so urls with the same options are parsed once. Parser instance is thread safe.
+ *
  * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
  */
 public class ThumbParamsParser {
@@ -24,153 +26,278 @@ public class ThumbParamsParser {
     private final static int EXPECT_FILTERS = 7;
     private final static int EXPECT_SOURCE = 8;
 
-    private final String url;
+    /**
+     * Max number of options segments in url
+     */
+    private final static int MAX_OPTIONS = 6;
 
-    private final String secret;
+    private final ThumbSigner signer;
 
-    private int state = BEGIN;
-    private int end;
+    private final Cache<String, Plan> plans;
 
-    private String value = null;
-
-    private ThumbParamsParser(String secret, String url) {
-        this.secret = secret;
-        this.url = url;
+    /**
+     * Construct parser
+     *
+     * @param signer    the url signer, null if urls aren't signed
+     * @param cacheSize the max number of cached plans, 0 to disable caching
+     */
+    public ThumbParamsParser(@Nullable ThumbSigner signer, long cacheSize) {
+        this.signer = signer;
+        this.plans = cacheSize > 0 ? CacheBuilder.newBuilder().maximumSize(cacheSize).build() : null;
     }
 
     public static ThumbParams parse(String secret, String url) {
-        return new ThumbParamsParser(secret, url.startsWith("/") ? url : "/" + url).parse();
+        return new ThumbParamsParser(secret != null ? new ThumbSigner(secret) : null, 0).parse(url);
     }
 
-    private ThumbParams parse() {
-        ThumbParams result = new ThumbParams();
-
-        while (state != END) {
-            switch (state) {
-                case BEGIN:
-                    next(EXPECT_HMAC);
-                    break;
-
-                case EXPECT_HMAC:
-                    if (isHmac(value)) {
-                        result.setSigned(true);
-                        next(EXPECT_TRIM);
-                    } else {
-                        state = EXPECT_TRIM;
-                    }
-                    break;
-
-                case EXPECT_TRIM:
-                    if (ThumbTrim.canParse(value)) {
-                        result.setTrim(ThumbTrim.parse(value));
-                        next(EXPECT_CROP);
-                    } else {
-                        state = EXPECT_CROP;
-                    }
-                    break;
-
-                case EXPECT_CROP:
-                    if (ThumbCrop.canParse(value)) {
-                        result.setCrop(ThumbCrop.parse(value));
-                        next(EXPECT_FIT_IN);
-                    } else {
-                        state = EXPECT_FIT_IN;
-                    }
-                    break;
-
-                case EXPECT_FIT_IN:
-                    if (ThumbResize.canParse(value)) {
-                        result.setResize(ThumbResize.parse(value));
-                        next(EXPECT_SIZE);
-                    } else {
-                        state = EXPECT_SIZE;
-                    }
-                    break;
-
-                case EXPECT_SIZE:
-                    if (ThumbSize.canParse(value)) {
-                        result.setSize(ThumbSize.parse(value));
-                        next(EXPECT_ALIGN);
-                    } else {
-                        state = EXPECT_ALIGN;
-                    }
-                    break;
-
-                case EXPECT_ALIGN:
-                    if (ThumbAlign.canParse(value)) {
-                        result.setAlign(ThumbAlign.parse(value));
-                        next(EXPECT_FILTERS);
-                    } else {
-                        state = EXPECT_FILTERS;
-                    }
-                    break;
-
-                case EXPECT_FILTERS:
-                    if (ThumbFilters.canParse(value)) {
-                        result.setFilters(ThumbFilters.parse(value));
-                        next(EXPECT_SOURCE);
-                    } else {
-                        state = EXPECT_SOURCE;
-                    }
-                    break;
-
-                case EXPECT_SOURCE:
-                    result.setSource(value + "/" + remains());
-                    state = END;
-                    break;
+    /**
+     * Parse thumb url
+     *
+     * @param url the url path
+     * @return a thumb params
+     */
+    public ThumbParams parse(String url) {
+        Parsing parsing = new Parsing(url.startsWith("/") ? url : "/" + url);
+
+        parsing.next(EXPECT_HMAC);
+
+        if (parsing.state == EXPECT_HMAC) {
+            if (signer != null && signer.verify(parsing.value, parsing.remains())) {
+                parsing.result.setSigned(true);
+                parsing.base = parsing.end;
+                parsing.next(EXPECT_TRIM);
+            } else {
+                parsing.end = 0;
+                parsing.next(EXPECT_TRIM);
             }
         }
 
-        return result;
+        Plan cached = null;
+
+        if (plans != null && parsing.state != END) {
+            cached = lookup(parsing);
+        }
+
+        parsing.run();
+
+        if (plans != null && parsing.optionsEnd > parsing.base && (cached == null || cached.end < parsing.optionsEnd - parsing.base)) {
+            plans.put(parsing.url.substring(parsing.base, parsing.optionsEnd), new Plan(parsing.result, parsing.optionsState, parsing.optionsEnd - parsing.base));
+        }
+
+        return parsing.result;
     }
 
-    private String remains() {
-        return end < url.length() ? url.substring(end + 1) : "";
+    /**
+     * Find the longest cached plan for url options prefix and resume parsing after it
+     *
+     * @param parsing the parsing state
+     * @return a cached plan or null
+     */
+    @Nullable
+    private Plan lookup(Parsing parsing) {
+        String url = parsing.url;
+
+        int[] bounds = new int[MAX_OPTIONS];
+        int count = 0;
+
+        for (int i = parsing.base; count < MAX_OPTIONS; count++) {
+            i = url.indexOf('/', i + 1);
+
+            if (i == -1) {
+                bounds[count++] = url.length();
+                break;
+            }
+
+            bounds[count] = i;
+        }
+
+        for (int k = count - 1; k >= 0; k--) {
+            Plan plan = plans.getIfPresent(url.substring(parsing.base, bounds[k]));
+
+            if (plan != null) {
+                plan.apply(parsing.result);
+
+                parsing.end = bounds[k];
+                parsing.optionsEnd = bounds[k];
+                parsing.optionsState = plan.state;
+                parsing.next(plan.state);
+
+                return plan;
+            }
+        }
+
+        return null;
     }
 
-    private void next(int state) {
-        if (next()) {
+    /**
+     * Compiled url options
+     */
+    private static class Plan {
+        private final ThumbTrim trim;
+        private final ThumbCrop crop;
+        private final ThumbResize resize;
+        private final ThumbSize size;
+        private final ThumbAlign align;
+        private final ThumbFilters filters;
+
+        /**
+         * Parser state after options
+         */
+        private final int state;
+
+        /**
+         * Options prefix length
+         */
+        private final int end;
+
+        Plan(ThumbParams params, int state, int end) {
+            this.trim = params.getTrim();
+            this.crop = params.getCrop();
+            this.resize = params.getResize();
+            this.size = params.getSize();
+            this.align = params.getAlign();
+            this.filters = params.getFilters();
             this.state = state;
-        } else {
-            this.state = END;
+            this.end = end;
+        }
+
+        void apply(ThumbParams params) {
+            params.setTrim(trim);
+            params.setCrop(crop);
+            params.setResize(resize);
+            params.setSize(size);
+            params.setAlign(align);
+            params.setFilters(filters);
         }
     }
 
-    private boolean isHmac(String value) {
-        try {
-            if (secret != null) {
-                SecretKeySpec spec = new SecretKeySpec(BaseEncoding.base64().decode(secret), "HmacSHA1");
-                Mac mac = Mac.getInstance("HmacSHA1");
-                mac.init(spec);
+    /**
+     * Single url parsing state
+     */
+    private static class Parsing {
 
-                String sign = BaseEncoding.base64Url().omitPadding().encode(
-                        mac.doFinal(remains().getBytes(Charset.forName("UTF-8")))
-                );
+        private final String url;
 
-                return value.equals(sign);
-            } else {
-                return false;
+        private final ThumbParams result = new ThumbParams();
+
+        private int state = BEGIN;
+        private int end;
+
+        private String value = null;
+
+        /**
+         * Options start position, after signature if present
+         */
+        private int base;
+
+        /**
+         * Options end position and parser state after last parsed option
+         */
+        private int optionsEnd;
+        private int optionsState = EXPECT_TRIM;
+
+        Parsing(String url) {
+            this.url = url;
+        }
+
+        void run() {
+            while (state != END) {
+                switch (state) {
+                    case EXPECT_TRIM:
+                        if (ThumbTrim.canParse(value)) {
+                            result.setTrim(ThumbTrim.parse(value));
+                            option(EXPECT_CROP);
+                        } else {
+                            state = EXPECT_CROP;
+                        }
+                        break;
+
+                    case EXPECT_CROP:
+                        if (ThumbCrop.canParse(value)) {
+                            result.setCrop(ThumbCrop.parse(value));
+                            option(EXPECT_FIT_IN);
+                        } else {
+                            state = EXPECT_FIT_IN;
+                        }
+                        break;
+
+                    case EXPECT_FIT_IN:
+                        if (ThumbResize.canParse(value)) {
+                            result.setResize(ThumbResize.parse(value));
+                            option(EXPECT_SIZE);
+                        } else {
+                            state = EXPECT_SIZE;
+                        }
+                        break;
+
+                    case EXPECT_SIZE:
+                        if (ThumbSize.canParse(value)) {
+                            result.setSize(ThumbSize.parse(value));
+                            option(EXPECT_ALIGN);
+                        } else {
+                            state = EXPECT_ALIGN;
+                        }
+                        break;
+
+                    case EXPECT_ALIGN:
+                        if (ThumbAlign.canParse(value)) {
+                            result.setAlign(ThumbAlign.parse(value));
+                            option(EXPECT_FILTERS);
+                        } else {
+                            state = EXPECT_FILTERS;
+                        }
+                        break;
+
+                    case EXPECT_FILTERS:
+                        if (ThumbFilters.canParse(value)) {
+                            result.setFilters(ThumbFilters.parse(value));
+                            option(EXPECT_SOURCE);
+                        } else {
+                            state = EXPECT_SOURCE;
+                        }
+                        break;
+
+                    case EXPECT_SOURCE:
+                        result.setSource(value + "/" + remains());
+                        state = END;
+                        break;
+                }
             }
-        } catch (NoSuchAlgorithmException | InvalidKeyException | IllegalArgumentException e) {
-            throw new RuntimeException(e);
         }
-    }
 
-    private boolean next() {
-        int i = url.indexOf("/", end + 1);
+        private void option(int state) {
+            optionsEnd = end;
+            optionsState = state;
+            next(state);
+        }
 
-        if (i == -1 && end != url.length()) {
-            i = url.length();
+        private String remains() {
+            return end < url.length() ? url.substring(end + 1) : "";
         }
 
-        if (i >= 0) {
-            int start = end + 1;
-            end = i;
-            value = url.substring(start, end);
-            return true;
+        private void next(int state) {
+            if (next()) {
+                this.state = state;
+            } else {
+                this.state = END;
+            }
         }
 
-        return false;
-    }
+        private boolean next() {
+            int i = url.indexOf("/", end + 1);
 
+            if (i == -1 && end != url.length()) {
+                i = url.length();
+            }
+
+            if (i >= 0) {
+                int start = end + 1;
+                end = i;
+                value = url.substring(start, end);
+                return true;
+            }
+
+            return false;
+        }
+    }
 }
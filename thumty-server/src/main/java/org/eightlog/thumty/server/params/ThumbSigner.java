@@ -0,0 +1,114 @@
+package org.eightlog.thumty.server.params;
+
+import com.google.common.io.BaseEncoding;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * HMAC-SHA1 url signer.
+ * <p>
+ * Supports several keys to allow keys rotation: urls are signed with the first key and verified with any of them.
+ * Initialized {@link Mac} instances are confined to threads, so no per request key setup is done.
+ *
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class ThumbSigner {
+
+    private final static String ALGORITHM = "HmacSHA1";
+
+    /**
+     * HMAC-SHA1 length in bytes
+     */
+    private final static int SIGNATURE_LENGTH = 20;
+
+    private final List<SecretKeySpec> keys = new ArrayList<>();
+
+    private final ThreadLocal<Mac[]> macs = ThreadLocal.withInitial(this::createMacs);
+
+    /**
+     * Construct signer
+     *
+     * @param secrets the base64 encoded secret keys, the first one is used for signing
+     */
+    public ThumbSigner(List<String> secrets) {
+        Objects.requireNonNull(secrets, "secrets");
+
+        if (secrets.isEmpty()) {
+            throw new IllegalArgumentException("At least one secret required");
+        }
+
+        for (String secret : secrets) {
+            keys.add(new SecretKeySpec(BaseEncoding.base64().decode(secret), ALGORITHM));
+        }
+    }
+
+    public ThumbSigner(String... secrets) {
+        this(Arrays.asList(secrets));
+    }
+
+    /**
+     * Verify data signature
+     *
+     * @param signature the url safe base64 encoded signature
+     * @param data      the signed data
+     * @return true if data is signed with one of the keys
+     */
+    public boolean verify(String signature, String data) {
+        byte[] expected;
+
+        try {
+            expected = BaseEncoding.base64Url().omitPadding().decode(signature);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+
+        // Skip hashing for values that can't be a signature
+        if (expected.length != SIGNATURE_LENGTH) {
+            return false;
+        }
+
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+
+        for (Mac mac : macs.get()) {
+            if (MessageDigest.isEqual(expected, mac.doFinal(bytes))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Sign data with the first key
+     *
+     * @param data the data
+     * @return a url safe base64 encoded signature
+     */
+    public String sign(String data) {
+        return BaseEncoding.base64Url().omitPadding().encode(macs.get()[0].doFinal(data.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Mac[] createMacs() {
+        try {
+            Mac[] result = new Mac[keys.size()];
+
+            for (int i = 0; i < result.length; i++) {
+                result[i] = Mac.getInstance(ALGORITHM);
+                result[i].init(keys.get(i));
+            }
+
+            return result;
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.eightlog.thumty.server;
+
+import io.vertx.core.Future;
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class AdmissionControllerTest {
+
+    @Test
+    public void shouldQueueTasksExceedingLimit() throws Exception {
+        AdmissionController admission = new AdmissionController(1, 1, 1);
+
+        Future<String> task = Future.future();
+
+        Future<String> first = admission.submit(() -> task);
+        Future<String> second = admission.submit(() -> Future.succeededFuture("second"));
+
+        assertThat(admission.getRunning()).isEqualTo(1);
+        assertThat(admission.getQueued()).isEqualTo(1);
+        assertThat(second.isComplete()).isFalse();
+
+        task.complete("first");
+
+        assertThat(first.result()).isEqualTo("first");
+        assertThat(second.result()).isEqualTo("second");
+        assertThat(admission.getRunning()).isEqualTo(0);
+        assertThat(admission.getQueued()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldRejectWhenQueueIsFull() throws Exception {
+        AdmissionController admission = new AdmissionController(1, 1, 5);
+
+        admission.submit(Future::future);
+        admission.submit(Future::future);
+
+        Future<String> rejected = admission.submit(() -> Future.succeededFuture("rejected"));
+
+        assertThat(rejected.failed()).isTrue();
+        assertThat(rejected.cause()).isInstanceOf(BuildRejectedException.class);
+        assertThat(((BuildRejectedException) rejected.cause()).getRetryAfter()).isEqualTo(5);
+        assertThat(admission.getRejected()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRejectTasksWaitingTooLong() throws Exception {
+        AdmissionController admission = new AdmissionController(1, 1, 5, 1);
+
+        Future<String> task = Future.future();
+
+        admission.submit(() -> task);
+        Future<String> expired = admission.submit(() -> Future.succeededFuture("expired"));
+
+        Thread.sleep(10);
+        task.complete("first");
+
+        assertThat(expired.failed()).isTrue();
+        assertThat(expired.cause()).isInstanceOf(BuildRejectedException.class);
+        assertThat(admission.getRejected()).isEqualTo(1);
+        assertThat(admission.getRunning()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldDropAbandonedTasks() throws Exception {
+        AdmissionController admission = new AdmissionController(1, 2, 1);
+
+        Future<String> task = Future.future();
+        boolean[] abandoned = {false};
+
+        admission.submit(() -> task);
+        Future<String> dropped = admission.submit(() -> Future.succeededFuture("dropped"), () -> abandoned[0]);
+        Future<String> next = admission.submit(() -> Future.succeededFuture("next"));
+
+        abandoned[0] = true;
+        task.complete("first");
+
+        assertThat(dropped.failed()).isTrue();
+        assertThat(next.result()).isEqualTo("next");
+        assertThat(admission.getAbandoned()).isEqualTo(1);
+        assertThat(admission.getRunning()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldReleaseOnFailure() throws Exception {
+        AdmissionController admission = new AdmissionController(1, 0, 1);
+
+        Future<String> failed = admission.submit(() -> {
+            throw new IllegalStateException();
+        });
+
+        assertThat(failed.failed()).isTrue();
+        assertThat(admission.getRunning()).isEqualTo(0);
+        assertThat(admission.submit(() -> Future.succeededFuture("next")).result()).isEqualTo("next");
+    }
+
+    @Test
+    public void shouldNotLimitWhenDisabled() throws Exception {
+        AdmissionController admission = new AdmissionController(0, 0, 1);
+
+        for (int i = 0; i < 10; i++) {
+            admission.submit(Future::future);
+        }
+
+        assertThat(admission.getRejected()).isEqualTo(0);
+    }
+}
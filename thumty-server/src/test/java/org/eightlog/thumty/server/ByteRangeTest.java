@@ -0,0 +1,60 @@
+package org.eightlog.thumty.server;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class ByteRangeTest {
+
+    @Test
+    public void shouldParseRange() throws Exception {
+        ByteRange range = ByteRange.parse("bytes=10-19", 100);
+
+        assertThat(range.getStart()).isEqualTo(10);
+        assertThat(range.getEnd()).isEqualTo(19);
+        assertThat(range.getLength()).isEqualTo(10);
+        assertThat(range.toContentRange(100)).isEqualTo("bytes 10-19/100");
+    }
+
+    @Test
+    public void shouldParseOpenRange() throws Exception {
+        ByteRange range = ByteRange.parse("bytes=90-", 100);
+
+        assertThat(range.getStart()).isEqualTo(90);
+        assertThat(range.getEnd()).isEqualTo(99);
+    }
+
+    @Test
+    public void shouldParseSuffixRange() throws Exception {
+        ByteRange range = ByteRange.parse("bytes=-10", 100);
+
+        assertThat(range.getStart()).isEqualTo(90);
+        assertThat(range.getEnd()).isEqualTo(99);
+    }
+
+    @Test
+    public void shouldTruncateRangeToContentSize() throws Exception {
+        assertThat(ByteRange.parse("bytes=50-1000", 100).getEnd()).isEqualTo(99);
+        assertThat(ByteRange.parse("bytes=-1000", 100).getStart()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldDetectUnsatisfiableRange() throws Exception {
+        ByteRange range = ByteRange.parse("bytes=100-200", 100);
+
+        assertThat(range.isSatisfiable()).isFalse();
+        assertThat(range.toContentRange(100)).isEqualTo("bytes */100");
+    }
+
+    @Test
+    public void shouldIgnoreMalformedOrMultipleRanges() throws Exception {
+        assertThat(ByteRange.parse(null, 100)).isNull();
+        assertThat(ByteRange.parse("bytes=", 100)).isNull();
+        assertThat(ByteRange.parse("bytes=20-10", 100)).isNull();
+        assertThat(ByteRange.parse("items=0-10", 100)).isNull();
+        assertThat(ByteRange.parse("bytes=0-10,20-30", 100)).isNull();
+    }
+}
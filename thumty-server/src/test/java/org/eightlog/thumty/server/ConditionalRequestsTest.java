@@ -0,0 +1,55 @@
+package org.eightlog.thumty.server;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class ConditionalRequestsTest {
+
+    private static final String SHA1 = "ccafa6d826621e7b6836d6276a0f274c674c086b";
+
+    @Test
+    public void shouldCreateStrongEntityTag() throws Exception {
+        assertThat(ConditionalRequests.entityTag(SHA1)).isEqualTo("\"" + SHA1 + "\"");
+        assertThat(ConditionalRequests.entityTag(null)).isNull();
+    }
+
+    @Test
+    public void shouldMatchEntityTag() throws Exception {
+        String etag = ConditionalRequests.entityTag(SHA1);
+
+        assertThat(ConditionalRequests.matches(etag, etag)).isTrue();
+        assertThat(ConditionalRequests.matches("W/" + etag, etag)).isTrue();
+        assertThat(ConditionalRequests.matches("\"other\", " + etag, etag)).isTrue();
+        assertThat(ConditionalRequests.matches("*", etag)).isTrue();
+        assertThat(ConditionalRequests.matches("\"other\"", etag)).isFalse();
+        assertThat(ConditionalRequests.matches(null, etag)).isFalse();
+    }
+
+    @Test
+    public void shouldCheckModificationTime() throws Exception {
+        LocalDateTime modified = LocalDateTime.of(2017, 5, 1, 10, 0, 0, 500);
+        String date = ConditionalRequests.formatDate(modified);
+
+        assertThat(ConditionalRequests.notModifiedSince(date, modified)).isTrue();
+        assertThat(ConditionalRequests.notModifiedSince(date, modified.plusSeconds(1))).isFalse();
+        assertThat(ConditionalRequests.notModifiedSince(date, modified.minusDays(1))).isTrue();
+        assertThat(ConditionalRequests.notModifiedSince("invalid date", modified)).isFalse();
+        assertThat(ConditionalRequests.notModifiedSince(null, modified)).isFalse();
+    }
+
+    @Test
+    public void shouldFormatDateInGMT() throws Exception {
+        LocalDateTime time = LocalDateTime.of(2017, 5, 1, 10, 0, 0)
+                .atOffset(ZoneOffset.UTC).atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+
+        assertThat(ConditionalRequests.formatDate(time)).isEqualTo("Mon, 1 May 2017 10:00:00 GMT");
+    }
+}
@@ -0,0 +1,219 @@
+package org.eightlog.thumty.server;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.eightlog.thumty.filter.Filters;
+import org.eightlog.thumty.image.Image;
+import org.eightlog.thumty.image.exif.Orientation;
+import org.eightlog.thumty.image.io.ImageInfo;
+import org.eightlog.thumty.image.io.ImageReadPlan;
+import org.eightlog.thumty.server.params.ThumbCrop;
+import org.eightlog.thumty.server.params.ThumbParamsParser;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+@RunWith(VertxUnitRunner.class)
+public class DecodePlannerTest {
+
+    @Rule
+    public RunTestOnContext rule = new RunTestOnContext();
+
+    @Test
+    public void shouldDecodeCropRegion() throws Exception {
+        DecodePlanner planner = planner("/100x200:300x400/fit-in/300x300/image.jpg");
+
+        ImageReadPlan plan = planner.plan(8000, 5000);
+
+        assertThat(plan.getRegion()).isEqualTo(new Rectangle(200, 100, 7400, 4600));
+        assertThat(plan.getSampling()).isEqualTo(3);
+        assertThat(planner.getTransformParams().getCrop()).isNull();
+        assertThat(planner.getTransformParams().getSize()).isNotNull();
+    }
+
+    @Test
+    public void shouldDecodeSmallCropWithoutSampling() throws Exception {
+        DecodePlanner planner = planner("/0.1x0.1:0.8x0.8/image.jpg");
+
+        ImageReadPlan plan = planner.plan(8000, 5000);
+
+        assertThat(plan.getRegion()).isEqualTo(new Rectangle(800, 500, 800, 500));
+        assertThat(plan.getSampling()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldLeaveCropOutsideImageToFilter() throws Exception {
+        DecodePlanner planner = planner("/6000x9000:0x0/image.jpg");
+
+        assertThat(planner.plan(8000, 5000).getRegion()).isNull();
+        assertThat(planner.getTransformParams().getCrop()).isNotNull();
+
+        planner = planner("/6000x9000:0x0/300x300/image.jpg");
+
+        assertThat(planner.plan(8000, 5000).getRegion()).isNull();
+        assertThat(planner.getTransformParams().getCrop()).isNotNull();
+    }
+
+    @Test
+    public void shouldScaleCropLeftToFilter() throws Exception {
+        DecodePlanner planner = planner("/100x200:300x400/fit-in/300x300/filters:rotate(90)/image.jpg");
+
+        assertThat(planner.plan(8000, 5000).getRegion()).isNull();
+        assertThat(planner.getSampling()).isEqualTo(4);
+        assertThat(planner.getTransformParams().getCrop()).isEqualTo(new ThumbCrop(25, 50, 75, 100));
+
+        planner = planner("/0.1x0.2:1x0.4/fit-in/300x300/filters:rotate(90)/image.jpg");
+        planner.plan(8000, 5000);
+
+        assertThat(planner.getTransformParams().getCrop()).isEqualTo(new ThumbCrop(0.1f, 0.2f, 0, 0.4f));
+    }
+
+    @Test
+    public void shouldDecodeFillRegion() throws Exception {
+        assertThat(planner("/300x300/image.jpg").plan(8000, 4000).getRegion()).isEqualTo(new Rectangle(2000, 0, 4000, 4000));
+        assertThat(planner("/300x300/left/image.jpg").plan(8000, 4000).getRegion()).isEqualTo(new Rectangle(0, 0, 4000, 4000));
+        assertThat(planner("/100x100:0x0/300x300/image.jpg").plan(8000, 4000).getRegion()).isEqualTo(new Rectangle(2089, 100, 3900, 3900));
+    }
+
+    @Test
+    public void shouldDecodeWholeImage() throws Exception {
+        assertThat(planner("/300x0/image.jpg").plan(8000, 4000).getRegion()).isNull();
+        assertThat(planner("/0.5x0.5/image.jpg").plan(8000, 4000).getRegion()).isNull();
+        assertThat(planner("/fit-in/300x300/image.jpg").plan(8000, 4000).getRegion()).isNull();
+        assertThat(planner("/300x300/face/image.jpg").plan(8000, 4000).getRegion()).isNull();
+        assertThat(planner("/trim/100x100:0x0/300x300/image.jpg").plan(8000, 4000).getRegion()).isNull();
+        assertThat(planner("/100x100:0x0/300x300/filters:rotate(90)/image.jpg").plan(8000, 4000).getRegion()).isNull();
+    }
+
+    @Test
+    public void shouldDecodeGray() throws Exception {
+        assertThat(planner("/300x300/filters:gray/image.jpg").plan(800, 400).isGray()).isTrue();
+        assertThat(planner("/300x300/filters:gray:format(png):quality(80)/image.jpg").plan(800, 400).isGray()).isTrue();
+        assertThat(planner("/300x300/filters:gray:sepia/image.jpg").plan(800, 400).isGray()).isFalse();
+        assertThat(planner("/300x300/image.jpg").plan(800, 400).isGray()).isFalse();
+    }
+
+    @Test
+    public void shouldAllowThumbnailOfResizedSize() throws Exception {
+        assertThat(planner("/100x100/image.jpg").plan(4000, 2000).getThumbnail()).isEqualTo(new Dimension(200, 100));
+        assertThat(planner("/fit-in/100x100/image.jpg").plan(4000, 2000).getThumbnail()).isEqualTo(new Dimension(100, 64));
+        assertThat(planner("/100x100/filters:gray/image.jpg").plan(4000, 2000).getThumbnail()).isEqualTo(new Dimension(200, 100));
+    }
+
+    @Test
+    public void shouldNotAllowThumbnail() throws Exception {
+        assertThat(planner("/image.jpg").plan(4000, 2000).getThumbnail()).isNull();
+        assertThat(planner("/4000x4000/image.jpg").plan(4000, 2000).getThumbnail()).isNull();
+        assertThat(planner("/10x10:10x10/100x100/image.jpg").plan(4000, 2000).getThumbnail()).isNull();
+        assertThat(planner("/200x0/trim/image.jpg").plan(4000, 2000).getThumbnail()).isNull();
+        assertThat(planner("/100x100/focus:10x10/image.jpg").plan(4000, 2000).getThumbnail()).isNull();
+        assertThat(planner("/100x100/filters:rotate(90)/image.jpg").plan(4000, 2000).getThumbnail()).isNull();
+        assertThat(planner("/100x100/image.jpg", new JsonObject().put("embedded_thumbnails", false)).plan(4000, 2000).getThumbnail()).isNull();
+    }
+
+    @Test
+    public void shouldDescribeThumbnail() throws Exception {
+        DecodePlanner planner = planner("/100x100/image.jpg");
+
+        planner.plan(4000, 2000);
+        planner.thumbnailDecoded(160, 80);
+
+        assertThat(planner.isThumbnail()).isTrue();
+        assertThat(planner.getTransformParams().getSize()).isNotNull();
+        assertThat(planner.describe(new Image(new BufferedImage(160, 80, BufferedImage.TYPE_INT_RGB), "JPEG")))
+                .isEqualTo("jpeg 4000x2000 thumbnail 160x80");
+    }
+
+    @Test
+    public void shouldRequestReducedResolution() throws Exception {
+        assertThat(planner("/100x100/image.jpg").plan(4000, 2000).getResolution()).isEqualTo(new Dimension(400, 200));
+        assertThat(planner("/fit-in/100x100/image.jpg").plan(4000, 2000).getResolution()).isEqualTo(new Dimension(200, 100));
+        assertThat(planner("/0x1000:0x1000/100x100/image.jpg").plan(4000, 2000).getResolution()).isEqualTo(new Dimension(400, 200));
+        assertThat(planner("/100x100/image.jpg", new JsonObject().put("resolution_margin", 1)).plan(4000, 2000).getResolution())
+                .isEqualTo(new Dimension(200, 100));
+    }
+
+    @Test
+    public void shouldNotRequestReducedResolution() throws Exception {
+        assertThat(planner("/image.jpg").plan(4000, 2000).getResolution()).isNull();
+        assertThat(planner("/1000x1000/image.jpg").plan(4000, 2000).getResolution()).isNull();
+        assertThat(planner("/trim/100x100/image.jpg").plan(4000, 2000).getResolution()).isNull();
+        assertThat(planner("/100x100/focus:10x10/image.jpg").plan(4000, 2000).getResolution()).isNull();
+        assertThat(planner("/6000x9000:0x0/100x100/image.jpg").plan(4000, 2000).getResolution()).isNull();
+    }
+
+    @Test
+    public void shouldDescribeSubimage() throws Exception {
+        DecodePlanner planner = planner("/100x100/image.jpg");
+
+        planner.plan(4000, 2000);
+        planner.subimageDecoded(2, 500, 250);
+
+        assertThat(planner.getSampling()).isEqualTo(1);
+        assertThat(planner.describe(new Image(new BufferedImage(250, 250, BufferedImage.TYPE_INT_RGB), "TIF")))
+                .isEqualTo("tif 4000x2000 subimage 2 500x250 1/1 region 2000x2000+1000+0");
+    }
+
+    @Test
+    public void shouldDescribeOrientation() throws Exception {
+        DecodePlanner planner = planner("/image.jpg");
+
+        planner.plan(300, 400);
+
+        Image image = new Image(new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB), "JPEG")
+                .withOrientation(Orientation.RIGHT_TOP);
+
+        assertThat(planner.describe(image)).isEqualTo("jpeg 300x400 1/1 orientation 6");
+    }
+
+    @Test
+    public void shouldPlanKnownSource() throws Exception {
+        ImageInfo known = new ImageInfo("JPEG", 2000, 4000, Orientation.RIGHT_TOP, false);
+        DecodePlanner planner = new DecodePlanner(ThumbParamsParser.parse("secret", "/100x100/image.jpg"),
+                new Filters(rule.vertx(), new JsonObject()), new ThumbBuilderOptions(new JsonObject()), known);
+
+        assertThat(planner.getPlan().getThumbnail()).isEqualTo(new Dimension(200, 100));
+        assertThat(planner.isHeadThumbnailPlanned()).isTrue();
+        assertThat(planner.getImageInfo()).isNull();
+    }
+
+    @Test
+    public void shouldNotPlanHeadThumbnail() throws Exception {
+        ImageInfo png = new ImageInfo("png", 4000, 2000, Orientation.TOP_LEFT, true);
+
+        assertThat(planner("/100x100/image.jpg").isHeadThumbnailPlanned()).isFalse();
+        assertThat(new DecodePlanner(ThumbParamsParser.parse("secret", "/100x100/image.png"),
+                new Filters(rule.vertx(), new JsonObject()), new ThumbBuilderOptions(new JsonObject()), png)
+                .isHeadThumbnailPlanned()).isFalse();
+    }
+
+    @Test
+    public void shouldRememberHeaderInfo() throws Exception {
+        ImageInfo info = new ImageInfo("JPEG", 400, 300, Orientation.RIGHT_TOP, false);
+        DecodePlanner planner = planner("/image.jpg");
+
+        planner.plan(info);
+
+        assertThat(planner.getImageInfo()).isEqualTo(info);
+        assertThat(planner.describe(new Image(new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB), "JPEG")))
+                .isEqualTo("jpeg 300x400 1/1");
+    }
+
+    private DecodePlanner planner(String path) {
+        return planner(path, new JsonObject());
+    }
+
+    private DecodePlanner planner(String path, JsonObject options) {
+        return new DecodePlanner(ThumbParamsParser.parse("secret", path), new Filters(rule.vertx(), new JsonObject()),
+                new ThumbBuilderOptions(options));
+    }
+}
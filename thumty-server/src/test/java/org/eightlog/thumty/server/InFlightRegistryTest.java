@@ -0,0 +1,108 @@
+package org.eightlog.thumty.server;
+
+import io.vertx.core.Future;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class InFlightRegistryTest {
+
+    @Test
+    public void shouldCoalesceConcurrentTasks() throws Exception {
+        InFlightRegistry<String> registry = new InFlightRegistry<>();
+        AtomicInteger executions = new AtomicInteger();
+        Future<String> task = Future.future();
+
+        Future<String> first = registry.execute("key", () -> {
+            executions.incrementAndGet();
+            return task;
+        }, r -> Future.succeededFuture("shared-" + r));
+
+        Future<String> second = registry.execute("key", () -> {
+            executions.incrementAndGet();
+            return Future.future();
+        }, r -> Future.succeededFuture("shared-" + r));
+
+        assertThat(registry.size()).isEqualTo(1);
+        assertThat(first.isComplete()).isFalse();
+        assertThat(second.isComplete()).isFalse();
+
+        task.complete("result");
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(first.result()).isEqualTo("result");
+        assertThat(second.result()).isEqualTo("shared-result");
+        assertThat(registry.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldPropagateFailure() throws Exception {
+        InFlightRegistry<String> registry = new InFlightRegistry<>();
+        Future<String> task = Future.future();
+        Exception cause = new Exception();
+
+        Future<String> first = registry.execute("key", () -> task, Future::succeededFuture);
+        Future<String> second = registry.execute("key", Future::future, Future::succeededFuture);
+
+        task.fail(cause);
+
+        assertThat(first.cause()).isSameAs(cause);
+        assertThat(second.cause()).isSameAs(cause);
+        assertThat(registry.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldFailOnTaskException() throws Exception {
+        InFlightRegistry<String> registry = new InFlightRegistry<>();
+
+        Future<String> result = registry.execute("key", () -> {
+            throw new IllegalStateException();
+        }, Future::succeededFuture);
+
+        assertThat(result.failed()).isTrue();
+        assertThat(registry.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldNotCoalesceDifferentKeys() throws Exception {
+        InFlightRegistry<String> registry = new InFlightRegistry<>();
+        AtomicInteger executions = new AtomicInteger();
+
+        registry.execute("a", () -> {
+            executions.incrementAndGet();
+            return Future.future();
+        }, Future::succeededFuture);
+
+        registry.execute("b", () -> {
+            executions.incrementAndGet();
+            return Future.future();
+        }, Future::succeededFuture);
+
+        assertThat(executions.get()).isEqualTo(2);
+        assertThat(registry.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldRunNewTaskAfterCompletion() throws Exception {
+        InFlightRegistry<String> registry = new InFlightRegistry<>();
+        AtomicInteger executions = new AtomicInteger();
+
+        registry.execute("key", () -> {
+            executions.incrementAndGet();
+            return Future.succeededFuture("first");
+        }, Future::succeededFuture);
+
+        Future<String> second = registry.execute("key", () -> {
+            executions.incrementAndGet();
+            return Future.succeededFuture("second");
+        }, Future::succeededFuture);
+
+        assertThat(executions.get()).isEqualTo(2);
+        assertThat(second.result()).isEqualTo("second");
+    }
+}
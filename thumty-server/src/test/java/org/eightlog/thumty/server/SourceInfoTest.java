@@ -0,0 +1,34 @@
+package org.eightlog.thumty.server;
+
+import io.vertx.core.json.JsonObject;
+import org.eightlog.thumty.image.exif.Orientation;
+import org.eightlog.thumty.image.io.ImageInfo;
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class SourceInfoTest {
+
+    @Test
+    public void shouldConvertToJson() throws Exception {
+        JsonObject json = new SourceInfo(new ImageInfo("JPEG", 400, 300, Orientation.RIGHT_TOP, false), 1024).toJson();
+
+        assertThat(json.getInteger("width")).isEqualTo(300);
+        assertThat(json.getInteger("height")).isEqualTo(400);
+        assertThat(json.getString("format")).isEqualTo("jpeg");
+        assertThat(json.getInteger("orientation")).isEqualTo(6);
+        assertThat(json.getBoolean("alpha")).isFalse();
+        assertThat(json.getLong("size")).isEqualTo(1024);
+    }
+
+    @Test
+    public void shouldSkipUnknownSize() throws Exception {
+        JsonObject json = new SourceInfo(new ImageInfo("png", 40, 30, Orientation.TOP_LEFT, true), -1).toJson();
+
+        assertThat(json.getBoolean("alpha")).isTrue();
+        assertThat(json.containsKey("size")).isFalse();
+    }
+}
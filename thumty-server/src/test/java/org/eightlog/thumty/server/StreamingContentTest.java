@@ -0,0 +1,77 @@
+package org.eightlog.thumty.server;
+
+import io.vertx.core.Context;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+@RunWith(VertxUnitRunner.class)
+public class StreamingContentTest {
+
+    @Rule
+    public RunTestOnContext rule = new RunTestOnContext();
+
+    @Test
+    public void shouldBufferDataUntilHandlerSet(TestContext ctx) throws Exception {
+        Async async = ctx.async();
+        Context context = rule.vertx().getOrCreateContext();
+
+        StreamingContent content = new StreamingContent(context, null);
+        WriteStream<Buffer> sink = content.sink();
+
+        sink.write(Buffer.buffer("hello "));
+        sink.write(Buffer.buffer("world"));
+        sink.end();
+        content.end();
+
+        context.runOnContext(v -> {
+            Buffer result = Buffer.buffer();
+
+            content.handler(result::appendBuffer);
+            content.endHandler(e -> {
+                ctx.assertEquals("hello world", result.toString());
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void shouldNotEndOnSinkEnd(TestContext ctx) throws Exception {
+        Async async = ctx.async();
+        Context context = rule.vertx().getOrCreateContext();
+
+        StreamingContent content = new StreamingContent(context, null);
+
+        content.handler(b -> {
+        });
+        content.endHandler(v -> ctx.fail("Content shouldn't end"));
+        content.exceptionHandler(t -> {
+            ctx.assertEquals("encoding failed", t.getMessage());
+            async.complete();
+        });
+
+        content.sink().write(Buffer.buffer("partial"));
+        content.sink().end();
+        content.fail(new Exception("encoding failed"));
+    }
+
+    @Test
+    public void shouldSetContentType(TestContext ctx) throws Exception {
+        StreamingContent content = new StreamingContent(rule.vertx().getOrCreateContext(), null);
+
+        content.setContentType("image/png");
+
+        ctx.assertEquals("image/png", content.getAttributes().getContentType());
+        ctx.assertEquals(0L, content.getAttributes().getSize());
+        ctx.assertFalse(content.sink().writeQueueFull());
+    }
+}
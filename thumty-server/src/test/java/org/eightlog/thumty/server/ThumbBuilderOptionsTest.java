@@ -0,0 +1,30 @@
+package org.eightlog.thumty.server;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class ThumbBuilderOptionsTest {
+
+    @Test
+    public void shouldParseWriteChunkSizeAsDefault() throws Exception {
+        ThumbBuilderOptions defaults = new ThumbBuilderOptions(new JsonObject());
+        ThumbBuilderOptions options = new ThumbBuilderOptions(new JsonObject().put("write_chunk_size", "64Kb"));
+
+        assertThat(options.getWriteChunkSize()).isEqualTo(defaults.getWriteChunkSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectWriteChunkSizeOutOfRange() throws Exception {
+        new ThumbBuilderOptions(new JsonObject().put("write_chunk_size", "4Gb")).getWriteChunkSize();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidWriteChunkSize() throws Exception {
+        new ThumbBuilderOptions(new JsonObject().put("write_chunk_size", "64 kilobytes")).getWriteChunkSize();
+    }
+}
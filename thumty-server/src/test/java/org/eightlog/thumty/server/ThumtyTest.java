@@ -0,0 +1,126 @@
+package org.eightlog.thumty.server;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.eightlog.thumty.server.params.ThumbSigner;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.net.ServerSocket;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+@RunWith(VertxUnitRunner.class)
+public class ThumtyTest {
+
+    private static final String SECRET = "i9ccFBc9cMbg5k+iQyvxVRFS05QoAoaqpTbYFOdjjFI=";
+
+    private static final String DEBUG_SECRET = "bWJHz6zC5cH5ZQ0kX3m7Xq9lT2rYw8dN1uV4sA6eK0o=";
+
+    @Rule
+    public RunTestOnContext rule = new RunTestOnContext();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldSendAllBuildStagesTimingOnCacheMiss(TestContext ctx) throws Exception {
+        Async async = ctx.async();
+        Vertx vertx = rule.vertx();
+
+        int port = getFreePort();
+        JsonObject config = createConfig(port, "all");
+
+        vertx.deployVerticle(Thumty.class.getName(), new DeploymentOptions().setConfig(config), ctx.asyncAssertSuccess(id ->
+                vertx.createHttpClient().getNow(port, "localhost", "/100x100/filters:gray/image.png", response -> {
+                    String timing = response.getHeader("Server-Timing");
+
+                    ctx.assertEquals(200, response.statusCode());
+                    ctx.assertNotNull(timing);
+                    ctx.assertTrue(timing.contains("cache-lookup;"), timing);
+                    ctx.assertTrue(timing.contains("decode;"), timing);
+                    ctx.assertTrue(timing.contains("filter-AsyncResizeToFill;"), timing);
+                    ctx.assertTrue(timing.contains("filter-Grayscale;"), timing);
+                    ctx.assertTrue(timing.contains("encode;"), timing);
+                    ctx.assertTrue(timing.contains("cache-write;"), timing);
+                    ctx.assertTrue(timing.contains("total;"), timing);
+
+                    response.bodyHandler(body -> {
+                        ctx.assertTrue(body.length() > 0);
+                        async.complete();
+                    });
+                })));
+    }
+
+    @Test
+    public void shouldSendTimingForDebugParameterSignedWithDebugSecret(TestContext ctx) throws Exception {
+        Async async = ctx.async();
+        Vertx vertx = rule.vertx();
+
+        int port = getFreePort();
+        JsonObject config = createConfig(port, "debug").put("debug_secret", DEBUG_SECRET);
+
+        String path = "/100x100/image.png";
+        String debug = new ThumbSigner(DEBUG_SECRET).sign(path);
+
+        vertx.deployVerticle(Thumty.class.getName(), new DeploymentOptions().setConfig(config), ctx.asyncAssertSuccess(id ->
+                vertx.createHttpClient().getNow(port, "localhost", path + "?debug=" + debug, response -> {
+                    ctx.assertEquals(200, response.statusCode());
+                    ctx.assertNotNull(response.getHeader("Server-Timing"));
+                    async.complete();
+                })));
+    }
+
+    @Test
+    public void shouldNotSendTimingForSignedUrlWithDebugParameter(TestContext ctx) throws Exception {
+        Async async = ctx.async();
+        Vertx vertx = rule.vertx();
+
+        int port = getFreePort();
+        JsonObject config = createConfig(port, "debug")
+                .put("secret", SECRET)
+                .put("debug_secret", DEBUG_SECRET);
+
+        String path = "/100x100/image.png";
+        String signature = new ThumbSigner(SECRET).sign(path.substring(1));
+
+        vertx.deployVerticle(Thumty.class.getName(), new DeploymentOptions().setConfig(config), ctx.asyncAssertSuccess(id ->
+                vertx.createHttpClient().getNow(port, "localhost", "/" + signature + path + "?debug=" + signature, response -> {
+                    ctx.assertEquals(200, response.statusCode());
+                    ctx.assertNull(response.getHeader("Server-Timing"));
+                    async.complete();
+                })));
+    }
+
+    private JsonObject createConfig(int port, String serverTiming) throws Exception {
+        File source = folder.newFolder("source");
+        ImageIO.write(new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB), "png", new File(source, "image.png"));
+
+        return new JsonObject()
+                .put("host", "localhost")
+                .put("port", port)
+                .put("server_timing", serverTiming)
+                .put("loaders", new JsonObject()
+                        .put("local", new JsonObject().put("base_path", source.getAbsolutePath())))
+                .put("cache", new JsonObject()
+                        .put("type", "local")
+                        .put("path", folder.newFolder("cache").getAbsolutePath()));
+    }
+
+    private static int getFreePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
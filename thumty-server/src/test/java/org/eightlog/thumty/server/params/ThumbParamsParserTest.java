@@ -138,6 +138,50 @@ public class ThumbParamsParserTest {
 
     }
 
+    @Test
+    public void shouldParseWithCachedPlans() throws Exception {
+        ThumbParamsParser parser = new ThumbParamsParser(new ThumbSigner("secret"), 100);
+
+        for (int i = 0; i < 2; i++) {
+            ThumbParams params = parser.parse("/trim/100x100:200x200/fit-in/100x200/filters:some(arg)/path/example/image" + i + ".jpg");
+
+            assertThat(params.getTrim()).isEqualTo(new ThumbTrim(0, 0, 0));
+            assertThat(params.getCrop()).isNotNull();
+            assertThat(params.getResize()).isNotNull();
+            assertThat(params.getSize()).isNotNull();
+            assertThat(params.getFilters()).isNotNull();
+            assertThat(params.getSource()).isEqualTo("path/example/image" + i + ".jpg");
+        }
+    }
+
+    @Test
+    public void shouldResumeParsingAfterCachedPrefix() throws Exception {
+        ThumbParamsParser parser = new ThumbParamsParser(null, 100);
+
+        assertThat(parser.parse("/trim/100x200").getSource()).isNull();
+
+        ThumbParams params = parser.parse("/trim/100x200/filters:some(arg)/path/image.jpg");
+
+        assertThat(params.getTrim()).isEqualTo(new ThumbTrim(0, 0, 0));
+        assertThat(params.getSize()).isNotNull();
+        assertThat(params.getFilters()).isNotNull();
+        assertThat(params.getSource()).isEqualTo("path/image.jpg");
+
+        assertThat(parser.parse("/trim/path/image.jpg").getSize()).isNull();
+        assertThat(parser.parse("/trim/path/image.jpg").getSource()).isEqualTo("path/image.jpg");
+    }
+
+    @Test
+    public void shouldVerifySignatureWithCachedPlans() throws Exception {
+        ThumbParamsParser parser = new ThumbParamsParser(new ThumbSigner("secret"), 100);
+
+        String url = "trim/100x200/path/image.jpg";
+
+        assertThat(parser.parse("/" + hmacSha1(url, "secret") + "/" + url).isSigned()).isTrue();
+        assertThat(parser.parse("/" + hmacSha1(url, "secret") + "/" + url).getSource()).isEqualTo("path/image.jpg");
+        assertThat(parser.parse("/Mwty04TfQa30QOHYrrVDq3Puy4o/" + url).isSigned()).isFalse();
+    }
+
     private String hmacSha1(String value, String key) {
 
         try {
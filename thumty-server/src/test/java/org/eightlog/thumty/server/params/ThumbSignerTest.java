@@ -0,0 +1,52 @@
+package org.eightlog.thumty.server.params;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/**
+ * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
+ */
+public class ThumbSignerTest {
+
+    private static final String KEY = "i9ccFBc9cMbg5k+iQyvxVRFS05QoAoaqpTbYFOdjjFI=";
+
+    private static final String OLD_KEY = "c2VjcmV0";
+
+    @Test
+    public void shouldVerifySignedData() throws Exception {
+        ThumbSigner signer = new ThumbSigner(KEY);
+
+        String signature = signer.sign("100x100/image.jpg");
+
+        assertThat(signer.verify(signature, "100x100/image.jpg")).isTrue();
+        assertThat(signer.verify(signature, "100x200/image.jpg")).isFalse();
+    }
+
+    @Test
+    public void shouldAcceptRotatedKeys() throws Exception {
+        String signature = new ThumbSigner(OLD_KEY).sign("100x100/image.jpg");
+
+        ThumbSigner signer = new ThumbSigner(KEY, OLD_KEY);
+
+        assertThat(signer.verify(signature, "100x100/image.jpg")).isTrue();
+        assertThat(signer.sign("100x100/image.jpg")).isEqualTo(new ThumbSigner(KEY).sign("100x100/image.jpg"));
+        assertThat(new ThumbSigner(KEY).verify(signature, "100x100/image.jpg")).isFalse();
+    }
+
+    @Test
+    public void shouldRejectMalformedSignature() throws Exception {
+        ThumbSigner signer = new ThumbSigner(KEY);
+
+        assertThat(signer.verify("trim", "100x100/image.jpg")).isFalse();
+        assertThat(signer.verify("not a signature!", "100x100/image.jpg")).isFalse();
+        assertThat(signer.verify("", "100x100/image.jpg")).isFalse();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRequireSecret() throws Exception {
+        new ThumbSigner(Collections.emptyList());
+    }
+}
@@ -3,6 +3,8 @@ package org.eightlog.thumty.store;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.streams.ReadStream;
 
+import javax.annotation.Nullable;
+
 /**
  * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
  */
@@ -14,4 +16,15 @@ public interface AttributedByteStream extends ReadStream<Buffer> {
      * @return a binary content attributes
      */
     Attributes getAttributes();
+
+    /**
+     * Read local file path of the content, when the content is backed by a file. Such content can be sent
+     * without reading it through the stream (e.g. using sendfile).
+     *
+     * @return a local file path or {@code null} if content isn't backed by a file
+     */
+    @Nullable
+    default String getLocalPath() {
+        return null;
+    }
 }
@@ -306,6 +306,6 @@ public class FSBinaryStore implements BinaryStore {
     }
 
     private Binary binary(String id, Attributes attributes) {
-        return new ReadStreamBinary(this, id, attributes);
+        return new ReadStreamBinary(this, id, attributes, filePath(id).toString());
     }
 }
@@ -6,6 +6,8 @@ import io.vertx.core.buffer.Buffer;
 import io.vertx.core.streams.ReadStream;
 import org.eightlog.thumty.store.Attributes;
 
+import javax.annotation.Nullable;
+
 /**
  * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
  */
@@ -17,6 +19,8 @@ public class ReadStreamBinary implements Binary {
 
     private final Attributes attributes;
 
+    private final String localPath;
+
     private boolean loading;
 
     private ReadStream<Buffer> stream;
@@ -37,9 +41,22 @@ public class ReadStreamBinary implements Binary {
      * @param attributes  the binary attributes
      */
     public ReadStreamBinary(BinaryStore binaryStore, String id, Attributes attributes) {
+        this(binaryStore, id, attributes, null);
+    }
+
+    /**
+     * Constructs {@link Binary} implementation backed by a local file
+     *
+     * @param binaryStore the backend binary store
+     * @param id          the binary identifier
+     * @param attributes  the binary attributes
+     * @param localPath   the local file path
+     */
+    public ReadStreamBinary(BinaryStore binaryStore, String id, Attributes attributes, @Nullable String localPath) {
         this.binaryStore = binaryStore;
         this.id = id;
         this.attributes = attributes;
+        this.localPath = localPath;
     }
 
     /**
@@ -56,6 +73,12 @@ public class ReadStreamBinary implements Binary {
         return attributes;
     }
 
+    @Nullable
+    @Override
+    public String getLocalPath() {
+        return localPath;
+    }
+
     @Override
     public ReadStreamBinary exceptionHandler(Handler<Throwable> handler) {
         this.exceptionHandler = handler;
@@ -4,6 +4,8 @@ import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
 import org.eightlog.thumty.store.binary.Binary;
 
+import javax.annotation.Nullable;
+
 /**
  * @author <a href="mailto:iliya.gr@gmail.com">Iliya Grushevskiy</a>
  */
@@ -31,6 +33,12 @@ public class BinaryContent implements Content {
         return attributes;
     }
 
+    @Nullable
+    @Override
+    public String getLocalPath() {
+        return binary.getLocalPath();
+    }
+
     @Override
     public BinaryContent exceptionHandler(Handler<Throwable> handler) {
         binary.exceptionHandler(handler);
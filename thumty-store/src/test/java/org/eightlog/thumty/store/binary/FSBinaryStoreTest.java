@@ -122,6 +122,26 @@ public class FSBinaryStoreTest {
         });
     }
 
+    @Test
+    public void shouldExposeLocalPath(TestContext ctx) throws Exception {
+        Async async = ctx.async();
+
+        rule.vertx().deployVerticle(new AbstractVerticle() {
+            @Override
+            public void start() throws Exception {
+                FSBinaryStore store = new FSBinaryStore(vertx, new FakeDescriptorStore());
+                vertx.fileSystem().open("./src/test/resources/sample.jpg", new OpenOptions().setRead(true), f -> {
+                    store.create(f.result()).compose(i -> store.get(i.getId())).setHandler(res -> {
+                        ctx.assertTrue(res.succeeded());
+                        ctx.assertNotNull(res.result().getLocalPath());
+                        ctx.assertTrue(vertx.fileSystem().existsBlocking(res.result().getLocalPath()));
+                        async.complete();
+                    });
+                });
+            }
+        });
+    }
+
     @Test
     public void shouldDuplicateContent(TestContext ctx) throws Exception {
         Async async = ctx.async();